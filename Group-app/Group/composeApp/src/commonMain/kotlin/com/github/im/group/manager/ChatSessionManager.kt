@@ -44,8 +44,8 @@ class ChatSessionManager(
             val conversationId = ack.conversationId
             val handler = handlers[conversationId]
             if (handler != null) {
-                // 处理ACK逻辑
-                Napier.i("Processing ACK for conversation: $conversationId")
+                Napier.i("Processing ACK for conversation: $conversationId, status: ${ack.status}")
+                handler.onAckReceived(ack)
             }
         }
 
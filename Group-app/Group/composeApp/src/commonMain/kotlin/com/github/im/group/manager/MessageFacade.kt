@@ -22,6 +22,7 @@ import db.OfflineMessage
 import io.github.aakira.napier.Napier
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.datetime.Clock
 import kotlin.uuid.ExperimentalUuidApi
@@ -254,6 +255,26 @@ class MessageFacade(
         clearOfflineIfReady(clientMsgId)
     }
 
+    /**
+     * 服务端拒收（如被限流）：标记失败并计入重试次数，退避后自动重发；
+     * 达到最大重试次数后保持失败，由用户手动重试
+     */
+    fun handleFailedAck(clientMsgId: String, currentUser: UserInfo, toUserId: Long?) {
+        if (store.get(clientMsgId) == null) return
+        // 附件本身没有问题，不标记文件失败
+        markFailed(clientMsgId, "")
+        val offline = offlineMessageRepository.getOfflineMessageByClientMsgId(clientMsgId) ?: return
+        val retryCount = offline.retry_count ?: 0L
+        if (retryCount >= (offline.max_retry_count ?: 3L)) return
+
+        scope.launch {
+            delay(FAILED_ACK_RETRY_DELAY_MS * retryCount.coerceAtLeast(1L))
+            val message = store.get(clientMsgId) ?: return@launch
+            if (message.status != MessageStatus.FAILED) return@launch
+            retryMessage(message, currentUser, toUserId)
+        }
+    }
+
     private fun clearOfflineIfReady(clientMsgId: String) {
         val message = store.get(clientMsgId) ?: return
         val delivered = message.status == MessageStatus.SENT ||
@@ -382,5 +403,6 @@ class MessageFacade(
 
     companion object {
         private const val LOCAL_FILE_PREFIX = "local-file:"
+        private const val FAILED_ACK_RETRY_DELAY_MS = 2_000L
     }
 }
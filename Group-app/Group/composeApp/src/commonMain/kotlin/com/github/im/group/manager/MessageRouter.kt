@@ -1,6 +1,7 @@
 package com.github.im.group.manager
 
 import com.github.im.group.model.MessageWrapper
+import com.github.im.common.connect.model.proto.AckMessage
 import com.github.im.common.connect.model.proto.BaseMessagePkg
 
 /**
@@ -37,4 +38,10 @@ interface MessageHandler {
      * @param message 消息包装器
      */
     fun onMessageReceived(message: MessageWrapper)
+
+    /**
+     * 处理服务端对本端发出消息的确认
+     * @param ack 确认消息，status 为 FAILED 表示服务端拒收（如被限流）
+     */
+    fun onAckReceived(ack: AckMessage) {}
 }
\ No newline at end of file
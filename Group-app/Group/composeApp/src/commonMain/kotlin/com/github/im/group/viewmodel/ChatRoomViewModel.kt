@@ -2,6 +2,8 @@ package com.github.im.group.viewmodel
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.github.im.common.connect.model.proto.AckMessage
+import com.github.im.common.connect.model.proto.MessagesStatus
 import com.github.im.group.api.AiBotApi
 import com.github.im.group.api.AiBotReplyDto
 import com.github.im.group.api.ChatApi
@@ -311,6 +313,17 @@ class ChatRoomViewModel(
         messageFacade.handleAck(clientMsgId)
     }
 
+    override fun onAckReceived(ack: AckMessage) {
+        if (ack.status != MessagesStatus.FAILED) {
+            handleMessageAck(ack.clientMsgId)
+            return
+        }
+        viewModelScope.launch {
+            val currentUser = userRepository.getLocalUserInfo() ?: return@launch
+            messageFacade.handleFailedAck(ack.clientMsgId, currentUser, uiState.value.friend?.userId)
+        }
+    }
+
     fun retryMessage(message: MessageItem) {
         viewModelScope.launch {
             val currentUser = userRepository.getLocalUserInfo() ?: return@launch
@@ -12,6 +12,11 @@ public interface ConnectionConstants {
 
     public static AttributeKey<User.UserInfo> BING_ACCOUNT_KEY = AttributeKey.valueOf("User");
 
+    /**
+     * 连接当前绑定的出站队列
+     */
+    public static AttributeKey<OutboundQueue> OUTBOUND_QUEUE_KEY = AttributeKey.valueOf("OutboundQueue");
+
 
 
 
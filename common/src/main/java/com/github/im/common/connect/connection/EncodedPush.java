@@ -0,0 +1,112 @@
+package com.github.im.common.connect.connection;
+
+import com.github.im.common.connect.model.proto.BaseMessage;
+import com.google.protobuf.CodedOutputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 只编码一次、在多个连接之间共享的推送帧
+ * <p>
+ * 内容为 varint32 长度前缀 + protobuf 消息体，位于池化的 {@link ByteBuf} 中，通过引用计数共享：
+ * 每个接受它的出站队列持有一个引用，写出或丢弃后释放。TCP 连接直接写出整帧（见 {@code EncodedPushEncoder}），
+ * WebSocket 连接只取 {@link #bodyNioBuffer()}。
+ */
+public final class EncodedPush extends DefaultByteBufHolder {
+
+    private final int bodyOffset;
+
+    private EncodedPush(ByteBuf content, int bodyOffset) {
+        super(content);
+        this.bodyOffset = bodyOffset;
+    }
+
+    public static EncodedPush encode(BaseMessage.BaseMessagePkg pkg) {
+        return encode(pkg, PooledByteBufAllocator.DEFAULT);
+    }
+
+    public static EncodedPush encode(BaseMessage.BaseMessagePkg pkg, ByteBufAllocator allocator) {
+        int bodySize = pkg.getSerializedSize();
+        int prefixSize = CodedOutputStream.computeUInt32SizeNoTag(bodySize);
+        int frameSize = prefixSize + bodySize;
+        ByteBuf buf = allocator.buffer(frameSize, frameSize);
+        try {
+            CodedOutputStream output = CodedOutputStream.newInstance(buf.nioBuffer(0, frameSize));
+            output.writeUInt32NoTag(bodySize);
+            pkg.writeTo(output);
+            output.flush();
+            buf.writerIndex(frameSize);
+            return new EncodedPush(buf, prefixSize);
+        } catch (IOException | RuntimeException e) {
+            buf.release();
+            throw new IllegalStateException("Failed to encode push frame", e);
+        }
+    }
+
+    /**
+     * 用已经序列化好的消息体（如路由记录中的 body）构造帧，不再经过 protobuf 对象
+     */
+    public static EncodedPush wrapBody(ByteBuffer body) {
+        int bodySize = body.remaining();
+        int prefixSize = CodedOutputStream.computeUInt32SizeNoTag(bodySize);
+        int frameSize = prefixSize + bodySize;
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.buffer(frameSize, frameSize);
+        try {
+            CodedOutputStream output = CodedOutputStream.newInstance(buf.nioBuffer(0, prefixSize));
+            output.writeUInt32NoTag(bodySize);
+            output.flush();
+            buf.writerIndex(prefixSize);
+            buf.writeBytes(body.duplicate());
+            return new EncodedPush(buf, prefixSize);
+        } catch (IOException | RuntimeException e) {
+            buf.release();
+            throw new IllegalStateException("Failed to wrap push frame", e);
+        }
+    }
+
+    /**
+     * 消息体（不含长度前缀）的只读视图，不改变引用计数；调用方需在持有引用期间使用
+     */
+    public ByteBuffer bodyNioBuffer() {
+        ByteBuf content = content();
+        return content.nioBuffer(content.readerIndex() + bodyOffset, content.readableBytes() - bodyOffset).asReadOnlyBuffer();
+    }
+
+    public int frameSize() {
+        return content().readableBytes();
+    }
+
+    @Override
+    public EncodedPush replace(ByteBuf content) {
+        return new EncodedPush(content, bodyOffset);
+    }
+
+    @Override
+    public EncodedPush retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public EncodedPush retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public EncodedPush touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public EncodedPush touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+}
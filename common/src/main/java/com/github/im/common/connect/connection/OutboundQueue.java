@@ -0,0 +1,287 @@
+package com.github.im.common.connect.connection;
+
+import com.github.im.common.connect.model.proto.BaseMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个连接的有界、有序出站队列
+ * <p>
+ * 生产者可并发 {@link #offer}，同一时刻只有一个排空任务在连接的执行器上运行（TCP 为 channel 的 EventLoop），
+ * 因此写出顺序与入队顺序一致。每次排空把积压的消息逐条 write 后只 flush 一次；
+ * 连接不可写时暂停排空，等待 {@link #resume()}，积压超过容量后按 {@link OverflowPolicy} 处理。
+ * <p>
+ * 队列中保存的是已编码的 {@link EncodedPush}：入队时持有一个引用，写出时把该引用交给 {@link Writer}，丢弃时释放。
+ */
+@Slf4j
+public final class OutboundQueue {
+
+    private static final AtomicLong QUEUED = new AtomicLong();
+    private static final LongAdder FLUSHES = new LongAdder();
+    private static final LongAdder FLUSHED_MESSAGES = new LongAdder();
+    private static final LongAdder[] OVERFLOWS = new LongAdder[OverflowPolicy.values().length];
+
+    static {
+        for (int i = 0; i < OVERFLOWS.length; i++) {
+            OVERFLOWS[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 队列满时的处理策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 丢弃最早入队的消息，为新消息腾出位置
+         */
+        DROP_OLDEST,
+        /**
+         * 关闭队列并断开连接，由客户端重连后重新拉取
+         */
+        DISCONNECT
+    }
+
+    /**
+     * @param capacity      单连接最多积压的消息数
+     * @param maxFlushBatch 单次排空最多写出的消息数，写完后 flush 一次并让出执行器
+     * @param overflowPolicy 溢出策略
+     */
+    public record Settings(int capacity, int maxFlushBatch, OverflowPolicy overflowPolicy) {
+
+        public static final Settings DEFAULT = new Settings(1024, 64, OverflowPolicy.DROP_OLDEST);
+
+        public Settings {
+            if (capacity <= 0 || maxFlushBatch <= 0 || overflowPolicy == null) {
+                throw new IllegalArgumentException("Invalid outbound queue settings");
+            }
+        }
+    }
+
+    /**
+     * 连接的写出端
+     */
+    public interface Writer {
+
+        boolean isWritable();
+
+        /**
+         * 写出一帧，并接管该帧上队列持有的引用（写完或失败后由写出端负责释放）
+         */
+        void write(EncodedPush push);
+
+        void flush();
+    }
+
+    /**
+     * 溢出回调，在触发溢出的生产者线程上调用
+     */
+    public interface OverflowListener {
+
+        void onOverflow(OutboundQueue queue, OverflowPolicy policy);
+    }
+
+    private final ConcurrentLinkedQueue<EncodedPush> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * 已占用的容量（入队前预留，出队后释放）
+     */
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private final Settings settings;
+    private final Executor executor;
+    private final Writer writer;
+    private final OverflowListener overflowListener;
+
+    private volatile boolean closed;
+
+    public OutboundQueue(Settings settings, Executor executor, Writer writer, OverflowListener overflowListener) {
+        this.settings = settings;
+        this.executor = executor;
+        this.writer = writer;
+        this.overflowListener = overflowListener;
+    }
+
+    /**
+     * 编码后入队，只推给单个连接时使用
+     *
+     * @return 消息是否被接受
+     */
+    public boolean offer(BaseMessage.BaseMessagePkg pkg) {
+        if (closed) {
+            return false;
+        }
+        EncodedPush push = EncodedPush.encode(pkg);
+        try {
+            return offer(push);
+        } finally {
+            push.release();
+        }
+    }
+
+    /**
+     * 入队并触发排空；被接受时队列对 push 增加一个引用，调用方仍需释放自己持有的引用
+     *
+     * @return 消息是否被接受；队列已关闭或因溢出被拒绝时返回 false
+     */
+    public boolean offer(EncodedPush push) {
+        while (true) {
+            if (closed) {
+                return false;
+            }
+            int current = size.get();
+            if (current < settings.capacity()) {
+                if (size.compareAndSet(current, current + 1)) {
+                    break;
+                }
+                continue;
+            }
+
+            OverflowPolicy policy = settings.overflowPolicy();
+            switch (policy) {
+                case DROP_OLDEST -> {
+                    EncodedPush dropped = poll();
+                    if (dropped != null) {
+                        dropped.release();
+                        overflow(policy);
+                    } else {
+                        // 容量已被其他生产者预留但尚未入队
+                        Thread.onSpinWait();
+                    }
+                }
+                case DISCONNECT -> {
+                    overflow(policy);
+                    close();
+                    return false;
+                }
+            }
+        }
+
+        queue.offer(push.retain());
+        QUEUED.incrementAndGet();
+        if (closed) {
+            // 与 close() 并发：close 清空积压后才入队的消息不会再被排空，再清一次以释放引用
+            clearBacklog();
+            return false;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * 连接重新变为可写时调用，继续排空积压
+     */
+    public void resume() {
+        if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * 关闭队列并丢弃积压，之后的 offer 均返回 false
+     */
+    public void close() {
+        closed = true;
+        clearBacklog();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RuntimeException e) {
+                drainScheduled.set(false);
+                log.warn("Failed to schedule outbound drain, closing queue", e);
+                close();
+            }
+        }
+    }
+
+    private void drain() {
+        int written = 0;
+        try {
+            while (written < settings.maxFlushBatch() && !closed && writer.isWritable()) {
+                EncodedPush push = poll();
+                if (push == null) {
+                    break;
+                }
+                writer.write(push);
+                written++;
+            }
+            if (written > 0) {
+                writer.flush();
+                FLUSHES.increment();
+                FLUSHED_MESSAGES.add(written);
+            }
+        } catch (Exception e) {
+            log.error("Failed to write outbound messages, closing queue", e);
+            close();
+        } finally {
+            drainScheduled.set(false);
+        }
+
+        // 排空期间有新消息入队、或达到单批上限时继续排空；不可写时等待 resume
+        if (!closed && !queue.isEmpty() && writer.isWritable()) {
+            scheduleDrain();
+        }
+    }
+
+    private EncodedPush poll() {
+        EncodedPush push = queue.poll();
+        if (push != null) {
+            size.decrementAndGet();
+            QUEUED.decrementAndGet();
+        }
+        return push;
+    }
+
+    private void clearBacklog() {
+        EncodedPush push;
+        while ((push = poll()) != null) {
+            push.release();
+        }
+    }
+
+    private void overflow(OverflowPolicy policy) {
+        OVERFLOWS[policy.ordinal()].increment();
+        if (overflowListener != null) {
+            try {
+                overflowListener.onOverflow(this, policy);
+            } catch (Exception e) {
+                log.warn("Outbound overflow listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * @return 本节点所有连接当前积压的消息总数
+     */
+    public static long totalQueued() {
+        return QUEUED.get();
+    }
+
+    public static long overflowCount(OverflowPolicy policy) {
+        return OVERFLOWS[policy.ordinal()].sum();
+    }
+
+    public static long flushCount() {
+        return FLUSHES.sum();
+    }
+
+    public static long flushedMessageCount() {
+        return FLUSHED_MESSAGES.sum();
+    }
+}
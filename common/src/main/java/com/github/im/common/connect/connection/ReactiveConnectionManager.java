@@ -4,137 +4,294 @@ import com.github.im.common.connect.connection.server.BindAttr;
 import com.github.im.common.connect.enums.PlatformType;
 import com.github.im.common.connect.model.proto.BaseMessage;
 import lombok.extern.slf4j.Slf4j;
-import reactor.core.Scannable;
-import reactor.core.publisher.Sinks;
-import reactor.core.publisher.Sinks.EmitResult;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static java.util.Collections.emptyList;
 
+/**
+ * 本地连接注册表
+ * <p>
+ * 以 userId 为键，每个用户持有一个按 {@link PlatformType#ordinal()} 索引的定长槽位数组，
+ * 槽位上是该平台连接的 {@link OutboundQueue}。全平台推送只需一次 map 查找并遍历槽位，
+ * 不再拼接字符串键；推送只做入队，写出与 flush 由各连接自己的队列完成。
+ * 消息只编码一次为 {@link EncodedPush}，同一用户的多个平台连接（以及上层的多个接收者）共享同一份帧。
+ * <p>
+ * 基于 {@link BindAttr} 的旧接口仍然保留，内部解析一次键后委托给 userId 接口。
+ */
 @Slf4j
 public class ReactiveConnectionManager {
 
-    private static final ConcurrentMap<BindAttr<String>, Sinks.Many<BaseMessage.BaseMessagePkg>> BASE_MESSAGE_SINKS =
-            new ConcurrentHashMap<>();
+    private static final PlatformType[] PLATFORMS = PlatformType.values();
+
+    private static final ConcurrentMap<Long, UserConnections> USER_CONNECTIONS = new ConcurrentHashMap<>();
 
     public static final String ALL_PLATFORM_PUSH_TAG = "ALL";
 
-    public static Sinks.Many<BaseMessage.BaseMessagePkg> registerSinkFlow(BindAttr<String> attr) {
-        return BASE_MESSAGE_SINKS.compute(attr, (key, existingSink) -> {
-            if (isSinkActive(existingSink)) {
-                return existingSink;
-            }
-            return Sinks.many().multicast().onBackpressureBuffer();
+    public static void register(BindAttr<String> attr, OutboundQueue queue) {
+        BindKey bindKey = BindKey.parse(attr);
+        if (bindKey == null || bindKey.platform() == null) {
+            throw new IllegalArgumentException("Cannot register outbound queue for ATTR: " + (attr == null ? null : attr.getKey()));
+        }
+        register(bindKey.userId(), bindKey.platform(), queue);
+    }
+
+    /**
+     * 注册用户在指定平台上的出站队列；同平台上已有的队列会被关闭并替换（新连接生效）
+     */
+    public static void register(long userId, PlatformType platform, OutboundQueue queue) {
+        int index = platform.ordinal();
+        OutboundQueue[] replaced = new OutboundQueue[1];
+        USER_CONNECTIONS.compute(userId, (key, connections) -> {
+            UserConnections current = connections != null ? connections : new UserConnections();
+            replaced[0] = current.slots.getAndSet(index, queue);
+            return current;
         });
+        if (replaced[0] != null && replaced[0] != queue) {
+            replaced[0].close();
+        }
     }
 
-    public static Sinks.Many<BaseMessage.BaseMessagePkg> getSinkFlow(BindAttr<String> attr) {
-        return BASE_MESSAGE_SINKS.get(attr);
+    public static OutboundQueue getOutboundQueue(BindAttr<String> attr) {
+        BindKey bindKey = BindKey.parse(attr);
+        if (bindKey == null || bindKey.platform() == null) {
+            return null;
+        }
+        return liveQueue(bindKey.userId(), bindKey.platform());
     }
 
     public static boolean isSubscribe(BindAttr<String> attr) {
-        return !getAllSubscribeAttr(attr).isEmpty();
+        BindKey bindKey = BindKey.parse(attr);
+        if (bindKey == null) {
+            return false;
+        }
+        if (bindKey.platform() != null) {
+            return liveQueue(bindKey.userId(), bindKey.platform()) != null;
+        }
+        return isOnline(bindKey.userId());
+    }
+
+    /**
+     * @return 用户在本节点是否存在任一存活连接
+     */
+    public static boolean isOnline(long userId) {
+        UserConnections connections = USER_CONNECTIONS.get(userId);
+        if (connections == null) {
+            return false;
+        }
+        for (int i = 0; i < PLATFORMS.length; i++) {
+            OutboundQueue queue = connections.slots.get(i);
+            if (queue != null && !queue.isClosed()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public static void addBaseMessage(BindAttr<String> attr, BaseMessage.BaseMessagePkg baseMessagePkg) {
-        List<BindAttr<String>> subscribeAttrs = getAllSubscribeAttr(attr);
-        if (subscribeAttrs.isEmpty()) {
-            log.debug("No active sink found for ATTR: {}", attr);
+        BindKey bindKey = BindKey.parse(attr);
+        if (bindKey == null) {
+            log.debug("No active connection found for ATTR: {}", attr == null ? null : attr.getKey());
+            return;
+        }
+        if (bindKey.platform() == null) {
+            addBaseMessage(bindKey.userId(), baseMessagePkg);
             return;
         }
 
-        subscribeAttrs.forEach(bindAttr -> {
-            log.info("推送消息 {} 到 {} ", baseMessagePkg, bindAttr.getKey());
-            emitToSink(bindAttr, baseMessagePkg);
-        });
+        UserConnections connections = USER_CONNECTIONS.get(bindKey.userId());
+        if (connections == null) {
+            log.debug("No active connection found for ATTR: {}", attr.getKey());
+            return;
+        }
+        EncodedPush push = EncodedPush.encode(baseMessagePkg);
+        try {
+            offerToSlot(bindKey.userId(), connections, bindKey.platform().ordinal(), push);
+        } finally {
+            push.release();
+        }
+    }
+
+    /**
+     * 推送到用户在本节点上的所有平台连接
+     */
+    public static void addBaseMessage(long userId, BaseMessage.BaseMessagePkg baseMessagePkg) {
+        UserConnections connections = USER_CONNECTIONS.get(userId);
+        if (connections == null) {
+            log.debug("No active connection found for user: {}", userId);
+            return;
+        }
+
+        EncodedPush push = EncodedPush.encode(baseMessagePkg);
+        try {
+            offerToSlots(userId, connections, push);
+        } finally {
+            push.release();
+        }
+    }
+
+    /**
+     * 推送已编码的帧到用户在本节点上的所有平台连接，供一次编码、多个接收者共享时使用；
+     * 每个接受该帧的队列各自持有引用，调用方仍负责释放自己的引用
+     */
+    public static void addEncodedPush(long userId, EncodedPush push) {
+        UserConnections connections = USER_CONNECTIONS.get(userId);
+        if (connections == null) {
+            log.debug("No active connection found for user: {}", userId);
+            return;
+        }
+        offerToSlots(userId, connections, push);
     }
 
     public static List<BindAttr<String>> getAllSubscribeAttr(BindAttr<String> attr) {
-        if (attr == null || attr.getKey() == null) {
+        BindKey bindKey = BindKey.parse(attr);
+        if (bindKey == null) {
             return emptyList();
         }
 
-        String key = attr.getKey();
-        if (key.contains(ALL_PLATFORM_PUSH_TAG)) {
-            log.debug("推送全平台的标识");
-            int i = key.lastIndexOf("_");
-            String account = key.substring(0, i);
-            return Arrays.stream(PlatformType.values())
-                    .map(platformType -> {
-                        BindAttr<String> bindAttr = BindAttr.getBindAttr(account, platformType);
-                        if (isSinkActive(BASE_MESSAGE_SINKS.get(bindAttr))) {
-                            return bindAttr;
-                        }
-                        cleanupInactiveSink(bindAttr);
-                        return null;
-                    })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+        String account = String.valueOf(bindKey.userId());
+        if (bindKey.platform() != null) {
+            return liveQueue(bindKey.userId(), bindKey.platform()) != null
+                    ? List.of(BindAttr.getBindAttr(account, bindKey.platform()))
+                    : emptyList();
         }
 
-        if (isSinkActive(BASE_MESSAGE_SINKS.get(attr))) {
-            return List.of(attr);
+        List<BindAttr<String>> result = new ArrayList<>(PLATFORMS.length);
+        for (PlatformType platform : PLATFORMS) {
+            if (liveQueue(bindKey.userId(), platform) != null) {
+                result.add(BindAttr.getBindAttr(account, platform));
+            }
         }
-        cleanupInactiveSink(attr);
-        return emptyList();
+        return result;
     }
 
     public static void unSubscribe(BindAttr<String> attr) {
-        if (attr == null) {
+        BindKey bindKey = BindKey.parse(attr);
+        if (bindKey == null || bindKey.platform() == null) {
             return;
         }
 
         try {
-            Sinks.Many<BaseMessage.BaseMessagePkg> sink = BASE_MESSAGE_SINKS.remove(attr);
-            if (sink != null) {
-                sink.tryEmitComplete();
-            }
+            unSubscribe(bindKey.userId(), bindKey.platform());
         } catch (Exception e) {
             log.error("unSubscribe error", e);
         }
     }
 
-    private static void emitToSink(BindAttr<String> attr, BaseMessage.BaseMessagePkg baseMessagePkg) {
-        Sinks.Many<BaseMessage.BaseMessagePkg> sink = BASE_MESSAGE_SINKS.get(attr);
-        if (!isSinkActive(sink)) {
-            cleanupInactiveSink(attr);
-            log.debug("Skip push because sink is inactive, ATTR: {}", attr.getKey());
+    /**
+     * 移除用户在指定平台上的连接（无论当前注册的是哪个队列）
+     */
+    public static void unSubscribe(long userId, PlatformType platform) {
+        OutboundQueue[] removed = new OutboundQueue[1];
+        USER_CONNECTIONS.computeIfPresent(userId, (key, connections) -> {
+            removed[0] = connections.slots.getAndSet(platform.ordinal(), null);
+            return connections.isEmpty() ? null : connections;
+        });
+        if (removed[0] != null) {
+            removed[0].close();
+        }
+    }
+
+    /**
+     * 连接关闭时调用：仅当槽位上仍是该连接的队列时才移除，避免误删同平台上更新的连接
+     */
+    public static void unregister(long userId, PlatformType platform, OutboundQueue queue) {
+        queue.close();
+        USER_CONNECTIONS.computeIfPresent(userId, (key, connections) -> {
+            connections.slots.compareAndSet(platform.ordinal(), queue, null);
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+
+    public static void unregister(BindAttr<String> attr, OutboundQueue queue) {
+        BindKey bindKey = BindKey.parse(attr);
+        if (bindKey == null || bindKey.platform() == null) {
+            queue.close();
+            return;
+        }
+        unregister(bindKey.userId(), bindKey.platform(), queue);
+    }
+
+    private static void offerToSlots(long userId, UserConnections connections, EncodedPush push) {
+        for (int i = 0; i < PLATFORMS.length; i++) {
+            offerToSlot(userId, connections, i, push);
+        }
+    }
+
+    private static void offerToSlot(long userId, UserConnections connections, int index, EncodedPush push) {
+        OutboundQueue queue = connections.slots.get(index);
+        if (queue == null) {
             return;
         }
 
-        EmitResult result = sink.tryEmitNext(baseMessagePkg);
-        if (result.isFailure()) {
-            log.warn("Failed to emit message to {}, result={}", attr.getKey(), result);
-            if (result == EmitResult.FAIL_CANCELLED || result == EmitResult.FAIL_TERMINATED) {
-                cleanupInactiveSink(attr);
+        log.debug("推送消息到 {}_{}", userId, PLATFORMS[index]);
+        if (!queue.offer(push) && queue.isClosed()) {
+            log.debug("Outbound queue of {}_{} is closed, removing it", userId, PLATFORMS[index]);
+            if (connections.slots.compareAndSet(index, queue, null)) {
+                removeIfEmpty(userId, connections);
             }
         }
     }
 
-    private static boolean isSinkActive(Sinks.Many<BaseMessage.BaseMessagePkg> sink) {
-        if (sink == null) {
-            return false;
+    private static OutboundQueue liveQueue(long userId, PlatformType platform) {
+        UserConnections connections = USER_CONNECTIONS.get(userId);
+        if (connections == null) {
+            return null;
         }
+        OutboundQueue queue = connections.slots.get(platform.ordinal());
+        return queue != null && !queue.isClosed() ? queue : null;
+    }
 
-        Boolean cancelled = Scannable.from(sink).scan(Scannable.Attr.CANCELLED);
-        Boolean terminated = Scannable.from(sink).scan(Scannable.Attr.TERMINATED);
-        return !Boolean.TRUE.equals(cancelled) && !Boolean.TRUE.equals(terminated);
+    private static void removeIfEmpty(long userId, UserConnections connections) {
+        USER_CONNECTIONS.computeIfPresent(userId, (key, current) ->
+                current == connections && current.isEmpty() ? null : current);
     }
 
-    private static void cleanupInactiveSink(BindAttr<String> attr) {
-        if (attr == null) {
-            return;
+    /**
+     * 单个用户在本节点上的连接，槽位下标为 {@link PlatformType#ordinal()}
+     */
+    private static final class UserConnections {
+        private final AtomicReferenceArray<OutboundQueue> slots = new AtomicReferenceArray<>(PLATFORMS.length);
+
+        private boolean isEmpty() {
+            for (int i = 0; i < PLATFORMS.length; i++) {
+                if (slots.get(i) != null) {
+                    return false;
+                }
+            }
+            return true;
         }
+    }
+
+    /**
+     * 解析 {@link BindAttr} 的键（{@code userId_PLATFORM} 或 {@code userId_ALL}），platform 为 null 表示全平台
+     */
+    private record BindKey(long userId, PlatformType platform) {
 
-        Sinks.Many<BaseMessage.BaseMessagePkg> sink = BASE_MESSAGE_SINKS.get(attr);
-        if (!isSinkActive(sink)) {
-            BASE_MESSAGE_SINKS.remove(attr, sink);
+        private static BindKey parse(BindAttr<String> attr) {
+            if (attr == null || attr.getKey() == null) {
+                return null;
+            }
+            String key = attr.getKey();
+            int i = key.lastIndexOf('_');
+            if (i <= 0) {
+                return null;
+            }
+            try {
+                long userId = Long.parseLong(key.substring(0, i));
+                String tag = key.substring(i + 1);
+                if (ALL_PLATFORM_PUSH_TAG.equals(tag)) {
+                    return new BindKey(userId, null);
+                }
+                return new BindKey(userId, PlatformType.valueOf(tag));
+            } catch (IllegalArgumentException e) {
+                log.debug("Unsupported bind attr key: {}", key);
+                return null;
+            }
         }
     }
 }
@@ -0,0 +1,206 @@
+package com.github.im.common.connect.connection.server;
+
+import com.github.im.common.connect.model.proto.BaseMessage;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+import reactor.netty.Connection;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 入站消息限流
+ * <p>
+ * 按消息类型（{@link BaseMessage.BaseMessagePkg.PayloadCase}）分别配置每个连接和每个租户的速率与突发量，
+ * 超出任一限制的消息直接丢弃，不进入分发，并通知 {@link ThrottleListener}（如回复客户端发送失败）。
+ * <p>
+ * 令牌桶用 GCRA 实现：每个桶只有一个 long（理论到达时间），判断和扣减是一次 CAS，不分配对象。
+ * 连接的桶存放在 channel 的属性中，随连接释放；租户的桶按租户标识共享，由 tenantResolver 从 channel 解析，
+ * 未登录（解析为 null）的连接只受连接级限制。
+ */
+@Slf4j
+public final class InboundRateLimiter {
+
+    private static final AttributeKey<RateBucket[]> CONNECTION_BUCKETS_KEY = AttributeKey.valueOf("im.inbound.rate.buckets");
+
+    private static final BaseMessage.BaseMessagePkg.PayloadCase[] PAYLOAD_CASES = BaseMessage.BaseMessagePkg.PayloadCase.values();
+
+    /**
+     * 限流维度
+     */
+    public enum Scope {
+        CONNECTION,
+        TENANT
+    }
+
+    private static final LongAdder[][] REJECTED = new LongAdder[Scope.values().length][PAYLOAD_CASES.length];
+
+    static {
+        for (LongAdder[] counters : REJECTED) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * 单个消息类型的限制
+     *
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst         桶容量，即允许的最大突发消息数
+     */
+    public record Rule(double ratePerSecond, int burst) {
+
+        public Rule {
+            if (!(ratePerSecond > 0) || burst <= 0) {
+                throw new IllegalArgumentException("Invalid rate limit rule: rate=" + ratePerSecond + ", burst=" + burst);
+            }
+        }
+
+        long intervalNanos() {
+            return Math.max(1L, (long) (1_000_000_000d / ratePerSecond));
+        }
+    }
+
+    /**
+     * @param perConnection 每个连接的限制，未配置的类型不限制
+     * @param perTenant     每个租户的限制，未配置的类型不限制
+     */
+    public record Settings(Map<BaseMessage.BaseMessagePkg.PayloadCase, Rule> perConnection,
+                           Map<BaseMessage.BaseMessagePkg.PayloadCase, Rule> perTenant) {
+
+        public Settings {
+            perConnection = perConnection == null || perConnection.isEmpty() ? Map.of() : new EnumMap<>(perConnection);
+            perTenant = perTenant == null || perTenant.isEmpty() ? Map.of() : new EnumMap<>(perTenant);
+        }
+    }
+
+    /**
+     * 消息被限流时回调，在收到消息的线程上执行，不应阻塞
+     */
+    @FunctionalInterface
+    public interface ThrottleListener {
+
+        void onThrottled(Connection connection, BaseMessage.BaseMessagePkg pkg, Scope scope);
+    }
+
+    /**
+     * 按消息类型下标的规则，未配置为 null
+     */
+    private final Rule[] connectionRules;
+    private final Rule[] tenantRules;
+    private final Function<Channel, String> tenantResolver;
+    private final ThrottleListener throttleListener;
+    private final ConcurrentHashMap<String, RateBucket[]> tenantBuckets = new ConcurrentHashMap<>();
+
+    public InboundRateLimiter(Settings settings, Function<Channel, String> tenantResolver, ThrottleListener throttleListener) {
+        this.connectionRules = toArray(settings.perConnection());
+        this.tenantRules = toArray(settings.perTenant());
+        this.tenantResolver = tenantResolver;
+        this.throttleListener = throttleListener;
+    }
+
+    /**
+     * 消息是否放行；被拒绝时计数并通知监听器
+     */
+    public boolean tryAcquire(Connection connection, BaseMessage.BaseMessagePkg pkg) {
+        int index = pkg.getPayloadCase().ordinal();
+        Rule connectionRule = connectionRules[index];
+        Rule tenantRule = tenantRules[index];
+        if (connectionRule == null && tenantRule == null) {
+            return true;
+        }
+        Channel channel = connection.channel();
+        long now = System.nanoTime();
+
+        if (connectionRule != null && !connectionBuckets(channel)[index].tryAcquire(now, connectionRule)) {
+            return reject(connection, pkg, Scope.CONNECTION);
+        }
+        if (tenantRule != null) {
+            String tenant = tenantResolver == null ? null : tenantResolver.apply(channel);
+            if (tenant != null
+                    && !tenantBuckets.computeIfAbsent(tenant, t -> newBuckets(tenantRules))[index].tryAcquire(now, tenantRule)) {
+                return reject(connection, pkg, Scope.TENANT);
+            }
+        }
+        return true;
+    }
+
+    private boolean reject(Connection connection, BaseMessage.BaseMessagePkg pkg, Scope scope) {
+        REJECTED[scope.ordinal()][pkg.getPayloadCase().ordinal()].increment();
+        if (throttleListener != null) {
+            try {
+                throttleListener.onThrottled(connection, pkg, scope);
+            } catch (Exception e) {
+                log.warn("Throttle listener failed on {}", connection.channel(), e);
+            }
+        }
+        return false;
+    }
+
+    private RateBucket[] connectionBuckets(Channel channel) {
+        RateBucket[] buckets = channel.attr(CONNECTION_BUCKETS_KEY).get();
+        if (buckets == null) {
+            buckets = newBuckets(connectionRules);
+            RateBucket[] previous = channel.attr(CONNECTION_BUCKETS_KEY).setIfAbsent(buckets);
+            if (previous != null) {
+                buckets = previous;
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * 已配置规则的类型预先建好桶，之后只读数组，无需同步
+     */
+    private static RateBucket[] newBuckets(Rule[] rules) {
+        RateBucket[] buckets = new RateBucket[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i] != null) {
+                buckets[i] = new RateBucket();
+            }
+        }
+        return buckets;
+    }
+
+    private static Rule[] toArray(Map<BaseMessage.BaseMessagePkg.PayloadCase, Rule> rules) {
+        Rule[] result = new Rule[PAYLOAD_CASES.length];
+        rules.forEach((payloadCase, rule) -> result[payloadCase.ordinal()] = rule);
+        return result;
+    }
+
+    /**
+     * 因超出限制被丢弃的消息数
+     */
+    public static long rejectedCount(Scope scope, BaseMessage.BaseMessagePkg.PayloadCase payloadCase) {
+        return REJECTED[scope.ordinal()][payloadCase.ordinal()].sum();
+    }
+
+    /**
+     * GCRA 令牌桶：理论到达时间超出当前时间不超过 (burst - 1) 个间隔即放行，并后移一个间隔
+     */
+    static final class RateBucket {
+
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+        boolean tryAcquire(long now, Rule rule) {
+            long interval = rule.intervalNanos();
+            long tolerance = interval * (rule.burst() - 1L);
+            while (true) {
+                long current = theoreticalArrival.get();
+                long tat = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                if (tat - now > tolerance) {
+                    return false;
+                }
+                if (theoreticalArrival.compareAndSet(current, tat + interval)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
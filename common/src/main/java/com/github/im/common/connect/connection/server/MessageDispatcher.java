@@ -3,7 +3,9 @@ package com.github.im.common.connect.connection.server;
 import cn.hutool.core.collection.CollectionUtil;
 import com.github.im.common.connect.model.proto.BaseMessage;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 import reactor.netty.Connection;
 import reactor.netty.NettyInbound;
@@ -13,6 +15,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -23,7 +29,48 @@ import java.util.stream.Collectors;
 @Slf4j
 public class MessageDispatcher {
 
+    /**
+     * 同步处理器 {@link ProtoBufProcessHandler} 的执行方式
+     */
+    public enum Mode {
+        /**
+         * 在收到消息的 EventLoop 线程上直接执行
+         */
+        EVENT_LOOP,
+        /**
+         * 每个连接一个有序邮箱：同一连接的消息按到达顺序逐条在虚拟线程上执行，阻塞的处理器不占用 EventLoop
+         */
+        VIRTUAL_THREAD
+    }
+
+    private static volatile Mode mode = Mode.EVENT_LOOP;
+    /**
+     * 单个连接邮箱最多积压的消息数，积满后不再向连接请求数据，由 reactor-netty 暂停读取
+     */
+    private static volatile int mailboxCapacity = 256;
+    /**
+     * 在收到消息的线程上包装任务，用于把调用方的线程上下文（如 TransmittableThreadLocal）带到执行线程
+     */
+    private static volatile UnaryOperator<Runnable> taskDecorator = UnaryOperator.identity();
+
+    /**
+     * 入站限流，为 null 时不限流
+     */
+    private static volatile InboundRateLimiter rateLimiter;
+
+    private static final Scheduler VIRTUAL_THREADS = Schedulers.fromExecutorService(
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("im-dispatch-", 0).factory()), "im-dispatch");
+
+    private static final AtomicLong QUEUED = new AtomicLong();
+    private static final AtomicLong IN_FLIGHT = new AtomicLong();
+    private static final LongAdder EXECUTED = new LongAdder();
+    private static final LongAdder QUEUE_TIME_NANOS = new LongAdder();
 
+    /**
+     * 邮箱中等待执行的一条消息
+     */
+    private record InboundTask(Runnable runnable) {
+    }
 
     private static final ConcurrentHashMap<BaseMessage.BaseMessagePkg.PayloadCase, ProtoBufProcessHandler> PROTO_BUF_HANDLERS =
             new ConcurrentHashMap<>();
@@ -57,6 +104,78 @@ public class MessageDispatcher {
     }
 
 
+    /**
+     * 设置同步处理器的执行方式
+     *
+     * @param mode            执行方式
+     * @param mailboxCapacity 虚拟线程模式下单个连接最多积压的消息数
+     * @param taskDecorator   虚拟线程模式下在收到消息的线程上包装任务，为 null 时不包装
+     */
+    public static void configure(Mode mode, int mailboxCapacity, UnaryOperator<Runnable> taskDecorator) {
+        if (mailboxCapacity <= 0) {
+            throw new IllegalArgumentException("mailboxCapacity must be positive");
+        }
+        MessageDispatcher.mode = mode == null ? Mode.EVENT_LOOP : mode;
+        MessageDispatcher.mailboxCapacity = mailboxCapacity;
+        MessageDispatcher.taskDecorator = taskDecorator == null ? UnaryOperator.identity() : taskDecorator;
+        log.info("Message dispatch mode {}, mailboxCapacity={}", MessageDispatcher.mode, mailboxCapacity);
+    }
+
+    /**
+     * 设置入站限流，为 null 时关闭
+     */
+    public static void configureRateLimiter(InboundRateLimiter limiter) {
+        rateLimiter = limiter;
+    }
+
+    /**
+     * 分发一个连接收到的全部消息
+     * <p>
+     * {@link Mode#EVENT_LOOP} 下逐条在当前线程调用 {@link #dispatchMessage}；{@link Mode#VIRTUAL_THREAD} 下用 concatMap
+     * 作为该连接的邮箱，消息到达时包装任务并记录时间，按顺序逐条在虚拟线程上执行，前一条完成后才执行下一条。
+     * 两种方式下超出 {@link InboundRateLimiter} 限制的消息都在收到时丢弃，不进入邮箱。
+     *
+     * @return 不发出元素，连接的消息流结束时完成
+     */
+    public Flux<Void> dispatchAll(NettyInbound inbound, NettyOutbound outbound, Flux<BaseMessage.BaseMessagePkg> received) {
+        var messages = received.filter(baseMessagePkg -> admit(inbound, baseMessagePkg));
+        if (mode == Mode.EVENT_LOOP) {
+            return messages.handle((baseMessagePkg, sink) -> dispatchMessage(inbound, outbound, baseMessagePkg));
+        }
+        return messages
+                .map(baseMessagePkg -> enqueue(inbound, outbound, baseMessagePkg))
+                .concatMap(task -> Mono.<Void>fromRunnable(task.runnable()).subscribeOn(VIRTUAL_THREADS), mailboxCapacity)
+                // 连接取消订阅时丢弃的积压消息
+                .doOnDiscard(InboundTask.class, task -> QUEUED.decrementAndGet());
+    }
+
+    private boolean admit(NettyInbound inbound, BaseMessage.BaseMessagePkg baseMessagePkg) {
+        InboundRateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            return true;
+        }
+        boolean[] admitted = {true};
+        inbound.withConnection(connection -> admitted[0] = limiter.tryAcquire(connection, baseMessagePkg));
+        return admitted[0];
+    }
+
+    private InboundTask enqueue(NettyInbound inbound, NettyOutbound outbound, BaseMessage.BaseMessagePkg baseMessagePkg) {
+        long enqueuedAt = System.nanoTime();
+        QUEUED.incrementAndGet();
+        Runnable task = () -> {
+            QUEUED.decrementAndGet();
+            QUEUE_TIME_NANOS.add(System.nanoTime() - enqueuedAt);
+            IN_FLIGHT.incrementAndGet();
+            try {
+                dispatchMessage(inbound, outbound, baseMessagePkg);
+            } finally {
+                IN_FLIGHT.decrementAndGet();
+                EXECUTED.increment();
+            }
+        };
+        return new InboundTask(taskDecorator.apply(task));
+    }
+
     /**
      * dispatch message
      * {@link ProtoBufProcessHandler protobufMessage handler}
@@ -69,10 +188,15 @@ public class MessageDispatcher {
         try{
 
             var payloadCase = baseMessagePkg.getPayloadCase();
+            var handler = PROTO_BUF_HANDLERS.get(payloadCase);
+            if (handler == null) {
+                log.warn("No handler found for payload case: {}", payloadCase);
+                return;
+            }
 
             inbound.withConnection(connection -> {
 
-                PROTO_BUF_HANDLERS.get(payloadCase).process(connection,baseMessagePkg);
+                handler.process(connection,baseMessagePkg);
 
             });
 
@@ -128,6 +252,31 @@ public class MessageDispatcher {
         });
     }
 
+    /**
+     * 虚拟线程模式下所有连接排队等待执行的消息数
+     */
+    public static long totalQueued() {
+        return QUEUED.get();
+    }
+
+    /**
+     * 虚拟线程模式下正在执行的消息数
+     */
+    public static long inFlight() {
+        return IN_FLIGHT.get();
+    }
+
+    public static long executedCount() {
+        return EXECUTED.sum();
+    }
+
+    /**
+     * 虚拟线程模式下已执行消息从到达到开始执行的累计等待时间（纳秒）
+     */
+    public static long totalQueueTimeNanos() {
+        return QUEUE_TIME_NANOS.sum();
+    }
+
     private enum SingleInstance{
         INSTANCE;
         private final MessageDispatcher instance;
@@ -5,7 +5,6 @@ import com.github.im.common.connect.connection.ConnectionConsumer;
 import com.github.im.common.connect.model.proto.BaseMessage;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import reactor.core.publisher.Flux;
 import reactor.netty.Connection;
 import reactor.netty.NettyInbound;
 
@@ -30,22 +29,13 @@ public class ReactiveConnectionConsumer extends ConnectionConsumer {
 //                    .asByteArray()
                     .receiveObject()
                     .cast(BaseMessage.BaseMessagePkg.class)
-                    .handle( (obj,sink) -> {
-                        try {
-                            // 直接用 Protobuf 的 parseFrom 解码
-//                            BaseMessage.BaseMessagePkg message = BaseMessage.BaseMessagePkg.parseFrom(obj);
-                            log.debug("Received Protobuf Message: {}", obj);
-                            MessageDispatcher.getInstance().dispatchMessage(nettyInbound, nettyOutbound, obj);
+                    .doOnNext(obj -> log.debug("Received Protobuf Message: {}", obj));
 
-                        } catch (Exception e) {
-                            log.error("解析失败: {}", e.getMessage());
-                        }
-                    })
+            // 按配置的方式分发：EventLoop 上直接执行，或每个连接一个有序邮箱在虚拟线程上执行
+            var dispatched = MessageDispatcher.getInstance().dispatchAll(nettyInbound, nettyOutbound, messageFlux);
 
-                    ;
 
-
-            var outbound = nettyOutbound.sendObject(Flux.concat(messageFlux));
+            var outbound = nettyOutbound.sendObject(dispatched);
             return outbound.then();
 
         });
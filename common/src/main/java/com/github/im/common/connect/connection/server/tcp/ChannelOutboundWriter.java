@@ -0,0 +1,50 @@
+package com.github.im.common.connect.connection.server.tcp;
+
+import com.github.im.common.connect.connection.ConnectionConstants;
+import com.github.im.common.connect.connection.EncodedPush;
+import com.github.im.common.connect.connection.OutboundQueue;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * 将 {@link OutboundQueue} 接到 Netty channel 上：预编码的帧交给 pipeline 中的 {@link EncodedPushEncoder}，
+ * 一次排空只 flush 一次；channel 的可写状态即队列的背压信号
+ */
+public record ChannelOutboundWriter(Channel channel) implements OutboundQueue.Writer {
+
+    public static final String RESUME_HANDLER_NAME = "outboundQueueResume";
+
+    @Override
+    public boolean isWritable() {
+        return channel.isWritable();
+    }
+
+    @Override
+    public void write(EncodedPush push) {
+        // 引用由 pipeline 在写出后释放
+        channel.write(push, channel.voidPromise());
+    }
+
+    @Override
+    public void flush() {
+        channel.flush();
+    }
+
+    /**
+     * channel 恢复可写时继续排空当前绑定的出站队列
+     */
+    public static class ResumeHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            if (ctx.channel().isWritable()) {
+                OutboundQueue queue = ctx.channel().attr(ConnectionConstants.OUTBOUND_QUEUE_KEY).get();
+                if (queue != null) {
+                    queue.resume();
+                }
+            }
+            super.channelWritabilityChanged(ctx);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.im.common.connect.connection.server.tcp;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.logging.ByteBufFormat;
+import io.netty.handler.logging.LogLevel;
+import io.netty.handler.logging.LoggingHandler;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 连接级调试日志抽样
+ * <p>
+ * 开启后，每 N 个新建连接中抽 1 个、以及指定 userId 登录所在的连接，会在 pipeline 头部加入十六进制转储的
+ * {@link LoggingHandler}；其余连接不承担任何日志开销。状态可在运行时修改，只影响之后建立或登录的连接。
+ */
+public final class ConnectionDebugSampler {
+
+    public static final String DEBUG_LOGGING_HANDLER_NAME = "debugLogging";
+
+    private static final ConnectionDebugSampler INSTANCE = new ConnectionDebugSampler();
+
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+
+    private volatile boolean enabled;
+    /**
+     * 每 N 个连接抽样 1 个，0 表示不按比例抽样
+     */
+    private volatile int sampleRate;
+    private volatile Set<Long> userIds = Set.of();
+
+    private ConnectionDebugSampler() {
+    }
+
+    public static ConnectionDebugSampler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 修改抽样配置，参数为 null 时保持原值
+     */
+    public synchronized void configure(Boolean enabled, Integer sampleRate, Collection<Long> userIds) {
+        if (sampleRate != null) {
+            if (sampleRate < 0) {
+                throw new IllegalArgumentException("sampleRate must be >= 0");
+            }
+            this.sampleRate = sampleRate;
+        }
+        if (userIds != null) {
+            this.userIds = Set.copyOf(userIds);
+        }
+        if (enabled != null) {
+            this.enabled = enabled;
+        }
+    }
+
+    /**
+     * 新连接建立时调用，命中抽样则挂上调试日志
+     */
+    public void onChannelInit(Channel channel) {
+        if (!enabled) {
+            return;
+        }
+        int rate = sampleRate;
+        if (rate > 0 && connections.incrementAndGet() % rate == 0) {
+            attach(channel);
+        }
+    }
+
+    /**
+     * 用户登录绑定到连接时调用，被追踪的用户挂上调试日志
+     */
+    public void onUserBound(Channel channel, long userId) {
+        if (enabled && userIds.contains(userId)) {
+            attach(channel);
+        }
+    }
+
+    public State state() {
+        return new State(enabled, sampleRate, userIds, sampled.get());
+    }
+
+    private void attach(Channel channel) {
+        ChannelPipeline pipeline = channel.pipeline();
+        if (pipeline.get(DEBUG_LOGGING_HANDLER_NAME) == null) {
+            pipeline.addFirst(DEBUG_LOGGING_HANDLER_NAME, new LoggingHandler("reactor.netty.debug", LogLevel.INFO, ByteBufFormat.HEX_DUMP));
+            sampled.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param sampledConnections 自启动以来挂上调试日志的连接数
+     */
+    public record State(boolean enabled, int sampleRate, Set<Long> userIds, long sampledConnections) {
+    }
+}
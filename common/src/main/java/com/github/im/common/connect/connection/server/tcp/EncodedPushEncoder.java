@@ -0,0 +1,25 @@
+package com.github.im.common.connect.connection.server.tcp;
+
+import com.github.im.common.connect.connection.EncodedPush;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * 将 {@link EncodedPush} 展开为已带长度前缀的帧，位于长度前缀编码器之后（出站方向），
+ * 因此共享帧不会再次经过 protobuf 编码和加前缀
+ * <p>
+ * 每个连接写出的是共享内容的独立视图（retainedDuplicate），父类在写出后释放队列交来的那个引用
+ */
+@ChannelHandler.Sharable
+public class EncodedPushEncoder extends MessageToMessageEncoder<EncodedPush> {
+
+    public static final EncodedPushEncoder INSTANCE = new EncodedPushEncoder();
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, EncodedPush msg, List<Object> out) {
+        out.add(msg.content().retainedDuplicate());
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.im.common.connect.connection.server.tcp;
+
+/**
+ * TCP pipeline 配置档位
+ */
+public enum PipelineProfile {
+
+    /**
+     * 不加任何日志 handler；仅在运行时通过 {@link ConnectionDebugSampler} 开启后对抽样连接记录
+     */
+    PROD,
+
+    /**
+     * 所有连接加一个不做十六进制转储的 LoggingHandler（DEBUG 级别）
+     */
+    DEV,
+
+    /**
+     * 启动即开启抽样：1/N 连接及指定用户的连接记录完整十六进制帧，并开启 Reactor 操作符调试
+     */
+    DEBUG
+}
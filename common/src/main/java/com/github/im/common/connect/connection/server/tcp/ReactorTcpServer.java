@@ -1,6 +1,5 @@
 package com.github.im.common.connect.connection.server.tcp;
 
-import com.github.im.common.connect.handler.HeartbeatHandler;
 import com.github.im.common.connect.model.proto.BaseMessage;
 import com.github.im.common.connect.spi.ReactiveHandlerSPI;
 import com.github.im.common.connect.connection.server.ReactiveServer;
@@ -8,27 +7,26 @@ import com.github.im.common.connect.connection.ConnectionConstants;
 import com.github.im.common.util.RtspServer;
 import com.google.inject.Singleton;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.handler.codec.protobuf.ProtobufDecoder;
-import io.netty.handler.codec.protobuf.ProtobufEncoder;
-import io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
-import io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
 import io.netty.handler.codec.rtsp.RtspEncoder;
-import io.netty.handler.logging.LogLevel;
-import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateEvent;
-import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
 import reactor.netty.DisposableServer;
+import reactor.netty.resources.LoopResources;
 import reactor.netty.tcp.TcpServer;
 
 import java.net.InetSocketAddress;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 响应式 tcp 链接
@@ -59,12 +57,14 @@ public class ReactorTcpServer implements ReactiveServer {
 
     private TcpServer server;
 
-    private DisposableServer disposableServer;
+    private TcpServerOptions options = new TcpServerOptions();
 
-    private final ProtobufVarint32FrameDecoder protobufVarint32FrameDecoder = new ProtobufVarint32FrameDecoder();
-    private final ProtobufDecoder  protobufDecoder = new ProtobufDecoder(BaseMessage.BaseMessagePkg.getDefaultInstance());
-    private final ProtobufVarint32LengthFieldPrepender  protobufVarint32LengthFieldPrepender = new ProtobufVarint32LengthFieldPrepender();
-    private final ProtobufEncoder  protobufEncoder = new ProtobufEncoder();
+    private LoopResources loopResources;
+
+    /**
+     * 开启 SO_REUSEPORT 时同一端口上会绑定多个 acceptor
+     */
+    private final List<DisposableServer> disposableServers = new ArrayList<>();
 
     private ReactorTcpServer(){
     }
@@ -74,35 +74,39 @@ public class ReactorTcpServer implements ReactiveServer {
 
         allChannels.disconnect();
         allChannels.close();
-        if(disposableServer != null ){
-            disposableServer.disposeNow();
+        disposableServers.forEach(DisposableServer::disposeNow);
+        disposableServers.clear();
+        if (loopResources != null) {
+            loopResources.disposeLater().block();
+            loopResources = null;
         }
     }
 
 
     public ReactiveServer init(InetSocketAddress address){
+        return init(address, new TcpServerOptions());
+    }
+
+    public ReactiveServer init(InetSocketAddress address, TcpServerOptions options){
         this.address = address;
+        this.options = options;
+
+        var debugSampler = ConnectionDebugSampler.getInstance();
+        if (options.getPipelineProfile() == PipelineProfile.DEBUG) {
+            debugSampler.configure(true, options.getDebugSampleRate(), options.getDebugUserIds());
+            Hooks.onOperatorDebug();
+        }
+        var pipelineBuilder = new TcpPipelineBuilder(options, debugSampler);
 
-        server = TcpServer
-                .create()
-                .wiretap("tcp-server", LogLevel.INFO)
+        loopResources = LoopResources.create("im-tcp", options.getSelectCount(), options.getWorkerCount(), true);
+
+        server = configureTransport(TcpServer.create(), options, loopResources)
                 .port(address.getPort())
-//                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000)
                 .doOnConnection(connection -> {
                     allChannels.add(connection.channel()); // 将连接添加到管理组
-
-                    connection
-                            .addHandlerLast(new ProtobufVarint32FrameDecoder())
-                            .addHandlerLast(protobufDecoder)
-                            .addHandlerLast(protobufVarint32LengthFieldPrepender)
-                            .addHandlerLast(protobufEncoder)
-                            .addHandlerLast(new IdleStateHandler(30, 0, 0, TimeUnit.SECONDS))
-                            .addHandlerLast(new HeartbeatHandler())
-
-                            ;
+                    pipelineBuilder.configureConnection(connection);
                 })
-                .doOnChannelInit((observer, channel, remoteAddress) ->   channel.pipeline()
-                        .addFirst(new LoggingHandler("reactor.netty")))
+                .doOnChannelInit((observer, channel, remoteAddress) -> pipelineBuilder.initChannel(channel))
 
                 //  注入 执行的handler
                 .handle(ReactiveHandlerSPI.wiredSpiHandler().handler())
@@ -111,19 +115,57 @@ public class ReactorTcpServer implements ReactiveServer {
 
         ;
 
-        log.info("config netty  on port {}",address.getPort());
+        log.info("config netty  on port {} with pipeline profile {}",address.getPort(), options.getPipelineProfile());
 
         return this;
     }
 
+    /**
+     * 传输层配置：事件循环、native 传输、socket 选项与写缓冲水位
+     */
+    public static TcpServer configureTransport(TcpServer tcpServer, TcpServerOptions options, LoopResources loopResources) {
+        var configured = tcpServer
+                .runOn(loopResources, options.isPreferNative())
+                .option(ChannelOption.SO_BACKLOG, options.getBacklog())
+                .childOption(ChannelOption.TCP_NODELAY, options.isTcpNoDelay())
+                .childOption(ChannelOption.SO_KEEPALIVE, options.isKeepAlive())
+                // 超过高水位后 channel 不可写，出站队列暂停排空，直到回落到低水位
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                        new WriteBufferWaterMark(options.getWriteBufferLowWaterMark(), options.getWriteBufferHighWaterMark()));
+        if (isReusePortAvailable(options)) {
+            configured = configured.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        return configured;
+    }
+
+    /**
+     * SO_REUSEPORT 只在 Linux native epoll 传输下生效
+     */
+    public static boolean isReusePortAvailable(TcpServerOptions options) {
+        return options.isReusePort() && options.isPreferNative() && Epoll.isAvailable();
+    }
+
 
     public ReactiveServer start(){
         if(address == null || address.isUnresolved()){
             log.error("start server error ");
         }
 
-        log.info("start netty server on port {}",address.getPort());
-        disposableServer = server.bindNow();
+        int acceptors = 1;
+        if (options.getAcceptorCount() > 1) {
+            if (isReusePortAvailable(options)) {
+                acceptors = options.getAcceptorCount();
+            } else {
+                log.warn("SO_REUSEPORT is not available (reusePort={}, preferNative={}, epoll={}), binding a single acceptor",
+                        options.isReusePort(), options.isPreferNative(), Epoll.isAvailable());
+            }
+        }
+
+        log.info("start netty server on port {} (transport={}, acceptors={}, selectors={}, workers={})", address.getPort(),
+                options.isPreferNative() && Epoll.isAvailable() ? "epoll" : "nio", acceptors, options.getSelectCount(), options.getWorkerCount());
+        for (int i = 0; i < acceptors; i++) {
+            disposableServers.add(server.bindNow());
+        }
         // 不再阻塞线程，让服务器在后台运行
         // disposableServer.onDispose().block();
         return this;
@@ -131,10 +173,7 @@ public class ReactorTcpServer implements ReactiveServer {
 
     @Override
     public boolean isRunning() {
-        if(disposableServer == null){
-            return false;
-        }
-        return !disposableServer.isDisposed();
+        return disposableServers.stream().anyMatch(disposableServer -> !disposableServer.isDisposed());
     }
 
 //    /**
@@ -0,0 +1,76 @@
+package com.github.im.common.connect.connection.server.tcp;
+
+import com.github.im.common.connect.handler.HeartbeatHandler;
+import com.github.im.common.connect.model.proto.BaseMessage;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.protobuf.ProtobufDecoder;
+import io.netty.handler.codec.protobuf.ProtobufEncoder;
+import io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
+import io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.logging.ByteBufFormat;
+import io.netty.handler.logging.LogLevel;
+import io.netty.handler.logging.LoggingHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+import reactor.netty.Connection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 {@link PipelineProfile} 组装 TCP 连接的 pipeline
+ * <ul>
+ *     <li>channel 初始化：flush 合并、按档位决定的日志 handler</li>
+ *     <li>连接建立：protobuf 编解码、预编码推送帧的直写、空闲检测与心跳</li>
+ * </ul>
+ */
+public class TcpPipelineBuilder {
+
+    public static final String FLUSH_CONSOLIDATION_HANDLER_NAME = "flushConsolidation";
+    public static final String LOGGING_HANDLER_NAME = "logging";
+
+    private final ProtobufDecoder protobufDecoder = new ProtobufDecoder(BaseMessage.BaseMessagePkg.getDefaultInstance());
+    private final ProtobufVarint32LengthFieldPrepender protobufVarint32LengthFieldPrepender = new ProtobufVarint32LengthFieldPrepender();
+    private final ProtobufEncoder protobufEncoder = new ProtobufEncoder();
+    /**
+     * 可共享，DEV 档位下所有连接复用同一个实例
+     */
+    private final LoggingHandler devLoggingHandler = new LoggingHandler("reactor.netty", LogLevel.DEBUG, ByteBufFormat.SIMPLE);
+
+    private final TcpServerOptions options;
+    private final ConnectionDebugSampler debugSampler;
+
+    public TcpPipelineBuilder(TcpServerOptions options, ConnectionDebugSampler debugSampler) {
+        this.options = options;
+        this.debugSampler = debugSampler;
+    }
+
+    public PipelineProfile profile() {
+        return options.getPipelineProfile();
+    }
+
+    public void initChannel(Channel channel) {
+        if (options.isFlushConsolidation()) {
+            // 位于 pipeline 头部，合并上层（出站队列、心跳、ACK）产生的多次 flush
+            channel.pipeline().addFirst(FLUSH_CONSOLIDATION_HANDLER_NAME, new FlushConsolidationHandler(
+                    options.getExplicitFlushAfterFlushes(), options.isConsolidateWhenNoReadInProgress()));
+        }
+
+        if (options.getPipelineProfile() == PipelineProfile.DEV) {
+            channel.pipeline().addFirst(LOGGING_HANDLER_NAME, devLoggingHandler);
+        } else {
+            debugSampler.onChannelInit(channel);
+        }
+    }
+
+    public void configureConnection(Connection connection) {
+        connection
+                .addHandlerLast(new ProtobufVarint32FrameDecoder())
+                // 出站方向在前缀编码器之后，预编码的推送帧直接写出
+                .addHandlerLast(EncodedPushEncoder.INSTANCE)
+                .addHandlerLast(protobufDecoder)
+                .addHandlerLast(protobufVarint32LengthFieldPrepender)
+                .addHandlerLast(protobufEncoder)
+                .addHandlerLast(new IdleStateHandler(30, 0, 0, TimeUnit.SECONDS))
+                .addHandlerLast(new HeartbeatHandler());
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.im.common.connect.connection.server.tcp;
+
+import lombok.Data;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * {@link ReactorTcpServer} 的连接级调优参数
+ * <p>
+ * 默认值按 IM 长连接设定，并非 Netty 的默认行为：开启 TCP_NODELAY 和 SO_KEEPALIVE，SO_BACKLOG 为 1024，
+ * pipeline 头部加入 FlushConsolidationHandler（每 256 次 flush 强制写出一次），写缓冲水位 32KB / 64KB，
+ * 不开启 SO_REUSEPORT，Linux 上优先使用 epoll。均可通过 {@code tcp.options} 覆盖。
+ */
+@Data
+public class TcpServerOptions {
+
+    /**
+     * pipeline 档位，默认不带任何日志 handler
+     */
+    private PipelineProfile pipelineProfile = PipelineProfile.PROD;
+
+    /**
+     * DEBUG 档位下每 N 个连接抽样 1 个记录完整帧，0 表示不按比例抽样
+     */
+    private int debugSampleRate = 100;
+
+    /**
+     * DEBUG 档位下始终记录的用户
+     */
+    private Set<Long> debugUserIds = new LinkedHashSet<>();
+
+    /**
+     * 负责 accept 的事件循环线程数；开启 SO_REUSEPORT 多 acceptor 时应不少于 acceptorCount
+     */
+    private int selectCount = 1;
+
+    /**
+     * 处理连接读写的事件循环线程数
+     */
+    private int workerCount = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Linux 上可用时使用 native epoll 传输，否则回退到 NIO
+     */
+    private boolean preferNative = true;
+
+    /**
+     * 是否开启 SO_REUSEPORT（仅 epoll），开启后按 acceptorCount 在同一端口绑定多个监听 socket，由内核分摊 accept
+     */
+    private boolean reusePort = false;
+
+    private int acceptorCount = 1;
+
+    /**
+     * 全连接队列长度（SO_BACKLOG），仍受内核 somaxconn 限制
+     */
+    private int backlog = 1024;
+
+    private boolean tcpNoDelay = true;
+
+    private boolean keepAlive = true;
+
+    /**
+     * 是否在 pipeline 头部加入 FlushConsolidationHandler，合并同一轮读/写中的多次 flush
+     */
+    private boolean flushConsolidation = true;
+
+    /**
+     * 连续多少次 flush 后强制真正 flush 一次
+     */
+    private int explicitFlushAfterFlushes = 256;
+
+    /**
+     * 非读取期间的 flush 是否也延后到 EventLoop 的下一个任务统一执行
+     */
+    private boolean consolidateWhenNoReadInProgress = false;
+
+    /**
+     * 写缓冲低水位（字节），回落到此值以下 channel 重新变为可写
+     */
+    private int writeBufferLowWaterMark = 32 * 1024;
+
+    /**
+     * 写缓冲高水位（字节），超过后 channel 不可写，出站队列暂停排空
+     */
+    private int writeBufferHighWaterMark = 64 * 1024;
+}
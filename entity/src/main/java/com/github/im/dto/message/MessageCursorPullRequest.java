@@ -0,0 +1,34 @@
+package com.github.im.dto.message;
+
+import lombok.Data;
+
+/**
+ * 历史消息游标拉取请求
+ * <p>
+ * 按 (conversationId, sequenceId) 定位，不做 offset 翻页，也不统计总数
+ */
+@Data
+public class MessageCursorPullRequest {
+
+    private Long conversationId;
+
+    /**
+     * 上一页返回的 nextCursor（不含该 sequenceId）；为空或 0 时 BACKWARD 从最新一条开始，FORWARD 从第一条开始
+     */
+    private Long cursor;
+
+    private Direction direction = Direction.BACKWARD;
+
+    private int limit = 50;
+
+    public enum Direction {
+        /**
+         * 向更早的消息翻页，结果按 sequenceId 降序
+         */
+        BACKWARD,
+        /**
+         * 拉取之后的新消息，结果按 sequenceId 升序
+         */
+        FORWARD
+    }
+}
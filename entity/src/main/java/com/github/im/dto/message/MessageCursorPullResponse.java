@@ -0,0 +1,25 @@
+package com.github.im.dto.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 历史消息游标拉取结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageCursorPullResponse {
+
+    private List<MessageDTO<MessagePayLoad>> messages;
+
+    /**
+     * 下一页请求的 cursor，即本页最后一条的 sequenceId；本页为空时沿用请求的 cursor
+     */
+    private Long nextCursor;
+
+    private boolean hasMore;
+}
@@ -0,0 +1,42 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 集群消息路由配置（im:route:* Redis Stream）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.route")
+@Data
+public class ClusterRouteProperties {
+
+    /**
+     * 是否以紧凑二进制格式写入路由记录。
+     * 滚动升级时，应先让所有节点都部署能解码紧凑格式的版本，再开启此项；
+     * 读取端始终兼容旧的 FIELD_* 字符串记录。
+     */
+    private boolean compactRecord = true;
+
+    /**
+     * 每个 im:route:&lt;node&gt; Stream 的近似最大长度（XADD MAXLEN ~），防止下线节点的 Stream 无限增长
+     */
+    private long streamMaxLen = 100_000;
+
+    private ConsumerSettings consumer = new ConsumerSettings();
+
+    @Data
+    public static class ConsumerSettings {
+
+        /**
+         * 单次 XREADGROUP 读取的记录数
+         */
+        private int batchSize = 200;
+
+        /**
+         * 投递 worker 数，按接收者 userId 哈希选择 worker 以保证单用户消息有序
+         */
+        private int workers = 4;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 消息扇出配置：把新消息路由给会话成员的独立执行阶段
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.fanout")
+@Data
+public class FanoutProperties {
+
+    /**
+     * 是否异步扇出；关闭时在发送线程内直接路由
+     */
+    private boolean enabled = true;
+
+    /**
+     * 是否使用虚拟线程执行扇出任务，开启后 {@link #threads} 不生效，并发由 {@link #queueCapacity} 限制
+     */
+    private boolean virtualThreads = false;
+
+    /**
+     * 平台线程模式下的扇出线程数
+     */
+    private int threads = 8;
+
+    /**
+     * 最多等待或执行中的扇出任务数，超出时由发送线程自己路由
+     */
+    private int queueCapacity = 10000;
+}
@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 @ConfigurationProperties(prefix = "group.file.upload")
 @Data
@@ -36,6 +38,11 @@ public class FileUploadProperties {
      */
     private Upload upload = new Upload();
 
+    /**
+     * In-memory cache of resolved attachment metadata used when rendering message history.
+     */
+    private MetaCache metaCache = new MetaCache();
+
     @Data
     public static class Preview {
         /** Default width used when clients omit the width parameter. */
@@ -75,4 +82,12 @@ public class FileUploadProperties {
         /** JPEG quality hint used by clients during upload compression. */
         private int jpegQuality = 82;
     }
+
+    @Data
+    public static class MetaCache {
+        /** Maximum number of cached attachment metadata entries; 0 disables the cache. */
+        private long maxSize = 20000;
+        /** How long an entry stays cached after it was loaded. */
+        private Duration ttl = Duration.ofMinutes(10);
+    }
 }
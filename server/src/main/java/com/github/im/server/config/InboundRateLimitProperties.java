@@ -0,0 +1,68 @@
+package com.github.im.server.config;
+
+import com.github.im.common.connect.connection.server.InboundRateLimiter;
+import com.github.im.common.connect.model.proto.BaseMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 长连接入站限流配置，按消息类型（MESSAGE、ACK 等）分别限制每个连接和每个租户
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.inbound-rate-limit")
+@Data
+public class InboundRateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 每个连接的限制，未配置的消息类型不限制
+     */
+    private Map<BaseMessage.BaseMessagePkg.PayloadCase, Rule> connection = new HashMap<>(Map.of(
+            BaseMessage.BaseMessagePkg.PayloadCase.MESSAGE, new Rule(20, 40),
+            BaseMessage.BaseMessagePkg.PayloadCase.ACK, new Rule(50, 100)));
+
+    /**
+     * 每个租户所有连接合计的限制，未配置的消息类型不限制
+     */
+    private Map<BaseMessage.BaseMessagePkg.PayloadCase, Rule> tenant = new HashMap<>(Map.of(
+            BaseMessage.BaseMessagePkg.PayloadCase.MESSAGE, new Rule(500, 1000),
+            BaseMessage.BaseMessagePkg.PayloadCase.ACK, new Rule(2000, 4000)));
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Rule {
+
+        /**
+         * 每秒允许的消息数
+         */
+        private double rate;
+
+        /**
+         * 允许的突发消息数
+         */
+        private int burst;
+    }
+
+    public InboundRateLimiter.Settings toSettings() {
+        return new InboundRateLimiter.Settings(toRules(connection), toRules(tenant));
+    }
+
+    private static Map<BaseMessage.BaseMessagePkg.PayloadCase, InboundRateLimiter.Rule> toRules(
+            Map<BaseMessage.BaseMessagePkg.PayloadCase, Rule> rules) {
+        Map<BaseMessage.BaseMessagePkg.PayloadCase, InboundRateLimiter.Rule> result =
+                new EnumMap<>(BaseMessage.BaseMessagePkg.PayloadCase.class);
+        if (rules != null) {
+            rules.forEach((payloadCase, rule) -> result.put(payloadCase, new InboundRateLimiter.Rule(rule.getRate(), rule.getBurst())));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 会话成员快照缓存配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.membership-cache")
+@Data
+public class MembershipCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的会话数
+     */
+    private long maxSize = 50000;
+
+    /**
+     * 条目最长存活时间，即未收到失效广播时可能读到陈旧成员列表的上限
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+}
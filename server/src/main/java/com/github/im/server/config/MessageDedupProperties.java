@@ -0,0 +1,28 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 消息发送去重配置：按 clientMsgId 缓存最近发送成功的消息
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.message-dedup")
+@Data
+public class MessageDedupProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 最多记住的消息数
+     */
+    private long maxSize = 100000;
+
+    /**
+     * 记住多久，应覆盖客户端的重发窗口；超过后的重发由唯一索引兜底
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+}
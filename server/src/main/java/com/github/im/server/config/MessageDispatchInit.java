@@ -1,8 +1,11 @@
 package com.github.im.server.config;
 
+import com.alibaba.ttl.TtlRunnable;
+import com.github.im.common.connect.connection.server.InboundRateLimiter;
 import com.github.im.common.connect.connection.server.MessageDispatcher;
 import com.github.im.common.connect.connection.server.ProtoBufProcessHandler;
 import com.github.im.common.connect.connection.server.ReactiveProtoBufProcessHandler;
+import com.github.im.server.handler.InboundThrottleNotifier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
@@ -30,6 +33,9 @@ public class MessageDispatchInit implements ApplicationContextAware {
     private final List<ProtoBufProcessHandler> protoBufProcessHandlers;
     //TODO 增强响应式逻辑
     private final List<ReactiveProtoBufProcessHandler> reactiveProtoBufProcessHandlers;
+    private final MessageDispatchProperties messageDispatchProperties;
+    private final InboundRateLimitProperties inboundRateLimitProperties;
+    private final InboundThrottleNotifier inboundThrottleNotifier;
 
 
     @Override
@@ -38,6 +44,13 @@ public class MessageDispatchInit implements ApplicationContextAware {
         MessageDispatcher.registerHandler(protoBufProcessHandlers);
         //TODO 增强响应式逻辑
         MessageDispatcher.registerReactiveHandler(reactiveProtoBufProcessHandlers);
+        // 虚拟线程上执行时带上收到消息时的 TransmittableThreadLocal（如 SchemaContext）
+        MessageDispatcher.configure(messageDispatchProperties.getMode(),
+                messageDispatchProperties.getMailboxCapacity(), TtlRunnable::get);
+        MessageDispatcher.configureRateLimiter(inboundRateLimitProperties.isEnabled()
+                ? new InboundRateLimiter(inboundRateLimitProperties.toSettings(), InboundThrottleNotifier::resolveTenant,
+                        inboundThrottleNotifier)
+                : null);
         log.info("Registered {} sync handlers and {} reactive handlers", 
                 protoBufProcessHandlers.size(), reactiveProtoBufProcessHandlers.size());
 
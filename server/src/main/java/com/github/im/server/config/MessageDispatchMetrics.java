@@ -0,0 +1,49 @@
+package com.github.im.server.config;
+
+import com.github.im.common.connect.connection.server.InboundRateLimiter;
+import com.github.im.common.connect.connection.server.MessageDispatcher;
+import com.github.im.common.connect.model.proto.BaseMessage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站消息分发指标：排队与执行中的消息数、从到达到开始执行的等待时间（虚拟线程模式），以及按维度和消息类型的限流丢弃数
+ */
+@Component
+public class MessageDispatchMetrics implements MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("im.dispatch.queued", MessageDispatcher::totalQueued)
+                .description("Inbound messages waiting in connection mailboxes")
+                .register(registry);
+        Gauge.builder("im.dispatch.in.flight", MessageDispatcher::inFlight)
+                .description("Inbound messages being handled on virtual threads")
+                .register(registry);
+        FunctionTimer.builder("im.dispatch.queue.time", MessageDispatcher.class,
+                        d -> MessageDispatcher.executedCount(),
+                        d -> MessageDispatcher.totalQueueTimeNanos(),
+                        TimeUnit.NANOSECONDS)
+                .description("Time from arrival until a handler starts running")
+                .register(registry);
+        for (InboundRateLimiter.Scope scope : InboundRateLimiter.Scope.values()) {
+            for (BaseMessage.BaseMessagePkg.PayloadCase payloadCase : BaseMessage.BaseMessagePkg.PayloadCase.values()) {
+                if (payloadCase == BaseMessage.BaseMessagePkg.PayloadCase.PAYLOAD_NOT_SET) {
+                    continue;
+                }
+                FunctionCounter.builder("im.dispatch.throttled", InboundRateLimiter.class,
+                                l -> InboundRateLimiter.rejectedCount(scope, payloadCase))
+                        .description("Inbound messages dropped by the rate limiter")
+                        .tag("scope", scope.name())
+                        .tag("type", payloadCase.name())
+                        .register(registry);
+            }
+        }
+    }
+}
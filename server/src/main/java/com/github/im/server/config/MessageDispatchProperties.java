@@ -0,0 +1,25 @@
+package com.github.im.server.config;
+
+import com.github.im.common.connect.connection.server.MessageDispatcher;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 长连接入站消息分发配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.message-dispatch")
+@Data
+public class MessageDispatchProperties {
+
+    /**
+     * 同步处理器的执行方式：EVENT_LOOP 在 EventLoop 上直接执行；VIRTUAL_THREAD 每个连接按顺序在虚拟线程上执行
+     */
+    private MessageDispatcher.Mode mode = MessageDispatcher.Mode.VIRTUAL_THREAD;
+
+    /**
+     * 虚拟线程模式下单个连接最多积压的消息数，积满后暂停读取该连接
+     */
+    private int mailboxCapacity = 256;
+}
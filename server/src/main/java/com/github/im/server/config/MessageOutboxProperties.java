@@ -0,0 +1,46 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 消息发件箱配置：提交后分发新消息的推送、未读计数、通知与事件
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.message-outbox")
+@Data
+public class MessageOutboxProperties {
+
+    /**
+     * 分发线程数
+     */
+    private int workers = 4;
+
+    /**
+     * 等待分发的记录数上限，超出的记录留在表中由补偿任务分发
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 记录写入或被认领后，超过该时间仍未删除即视为分发失败（如节点崩溃），由补偿任务重新分发
+     */
+    private Duration retryDelay = Duration.ofSeconds(30);
+
+    /**
+     * 补偿任务执行间隔，ISO-8601 格式（供 {@code @Scheduled} 使用）
+     */
+    private Duration recoveryInterval = Duration.ofSeconds(10);
+
+    /**
+     * 补偿任务每个租户每次最多认领的记录数
+     */
+    private int recoveryBatchSize = 200;
+
+    /**
+     * 最多尝试次数，超过后记录错误日志并丢弃
+     */
+    private int maxAttempts = 10;
+}
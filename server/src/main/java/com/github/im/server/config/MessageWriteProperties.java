@@ -0,0 +1,36 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 消息写入配置（组提交）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.message-write")
+@Data
+public class MessageWriteProperties {
+
+    /**
+     * 是否开启组提交：跨连接收集消息，按租户 schema 一个事务批量插入
+     */
+    private boolean groupCommitEnabled = false;
+
+    /**
+     * 单个组提交最多包含的消息数
+     */
+    private int maxBatchSize = 128;
+
+    /**
+     * 收到第一条消息后最多等待多久再提交
+     */
+    private Duration maxDelay = Duration.ofMillis(5);
+
+    /**
+     * 待提交队列容量，队列满时由发送线程自己写入
+     */
+    private int queueCapacity = 4096;
+}
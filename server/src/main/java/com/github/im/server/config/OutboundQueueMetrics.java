@@ -0,0 +1,32 @@
+package com.github.im.server.config;
+
+import com.github.im.common.connect.connection.OutboundQueue;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * 出站队列指标：积压深度、flush 次数与合并写出的消息数、各溢出策略的触发次数
+ */
+@Component
+public class OutboundQueueMetrics implements MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("im.outbound.queue.depth", OutboundQueue::totalQueued)
+                .description("Messages queued across all local connections")
+                .register(registry);
+        FunctionCounter.builder("im.outbound.queue.flushes", OutboundQueue.class, q -> OutboundQueue.flushCount())
+                .register(registry);
+        FunctionCounter.builder("im.outbound.queue.flushed.messages", OutboundQueue.class, q -> OutboundQueue.flushedMessageCount())
+                .description("Messages written; divided by flushes gives the coalescing factor")
+                .register(registry);
+        for (OutboundQueue.OverflowPolicy policy : OutboundQueue.OverflowPolicy.values()) {
+            FunctionCounter.builder("im.outbound.queue.overflows", OutboundQueue.class, q -> OutboundQueue.overflowCount(policy))
+                    .tag("policy", policy.name())
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.im.server.config;
+
+import com.github.im.common.connect.connection.OutboundQueue;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 单连接出站队列配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.outbound-queue")
+@Data
+public class OutboundQueueProperties {
+
+    /**
+     * 单个连接最多积压的消息数
+     */
+    private int capacity = 1024;
+
+    /**
+     * 单次排空最多写出的消息数，写完后 flush 一次
+     */
+    private int maxFlushBatch = 64;
+
+    /**
+     * 积压超过容量时的处理策略：DROP_OLDEST / DISCONNECT
+     */
+    private OutboundQueue.OverflowPolicy overflowPolicy = OutboundQueue.OverflowPolicy.DROP_OLDEST;
+
+    public OutboundQueue.Settings toSettings() {
+        return new OutboundQueue.Settings(capacity, maxFlushBatch, overflowPolicy);
+    }
+}
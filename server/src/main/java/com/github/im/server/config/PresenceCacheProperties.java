@@ -0,0 +1,28 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 用户在线节点近端缓存配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.presence-cache")
+@Data
+public class PresenceCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 缓存槽位数，向上取整为 2 的幂
+     */
+    private int capacity = 65536;
+
+    /**
+     * 条目最长存活时间，即未收到失效广播时可能读到陈旧数据的上限
+     */
+    private Duration ttl = Duration.ofSeconds(3);
+}
@@ -0,0 +1,33 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 认证主体缓存配置：JWT 解析出的用户缓存，以及访问令牌续期的节流
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.principal-cache")
+@Data
+public class PrincipalCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的令牌数
+     */
+    private long maxSize = 20000;
+
+    /**
+     * 条目最长存活时间，令牌更早过期时以令牌过期时间为准
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+    /**
+     * 同一用户两次续期访问令牌的最小间隔，0 表示每个请求都续期
+     */
+    private Duration tokenExtendInterval = Duration.ofSeconds(60);
+}
@@ -0,0 +1,26 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 已读回执（长连接 ACK）合并写入配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.read-receipt")
+@Data
+public class ReadReceiptProperties {
+
+    /**
+     * 合并窗口：窗口内同一用户同一会话的多次 ACK 只写入最大的 sequence；为 0 时每次 ACK 立即写入
+     */
+    private Duration coalesceWindow = Duration.ofMillis(300);
+
+    /**
+     * 最多暂存的 (用户, 会话) 数，超过后新 ACK 立即写入
+     */
+    private int maxPending = 100000;
+}
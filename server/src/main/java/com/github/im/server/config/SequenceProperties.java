@@ -0,0 +1,74 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 会话序列号分配配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.sequence")
+@Data
+public class SequenceProperties {
+
+    /**
+     * memory 或 redis 或 database
+     */
+    private String mode = "redis";
+
+    private Memory memory = new Memory();
+
+    private Lease lease = new Lease();
+
+    /**
+     * 进程内序列号缓存（仅 memory 模式）
+     * <p>
+     * 只缓存最近活跃的会话，首次使用时从数据库加载当前最大值，容量满后淘汰最久未访问的会话。
+     * 被淘汰的会话下次使用时重新查库，因此容量应远大于一次事务提交耗时内活跃的会话数，
+     * 否则尚未提交的序列号可能被重新分配。
+     */
+    @Data
+    public static class Memory {
+
+        /**
+         * 最多缓存的会话数
+         */
+        private int capacity = 100000;
+
+        /**
+         * 启动时是否全表扫描预热（超出 capacity 的部分随即被淘汰），默认按需加载
+         */
+        private boolean preload = false;
+    }
+
+    /**
+     * 热点会话的号段租约（仅 redis 模式）
+     * <p>
+     * 开启后节点一次从 Redis 取一段序列号在本地发放；号段在窗口内用完则下一段翻倍，否则减半，
+     * 冷会话退化为每条消息一次 Redis 往返。代价：节点重启或租约被淘汰时未发放的号作废，序列号出现空洞；
+     * 多个节点同时写同一会话时，序列号只保证唯一、单节点内递增，不再与跨节点的写入时间严格一致。
+     */
+    @Data
+    public static class Lease {
+
+        private boolean enabled = false;
+
+        /**
+         * 单次租约的最大号段长度
+         */
+        private int maxBlockSize = 64;
+
+        /**
+         * 号段在该时间内用完视为热点，下一段翻倍
+         */
+        private Duration window = Duration.ofSeconds(1);
+
+        /**
+         * 本地最多跟踪的会话数，超过后先淘汰空闲租约，仍然满时直接走 Redis
+         */
+        private int maxConversations = 10000;
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 租户连接配置：按 schema 暂存刚释放的连接供同租户复用，以及单个租户的并发连接上限
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.tenant-connection")
+@Data
+public class TenantConnectionProperties {
+
+    /**
+     * 是否暂存释放的连接，同租户再次获取时跳过切换 schema
+     */
+    private boolean affinityEnabled = true;
+
+    /**
+     * 每个租户最多暂存的连接数
+     */
+    private int maxIdlePerTenant = 2;
+
+    /**
+     * 所有租户合计最多暂存的连接数；暂存的连接仍占用连接池，需远小于连接池大小
+     */
+    private int maxIdleTotal = 4;
+
+    /**
+     * 暂存超过该时间未被复用的连接重置 schema 后归还连接池
+     */
+    private Duration idleTimeout = Duration.ofSeconds(1);
+
+    /**
+     * 单个租户同时持有的连接数上限，0 表示不限制
+     */
+    private int maxActivePerTenant = 0;
+
+    /**
+     * 达到上限时等待其他连接释放的最长时间
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+}
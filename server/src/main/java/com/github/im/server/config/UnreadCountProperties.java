@@ -0,0 +1,33 @@
+package com.github.im.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 未读数计数器配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "group.unread")
+@Data
+public class UnreadCountProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 用户计数器在 Redis 中的存活时间，过期后下次查询时从数据库重建
+     */
+    private Duration ttl = Duration.ofDays(7);
+
+    /**
+     * 是否定期按数据库校正 Redis 中的计数器
+     */
+    private boolean reconcileEnabled = true;
+
+    /**
+     * 校正间隔，ISO-8601 格式（供 {@code @Scheduled} 使用）
+     */
+    private Duration reconcileInterval = Duration.ofHours(1);
+}
@@ -1,5 +1,7 @@
 package com.github.im.server.config.mult;
 
+import com.github.im.server.config.TenantConnectionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
 import org.hibernate.engine.jdbc.connections.spi.MultiTenantConnectionProvider;
@@ -16,8 +18,10 @@ import java.util.Map;
 public class HibernateMultiTenantConfig {
 
     @Bean
-    public MultiTenantConnectionProvider<String> multiTenantConnectionProvider(DataSource dataSource) {
-        return new SchemaMultiTenantConnectionProvider(dataSource);
+    public SchemaMultiTenantConnectionProvider multiTenantConnectionProvider(DataSource dataSource,
+                                                                             TenantConnectionProperties properties,
+                                                                             MeterRegistry meterRegistry) {
+        return new SchemaMultiTenantConnectionProvider(dataSource, properties, meterRegistry);
     }
 
     @Bean
@@ -1,31 +1,77 @@
 package com.github.im.server.config.mult;
 
-import lombok.RequiredArgsConstructor;
+import com.github.im.server.config.TenantConnectionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.hibernate.engine.jdbc.connections.spi.MultiTenantConnectionProvider;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 多租户连接提供者实现
  * 根据不同的租户标识(schema)提供对应的数据库连接
- * 
- * 该类通过Spring管理，但在Hibernate初始化时可能通过反射创建实例，
- * 因此需要特殊处理以确保能正确获取DataSource
+ *
+ * 释放的连接不立即重置 schema 归还连接池，而是按 schema 暂存一小段时间：同租户再次获取时直接复用，
+ * 省去设置和重置 search_path 的两次往返；其他租户获取连接时优先接管暂存的连接，只需切换一次 schema。
+ * 暂存超时、超出数量上限、或处于手动提交/只读状态的连接，照旧重置为 public 后归还连接池，
+ * 因此连接池中的连接始终是 public schema，直接使用 DataSource 的代码不受影响。
+ *
+ * 可按租户限制同时持有的连接数，避免单个租户占满连接池；各租户的连接数、复用次数、schema 切换次数和被拒绝次数
+ * 以 {@code tenant} 标签上报。
  */
-@RequiredArgsConstructor
+@Slf4j
 public class SchemaMultiTenantConnectionProvider implements MultiTenantConnectionProvider<String> {
-    
-    // 使用 volatile 确保线程安全
+
+    private static final String DEFAULT_SCHEMA = "public";
+
     private final DataSource dataSource;
+    private final TenantConnectionProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, TenantSlot> tenants = new ConcurrentHashMap<>();
+    /**
+     * 所有租户合计暂存的连接数
+     */
+    private final AtomicInteger idleTotal = new AtomicInteger();
+    private final ScheduledExecutorService reaper;
+
+    public SchemaMultiTenantConnectionProvider(DataSource dataSource, TenantConnectionProperties properties,
+                                               MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        if (properties.isAffinityEnabled()) {
+            reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tenant-connection-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(50L, properties.getIdleTimeout().toMillis() / 2);
+            reaper.scheduleWithFixedDelay(this::evictExpired, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            reaper = null;
+        }
+    }
 
     /**
      * 获取任意连接
-     * 
+     *
      * @return 数据库连接
      * @throws SQLException SQL异常
      */
@@ -37,7 +83,7 @@ public class SchemaMultiTenantConnectionProvider implements MultiTenantConnectio
 
     /**
      * 释放任意连接
-     * 
+     *
      * @param connection 数据库连接
      * @throws SQLException SQL异常
      */
@@ -48,46 +94,64 @@ public class SchemaMultiTenantConnectionProvider implements MultiTenantConnectio
 
     /**
      * 获取指定租户的连接
-     * 
-     * 根据租户标识设置数据库连接的schema，确保操作在正确的租户数据上进行
-     * 
+     *
+     * 优先复用该租户暂存的连接（schema 已正确，无需设置）；否则接管其他租户暂存的连接或从连接池获取，再设置 schema
+     *
      * @param tenantIdentifier 租户标识(schema名称)
      * @return 数据库连接
-     * @throws SQLException SQL异常
+     * @throws SQLException SQL异常，租户连接数达到上限且等待超时时为 {@link SQLTransientConnectionException}
      */
     @Override
     public Connection getConnection(String tenantIdentifier) throws SQLException {
         Objects.requireNonNull(dataSource, "DataSource is not initialized yet");
-        final Connection connection = dataSource.getConnection();
-        
-        // 如果没有指定schema，则使用默认的public schema
-        if (tenantIdentifier == null || tenantIdentifier.isEmpty()) {
-            connection.setSchema("public");
-        } else {
-            // 设置当前连接的schema
-            connection.setSchema(tenantIdentifier);
+        TenantSlot slot = slot(tenantIdentifier);
+        slot.acquire();
+        try {
+            Connection connection = slot.pollIdle();
+            if (connection != null) {
+                slot.affinityHits.increment();
+            } else {
+                connection = pollIdleOfOtherTenants(slot);
+                if (connection == null) {
+                    connection = dataSource.getConnection();
+                }
+                try {
+                    connection.setSchema(slot.schema);
+                } catch (SQLException | RuntimeException e) {
+                    closeQuietly(connection);
+                    throw e;
+                }
+                slot.schemaSwitches.increment();
+            }
+            slot.active.incrementAndGet();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            slot.release();
+            throw e;
         }
-        
-        return connection;
     }
 
     /**
      * 释放指定租户的连接
-     * 
+     *
      * @param tenantIdentifier 租户标识
      * @param connection 数据库连接
      * @throws SQLException SQL异常
      */
     @Override
     public void releaseConnection(String tenantIdentifier, Connection connection) throws SQLException {
-        // 重置schema为public
-        connection.setSchema("public");
-        connection.close();
+        TenantSlot slot = slot(tenantIdentifier);
+        slot.active.decrementAndGet();
+        slot.release();
+        if (canPark(connection) && slot.park(connection)) {
+            return;
+        }
+        returnToPool(connection);
     }
 
     /**
      * 是否支持积极释放连接
-     * 
+     *
      * @return false表示不支持积极释放
      */
     @Override
@@ -97,7 +161,7 @@ public class SchemaMultiTenantConnectionProvider implements MultiTenantConnectio
 
     /**
      * 是否可以解包为指定类型
-     * 
+     *
      * @param unwrapType 解包类型
      * @return 是否支持解包
      */
@@ -108,7 +172,7 @@ public class SchemaMultiTenantConnectionProvider implements MultiTenantConnectio
 
     /**
      * 解包为指定类型
-     * 
+     *
      * @param unwrapType 解包类型
      * @param <T> 类型参数
      * @return 解包后的对象
@@ -117,4 +181,202 @@ public class SchemaMultiTenantConnectionProvider implements MultiTenantConnectio
     public <T> T unwrap(Class<T> unwrapType) {
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * 停止清理任务，暂存的连接全部归还连接池（容器关闭时调用）
+     */
+    public void close() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        for (TenantSlot slot : tenants.values()) {
+            slot.drain(Long.MAX_VALUE).forEach(this::returnToPoolQuietly);
+        }
+    }
+
+    /**
+     * 只暂存处于默认状态（自动提交、非只读）的连接，其余交给连接池重置
+     */
+    private boolean canPark(Connection connection) {
+        if (!properties.isAffinityEnabled()) {
+            return false;
+        }
+        try {
+            return !connection.isClosed() && connection.getAutoCommit() && !connection.isReadOnly();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection pollIdleOfOtherTenants(TenantSlot requester) {
+        if (idleTotal.get() == 0) {
+            return null;
+        }
+        for (TenantSlot slot : tenants.values()) {
+            if (slot != requester) {
+                Connection connection = slot.pollIdle();
+                if (connection != null) {
+                    return connection;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void evictExpired() {
+        long deadline = System.nanoTime() - properties.getIdleTimeout().toNanos();
+        for (TenantSlot slot : tenants.values()) {
+            slot.drain(deadline).forEach(this::returnToPoolQuietly);
+        }
+    }
+
+    private void returnToPool(Connection connection) throws SQLException {
+        try {
+            // 重置schema为public
+            connection.setSchema(DEFAULT_SCHEMA);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void returnToPoolQuietly(Connection connection) {
+        try {
+            returnToPool(connection);
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Failed to return idle tenant connection to the pool", e);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close connection", e);
+        }
+    }
+
+    private TenantSlot slot(String tenantIdentifier) {
+        // 如果没有指定schema，则使用默认的public schema
+        String schema = tenantIdentifier == null || tenantIdentifier.isEmpty() ? DEFAULT_SCHEMA : tenantIdentifier;
+        return tenants.computeIfAbsent(schema, TenantSlot::new);
+    }
+
+    private record Parked(Connection connection, long parkedAt) {
+    }
+
+    /**
+     * 单个租户的连接状态：并发上限、暂存的连接与指标
+     */
+    private final class TenantSlot {
+
+        final String schema;
+        /**
+         * 并发上限，为 null 表示不限制
+         */
+        final Semaphore permits;
+        /**
+         * 暂存的连接，队尾为最近释放的
+         */
+        final Deque<Parked> idle = new ArrayDeque<>();
+        final AtomicInteger idleCount = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final Counter affinityHits;
+        final Counter schemaSwitches;
+        final Counter rejected;
+
+        TenantSlot(String schema) {
+            this.schema = schema;
+            this.permits = properties.getMaxActivePerTenant() > 0
+                    ? new Semaphore(properties.getMaxActivePerTenant(), true)
+                    : null;
+            Gauge.builder("im.db.tenant.connections.active", active, AtomicInteger::get)
+                    .description("Connections currently held by the tenant")
+                    .tag("tenant", schema)
+                    .register(meterRegistry);
+            Gauge.builder("im.db.tenant.connections.idle", idleCount, AtomicInteger::get)
+                    .description("Released connections parked for reuse by the tenant")
+                    .tag("tenant", schema)
+                    .register(meterRegistry);
+            affinityHits = Counter.builder("im.db.tenant.connections.affinity.hits")
+                    .description("Checkouts served by a parked connection without switching schema")
+                    .tag("tenant", schema)
+                    .register(meterRegistry);
+            schemaSwitches = Counter.builder("im.db.tenant.connections.schema.switches")
+                    .tag("tenant", schema)
+                    .register(meterRegistry);
+            rejected = Counter.builder("im.db.tenant.connections.rejected")
+                    .description("Checkouts that timed out at the per-tenant connection limit")
+                    .tag("tenant", schema)
+                    .register(meterRegistry);
+        }
+
+        void acquire() throws SQLException {
+            if (permits == null) {
+                return;
+            }
+            try {
+                if (!permits.tryAcquire(properties.getAcquireTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                    rejected.increment();
+                    throw new SQLTransientConnectionException("Tenant schema " + schema + " reached its limit of "
+                            + properties.getMaxActivePerTenant() + " connections");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrupted while waiting for a connection of tenant schema " + schema, e);
+            }
+        }
+
+        void release() {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+
+        boolean park(Connection connection) {
+            synchronized (this) {
+                if (idle.size() >= properties.getMaxIdlePerTenant()) {
+                    return false;
+                }
+                if (idleTotal.incrementAndGet() > properties.getMaxIdleTotal()) {
+                    idleTotal.decrementAndGet();
+                    return false;
+                }
+                idle.addLast(new Parked(connection, System.nanoTime()));
+                idleCount.incrementAndGet();
+                return true;
+            }
+        }
+
+        /**
+         * 取出最近释放且未超时的连接，超时的交给清理任务
+         */
+        Connection pollIdle() {
+            long deadline = System.nanoTime() - properties.getIdleTimeout().toNanos();
+            synchronized (this) {
+                Parked parked = idle.peekLast();
+                if (parked == null || parked.parkedAt() - deadline < 0) {
+                    return null;
+                }
+                idle.pollLast();
+                idleCount.decrementAndGet();
+                idleTotal.decrementAndGet();
+                return parked.connection();
+            }
+        }
+
+        /**
+         * 取出暂存时间早于 deadline 的连接
+         */
+        List<Connection> drain(long deadline) {
+            List<Connection> expired = new ArrayList<>();
+            synchronized (this) {
+                while (!idle.isEmpty() && (deadline == Long.MAX_VALUE || idle.peekFirst().parkedAt() - deadline < 0)) {
+                    expired.add(idle.pollFirst().connection());
+                    idleCount.decrementAndGet();
+                    idleTotal.decrementAndGet();
+                }
+            }
+            return expired;
+        }
+    }
+}
@@ -2,7 +2,7 @@ package com.github.im.server.config.netty;
 
 import com.github.im.common.connect.connection.server.ReactiveServer;
 import com.github.im.common.connect.connection.server.tcp.ReactorTcpServer;
-import org.springframework.beans.factory.annotation.Value;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -18,19 +18,19 @@ import java.net.InetSocketAddress;
  * @since 2024/10/18
  */
 @Configuration
+@RequiredArgsConstructor
 public class ConnectConfig  {
 
-    @Value("${tcp.port:8088}")
-    public int tcpPort = 8088;
+    private final TcpServerProperties tcpServerProperties;
 
     @Bean
     public ReactiveServer reactiveServer () {
 
-        var instance = ReactorTcpServer.getInstance();
-        instance.init(new InetSocketAddress("localhost", tcpPort));
+        var instance = (ReactorTcpServer) ReactorTcpServer.getInstance();
+        instance.init(new InetSocketAddress("localhost", tcpServerProperties.getPort()), tcpServerProperties.getOptions());
 
         return instance;
     }
 
 
-}
\ No newline at end of file
+}
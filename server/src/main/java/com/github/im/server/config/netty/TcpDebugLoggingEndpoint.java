@@ -0,0 +1,36 @@
+package com.github.im.server.config.netty;
+
+import com.github.im.common.connect.connection.server.tcp.ConnectionDebugSampler;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * 运行时开关 TCP 连接调试日志抽样
+ * <pre>
+ * GET  /actuator/tcpdebug
+ * POST /actuator/tcpdebug {"enabled": true, "sampleRate": 1000, "userIds": [10001, 10002]}
+ * </pre>
+ * 修改只影响之后建立或登录的连接。可对任意租户的用户开启完整帧日志，只对运维管理员开放（见 SecurityConfig）
+ */
+@Component
+@Endpoint(id = "tcpdebug")
+public class TcpDebugLoggingEndpoint {
+
+    private final ConnectionDebugSampler debugSampler = ConnectionDebugSampler.getInstance();
+
+    @ReadOperation
+    public ConnectionDebugSampler.State state() {
+        return debugSampler.state();
+    }
+
+    @WriteOperation
+    public ConnectionDebugSampler.State configure(@Nullable Boolean enabled, @Nullable Integer sampleRate, @Nullable Set<Long> userIds) {
+        debugSampler.configure(enabled, sampleRate, userIds);
+        return debugSampler.state();
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.im.server.config.netty;
+
+import com.github.im.common.connect.connection.server.tcp.TcpServerOptions;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * IM TCP 服务配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "tcp")
+@Data
+public class TcpServerProperties {
+
+    private int port = 8088;
+
+    /**
+     * flush 合并与写缓冲水位
+     */
+    @NestedConfigurationProperty
+    private TcpServerOptions options = new TcpServerOptions();
+}
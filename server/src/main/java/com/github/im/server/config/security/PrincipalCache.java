@@ -0,0 +1,196 @@
+package com.github.im.server.config.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.im.server.config.PrincipalCacheProperties;
+import com.github.im.server.model.User;
+import com.github.im.server.utils.JwtUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * 认证主体缓存
+ * <p>
+ * 按令牌（jti、用户ID、公司ID、签发时间）缓存由 JWT 解析出的 {@link User}，避免每个请求都查询用户和公司；
+ * 条目存活时间不超过配置的 TTL 和令牌剩余有效期。每次返回缓存用户的副本，调用方修改主体（如切换公司）不影响缓存。
+ * 重置密码、公司成员变更、注销等场景调用 {@link #invalidateUser(Long)}：本节点立即失效，事务提交后再失效一次并通过
+ * {@link #PRINCIPAL_CHANGED_CHANNEL} 广播，其他节点收到后失效；广播丢失时由 TTL 兜底。
+ * 其他按用户保存的本地状态（如令牌续期节流）可通过 {@link #addInvalidationListener} 随之在各节点失效，缓存关闭时广播照常进行。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PrincipalCache {
+
+    /**
+     * 用户变更广播频道，消息体为用户ID
+     */
+    public static final String PRINCIPAL_CHANGED_CHANNEL = "im:principal:changed";
+
+    private final PrincipalCacheProperties properties;
+    private final StringRedisTemplate redis;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private Cache<PrincipalKey, Entry> cache;
+    private final List<LongConsumer> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 目前 jti 即用户ID，同一用户的不同令牌靠公司ID和签发时间区分
+     */
+    record PrincipalKey(long userId, String tokenId, Long companyId, Instant issuedAt) {
+    }
+
+    private record Entry(User user, Instant expiresAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onPrincipalChanged(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(PRINCIPAL_CHANGED_CHANNEL));
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long ttlNanos = properties.getTtl().toNanos();
+        cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfter(new Expiry<PrincipalKey, Entry>() {
+                    @Override
+                    public long expireAfterCreate(PrincipalKey key, Entry entry, long currentTime) {
+                        if (entry.expiresAt() == null) {
+                            return ttlNanos;
+                        }
+                        long remaining = Duration.between(Instant.now(), entry.expiresAt()).toNanos();
+                        return Math.max(0L, Math.min(ttlNanos, remaining));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(PrincipalKey key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(PrincipalKey key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        log.info("Principal cache enabled, maxSize={}, ttl={}", properties.getMaxSize(), properties.getTtl());
+    }
+
+    /**
+     * 获取令牌对应的用户，未命中时用 loader 加载；loader 抛出的异常原样抛出，不缓存
+     *
+     * @return 缓存用户的副本
+     */
+    public User get(Jwt jwt, Function<Jwt, User> loader) {
+        if (cache == null) {
+            return loader.apply(jwt);
+        }
+        PrincipalKey key = new PrincipalKey(Long.parseLong(jwt.getId()), jwt.getId(),
+                jwt.getClaim(JwtUtil.COMPANY_ID_FIELD), jwt.getIssuedAt());
+        Entry entry = cache.get(key, k -> new Entry(loader.apply(jwt), jwt.getExpiresAt()));
+        return copyOf(entry.user());
+    }
+
+    /**
+     * 用户的密码、状态或所属公司发生变更，失效该用户的所有令牌（在事务中时需在变更所在的事务内调用）
+     */
+    public void invalidateUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        evict(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 提交前并发加载的可能仍是旧数据，提交后再失效一次并通知其他节点
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                    publish(userId);
+                }
+            });
+        } else {
+            publish(userId);
+        }
+    }
+
+    /**
+     * 用户在本节点或其他节点被失效时回调，在调用方或广播监听线程上执行，不应阻塞
+     */
+    public void addInvalidationListener(LongConsumer listener) {
+        invalidationListeners.add(listener);
+    }
+
+    private void evict(long userId) {
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(key -> key.userId() == userId);
+        }
+        for (LongConsumer listener : invalidationListeners) {
+            try {
+                listener.accept(userId);
+            } catch (Exception e) {
+                log.warn("Principal invalidation listener failed for user {}", userId, e);
+            }
+        }
+    }
+
+    private void publish(Long userId) {
+        try {
+            redis.convertAndSend(PRINCIPAL_CHANGED_CHANNEL, String.valueOf(userId));
+        } catch (Exception e) {
+            // 广播失败时其他节点最多在 TTL 内使用旧的用户信息
+            log.warn("Failed to publish principal change of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void onPrincipalChanged(String userId) {
+        if (userId == null) {
+            return;
+        }
+        try {
+            evict(Long.parseLong(userId));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed principal change message: {}", userId);
+        }
+    }
+
+    /**
+     * 浅拷贝，关联集合与当前公司共享（缓存中的用户本身不会被修改）；瞬态的明文密码不复制
+     */
+    private static User copyOf(User user) {
+        return User.builder()
+                .userId(user.getUserId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .phoneNumber(user.getPhoneNumber())
+                .passwordHash(user.getPasswordHash())
+                .refreshToken(user.getRefreshToken())
+                .userStatus(user.getUserStatus())
+                .forcePasswordChange(user.isForcePasswordChange())
+                .primaryCompanyId(user.getPrimaryCompanyId())
+                .departments(user.getDepartments())
+                .companies(user.getCompanies())
+                .currentCompany(user.getCurrentCompany())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .build();
+    }
+}
@@ -1,6 +1,8 @@
 package com.github.im.server.config.security;
 
 import com.github.im.server.config.mult.TenantContextFilter;
+import com.github.im.server.model.User;
+import com.github.im.server.schema.migration.security.MigrationAdminAuthorizer;
 import com.github.im.server.security.CompanyAccessDeniedHandler;
 import com.github.im.server.service.AuthenticationService;
 import com.github.im.server.service.impl.security.RefreshAuthenticationProvider;
@@ -11,6 +13,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -45,6 +48,9 @@ public class SecurityConfig  {
     @Autowired
     private TenantContextFilter tenantContextFilter;
 
+    @Autowired
+    private MigrationAdminAuthorizer adminAuthorizer;
+
 
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -94,6 +100,10 @@ public class SecurityConfig  {
                 .formLogin(AbstractHttpConfigurer::disable)
 
                 .authorizeHttpRequests(auth -> auth
+                        // 可在运行时修改任意租户连接的调试日志，只允许运维管理员，不随其他 actuator 端点免认证
+                        .requestMatchers("/actuator/tcpdebug", "/actuator/tcpdebug/**")
+                        .access((authentication, context) -> new AuthorizationDecision(
+                                authentication.get().getPrincipal() instanceof User user && adminAuthorizer.isAdmin(user)))
                         .requestMatchers(
                                 "/api/users/register",
                                 "/api/users/import-template",
@@ -23,6 +23,7 @@ public class UserSecurityService {
 
     private final UserRepository userRepository;
     private final CompanyService companyService;
+    private final PrincipalCache principalCache;
 
 
 
@@ -31,10 +32,15 @@ public class UserSecurityService {
      * 此方法 不验证 JWT 的有效性
      * 只 将 jwt 转化为 user
      * 将 jwt 中 payload 的数据 转化为 user
+     * 结果按令牌缓存在 {@link PrincipalCache} 中
      * @param jwt
      * @return 处理后的用户给
      */
     public User jwt2User(Jwt jwt) throws BadCredentialsException {
+        return principalCache.get(jwt, this::loadUser);
+    }
+
+    private User loadUser(Jwt jwt) throws BadCredentialsException {
         long userId = Long.parseLong(jwt.getId());
         Optional<User> userOptional = userRepository.findById(userId);
 
@@ -1,10 +1,13 @@
 package com.github.im.server.consumer;
 
+import com.github.im.common.connect.connection.EncodedPush;
 import com.github.im.common.connect.model.proto.BaseMessage;
+import com.github.im.server.config.ClusterRouteProperties;
 import com.github.im.server.config.NodeId;
 import com.github.im.server.service.ClusterLocalDeliveryService;
 import com.github.im.server.service.MessageRouter;
 import com.github.im.server.service.RedisMessageRouter;
+import com.github.im.server.service.RouteRecordCodec;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
@@ -20,16 +23,23 @@ import org.springframework.data.redis.connection.stream.ReadOffset;
 import org.springframework.data.redis.connection.stream.RecordId;
 import org.springframework.data.redis.connection.stream.StreamOffset;
 import org.springframework.data.redis.connection.stream.StreamReadOptions;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 @Component
@@ -40,20 +50,36 @@ public class RouteConsumer {
     private static final String STREAM_KEY = MessageRouter.STREAM_ROUTE_PREFIX + NodeId.NODE_ID;
     private static final String GROUP_NAME = MessageRouter.CONSUMER_GROUP;
     private static final String CONSUMER_NAME = NodeId.NODE_ID;
-    private static final int BATCH_COUNT = 20;
     private static final long BLOCK_SECONDS = 30;
     private static final long ERROR_RETRY_MS = 2000;
     private static final Duration CLAIM_MIN_IDLE = Duration.ofSeconds(60);
     private static final Duration RECOVERY_INTERVAL = Duration.ofSeconds(60);
 
-    private final StringRedisTemplate redisTemplate;
+    private final RedisTemplate<String, byte[]> redisTemplate;
     private final ClusterLocalDeliveryService clusterLocalDeliveryService;
+    private final ClusterRouteProperties routeProperties;
 
     private volatile boolean running = true;
     private volatile long lastRecoveryAt = 0L;
+    /**
+     * 投递 worker；启动前为 null，此时在读取线程内直接投递
+     */
+    private volatile ExecutorService[] workers;
 
     @PostConstruct
     public void start() {
+        int workerCount = Math.max(1, routeProperties.getConsumer().getWorkers());
+        ExecutorService[] executors = new ExecutorService[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            int workerId = i;
+            executors[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "route-delivery-" + workerId);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.workers = executors;
+
         Thread consumerThread = new Thread(this::runMainLoop, "route-consumer-thread");
         consumerThread.setDaemon(true);
         consumerThread.start();
@@ -64,6 +90,12 @@ public class RouteConsumer {
     public void stop() {
         log.info("Stopping RouteConsumer for node: {}", NodeId.NODE_ID);
         this.running = false;
+        ExecutorService[] executors = this.workers;
+        if (executors != null) {
+            for (ExecutorService executor : executors) {
+                executor.shutdown();
+            }
+        }
     }
 
     private void runMainLoop() {
@@ -79,12 +111,13 @@ public class RouteConsumer {
 
         recoverPendingMessages(true);
 
-        log.info("Starting route message consumption loop with block={}s", BLOCK_SECONDS);
+        log.info("Starting route message consumption loop with block={}s, batchSize={}, workers={}",
+                BLOCK_SECONDS, batchSize(), workers == null ? 0 : workers.length);
         while (running) {
             try {
                 List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
                         Consumer.from(GROUP_NAME, CONSUMER_NAME),
-                        StreamReadOptions.empty().count(BATCH_COUNT).block(Duration.ofSeconds(BLOCK_SECONDS)),
+                        StreamReadOptions.empty().count(batchSize()).block(Duration.ofSeconds(BLOCK_SECONDS)),
                         StreamOffset.create(STREAM_KEY, ReadOffset.lastConsumed())
                 );
                 processRecords(records);
@@ -100,7 +133,7 @@ public class RouteConsumer {
 
     private void initGroup() {
         try {
-            RecordId initId = redisTemplate.opsForStream().add(STREAM_KEY, Map.of("_init", "1"));
+            RecordId initId = redisTemplate.opsForStream().add(STREAM_KEY, Map.of("_init", "1".getBytes(StandardCharsets.UTF_8)));
             redisTemplate.opsForStream().createGroup(STREAM_KEY, ReadOffset.from("0"), GROUP_NAME);
             if (initId != null) {
                 redisTemplate.opsForStream().delete(STREAM_KEY, initId);
@@ -140,7 +173,7 @@ public class RouteConsumer {
                 STREAM_KEY,
                 GROUP_NAME,
                 Range.unbounded(),
-                BATCH_COUNT
+                batchSize()
         );
         if (pendingMessages == null || pendingMessages.isEmpty()) {
             return;
@@ -169,11 +202,13 @@ public class RouteConsumer {
     }
 
     private void drainOwnedPendingMessages() {
+        // 从上一批最后一条之后继续读取，投递失败而未 ACK 的记录留待下一轮恢复，避免原地反复重读
+        String offset = "0";
         while (running) {
             List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
                     Consumer.from(GROUP_NAME, CONSUMER_NAME),
-                    StreamReadOptions.empty().count(BATCH_COUNT),
-                    StreamOffset.create(STREAM_KEY, ReadOffset.from("0"))
+                    StreamReadOptions.empty().count(batchSize()),
+                    StreamOffset.create(STREAM_KEY, ReadOffset.from(offset))
             );
 
             if (records == null || records.isEmpty()) {
@@ -182,9 +217,14 @@ public class RouteConsumer {
 
             log.info("Reprocessing {} owned pending route messages", records.size());
             processRecords(records);
+            offset = records.get(records.size() - 1).getId().getValue();
         }
     }
 
+    private int batchSize() {
+        return Math.max(1, routeProperties.getConsumer().getBatchSize());
+    }
+
     private boolean isClaimable(PendingMessage pendingMessage) {
         if (pendingMessage == null) {
             return false;
@@ -201,56 +241,187 @@ public class RouteConsumer {
             return;
         }
 
+        List<RecordId> ackIds = new ArrayList<>(records.size());
+        List<PendingDelivery> deliveries = new ArrayList<>(records.size());
         for (MapRecord<String, Object, Object> record : records) {
-            onMessage(record);
+            RecordId id = record.getId();
+            try {
+                RoutedRecord routedRecord = decodeRecord(record);
+                if (routedRecord == null) {
+                    log.warn("Invalid route record format: {}", id);
+                    ackIds.add(id);
+                    continue;
+                }
+                try {
+                    deliveries.add(new PendingDelivery(id, routedRecord, schedule(routedRecord)));
+                } catch (Exception e) {
+                    routedRecord.release().run();
+                    throw e;
+                }
+            } catch (Exception e) {
+                log.error("Failed to handle route message {}: {}", id, e.getMessage(), e);
+            }
+        }
+
+        for (PendingDelivery delivery : deliveries) {
+            try {
+                if (awaitDelivery(delivery)) {
+                    ackIds.add(delivery.id());
+                }
+            } finally {
+                delivery.record().release().run();
+            }
         }
+
+        acknowledgeQuietly(ackIds);
     }
 
-    private void onMessage(MapRecord<String, Object, Object> record) {
-        RecordId id = record.getId();
-        try {
-            Map<Object, Object> bodyObj = record.getValue();
-            String toStr = getStringValue(bodyObj, RedisMessageRouter.FIELD_TO);
-            String encodedBody = getStringValue(bodyObj, RedisMessageRouter.FIELD_BODY);
-            String payloadKind = getStringValue(bodyObj, RedisMessageRouter.FIELD_PAYLOAD_KIND);
-
-            if (!StringUtils.hasText(toStr) || !StringUtils.hasText(encodedBody) || !StringUtils.hasText(payloadKind)) {
-                log.warn("Invalid route record format: {}", id);
-                acknowledgeQuietly(id);
-                return;
+    /**
+     * 将记录中每个接收者的投递分派到按 userId 哈希选中的 worker；同一用户总落在同一 worker 上，
+     * 读取线程按 Stream 顺序提交，因此单个用户的消息顺序得以保持
+     */
+    private List<CompletableFuture<Void>> schedule(RoutedRecord routedRecord) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(routedRecord.recipients().length);
+        for (long userId : routedRecord.recipients()) {
+            Runnable task = () -> routedRecord.delivery().accept(userId);
+            ExecutorService[] currentWorkers = workers;
+            if (currentWorkers == null) {
+                futures.add(runInline(task));
+            } else {
+                futures.add(CompletableFuture.runAsync(task, currentWorkers[workerIndex(userId, currentWorkers.length)]));
             }
+        }
+        return futures;
+    }
 
-            Long toUserId = Long.valueOf(toStr);
-            dispatchMessage(toUserId, payloadKind, encodedBody);
-            acknowledgeQuietly(id);
-        } catch (Exception e) {
-            log.error("Failed to handle route message {}: {}", id, e.getMessage(), e);
+    /**
+     * 单接收者记录保持原有语义：投递失败不 ACK，等待 pending 恢复重试；
+     * 多接收者记录中单个接收者失败只记录日志，避免整条记录重放导致其他接收者收到重复消息
+     *
+     * @return 是否可以 ACK
+     */
+    private boolean awaitDelivery(PendingDelivery delivery) {
+        long[] recipients = delivery.record().recipients();
+        boolean acknowledge = true;
+        for (int i = 0; i < recipients.length; i++) {
+            try {
+                delivery.futures().get(i).join();
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.error("Failed to deliver route message {} to user {}: {}", delivery.id(), recipients[i], cause.getMessage(), cause);
+                if (recipients.length == 1) {
+                    acknowledge = false;
+                }
+            }
         }
+        return acknowledge;
     }
 
-    private void dispatchMessage(Long userId, String payloadKind, String encodedBody) throws Exception {
-        byte[] payloadBytes = Base64.getDecoder().decode(encodedBody);
+    /**
+     * 解码 Stream 记录，兼容紧凑二进制记录与旧版 FIELD_* 记录；格式非法时返回 null
+     */
+    private RoutedRecord decodeRecord(MapRecord<String, Object, Object> record) throws Exception {
+        Map<Object, Object> bodyObj = record.getValue();
+        Object compactRecord = bodyObj.get(RouteRecordCodec.FIELD_RECORD);
+        if (compactRecord instanceof byte[] recordBytes) {
+            RouteRecordCodec.RouteRecord routeRecord = RouteRecordCodec.decode(recordBytes);
+            if (routeRecord.recipients().length == 0) {
+                return null;
+            }
+            if (routeRecord.kind() == RouteRecordCodec.KIND_IM_BINARY) {
+                if (routeRecord.recipients().length > 1) {
+                    return sharedFrameRecord(routeRecord.recipients(), EncodedPush.wrapBody(routeRecord.body()));
+                }
+                BaseMessage.BaseMessagePkg message = BaseMessage.BaseMessagePkg.parseFrom(routeRecord.body());
+                return new RoutedRecord(routeRecord.recipients(), userId -> clusterLocalDeliveryService.deliverBaseMessage(userId, message));
+            }
+            if (routeRecord.kind() == RouteRecordCodec.KIND_SIGNAL_TEXT) {
+                String payload = StandardCharsets.UTF_8.decode(routeRecord.body()).toString();
+                return new RoutedRecord(routeRecord.recipients(), userId -> clusterLocalDeliveryService.deliverSignalText(userId, payload));
+            }
+            throw new IllegalArgumentException("Unsupported route record kind: " + routeRecord.kind());
+        }
+
+        String toStr = getStringValue(bodyObj, RedisMessageRouter.FIELD_TO);
+        String recipientsStr = getStringValue(bodyObj, RedisMessageRouter.FIELD_RECIPIENTS);
+        String encodedBody = getStringValue(bodyObj, RedisMessageRouter.FIELD_BODY);
+        String payloadKind = getStringValue(bodyObj, RedisMessageRouter.FIELD_PAYLOAD_KIND);
 
+        long[] recipients = parseRecipients(toStr, recipientsStr);
+        if (recipients.length == 0 || !StringUtils.hasText(encodedBody) || !StringUtils.hasText(payloadKind)) {
+            return null;
+        }
+
+        // 旧版 FIELD_* 记录：多接收者记录只解码一次 body
+        byte[] payloadBytes = Base64.getDecoder().decode(encodedBody);
         if (RedisMessageRouter.PAYLOAD_KIND_IM_BINARY.equals(payloadKind)) {
+            if (recipients.length > 1) {
+                return sharedFrameRecord(recipients, EncodedPush.wrapBody(ByteBuffer.wrap(payloadBytes)));
+            }
             BaseMessage.BaseMessagePkg message = BaseMessage.BaseMessagePkg.parseFrom(payloadBytes);
-            clusterLocalDeliveryService.deliverBaseMessage(userId, message);
-            return;
+            return new RoutedRecord(recipients, userId -> clusterLocalDeliveryService.deliverBaseMessage(userId, message));
         }
-
         if (RedisMessageRouter.PAYLOAD_KIND_SIGNAL_TEXT.equals(payloadKind)) {
             String payload = new String(payloadBytes, StandardCharsets.UTF_8);
-            clusterLocalDeliveryService.deliverSignalText(userId, payload);
-            return;
+            return new RoutedRecord(recipients, userId -> clusterLocalDeliveryService.deliverSignalText(userId, payload));
         }
-
         throw new IllegalArgumentException("Unsupported payload kind: " + payloadKind);
     }
 
-    private void acknowledgeQuietly(RecordId id) {
+    /**
+     * 多接收者的 IM 记录：body 直接加长度前缀成为共享帧，不再反序列化，所有接收者的连接写出同一份内容；
+     * 帧在整条记录投递完成后释放
+     */
+    private RoutedRecord sharedFrameRecord(long[] recipients, EncodedPush push) {
+        return new RoutedRecord(recipients, userId -> clusterLocalDeliveryService.deliverEncoded(userId, push), push::release);
+    }
+
+    private static CompletableFuture<Void> runInline(Runnable task) {
+        try {
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static int workerIndex(long userId, int workerCount) {
+        return (int) Math.floorMod(userId ^ (userId >>> 32), (long) workerCount);
+    }
+
+    /**
+     * 兼容单接收者记录（{@code to}）与批量记录（{@code recipients}）
+     */
+    private long[] parseRecipients(String toStr, String recipientsStr) {
+        if (StringUtils.hasText(recipientsStr)) {
+            String[] parts = recipientsStr.split(",");
+            long[] recipients = new long[parts.length];
+            int count = 0;
+            for (String part : parts) {
+                if (StringUtils.hasText(part)) {
+                    recipients[count++] = Long.parseLong(part.trim());
+                }
+            }
+            return count == parts.length ? recipients : Arrays.copyOf(recipients, count);
+        }
+
+        if (StringUtils.hasText(toStr)) {
+            return new long[]{Long.parseLong(toStr)};
+        }
+        return new long[0];
+    }
+
+    /**
+     * 一批记录只发送一次多 ID 的 XACK
+     */
+    private void acknowledgeQuietly(List<RecordId> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
         try {
-            redisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP_NAME, id);
+            redisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP_NAME, ids.toArray(new RecordId[0]));
         } catch (Exception e) {
-            log.warn("Failed to ACK route message {}: {}", id, e.getMessage());
+            log.warn("Failed to ACK {} route messages: {}", ids.size(), e.getMessage());
         }
     }
 
@@ -264,6 +435,25 @@ public class RouteConsumer {
 
     private String getStringValue(Map<Object, Object> map, String key) {
         Object value = map.get(key);
+        if (value instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
         return value != null ? value.toString() : null;
     }
+
+    /**
+     * 解码后的路由记录：接收者列表、共享的投递动作，以及投递结束后释放共享资源的动作
+     */
+    private record RoutedRecord(long[] recipients, LongConsumer delivery, Runnable release) {
+
+        private static final Runnable NO_RELEASE = () -> {
+        };
+
+        private RoutedRecord(long[] recipients, LongConsumer delivery) {
+            this(recipients, delivery, NO_RELEASE);
+        }
+    }
+
+    private record PendingDelivery(RecordId id, RoutedRecord record, List<CompletableFuture<Void>> futures) {
+    }
 }
@@ -4,6 +4,7 @@ import com.github.im.conversation.ConversationRes;
 import com.github.im.conversation.GroupInfo;
 import com.github.im.server.model.User;
 import com.github.im.server.service.ConversationService;
+import com.github.im.server.service.UnreadCountService;
 import lombok.val;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -12,6 +13,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/conversations")
@@ -21,6 +23,9 @@ public class ConversationController {
     @Autowired
     private ConversationService conversationService;
 
+    @Autowired
+    private UnreadCountService unreadCountService;
+
     /**
      * 创建新群组
      * @param groupInfo 群组信息，包括群组名称、描述和成员列表
@@ -45,6 +50,17 @@ public class ConversationController {
         return ResponseEntity.ok(conversationService.maxIndex(conversationId));
     }
 
+    /**
+     * 批量查询当前用户在多个会话中的未读数
+     * @param conversationIds 会话ID列表
+     * @return 会话ID -> 未读数
+     */
+    @PostMapping("/unread-counts")
+    public ResponseEntity<Map<Long, Long>> getUnreadCounts(@RequestBody List<Long> conversationIds,
+                                                           @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(unreadCountService.getUnreadCounts(user.getUserId(), conversationIds));
+    }
+
     /**
      * 查询指定群聊
      * @param conversationId 群组Id
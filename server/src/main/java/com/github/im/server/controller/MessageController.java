@@ -1,5 +1,7 @@
 package com.github.im.server.controller;
 
+import com.github.im.dto.message.MessageCursorPullRequest;
+import com.github.im.dto.message.MessageCursorPullResponse;
 import com.github.im.dto.message.MessageDTO;
 import com.github.im.dto.message.MessagePayLoad;
 import com.github.im.dto.message.MessagePostRequest;
@@ -38,7 +40,19 @@ public class MessageController {
         return ResponseEntity.ok(message);
     }
 
-    // 拉取历史消息
+    /**
+     * 游标拉取历史消息：按 sequenceId 定位，返回 nextCursor，不统计总数
+     */
+    @PostMapping("/pull/cursor")
+    public ResponseEntity<MessageCursorPullResponse> pullMessagesByCursor(@RequestBody MessageCursorPullRequest request,
+                                                                          @AuthenticationPrincipal User user) {
+        if (user == null) {
+            return ResponseEntity.status(401).build();
+        }
+        return ResponseEntity.ok(messageService.pullMessagesByCursor(request, user.getUserId()));
+    }
+
+    // 拉取历史消息（offset 分页，深翻页与总数统计开销随消息量增长，新客户端请使用 /pull/cursor）
     @PostMapping("/pull")
     public ResponseEntity<PagedModel<MessageDTO<MessagePayLoad>>> pullHistoryMessages(
             @RequestBody MessagePullRequest request) {
@@ -6,7 +6,6 @@ import com.github.im.common.connect.model.proto.BaseMessage;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import reactor.core.publisher.Hooks;
 import reactor.core.publisher.Sinks;
 import reactor.netty.Connection;
 
@@ -23,7 +22,6 @@ public class DefaultProcessHandler implements ProtoBufProcessHandler {
     @Override
     public void process(@NotNull Connection con, BaseMessage.BaseMessagePkg message) {
 
-        Hooks.onOperatorDebug();
         log.info("DefaultProcessHandler");
 
 
@@ -0,0 +1,54 @@
+package com.github.im.server.handler;
+
+import com.github.im.common.connect.connection.ConnectionConstants;
+import com.github.im.common.connect.connection.OutboundQueue;
+import com.github.im.common.connect.connection.server.InboundRateLimiter;
+import com.github.im.common.connect.model.proto.BaseMessage;
+import com.github.im.common.connect.model.proto.Chat;
+import com.github.im.server.handler.impl.UserInfoProcessHandler;
+import com.github.im.server.model.User;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.netty.Connection;
+
+/**
+ * 入站消息被限流时通知客户端
+ * <p>
+ * 聊天消息回复一条状态为 {@link Chat.MessagesStatus#FAILED} 的 ack（带 clientMsgId）：客户端把该消息标记为发送失败、
+ * 计入重试次数并退避后自动重发，达到最大重试次数后保持失败由用户手动重试（见 Group-app 的 MessageFacade.handleFailedAck）；
+ * 其他类型（已读回执、心跳等）客户端不等待回复，只丢弃。
+ */
+@Component
+@Slf4j
+public class InboundThrottleNotifier implements InboundRateLimiter.ThrottleListener {
+
+    /**
+     * 按连接上绑定的用户解析租户 schema，未登录的连接返回 null
+     */
+    public static String resolveTenant(Channel channel) {
+        User user = channel.attr(UserInfoProcessHandler.BING_USER_KEY).get();
+        return user == null ? null : user.getCurrentSchema();
+    }
+
+    @Override
+    public void onThrottled(Connection connection, BaseMessage.BaseMessagePkg pkg, InboundRateLimiter.Scope scope) {
+        log.debug("Throttled {} from {} at {} limit", pkg.getPayloadCase(), connection.channel(), scope);
+        if (pkg.getPayloadCase() != BaseMessage.BaseMessagePkg.PayloadCase.MESSAGE) {
+            return;
+        }
+        var chatMessage = pkg.getMessage();
+        BaseMessage.BaseMessagePkg reply = BaseMessage.BaseMessagePkg.newBuilder()
+                .setAck(Chat.AckMessage.newBuilder()
+                        .setClientMsgId(chatMessage.getClientMsgId())
+                        .setConversationId(chatMessage.getConversationId())
+                        .setAckTimestamp(System.currentTimeMillis())
+                        .setStatus(Chat.MessagesStatus.FAILED))
+                .build();
+        // 与推送走同一个出站队列，队列已满时按其溢出策略处理
+        OutboundQueue outboundQueue = connection.channel().attr(ConnectionConstants.OUTBOUND_QUEUE_KEY).get();
+        if (outboundQueue == null || !outboundQueue.offer(reply)) {
+            connection.outbound().sendObject(reply).then().subscribe();
+        }
+    }
+}
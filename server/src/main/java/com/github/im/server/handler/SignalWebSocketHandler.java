@@ -1,16 +1,21 @@
 package com.github.im.server.handler;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.im.common.connect.connection.EncodedPush;
+import com.github.im.common.connect.connection.OutboundQueue;
 import com.github.im.common.connect.connection.ReactiveConnectionManager;
 import com.github.im.common.connect.connection.server.BindAttr;
 import com.github.im.common.connect.model.proto.BaseMessage;
 import com.github.im.common.connect.model.proto.Chat;
+import com.github.im.server.config.OutboundQueueProperties;
 import com.github.im.server.model.User;
 import com.github.im.server.service.MessageService;
 import com.github.im.server.service.OnlineService;
+import com.github.im.server.service.ReadReceiptCoalescer;
 import com.github.im.server.service.RedisMessageRouter;
 import com.github.im.server.util.SchemaSwitcher;
 import com.github.im.server.utils.UserTokenManager;
+import jakarta.annotation.PreDestroy;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
@@ -21,7 +26,6 @@ import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.AbstractWebSocketHandler;
-import reactor.core.Disposable;
 
 import java.io.IOException;
 import java.net.URI;
@@ -33,6 +37,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Component
 public class SignalWebSocketHandler extends AbstractWebSocketHandler {
@@ -43,13 +49,21 @@ public class SignalWebSocketHandler extends AbstractWebSocketHandler {
     private final UserTokenManager userTokenManager;
     private final OnlineService onlineService;
     private final RedisMessageRouter redisMessageRouter;
+    private final OutboundQueueProperties outboundQueueProperties;
+    private final ReadReceiptCoalescer readReceiptCoalescer;
 
     @PersistenceContext
     private EntityManager entityManager;
 
     private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
     private final Map<String, String> inCall = new ConcurrentHashMap<>();
-    private final Map<String, Disposable> pushSubscriptions = new ConcurrentHashMap<>();
+    private final Map<String, OutboundQueue> pushQueues = new ConcurrentHashMap<>();
+    /**
+     * 出站队列的排空执行器。WebSocketSession 的发送是阻塞的，排空不能占用入队的投递线程；
+     * 每次排空一个虚拟线程，同一队列同一时刻只有一个排空任务，因此对每个会话仍是串行的
+     */
+    private final ExecutorService outboundExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-outbound-", 0).factory());
     private final Map<String, BindAttr<String>> sessionBindAttrs = new ConcurrentHashMap<>();
     private final Map<String, Set<String>> meetingRooms = new ConcurrentHashMap<>();
     private final Map<String, Set<String>> userMeetings = new ConcurrentHashMap<>();
@@ -75,16 +89,26 @@ public class SignalWebSocketHandler extends AbstractWebSocketHandler {
             MessageService messageService,
             UserTokenManager userTokenManager,
             OnlineService onlineService,
-            RedisMessageRouter redisMessageRouter
+            RedisMessageRouter redisMessageRouter,
+            OutboundQueueProperties outboundQueueProperties,
+            ReadReceiptCoalescer readReceiptCoalescer
     ) {
         this.mapper = new ObjectMapper();
         this.messageService = messageService;
         this.userTokenManager = userTokenManager;
         this.onlineService = onlineService;
         this.redisMessageRouter = redisMessageRouter;
+        this.outboundQueueProperties = outboundQueueProperties;
+        this.readReceiptCoalescer = readReceiptCoalescer;
         instance = this;
     }
 
+    @PreDestroy
+    public void shutdownOutbound() {
+        pushQueues.values().forEach(OutboundQueue::close);
+        outboundExecutor.shutdownNow();
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         String userId = extractUserId(session.getUri());
@@ -192,19 +216,12 @@ public class SignalWebSocketHandler extends AbstractWebSocketHandler {
             log.info("IM User Online (WS): {} (ID: {})", username, userId);
 
             var bindAttr = BindAttr.getBindAttr(userInfo);
-            var sinkFlow = ReactiveConnectionManager.registerSinkFlow(bindAttr).asFlux();
-
-            Disposable subscription = sinkFlow.subscribe(pushPkg -> {
-                try {
-                    if (session.isOpen()) {
-                        session.sendMessage(new BinaryMessage(pushPkg.toByteArray()));
-                    }
-                } catch (IOException e) {
-                    log.error("Failed to push message to user {} via WebSocket", username, e);
-                }
-            });
+            // 慢客户端只阻塞自己的排空线程，积压留在队列中并按溢出策略处理
+            OutboundQueue outboundQueue = new OutboundQueue(outboundQueueProperties.toSettings(), outboundExecutor,
+                    new SessionOutboundWriter(session, username), (queue, policy) -> onOutboundOverflow(session, username, policy));
+            ReactiveConnectionManager.register(bindAttr, outboundQueue);
 
-            pushSubscriptions.put(session.getId(), subscription);
+            pushQueues.put(session.getId(), outboundQueue);
             sessionBindAttrs.put(session.getId(), bindAttr);
         } catch (Exception e) {
             log.error("Authentication failed for WebSocket IM registration", e);
@@ -241,15 +258,12 @@ public class SignalWebSocketHandler extends AbstractWebSocketHandler {
         }
 
         if (ackMessage.getStatus() == Chat.MessagesStatus.READ) {
-            String schemaName = user.getCurrentSchema();
-            SchemaSwitcher.executeInSchema(schemaName, () -> {
-                messageService.markConversationAsRead(
-                        ackMessage.getConversationId(),
-                        user.getUserId(),
-                        ackMessage.getServerMsgId()
-                );
-                return null;
-            });
+            readReceiptCoalescer.markRead(
+                    user.getCurrentSchema(),
+                    ackMessage.getConversationId(),
+                    user.getUserId(),
+                    ackMessage.getServerMsgId()
+            );
         }
     }
 
@@ -298,13 +312,10 @@ public class SignalWebSocketHandler extends AbstractWebSocketHandler {
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         User user = (User) session.getAttributes().get("USER");
 
-        Disposable sub = pushSubscriptions.remove(session.getId());
-        if (sub != null) {
-            sub.dispose();
-        }
+        OutboundQueue outboundQueue = pushQueues.remove(session.getId());
         BindAttr<String> bindAttr = sessionBindAttrs.remove(session.getId());
-        if (bindAttr != null) {
-            ReactiveConnectionManager.unSubscribe(bindAttr);
+        if (bindAttr != null && outboundQueue != null) {
+            ReactiveConnectionManager.unregister(bindAttr, outboundQueue);
         }
 
         if (user != null) {
@@ -614,6 +625,43 @@ public class SignalWebSocketHandler extends AbstractWebSocketHandler {
         return false;
     }
 
+    private void onOutboundOverflow(WebSocketSession session, String username, OutboundQueue.OverflowPolicy policy) {
+        switch (policy) {
+            case DROP_OLDEST -> log.debug("Outbound queue of {} (WS) is full, dropped the oldest message", username);
+            case DISCONNECT -> {
+                log.warn("Outbound queue of {} (WS) overflowed, closing session", username);
+                closeQuietly(session);
+            }
+        }
+    }
+
+    /**
+     * 出站队列写到 WebSocketSession；每条消息即一个二进制帧，没有单独的 flush。
+     * 直接发送共享帧的消息体视图（不含长度前缀），sendMessage 是同步发送，返回后即可释放
+     */
+    private record SessionOutboundWriter(WebSocketSession session, String username) implements OutboundQueue.Writer {
+
+        @Override
+        public boolean isWritable() {
+            return session.isOpen();
+        }
+
+        @Override
+        public void write(EncodedPush push) {
+            try {
+                session.sendMessage(new BinaryMessage(push.bodyNioBuffer()));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to push message to user " + username + " via WebSocket", e);
+            } finally {
+                push.release();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+
     private void closeQuietly(WebSocketSession session) {
         try {
             session.close();
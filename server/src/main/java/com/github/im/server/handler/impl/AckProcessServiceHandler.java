@@ -4,8 +4,7 @@ import com.github.im.common.connect.connection.server.ProtoBufProcessHandler;
 import com.github.im.common.connect.model.proto.BaseMessage;
 import com.github.im.common.connect.model.proto.Chat;
 import com.github.im.server.model.User;
-import com.github.im.server.service.MessageService;
-import com.github.im.server.util.SchemaSwitcher;
+import com.github.im.server.service.ReadReceiptCoalescer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -20,7 +19,7 @@ import reactor.netty.Connection;
 @Slf4j
 public class AckProcessServiceHandler implements ProtoBufProcessHandler {
 
-    private final MessageService messageService;
+    private final ReadReceiptCoalescer readReceiptCoalescer;
 
     @Override
     public BaseMessage.BaseMessagePkg.PayloadCase type() {
@@ -40,18 +39,14 @@ public class AckProcessServiceHandler implements ProtoBufProcessHandler {
         if (status == Chat.MessagesStatus.READ) {
             User user = con.channel().attr(UserInfoProcessHandler.BING_USER_KEY).get();
             if (user != null) {
-                var schemaName = user.getCurrentSchema();
-                SchemaSwitcher.executeInSchema(schemaName, () -> {
-                    // 目前使用 max sequenceID 策略，ACK 中若包含 serverMsgId 可作为参考，但通常 READ 是按会话维度
-                    // 假设客户端在 ACK 中带入了它看到的最大的 serverMsgId 或 sequenceId
-                    // 这里我们暂时根据 AckMessage 中的 serverMsgId 关联的消息 sequenceId 来批量标记
-                    // 注意：协议定义中 AckMessage 可能需要更多的上下文
-                    messageService.markConversationAsRead(
-                            ackMessage.getConversationId(), 
-                            user.getUserId(), 
-                            ackMessage.getServerMsgId() // 这里复用为 sequenceId 或 msgId，视前端实现而定
-                    );
-                });
+                // 目前使用 max sequenceID 策略，ACK 中的 serverMsgId 复用为会话内已读到的 sequenceId，视前端实现而定
+                // 连续的 ACK 在合并窗口内只写入最大值
+                readReceiptCoalescer.markRead(
+                        user.getCurrentSchema(),
+                        ackMessage.getConversationId(),
+                        user.getUserId(),
+                        ackMessage.getServerMsgId()
+                );
             }
         }
     }
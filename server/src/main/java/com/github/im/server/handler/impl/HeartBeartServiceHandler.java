@@ -1,5 +1,7 @@
 package com.github.im.server.handler.impl;
 
+import com.github.im.common.connect.connection.ConnectionConstants;
+import com.github.im.common.connect.connection.OutboundQueue;
 import com.github.im.common.connect.connection.ReactiveConnectionManager;
 import com.github.im.common.connect.connection.server.BindAttr;
 import com.github.im.common.connect.connection.server.ProtoBufProcessHandler;
@@ -11,7 +13,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.springframework.stereotype.Component;
-import reactor.core.publisher.Hooks;
 import reactor.netty.Connection;
 
 import java.util.Objects;
@@ -40,7 +41,6 @@ public class HeartBeartServiceHandler implements ProtoBufProcessHandler {
     @Override
     public void process(Connection con, BaseMessage.BaseMessagePkg message) {
 
-        Hooks.onOperatorDebug();
 
         try {
             if (message.hasHeartbeat()) {
@@ -55,8 +55,12 @@ public class HeartBeartServiceHandler implements ProtoBufProcessHandler {
                             .setHeartbeat(BaseMessage.Heartbeat.newBuilder().setPing(false).build())
                             .build();
                     
-                    // Send pong back to client
-                    con.outbound().sendObject(pong).then().subscribe();
+                    // Send pong back to client; once the user is bound it goes through the outbound queue
+                    // so it is ordered with pushes and shares their flush
+                    OutboundQueue outboundQueue = con.channel().attr(ConnectionConstants.OUTBOUND_QUEUE_KEY).get();
+                    if (outboundQueue == null || !outboundQueue.offer(pong)) {
+                        con.outbound().sendObject(pong).then().subscribe();
+                    }
                 } else {
                     // This is a pong response from client
                     log.debug("Received PONG from client");
@@ -0,0 +1,76 @@
+package com.github.im.server.handler.impl;
+
+import com.github.im.common.connect.connection.ConnectionConstants;
+import com.github.im.common.connect.connection.OutboundQueue;
+import com.github.im.common.connect.connection.server.ProtoBufProcessHandler;
+import com.github.im.common.connect.model.proto.BaseMessage;
+import com.github.im.common.connect.model.proto.Chat;
+import com.github.im.server.exception.BusinessException;
+import com.github.im.server.model.User;
+import com.github.im.server.service.MessageService;
+import com.github.im.server.util.SchemaSwitcher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.netty.Connection;
+
+/**
+ * 长连接上的历史消息游标拉取
+ * 按 (conversationId, sequenceId) 定位一页消息，以 HistoryPullResponse 回给请求方
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HistoryPullProcessHandler implements ProtoBufProcessHandler {
+
+    private final MessageService messageService;
+
+    @Override
+    public BaseMessage.BaseMessagePkg.PayloadCase type() {
+        return BaseMessage.BaseMessagePkg.PayloadCase.HISTORYPULLREQUEST;
+    }
+
+    @Override
+    public void process(Connection con, BaseMessage.BaseMessagePkg message) {
+        final var request = message.getHistoryPullRequest();
+        User user = con.channel().attr(UserInfoProcessHandler.BING_USER_KEY).get();
+        if (user == null) {
+            log.warn("Ignoring history pull for conversation {} on unauthenticated connection", request.getConversationId());
+            return;
+        }
+
+        Chat.HistoryPullResponse response;
+        try {
+            response = SchemaSwitcher.executeInSchema(user.getCurrentSchema(),
+                    () -> messageService.pullMessagesByCursor(request, user.getUserId()));
+        } catch (BusinessException e) {
+            // 非会话成员，按空结果拒绝
+            log.warn("Rejecting history pull for conversation {} from user {}: {}",
+                    request.getConversationId(), user.getUserId(), e.getMessage());
+            response = emptyResponse(request);
+        } catch (Exception e) {
+            log.error("History pull failed for conversation {} user {}", request.getConversationId(), user.getUserId(), e);
+            response = emptyResponse(request);
+        }
+
+        BaseMessage.BaseMessagePkg reply = BaseMessage.BaseMessagePkg.newBuilder()
+                .setHistoryPullResponse(response)
+                .build();
+        // 与推送走同一个出站队列，保持顺序并共享 flush
+        OutboundQueue outboundQueue = con.channel().attr(ConnectionConstants.OUTBOUND_QUEUE_KEY).get();
+        if (outboundQueue == null || !outboundQueue.offer(reply)) {
+            con.outbound().sendObject(reply).then().subscribe();
+        }
+    }
+
+    /**
+     * 空结果且 hasMore=false，客户端按 requestId 结束等待
+     */
+    private static Chat.HistoryPullResponse emptyResponse(Chat.HistoryPullRequest request) {
+        return Chat.HistoryPullResponse.newBuilder()
+                .setConversationId(request.getConversationId())
+                .setNextCursor(request.getCursor())
+                .setRequestId(request.getRequestId())
+                .build();
+    }
+}
@@ -1,10 +1,14 @@
 package com.github.im.server.handler.impl;
 
 import com.github.im.common.connect.connection.ConnectionConstants;
+import com.github.im.common.connect.connection.OutboundQueue;
 import com.github.im.common.connect.connection.ReactiveConnectionManager;
 import com.github.im.common.connect.connection.server.BindAttr;
 import com.github.im.common.connect.connection.server.ProtoBufProcessHandler;
+import com.github.im.common.connect.connection.server.tcp.ChannelOutboundWriter;
+import com.github.im.common.connect.connection.server.tcp.ConnectionDebugSampler;
 import com.github.im.common.connect.model.proto.BaseMessage;
+import com.github.im.server.config.OutboundQueueProperties;
 import com.github.im.server.model.User;
 import com.github.im.server.service.OnlineService;
 import com.github.im.server.utils.UserTokenManager;
@@ -13,7 +17,6 @@ import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import reactor.core.publisher.Mono;
 import reactor.netty.Connection;
 
 import java.util.Optional;
@@ -29,6 +32,7 @@ public class UserInfoProcessHandler implements ProtoBufProcessHandler {
 
     private final UserTokenManager userTokenManager;
     private final OnlineService onlineService;
+    private final OutboundQueueProperties outboundQueueProperties;
 
     public static AttributeKey<User> BING_USER_KEY = AttributeKey.valueOf("USER");
 
@@ -62,44 +66,28 @@ public class UserInfoProcessHandler implements ProtoBufProcessHandler {
             Long userId = user.getUserId();
             onlineService.online(userId);
 
-            // 订阅 信息流
+            // 绑定出站队列：推送只入队，由 channel 的 EventLoop 有序写出并合并 flush
             var account = accountInfo.getUsername();
             var bindAttr = BindAttr.getBindAttr(accountInfo);
-
-            var baseMessageMany = ReactiveConnectionManager.registerSinkFlow(bindAttr).asFlux();
-            baseMessageMany
-            .doOnNext(baseMessage -> {
-                // 可以在此进行日志记录等操作
-                log.debug("Sending chat message to: {}", account);
-            })
-            .flatMap(baseMessagePkg -> {
-//                        // 返回消息流给 connection.outbound() 进行发送
-                return connection.outbound().sendByteArray(Mono.just(baseMessagePkg.toByteArray()));
-            }).checkpoint()
-            .doOnTerminate(() -> {
-                // 可以在流终止时执行清理操作
-                log.debug("Chat message stream completed.");
-            })
-            .doOnError(ex -> {
-                log.error("Error occurred while sending chat message to: {}", account, ex);
-            })
-            .subscribe(
-                    // 订阅并处理流
-                    null,  // 这里可以传入一个处理成功的回调函数
-                    error -> log.error("Error occurred while processing chat message stream")  // 错误处理
-            );
-
-            // 监听连接关闭事件，当连接被关闭时取消订阅
+            var channel = connection.channel();
+
+            OutboundQueue outboundQueue = new OutboundQueue(outboundQueueProperties.toSettings(), channel.eventLoop(),
+                    new ChannelOutboundWriter(channel), (queue, policy) -> onOverflow(connection, account, policy));
+            OutboundQueue previous = channel.attr(ConnectionConstants.OUTBOUND_QUEUE_KEY).getAndSet(outboundQueue);
+            if (previous != null) {
+                previous.close();
+            }
+            connection.addHandlerLast(ChannelOutboundWriter.RESUME_HANDLER_NAME, new ChannelOutboundWriter.ResumeHandler());
+            ReactiveConnectionManager.register(bindAttr, outboundQueue);
+            ConnectionDebugSampler.getInstance().onUserBound(channel, userId);
+
+            // 监听连接关闭事件，当连接被关闭时注销出站队列
             con.onDispose()
                 .doOnTerminate(() -> {
-//                    ReactiveConnectionManager.unSubscribe(accountInfo);
-                    ReactiveConnectionManager.unSubscribe(bindAttr);
+                    ReactiveConnectionManager.unregister(bindAttr, outboundQueue);
                     // 从在线服务中移除用户
                     onlineService.offline(userId);
-                    // 连接关闭时，取消订阅，执行清理操作
-                    log.debug("Connection closed, cancelling message stream subscription.");
-//                    chatMessages.subscribe().dispose();  // 显式取消流的订阅
-                    baseMessageMany.subscribe().dispose();
+                    log.debug("Connection closed, outbound queue of {} released.", account);
                 })
                 .subscribe();
 
@@ -107,4 +95,14 @@ public class UserInfoProcessHandler implements ProtoBufProcessHandler {
 
 
     }
+
+    private void onOverflow(Connection connection, String account, OutboundQueue.OverflowPolicy policy) {
+        switch (policy) {
+            case DROP_OLDEST -> log.debug("Outbound queue of {} is full, dropped the oldest message", account);
+            case DISCONNECT -> {
+                log.warn("Outbound queue of {} overflowed, closing connection", account);
+                connection.dispose();
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -26,8 +27,16 @@ import java.time.LocalDateTime;
 @Table(name = "messages")
 public class Message {
 
+    /**
+     * 消息ID。
+     *
+     * <p>使用池化的 SEQUENCE（每次 nextval 预取 50 个），persist 时不必立即插入，
+     * 同一事务内的多条消息才能合并为 JDBC 批量插入。序列由 tenant migration 创建，
+     * 其 INCREMENT 必须与 allocationSize 一致；列上原有的 IDENTITY 默认值不再使用。</p>
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_msg_id_pool_seq")
+    @SequenceGenerator(name = "messages_msg_id_pool_seq", sequenceName = "messages_msg_id_pool_seq", allocationSize = 50)
     private Long msgId;  // 消息ID
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,62 @@
+package com.github.im.server.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * 消息发件箱：与消息在同一事务中写入，记录提交后需要执行的推送、未读计数、通知与事件，
+ * 由 {@link com.github.im.server.service.MessageOutboxService} 分发成功后删除
+ */
+@Entity
+@Table(name = "message_outbox", indexes = @Index(name = "idx_message_outbox_next_attempt", columnList = "nextAttemptAt"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(exclude = "payload")
+public class MessageOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long messageId;
+
+    @Column(nullable = false)
+    private Long conversationId;
+
+    @Column(nullable = false)
+    private Long senderId;
+
+    /**
+     * 推送给成员的 BaseMessagePkg（protobuf 编码）
+     */
+    @Column(nullable = false)
+    private byte[] payload;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 早于该时间的记录由补偿任务认领并重新分发
+     */
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+}
@@ -27,6 +27,9 @@ public interface CompanyRepository extends JpaRepository<Company, Long> {
 
     Optional<Company> findByCompanyIdAndActive(Long companyId, Boolean active);
 
+    @Query("SELECT c.schemaName FROM Company c WHERE c.active = true")
+    List<String> findActiveSchemaNames();
+
     @Cacheable(value = "companies", key = "'company:id' + #companyId", unless = "#result == null")
     Optional<Company> findByCompanyId(Long companyId);
 
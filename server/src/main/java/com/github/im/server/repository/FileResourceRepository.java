@@ -2,12 +2,23 @@ package com.github.im.server.repository;
 
 import com.github.im.server.model.FileResource;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface FileResourceRepository extends JpaRepository<FileResource, UUID> {
 
+    /**
+     * 一次查询批量加载文件记录及其媒体资源（非媒体文件的媒体资源为 null）
+     * @param fileIds 文件ID
+     * @return 每行为 [FileResource, MediaFileResource]
+     */
+    @Query("SELECT f, m FROM FileResource f LEFT JOIN MediaFileResource m ON m.file = f WHERE f.id IN :fileIds")
+    List<Object[]> findWithMediaByIdIn(@Param("fileIds") Collection<UUID> fileIds);
 
 }
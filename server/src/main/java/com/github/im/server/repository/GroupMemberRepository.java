@@ -1,8 +1,11 @@
 package com.github.im.server.repository;
 
 import com.github.im.server.model.ConversationMember;
+import com.github.im.server.model.enums.ConversationMemberRole;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -25,5 +28,37 @@ public interface GroupMemberRepository extends JpaRepository<ConversationMember,
     @Query("SELECT gm FROM ConversationMember gm WHERE gm.user.userId = :userId and  gm.conversation.conversationId = :conversationId ")
     Optional<ConversationMember> findByConversationIdAndUserId(Long conversationId, Long userId);
 
+    /**
+     * 推进成员的已读位置，只会增大不会回退
+     *
+     * @return 1 表示已推进；0 表示成员不存在或已读位置不小于 sequenceId
+     */
+    @Modifying
+    @Query("""
+        UPDATE ConversationMember gm SET gm.lastReadSequenceId = :sequenceId
+        WHERE gm.conversation.conversationId = :conversationId
+          AND gm.user.userId = :userId
+          AND (gm.lastReadSequenceId IS NULL OR gm.lastReadSequenceId < :sequenceId)
+        """)
+    int advanceLastReadSequence(@Param("conversationId") Long conversationId,
+                                @Param("userId") Long userId,
+                                @Param("sequenceId") Long sequenceId);
+
+    /**
+     * 只查询会话成员的用户ID和角色，用于构建成员快照
+     */
+    @Query("""
+        SELECT gm.user.userId AS userId, gm.role AS role FROM ConversationMember gm
+        WHERE gm.conversation.conversationId = :conversationId
+        """)
+    List<MemberRoleRes> findMemberRoles(@Param("conversationId") Long conversationId);
+
+    interface MemberRoleRes {
+
+        Long getUserId();
+
+        ConversationMemberRole getRole();
+
+    }
 
 }
@@ -0,0 +1,42 @@
+package com.github.im.server.repository;
+
+import com.github.im.server.model.MessageOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MessageOutboxRepository extends JpaRepository<MessageOutbox, Long> {
+
+    /**
+     * 锁定到期的记录，已被其他节点锁定的跳过（需在事务中调用）
+     */
+    @Query(value = """
+        SELECT id FROM message_outbox
+        WHERE next_attempt_at <= :now
+        ORDER BY id
+        LIMIT :limit
+        FOR UPDATE SKIP LOCKED
+        """, nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * 认领记录：推迟下次尝试时间并累加尝试次数，认领期间其他节点不会重复分发
+     */
+    @Modifying
+    @Query("""
+        UPDATE MessageOutbox o SET o.attempts = o.attempts + 1, o.nextAttemptAt = :leaseUntil
+        WHERE o.id IN :ids
+        """)
+    int claim(@Param("ids") Collection<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("DELETE FROM MessageOutbox o WHERE o.id = :id")
+    int deleteOutboxById(@Param("id") Long id);
+}
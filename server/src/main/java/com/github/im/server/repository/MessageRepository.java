@@ -1,10 +1,12 @@
 package com.github.im.server.repository;
 
+import com.github.im.enums.MessageStatus;
 import com.github.im.server.model.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -15,6 +17,13 @@ import java.util.Optional;
 public interface MessageRepository extends JpaRepository<Message, Long> , JpaSpecificationExecutor<Message> {
     Optional<Message> findByConversation_ConversationIdAndClientMsgId(Long conversationId, String clientMsgId);
 
+    /**
+     * 按唯一索引 (conversation_id, from_account_id, client_msg_id) 查找发送者的某条消息，用于识别重发
+     */
+    Optional<Message> findByConversation_ConversationIdAndFromAccountId_UserIdAndClientMsgId(Long conversationId,
+                                                                                           Long fromUserId,
+                                                                                           String clientMsgId);
+
     @Query("""
         SELECT m FROM Message m 
         WHERE m.conversation.conversationId = :sessionId 
@@ -27,6 +36,38 @@ public interface MessageRepository extends JpaRepository<Message, Long> , JpaSpe
                                       Pageable pageable);
 
 
+    /**
+     * 按ID加载消息及发送者，供提交后的分发使用
+     */
+    @Query("SELECT m FROM Message m JOIN FETCH m.fromAccountId WHERE m.msgId = :msgId")
+    Optional<Message> findWithSenderById(@Param("msgId") Long msgId);
+
+    /**
+     * 游标向前翻页：取 sequence 小于 cursor 的消息，按 sequence 降序；List 返回值不触发 count 查询
+     */
+    @Query("""
+        SELECT m FROM Message m JOIN FETCH m.fromAccountId
+        WHERE m.conversation.conversationId = :conversationId
+          AND m.sequenceId < :cursor
+        ORDER BY m.sequenceId DESC
+        """)
+    List<Message> findBeforeSequence(@Param("conversationId") Long conversationId,
+                                     @Param("cursor") Long cursor,
+                                     Pageable pageable);
+
+    /**
+     * 游标向后拉取：取 sequence 大于 cursor 的消息，按 sequence 升序
+     */
+    @Query("""
+        SELECT m FROM Message m JOIN FETCH m.fromAccountId
+        WHERE m.conversation.conversationId = :conversationId
+          AND m.sequenceId > :cursor
+        ORDER BY m.sequenceId ASC
+        """)
+    List<Message> findAfterSequence(@Param("conversationId") Long conversationId,
+                                    @Param("cursor") Long cursor,
+                                    Pageable pageable);
+
     /**
      * 查询指定会话的最大 sequence
      */
@@ -58,6 +99,46 @@ public interface MessageRepository extends JpaRepository<Message, Long> , JpaSpe
         """)
     long countUnreadMessages(@Param("conversationId") Long conversationId, @Param("userId") Long userId);
 
+    /**
+     * 私聊已读：把对方发来的、sequence 不超过已读位置且尚未已读的消息一次性置为指定状态
+     *
+     * @return 更新的行数
+     */
+    @Modifying
+    @Query("""
+        UPDATE Message m SET m.status = :status
+        WHERE m.conversation.conversationId = :conversationId
+          AND m.fromAccountId.userId <> :userId
+          AND m.sequenceId <= :sequenceId
+          AND m.status <> :status
+        """)
+    int updateStatusUpToSequence(@Param("conversationId") Long conversationId,
+                                 @Param("userId") Long userId,
+                                 @Param("sequenceId") Long sequenceId,
+                                 @Param("status") MessageStatus status);
+
+    /**
+     * 用户在所参与的各会话中的未读数（仅返回未读数大于 0 的会话），用于重建未读计数器
+     */
+    @Query("""
+        SELECT cm.conversation.conversationId AS conversationId, COUNT(m) AS unreadCount
+        FROM ConversationMember cm, Message m
+        WHERE cm.user.userId = :userId
+          AND m.conversation.conversationId = cm.conversation.conversationId
+          AND m.fromAccountId.userId <> :userId
+          AND m.sequenceId > COALESCE(cm.lastReadSequenceId, 0)
+        GROUP BY cm.conversation.conversationId
+        """)
+    List<UnreadCountRes> countUnreadMessagesByUserId(@Param("userId") Long userId);
+
+    interface UnreadCountRes {
+
+        Long getConversationId();
+
+        Long getUnreadCount();
+
+    }
+
     interface SequenceRes {
 
         Long getConversationId();
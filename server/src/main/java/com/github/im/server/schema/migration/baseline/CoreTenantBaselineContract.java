@@ -10,12 +10,19 @@ import java.util.Set;
  *
  * 2026081906 remains the business-schema baseline. MANAGED_TARGET_VERSION tracks
  * the latest tenant Flyway target and advances as immutable managed migrations
- * such as Workbench tables are added.
+ * such as Workbench tables, the pooled message id sequence, managed indexes (including
+ * the unique clientMsgId index) and the message outbox are added.
  */
 public final class CoreTenantBaselineContract {
 
     public static final String BASELINE_VERSION = "2026081906";
-    public static final String MANAGED_TARGET_VERSION = "2026082002";
+    public static final String MANAGED_TARGET_VERSION = "2026101704";
+
+    /**
+     * Secondary indexes that managed migrations add to core tables carry this prefix and
+     * are left out of the core fingerprint, so the pinned hashes keep describing the baseline.
+     */
+    public static final String MANAGED_INDEX_PREFIX = "mgd_idx_";
 
     public static final Set<String> CORE_TABLES = Set.of(
             "approval_requests",
@@ -225,8 +225,12 @@ public class TenantSchemaFingerprintService {
                 JOIN pg_namespace namespace_row ON namespace_row.oid = table_row.relnamespace
                 WHERE namespace_row.nspname = ?
                   AND table_row.relname IN (%s)
+                  AND left(index_row.relname, %d) <> '%s'
                 ORDER BY table_row.relname, index_row.relname
-                """.formatted(placeholders(CORE_TABLE_NAMES.size()));
+                """.formatted(
+                placeholders(CORE_TABLE_NAMES.size()),
+                CoreTenantBaselineContract.MANAGED_INDEX_PREFIX.length(),
+                CoreTenantBaselineContract.MANAGED_INDEX_PREFIX);
         categories.put("indexes", queryLines(connection, sql, schemaName, CORE_TABLE_NAMES, 5));
     }
 
@@ -26,8 +26,12 @@ public class MigrationAdminAuthorizer {
         this.configuredAdminUsername = configuredAdminUsername;
     }
 
+    public boolean isAdmin(User user) {
+        return user != null && user.getUsername() != null && Objects.equals(user.getUsername(), configuredAdminUsername);
+    }
+
     public void requireAdmin(User user) {
-        if (user == null || user.getUsername() == null || !Objects.equals(user.getUsername(), configuredAdminUsername)) {
+        if (!isAdmin(user)) {
             throw new BusinessException(HttpStatus.FORBIDDEN, "MIGRATION_FORBIDDEN",
                     "无权限执行 tenant schema migration");
         }
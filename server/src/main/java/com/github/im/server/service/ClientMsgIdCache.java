@@ -0,0 +1,79 @@
+package com.github.im.server.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.im.server.config.MessageDedupProperties;
+import com.github.im.server.config.mult.SchemaContext;
+import com.github.im.server.model.Message;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 最近发送成功的 clientMsgId
+ * <p>
+ * 按 (租户 schema, 会话ID, 发送者, clientMsgId) 记住已提交消息的 msgId，客户端重发时不再写库、不再分配序列和扇出。
+ * 键与唯一索引 {@code messages (conversation_id, from_account_id, client_msg_id)} 一致；只记录已提交的消息，
+ * 本节点未记住的重发（其他节点处理过、已过期、或与原消息并发）由该索引拦截。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ClientMsgIdCache {
+
+    private final MessageDedupProperties properties;
+
+    private Cache<Key, Long> cache;
+
+    private record Key(String schema, long conversationId, long senderId, String clientMsgId) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+        log.info("Message dedup cache enabled, maxSize={}, ttl={}", properties.getMaxSize(), properties.getTtl());
+    }
+
+    /**
+     * 查找当前租户下该发送者已提交的同一条消息
+     *
+     * @return 原消息ID，没有记录时返回 null
+     */
+    public Long find(Long conversationId, String clientMsgId, Long senderId) {
+        if (cache == null || conversationId == null || senderId == null || clientMsgId == null || clientMsgId.isEmpty()) {
+            return null;
+        }
+        return cache.getIfPresent(new Key(SchemaContext.getCurrentTenant(), conversationId, senderId, clientMsgId));
+    }
+
+    /**
+     * 记住刚保存的消息（需在保存所在的事务内调用），提交后才生效
+     */
+    public void remember(Message message) {
+        if (cache == null || message.getClientMsgId() == null || message.getClientMsgId().isEmpty()) {
+            return;
+        }
+        Key key = new Key(SchemaContext.getCurrentTenant(), message.getConversation().getConversationId(),
+                message.getFromAccountId().getUserId(), message.getClientMsgId());
+        Long msgId = message.getMsgId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.put(key, msgId);
+                }
+            });
+        } else {
+            cache.put(key, msgId);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.github.im.server.service;
 
+import com.github.im.common.connect.connection.EncodedPush;
 import com.github.im.common.connect.connection.ReactiveConnectionManager;
-import com.github.im.common.connect.connection.server.BindAttr;
 import com.github.im.common.connect.model.proto.BaseMessage;
 import com.github.im.server.handler.SignalWebSocketHandler;
 import lombok.extern.slf4j.Slf4j;
@@ -13,8 +13,19 @@ public class ClusterLocalDeliveryService {
 
     public void deliverBaseMessage(Long toUserId, BaseMessage.BaseMessagePkg payload) {
         try {
-            BindAttr bindAttr = BindAttr.getBindAttrForPush(toUserId.toString());
-            ReactiveConnectionManager.addBaseMessage(bindAttr, payload);
+            ReactiveConnectionManager.addBaseMessage(toUserId, payload);
+        } catch (Exception e) {
+            log.error("Failed to deliver message locally to user {}: {}", toUserId, e.getMessage(), e);
+            throw new IllegalStateException("Failed to deliver local IM message", e);
+        }
+    }
+
+    /**
+     * 投递已编码的共享帧，用于同一条消息在本节点上有多个接收者的场景；调用方负责释放 push
+     */
+    public void deliverEncoded(Long toUserId, EncodedPush push) {
+        try {
+            ReactiveConnectionManager.addEncodedPush(toUserId, push);
         } catch (Exception e) {
             log.error("Failed to deliver message locally to user {}: {}", toUserId, e.getMessage(), e);
             throw new IllegalStateException("Failed to deliver local IM message", e);
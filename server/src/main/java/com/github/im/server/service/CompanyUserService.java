@@ -1,6 +1,7 @@
 package com.github.im.server.service;
 
 import com.github.im.dto.organization.CompanyDTO;
+import com.github.im.server.config.security.PrincipalCache;
 import com.github.im.server.mapstruct.CompanyMapper;
 import com.github.im.server.model.Company;
 import com.github.im.server.model.CompanyUser;
@@ -35,6 +36,9 @@ public class CompanyUserService {
     @Autowired
     private CompanyMapper companyMapper;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
 
     private final EntityManager entityManager;
 
@@ -117,7 +121,9 @@ public class CompanyUserService {
         CompanyUser companyUser = new CompanyUser();
         companyUser.setUserId(userId);
         companyUser.setCompanyId(companyId);
-        return companyUserRepository.save(companyUser);
+        CompanyUser saved = companyUserRepository.save(companyUser);
+        principalCache.invalidateUser(userId);
+        return saved;
     }
     
     /**
@@ -129,6 +135,7 @@ public class CompanyUserService {
         Optional<CompanyUser> companyUser = companyUserRepository.findByUserIdAndCompanyId(userId, companyId);
         if (companyUser.isPresent()) {
             companyUserRepository.delete(companyUser.get());
+            principalCache.invalidateUser(userId);
         }
     }
     
@@ -153,7 +160,9 @@ public class CompanyUserService {
         Optional<CompanyUser> companyUserOpt = companyUserRepository.findByUserIdAndCompanyId(userId, companyId);
         if (companyUserOpt.isPresent()) {
             CompanyUser companyUser = companyUserOpt.get();
-            return companyUserRepository.save(companyUser);
+            CompanyUser saved = companyUserRepository.save(companyUser);
+            principalCache.invalidateUser(userId);
+            return saved;
         } else {
             throw new RuntimeException("User is not associated with the company");
         }
@@ -14,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 public class ConversationRoleService {
     private final GroupMemberRepository memberRepository;
     private final ConversationRepository conversationRepository;
+    private final MembershipCache membershipCache;
 
     @Transactional(readOnly = true)
     public void requireManager(Long conversationId, Long actorId) {
@@ -32,7 +33,9 @@ public class ConversationRoleService {
         if (role == ConversationMemberRole.OWNER) throw new IllegalArgumentException("Use ownership transfer for OWNER");
         ConversationMember target = requireMember(conversationId, targetUserId);
         if (target.getRole() == ConversationMemberRole.OWNER) throw new IllegalArgumentException("Transfer ownership before changing the owner role");
-        target.setRole(role); return target;
+        target.setRole(role);
+        membershipCache.invalidate(conversationId);
+        return target;
     }
     @Transactional
     public void transferOwnership(Long conversationId, Long actorId, Long targetUserId) {
@@ -40,6 +43,7 @@ public class ConversationRoleService {
         ConversationMember target = requireMember(conversationId, targetUserId);
         ConversationMember owner = requireMember(conversationId, actorId);
         owner.setRole(ConversationMemberRole.ADMIN); target.setRole(ConversationMemberRole.OWNER);
+        membershipCache.invalidate(conversationId);
     }
     @Transactional
     public ConversationMember requireMember(Long conversationId, Long userId) {
@@ -48,6 +52,7 @@ public class ConversationRoleService {
         ConversationMember member = memberRepository.findByConversationIdAndUserId(conversationId, userId).orElseThrow(() -> new SecurityException("You are not a member of this conversation"));
         if (member.getRole() == ConversationMemberRole.MEMBER && conversation.getCreatedBy().getUserId().equals(userId)) {
             member.setRole(ConversationMemberRole.OWNER);
+            membershipCache.invalidate(conversationId);
         }
         return member;
     }
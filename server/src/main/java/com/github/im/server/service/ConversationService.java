@@ -40,6 +40,7 @@ public class ConversationService {
     private final GroupMemberRepository groupMemberRepository;
     private final ConversationSequenceService conversationSequenceService;
     private final EntityManager entityManager;
+    private final MembershipCache membershipCache;
 
     /**
      * 创建新群组
@@ -95,6 +96,7 @@ public class ConversationService {
                         .build())
                 .toList());
         groupMemberRepository.saveAll(groupMembers);
+        membershipCache.invalidate(saveGroup.getConversationId());
 
         return getConversationById(saveGroup.getConversationId());
     }
@@ -150,6 +152,7 @@ public class ConversationService {
                     .role(ConversationMemberRole.MEMBER)
                     .build();
             groupMemberRepository.saveAll(List.of(conversationMember1, conversationMember2));
+            membershipCache.invalidate(savedConversation.getConversationId());
             // 添加成员
 //            groupMemberService.addMemberToGroup(newConversation.getConversationId(), userId1);
 //            groupMemberService.addMemberToGroup(newConversation.getConversationId(), userId2);
@@ -203,6 +206,7 @@ public class ConversationService {
             group.get().getMembers().forEach(member -> groupMemberService.removeMemberFromGroup(groupId, member.getUser().getUserId()));
             // 删除群组
             conversationRepository.delete(conversation);
+            membershipCache.invalidate(groupId);
         });
     }
 
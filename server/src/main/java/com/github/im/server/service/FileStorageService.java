@@ -4,7 +4,10 @@ import cn.hutool.core.io.file.FileNameUtil;
 import com.github.im.dto.file.FileUploadResponse;
 import com.github.im.dto.file.UploadFileRequest;
 import com.github.im.dto.message.FileMeta;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.im.server.config.FileUploadProperties;
+import com.github.im.server.config.mult.SchemaContext;
 import com.github.im.server.mapstruct.FileMapper;
 import com.github.im.server.model.FileResource;
 import com.github.im.server.model.MediaFileResource;
@@ -23,6 +26,8 @@ import org.springframework.http.MediaType;
 import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.DigestUtils;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -40,8 +45,13 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -60,6 +70,11 @@ public class FileStorageService {
     private Path baseDir;
     private Path chunkTempDir;
     private Path previewCacheDir;
+    /**
+     * 文件元信息缓存，按 (租户 schema, 文件ID) 区分，首次使用时按配置创建
+     */
+    private volatile Cache<String, FileMeta> fileMetaCache;
+    private volatile boolean fileMetaCacheDisabled;
 
     @PostConstruct
     public void init() throws IOException {
@@ -100,22 +115,105 @@ public class FileStorageService {
      */
 
     public FileMeta getFileMeta(UUID fileID ) throws FileNotFoundException {
-        FileResource fileResource = repository.findById(fileID)
-                .orElseThrow(()->new FileNotFoundException("File not found : "+fileID));
-        
-        // 获取媒体资源信息（如果存在）
-        MediaFileResource mediaResource = mediaFileResourceRepository.findByFileId(fileID);
-        
-        FileMeta meta;
-        if (mediaResource != null) {
-            meta = fileMapper.toMetaWithMedia(fileResource, mediaResource);
-            meta.setThumbnail(mediaResource.getThumbnail());
-        } else {
-            meta = fileMapper.toMeta(fileResource);
+        FileMeta meta = getFileMetas(List.of(fileID)).get(fileID);
+        if (meta == null) {
+            throw new FileNotFoundException("File not found : " + fileID);
         }
         return meta;
     }
 
+    /**
+     * 批量获取文件元信息：先查缓存，未命中的文件连同媒体资源用一条查询加载
+     * <p>
+     * 只缓存状态为 NORMAL 的文件，上传中的占位记录每次都从数据库读取，以便状态变化后立即可见。
+     * @param fileIds 文件的 UUID
+     * @return 文件ID -> 元信息，不存在的文件不在结果中
+     */
+    public Map<UUID, FileMeta> getFileMetas(Collection<UUID> fileIds) {
+        Map<UUID, FileMeta> result = new HashMap<>();
+        if (fileIds == null || fileIds.isEmpty()) {
+            return result;
+        }
+        Cache<String, FileMeta> cache = metaCache();
+        String schemaName = SchemaContext.getCurrentTenant();
+        Set<UUID> misses = new HashSet<>();
+        for (UUID fileId : fileIds) {
+            FileMeta cached = cache == null ? null : cache.getIfPresent(metaCacheKey(schemaName, fileId));
+            if (cached != null) {
+                result.put(fileId, cached);
+            } else {
+                misses.add(fileId);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        for (Object[] row : repository.findWithMediaByIdIn(misses)) {
+            FileResource fileResource = (FileResource) row[0];
+            MediaFileResource mediaResource = (MediaFileResource) row[1];
+            FileMeta meta;
+            if (mediaResource != null) {
+                meta = fileMapper.toMetaWithMedia(fileResource, mediaResource);
+                meta.setThumbnail(mediaResource.getThumbnail());
+            } else {
+                meta = fileMapper.toMeta(fileResource);
+            }
+            result.put(fileResource.getId(), meta);
+            if (cache != null && fileResource.getStatus() == FileStatus.NORMAL) {
+                cache.put(metaCacheKey(schemaName, fileResource.getId()), meta);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 文件记录或媒体资源变更后使缓存的元信息失效；在事务中时推迟到提交后，避免并发读把旧值重新放回缓存
+     */
+    private void evictFileMeta(UUID fileId) {
+        Cache<String, FileMeta> cache = metaCache();
+        if (cache == null) {
+            return;
+        }
+        String key = metaCacheKey(SchemaContext.getCurrentTenant(), fileId);
+        cache.invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(key);
+                }
+            });
+        }
+    }
+
+    private Cache<String, FileMeta> metaCache() {
+        Cache<String, FileMeta> cache = fileMetaCache;
+        if (cache == null && !fileMetaCacheDisabled) {
+            synchronized (this) {
+                cache = fileMetaCache;
+                if (cache == null && !fileMetaCacheDisabled) {
+                    FileUploadProperties.MetaCache settings = Optional.ofNullable(properties.getMetaCache())
+                            .orElseGet(FileUploadProperties.MetaCache::new);
+                    if (settings.getMaxSize() <= 0) {
+                        fileMetaCacheDisabled = true;
+                        return null;
+                    }
+                    cache = Caffeine.newBuilder()
+                            .maximumSize(settings.getMaxSize())
+                            .expireAfterWrite(settings.getTtl())
+                            .build();
+                    fileMetaCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    private static String metaCacheKey(String schemaName, UUID fileId) {
+        return schemaName + ":" + fileId;
+    }
+
 
 
     /**
@@ -143,6 +241,7 @@ public class FileStorageService {
         
         // 如果是媒体文件，创建或更新对应的媒体资源记录
         MediaFileResource mediaResource = createMediaResourceIfNeeded(savedResource, duration);
+        evictFileMeta(fileId);
         
         // 如果存在媒体资源，使用包含媒体信息的DTO方法
         if (mediaResource != null) {
@@ -293,6 +392,7 @@ public class FileStorageService {
         
         // 如果是媒体文件，创建或更新对应的媒体资源记录
         MediaFileResource mediaResource = createMediaResourceIfNeeded(savedResource, duration);
+        evictFileMeta(fileId);
         
         // 如果存在媒体资源，使用包含媒体信息的DTO方法
         if (mediaResource != null) {
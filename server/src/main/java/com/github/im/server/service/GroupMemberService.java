@@ -24,6 +24,7 @@ public class GroupMemberService {
 
     private final GroupMemberRepository groupMemberRepository;
     private final ConversationRepository conversationRepository;
+    private final MembershipCache membershipCache;
 
     public List<ConversationMember> getMembersByConversationId(Long ConversationId) {
         return groupMemberRepository.findByConversationId(ConversationId);
@@ -45,7 +46,9 @@ public class GroupMemberService {
                 .joinedAt(LocalDateTime.now())
                 .build();
 
-        return groupMemberRepository.saveAndFlush(groupMember);
+        var saved = groupMemberRepository.saveAndFlush(groupMember);
+        membershipCache.invalidate(groupId);
+        return saved;
     }
 
     @Transactional
@@ -71,12 +74,16 @@ public class GroupMemberService {
         }
 
         groupMemberRepository.saveAll(conversationMembers);
+        membershipCache.invalidate(conversationId);
         return conversationMembers.size();
     }
 
     @Transactional
     public void removeMemberFromGroup(Long groupId, Long userId) {
         Optional<ConversationMember> groupMemberOptional = groupMemberRepository.findByConversationIdAndUserId(groupId, userId);
-        groupMemberOptional.ifPresent(groupMemberRepository::delete);
+        groupMemberOptional.ifPresent(member -> {
+            groupMemberRepository.delete(member);
+            membershipCache.invalidate(groupId);
+        });
     }
 }
@@ -0,0 +1,123 @@
+package com.github.im.server.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.im.server.config.MembershipCacheProperties;
+import com.github.im.server.config.mult.SchemaContext;
+import com.github.im.server.model.enums.ConversationMemberRole;
+import com.github.im.server.repository.GroupMemberRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 会话成员快照缓存
+ * <p>
+ * 按 (租户 schema, 会话ID) 缓存 {@link MembershipSnapshot}，未命中时用一条只查成员ID和角色的查询加载。
+ * 成员或角色变更后调用 {@link #invalidate(Long)}：本节点立即失效，事务提交后再失效一次并通过
+ * {@link #MEMBERSHIP_CHANGED_CHANNEL} 广播，其他节点收到后失效；广播丢失时由 TTL 兜底。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MembershipCache {
+
+    /**
+     * 成员变更广播频道，消息体为 {@code schema:conversationId}
+     */
+    public static final String MEMBERSHIP_CHANGED_CHANNEL = "im:membership:changed";
+
+    private final GroupMemberRepository groupMemberRepository;
+    private final MembershipCacheProperties properties;
+    private final StringRedisTemplate redis;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private Cache<String, MembershipSnapshot> cache;
+
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onMembershipChanged(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(MEMBERSHIP_CHANGED_CHANNEL));
+        log.info("Membership cache enabled, maxSize={}, ttl={}", properties.getMaxSize(), properties.getTtl());
+    }
+
+    /**
+     * 获取当前租户下会话的成员快照，会话不存在时返回空快照
+     */
+    public MembershipSnapshot get(Long conversationId) {
+        if (cache == null) {
+            return load(conversationId);
+        }
+        return cache.get(key(SchemaContext.getCurrentTenant(), conversationId), k -> load(conversationId));
+    }
+
+    /**
+     * 会话成员或角色发生变更（需在变更所在的事务内调用）
+     */
+    public void invalidate(Long conversationId) {
+        if (cache == null || conversationId == null) {
+            return;
+        }
+        String key = key(SchemaContext.getCurrentTenant(), conversationId);
+        cache.invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 提交前并发加载的可能仍是旧成员，提交后再失效一次并通知其他节点
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(key);
+                    publish(key);
+                }
+            });
+        } else {
+            publish(key);
+        }
+    }
+
+    private MembershipSnapshot load(Long conversationId) {
+        List<GroupMemberRepository.MemberRoleRes> rows = groupMemberRepository.findMemberRoles(conversationId);
+        long[] memberIds = new long[rows.size()];
+        ConversationMemberRole[] roles = new ConversationMemberRole[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            memberIds[i] = rows.get(i).getUserId();
+            roles[i] = rows.get(i).getRole();
+        }
+        return MembershipSnapshot.of(memberIds, roles);
+    }
+
+    private void publish(String key) {
+        try {
+            redis.convertAndSend(MEMBERSHIP_CHANGED_CHANNEL, key);
+        } catch (Exception e) {
+            // 广播失败时其他节点最多在 TTL 内读到陈旧的成员列表
+            log.warn("Failed to publish membership change {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void onMembershipChanged(String key) {
+        if (cache != null && key != null) {
+            cache.invalidate(key);
+        }
+    }
+
+    private static String key(String schemaName, Long conversationId) {
+        return schemaName + ":" + conversationId;
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.im.server.service;
+
+import com.github.im.server.model.enums.ConversationMemberRole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 会话成员的不可变快照：按用户ID升序的 {@code long[]} 及对应角色，扇出时只需要成员ID，不加载 {@code User} 实体
+ */
+public final class MembershipSnapshot {
+
+    public static final MembershipSnapshot EMPTY = new MembershipSnapshot(new long[0], new ConversationMemberRole[0]);
+
+    private final long[] memberIds;
+    private final ConversationMemberRole[] roles;
+
+    private MembershipSnapshot(long[] memberIds, ConversationMemberRole[] roles) {
+        this.memberIds = memberIds;
+        this.roles = roles;
+    }
+
+    /**
+     * @param memberIds 成员ID，可无序、可重复（重复时保留第一个角色）
+     * @param roles     与 memberIds 一一对应的角色
+     */
+    public static MembershipSnapshot of(long[] memberIds, ConversationMemberRole[] roles) {
+        if (memberIds.length != roles.length) {
+            throw new IllegalArgumentException("memberIds and roles must have the same length");
+        }
+        if (memberIds.length == 0) {
+            return EMPTY;
+        }
+        Integer[] order = new Integer[memberIds.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(memberIds[a], memberIds[b]));
+
+        long[] sortedIds = new long[memberIds.length];
+        ConversationMemberRole[] sortedRoles = new ConversationMemberRole[memberIds.length];
+        int size = 0;
+        for (int index : order) {
+            if (size > 0 && sortedIds[size - 1] == memberIds[index]) {
+                continue;
+            }
+            sortedIds[size] = memberIds[index];
+            sortedRoles[size] = roles[index];
+            size++;
+        }
+        return new MembershipSnapshot(Arrays.copyOf(sortedIds, size), Arrays.copyOf(sortedRoles, size));
+    }
+
+    public int size() {
+        return memberIds.length;
+    }
+
+    public boolean isEmpty() {
+        return memberIds.length == 0;
+    }
+
+    public long memberId(int index) {
+        return memberIds[index];
+    }
+
+    public ConversationMemberRole role(int index) {
+        return roles[index];
+    }
+
+    public boolean contains(long userId) {
+        return Arrays.binarySearch(memberIds, userId) >= 0;
+    }
+
+    /**
+     * @return 成员角色，不是成员时返回 null
+     */
+    public ConversationMemberRole roleOf(long userId) {
+        int index = Arrays.binarySearch(memberIds, userId);
+        return index >= 0 ? roles[index] : null;
+    }
+
+    /**
+     * @return 成员ID的副本
+     */
+    public long[] memberIds() {
+        return memberIds.clone();
+    }
+
+    /**
+     * @return 成员ID列表，供按集合参数路由的接口使用
+     */
+    public List<Long> memberIdList() {
+        List<Long> ids = new ArrayList<>(memberIds.length);
+        for (long memberId : memberIds) {
+            ids.add(memberId);
+        }
+        return ids;
+    }
+}
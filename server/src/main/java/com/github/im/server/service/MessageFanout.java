@@ -0,0 +1,172 @@
+package com.github.im.server.service;
+
+import com.github.im.server.config.FanoutProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 消息扇出阶段
+ * <p>
+ * 发送线程只提交任务，不等待扇出完成；任务在专用的有界执行器（固定数量的平台线程，或虚拟线程）上调用
+ * {@link RedisMessageRouter#sendBatch}，按目标节点分组后每个节点一条 Stream 记录。
+ * 等待与执行中的任务数超过容量时由发送线程自己路由，形成背压而不是丢弃消息。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageFanout {
+
+    private final RedisMessageRouter redisMessageRouter;
+    private final FanoutProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 已提交、尚未完成的任务数
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private ExecutorService executor;
+    private Semaphore permits;
+    private Timer latency;
+    private Counter failures;
+    private Counter callerRuns;
+
+    @PostConstruct
+    public void start() {
+        latency = Timer.builder("im.fanout.latency")
+                .description("Time from submission until a message was routed to all member nodes")
+                .register(meterRegistry);
+        failures = Counter.builder("im.fanout.failures").register(meterRegistry);
+        callerRuns = Counter.builder("im.fanout.caller.runs")
+                .description("Fan-outs run on the sending thread because the stage was saturated")
+                .register(meterRegistry);
+        Gauge.builder("im.fanout.queue.depth", pending, AtomicInteger::get)
+                .description("Fan-out tasks waiting or running")
+                .register(meterRegistry);
+
+        if (!properties.isEnabled()) {
+            return;
+        }
+        permits = new Semaphore(Math.max(1, properties.getQueueCapacity()));
+        if (properties.isVirtualThreads()) {
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("message-fanout-", 0).factory());
+        } else {
+            AtomicInteger threadIndex = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(Math.max(1, properties.getThreads()), runnable -> {
+                Thread thread = new Thread(runnable, "message-fanout-" + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        log.info("Message fan-out started, virtualThreads={}, threads={}, queueCapacity={}",
+                properties.isVirtualThreads(), properties.getThreads(), properties.getQueueCapacity());
+    }
+
+    @PreDestroy
+    public void stop() {
+        ExecutorService current = executor;
+        if (current == null) {
+            return;
+        }
+        current.shutdown();
+        try {
+            if (!current.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Message fan-out did not drain in time, {} tasks abandoned", pending.get());
+                current.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            current.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交一次扇出，立即返回
+     *
+     * @param fromUserId 发送者ID
+     * @param memberIds  接收者ID（含发送者自身的其他设备）
+     * @param payload    推送内容
+     */
+    public void submit(Long fromUserId, Collection<Long> memberIds, Object payload) {
+        if (memberIds == null || memberIds.isEmpty()) {
+            return;
+        }
+        long submittedAt = System.nanoTime();
+        pending.incrementAndGet();
+        if (executor == null || !permits.tryAcquire()) {
+            if (executor != null) {
+                callerRuns.increment();
+            }
+            route(fromUserId, memberIds, payload, submittedAt);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    route(fromUserId, memberIds, payload, submittedAt);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 关闭过程中提交的任务
+            permits.release();
+            callerRuns.increment();
+            route(fromUserId, memberIds, payload, submittedAt);
+        }
+    }
+
+    /**
+     * 在调用线程上立即路由，供本身已在后台线程执行的调用方使用（如发件箱分发），计入同样的指标
+     *
+     * @throws RuntimeException 路由失败（如 Redis 不可用），调用方保留待发记录稍后重试
+     */
+    public void routeNow(Long fromUserId, Collection<Long> memberIds, Object payload) {
+        if (memberIds == null || memberIds.isEmpty()) {
+            return;
+        }
+        pending.incrementAndGet();
+        try {
+            routeOrThrow(fromUserId, memberIds, payload, System.nanoTime());
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * 提交的任务没有调用方可以重试，失败只计数
+     */
+    private void route(Long fromUserId, Collection<Long> memberIds, Object payload, long submittedAt) {
+        try {
+            routeOrThrow(fromUserId, memberIds, payload, submittedAt);
+        } catch (Exception e) {
+            failures.increment();
+            log.error("Failed to route message to {} members: {}", memberIds.size(), e.getMessage());
+        }
+    }
+
+    private void routeOrThrow(Long fromUserId, Collection<Long> memberIds, Object payload, long submittedAt) {
+        try {
+            redisMessageRouter.sendBatch(fromUserId, memberIds, payload);
+        } finally {
+            pending.decrementAndGet();
+            latency.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.github.im.server.service;
+
+import com.github.im.common.connect.model.proto.BaseMessage;
+import com.github.im.server.config.MessageOutboxProperties;
+import com.github.im.server.config.mult.SchemaContext;
+import com.github.im.server.event.MessageCreatedEvent;
+import com.github.im.server.model.Message;
+import com.github.im.server.model.MessageOutbox;
+import com.github.im.server.repository.CompanyRepository;
+import com.github.im.server.repository.MessageOutboxRepository;
+import com.github.im.server.repository.MessageRepository;
+import com.github.im.server.service.notification.ClientEventPublisher;
+import com.github.im.server.util.SchemaSwitcher;
+import com.google.protobuf.InvalidProtocolBufferException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 新消息的提交后分发（事务发件箱）
+ * <p>
+ * 保存消息的事务内同时写入一条发件箱记录（含编码好的推送包），发送事务只包含这两次插入；
+ * 提交后记录交给分发线程池，依次完成成员推送、未读计数、客户端通知和 {@link MessageCreatedEvent}，全部完成后删除记录。
+ * 节点在提交后、删除前崩溃，或线程池已满时，记录留在表中，到期后由补偿任务用 {@code FOR UPDATE SKIP LOCKED} 认领并重新分发，
+ * 因此副作用至少执行一次（可能重复推送，未读数的偏差由未读数校正任务修复）。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageOutboxService {
+
+    private final MessageOutboxRepository messageOutboxRepository;
+    private final MessageRepository messageRepository;
+    private final CompanyRepository companyRepository;
+    private final MembershipCache membershipCache;
+    private final MessageFanout messageFanout;
+    private final UnreadCountService unreadCountService;
+    private final ClientEventPublisher clientEventPublisher;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final PlatformTransactionManager transactionManager;
+    private final MessageOutboxProperties properties;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        int workers = Math.max(1, properties.getWorkers());
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())), runnable -> {
+                    Thread thread = new Thread(runnable, "message-outbox-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 在保存消息的事务内写入发件箱记录，提交后交给分发线程池
+     *
+     * @param message 刚保存的消息（需已分配 msgId）
+     * @param pushPkg 推送给成员的消息包
+     */
+    public void record(Message message, BaseMessage.BaseMessagePkg pushPkg) {
+        LocalDateTime now = LocalDateTime.now();
+        MessageOutbox outbox = messageOutboxRepository.save(MessageOutbox.builder()
+                .messageId(message.getMsgId())
+                .conversationId(message.getConversation().getConversationId())
+                .senderId(message.getFromAccountId().getUserId())
+                .payload(pushPkg.toByteArray())
+                .createdAt(now)
+                // 提交后分发未在该时间前完成（如节点崩溃）时由补偿任务接手
+                .nextAttemptAt(now.plus(properties.getRetryDelay()))
+                .build());
+
+        String schemaName = SchemaContext.getCurrentTenant();
+        Long outboxId = outbox.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(schemaName, outboxId);
+                }
+            });
+        } else {
+            enqueue(schemaName, outboxId);
+        }
+    }
+
+    /**
+     * 补偿任务：认领各租户中到期未删除的记录并重新分发
+     */
+    @Scheduled(fixedDelayString = "${group.message-outbox.recovery-interval:PT10S}",
+            initialDelayString = "${group.message-outbox.recovery-interval:PT10S}")
+    public void recover() {
+        List<String> schemaNames = SchemaSwitcher.executeInPublicSchema(companyRepository::findActiveSchemaNames);
+        for (String schemaName : schemaNames) {
+            try {
+                List<Long> claimed = SchemaSwitcher.executeInSchema(schemaName, this::claimDue);
+                if (claimed.isEmpty()) {
+                    continue;
+                }
+                log.info("Recovering {} undispatched messages in schema {}", claimed.size(), schemaName);
+                for (Long outboxId : claimed) {
+                    enqueue(schemaName, outboxId);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to recover message outbox in schema {}", schemaName, e);
+            }
+        }
+    }
+
+    /**
+     * 分发一条记录，需已设置 {@link SchemaContext}；失败（包括推送路由失败）时抛出异常，记录保留，到期后重试
+     */
+    void dispatch(Long outboxId) {
+        MessageOutbox outbox = messageOutboxRepository.findById(outboxId).orElse(null);
+        if (outbox == null) {
+            // 已由其他线程或节点分发完成
+            return;
+        }
+        if (outbox.getAttempts() > properties.getMaxAttempts()) {
+            log.error("Dropping message {} from outbox after {} attempts", outbox.getMessageId(), outbox.getAttempts());
+            messageOutboxRepository.deleteById(outboxId);
+            return;
+        }
+        var readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Message message = readOnly.execute(status -> messageRepository.findWithSenderById(outbox.getMessageId()).orElse(null));
+        if (message == null) {
+            messageOutboxRepository.deleteById(outboxId);
+            return;
+        }
+        BaseMessage.BaseMessagePkg pushPkg;
+        try {
+            pushPkg = BaseMessage.BaseMessagePkg.parseFrom(outbox.getPayload());
+        } catch (InvalidProtocolBufferException e) {
+            log.error("Dropping message {} from outbox: unreadable payload", outbox.getMessageId(), e);
+            messageOutboxRepository.deleteById(outboxId);
+            return;
+        }
+
+        MembershipSnapshot members = membershipCache.get(outbox.getConversationId());
+        if (!members.isEmpty()) {
+            messageFanout.routeNow(outbox.getSenderId(), members.memberIdList(), pushPkg);
+        }
+        unreadCountService.onMessageCreated(outbox.getConversationId(), outbox.getSenderId(), members.memberIds());
+        clientEventPublisher.publishChatMessageCreated(message, message.getFromAccountId(), members.memberIds());
+
+        // 事件监听在提交后执行，删除记录与发布事件放在同一事务中
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            messageOutboxRepository.deleteOutboxById(outboxId);
+            applicationEventPublisher.publishEvent(new MessageCreatedEvent(
+                    message.getMsgId(), outbox.getConversationId(), outbox.getSenderId(),
+                    message.getFromAccountId().getUsername(), message.getContent()));
+        });
+    }
+
+    private List<Long> claimDue() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = messageOutboxRepository.lockDueIds(now, Math.max(1, properties.getRecoveryBatchSize()));
+            if (!ids.isEmpty()) {
+                messageOutboxRepository.claim(ids, now.plus(properties.getRetryDelay()));
+            }
+            return ids;
+        });
+    }
+
+    /**
+     * 线程池已满时不阻塞调用方，记录留在表中由补偿任务分发
+     */
+    private void enqueue(String schemaName, Long outboxId) {
+        try {
+            executor.execute(() -> {
+                try {
+                    SchemaSwitcher.executeInSchema(schemaName, () -> dispatch(outboxId));
+                } catch (Exception e) {
+                    log.warn("Failed to dispatch message outbox {} in schema {}, will retry", outboxId, schemaName, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Message outbox is saturated, outbox {} in schema {} is left to the recovery sweep", outboxId, schemaName);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.github.im.common.connect.model.proto.Chat;
 import com.github.im.dto.message.*;
 import com.github.im.enums.MessageStatus;
 import com.github.im.enums.MessageType;
+import com.github.im.server.exception.BusinessException;
 import com.github.im.server.mapstruct.MessageMapper;
 import com.github.im.server.model.Conversation;
 import com.github.im.server.model.Message;
@@ -17,8 +18,6 @@ import com.github.im.common.connect.connection.ReactiveConnectionManager;
 import com.github.im.common.connect.connection.server.BindAttr;
 import com.github.im.common.connect.model.proto.BaseMessage;
 import com.github.im.dto.user.UserInfo;
-import com.github.im.server.service.RedisMessageRouter;
-import com.github.im.server.service.notification.ClientEventPublisher;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.Predicate;
@@ -26,20 +25,28 @@ import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.FileNotFoundException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -57,16 +64,21 @@ public class MessageService {
 
     private final ConversationSequenceService conversationSequenceService;
 
-    private final ConversationService conversationService;
-    
-    private final RedisMessageRouter redisMessageRouter;
+    private final MessageFanout messageFanout;
     private final ObjectMapper objectMapper;
-    private final ClientEventPublisher clientEventPublisher;
-    private final ApplicationEventPublisher applicationEventPublisher;
+    private final MessageOutboxService messageOutboxService;
+    private final MessageWriteBatcher messageWriteBatcher;
+    private final PlatformTransactionManager transactionManager;
+    private final UnreadCountService unreadCountService;
+    private final MembershipCache membershipCache;
+    private final ClientMsgIdCache clientMsgIdCache;
 
     @PersistenceContext
     private EntityManager entityManager;
 
+    private static final int DEFAULT_PULL_LIMIT = 50;
+    private static final int MAX_PULL_LIMIT = 200;
+
     @Transactional(readOnly = true)
     public MessageDTO<MessagePayLoad> getMessageById(Long msgId) {
         return messageRepository.findById(msgId)
@@ -87,7 +99,7 @@ public class MessageService {
                 request.getSize(),
                 Sort.by(Optional.ofNullable(request.getSort())
                         .orElse("createTime")).descending());
-        return messageRepository.findAll((root, query, cb) -> {
+        Page<Message> page = messageRepository.findAll((root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
             predicates.add(cb.equal(root.get("conversation").get("conversationId"), conversationId));
             if (startTime != null) {
@@ -110,14 +122,93 @@ public class MessageService {
                 predicates.add(cb.lessThan(root.get("sequenceId"), toSequenceId));
             }
             return cb.and(predicates.toArray(new Predicate[0]));
-        }, pageable)
-                .map(this::convertMessage);
+        }, pageable);
+        return convertMessages(page);
+    }
+
+    /**
+     * 游标（keyset）拉取历史消息，不做 offset 翻页、不统计总数，命中 (conversation_id, sequence_id) 索引
+     * 请求方必须是会话成员
+     */
+    @Transactional(readOnly = true)
+    public MessageCursorPullResponse pullMessagesByCursor(MessageCursorPullRequest request, Long userId) {
+        boolean forward = request.getDirection() == MessageCursorPullRequest.Direction.FORWARD;
+        CursorPage page = pullPage(request.getConversationId(), userId, request.getCursor(), forward, request.getLimit());
+        return new MessageCursorPullResponse(
+                convertMessages(page.messages()),
+                page.nextCursor(),
+                page.hasMore());
+    }
+
+    /**
+     * 长连接上的游标拉取，消息直接转换为 protobuf，请求方必须是会话成员
+     */
+    @Transactional(readOnly = true)
+    public Chat.HistoryPullResponse pullMessagesByCursor(Chat.HistoryPullRequest request, Long userId) {
+        boolean forward = request.getDirection() == Chat.PullDirection.FORWARD;
+        CursorPage page = pullPage(request.getConversationId(), userId, request.getCursor(), forward, request.getLimit());
+        var response = Chat.HistoryPullResponse.newBuilder()
+                .setConversationId(request.getConversationId())
+                .setNextCursor(page.nextCursor())
+                .setHasMore(page.hasMore())
+                .setRequestId(request.getRequestId());
+        for (Message message : page.messages()) {
+            response.addMessages(toChatMessage(message));
+        }
+        return response.build();
+    }
+
+    private CursorPage pullPage(Long conversationId, Long userId, Long cursor, boolean forward, int limit) {
+        if (conversationId == null) {
+            throw new IllegalArgumentException("conversationId is required");
+        }
+        if (userId == null || !membershipCache.get(conversationId).contains(userId)) {
+            throw new BusinessException(HttpStatus.FORBIDDEN, "NOT_CONVERSATION_MEMBER", "You are not a member of this conversation");
+        }
+        int size = limit <= 0 ? DEFAULT_PULL_LIMIT : Math.min(limit, MAX_PULL_LIMIT);
+        // 多取一条判断是否还有下一页
+        Pageable pageable = PageRequest.of(0, size + 1);
+        long start = cursor == null ? 0L : cursor;
+        List<Message> messages = forward
+                ? messageRepository.findAfterSequence(conversationId, start, pageable)
+                : messageRepository.findBeforeSequence(conversationId, start > 0 ? start : Long.MAX_VALUE, pageable);
+
+        boolean hasMore = messages.size() > size;
+        if (hasMore) {
+            messages = messages.subList(0, size);
+        }
+        long nextCursor = messages.isEmpty() ? start : messages.get(messages.size() - 1).getSequenceId();
+        return new CursorPage(messages, nextCursor, hasMore);
+    }
+
+    private Chat.ChatMessage toChatMessage(Message message) {
+        var builder = Chat.ChatMessage.newBuilder()
+                .setMsgId(message.getMsgId())
+                .setConversationId(message.getConversation().getConversationId())
+                .setSequenceId(message.getSequenceId())
+                .setFromUser(com.github.im.common.connect.model.proto.User.UserInfo.newBuilder()
+                        .setUserId(message.getFromAccountId().getUserId())
+                        .setUsername(Optional.ofNullable(message.getFromAccountId().getUsername()).orElse(""))
+                        .build());
+        Optional.ofNullable(message.getType())
+                .ifPresent(type -> builder.setType(EnumsTransUtil.convertMessageType(type)));
+        Optional.ofNullable(message.getStatus())
+                .ifPresent(status -> builder.setMessagesStatus(EnumsTransUtil.convertMessageStatus(status)));
+        Optional.ofNullable(message.getContent()).ifPresent(builder::setContent);
+        Optional.ofNullable(message.getClientMsgId()).ifPresent(builder::setClientMsgId);
+        Optional.ofNullable(message.getTimestamp())
+                .ifPresent(time -> builder.setServerTimeStamp(time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        Optional.ofNullable(message.getClientTimestamp())
+                .ifPresent(time -> builder.setClientTimeStamp(time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        return builder.build();
+    }
+
+    private record CursorPage(List<Message> messages, long nextCursor, boolean hasMore) {
     }
 
     // 搜索消息
     public Page<MessageDTO<MessagePayLoad>> searchMessages(MessageSearchRequest request, Pageable pageable) {
-        return messageRepository.searchMessages(request.getKeyword(), request.getSessionId(), pageable)
-                .map(this::convertMessage);
+        return convertMessages(messageRepository.searchMessages(request.getKeyword(), request.getSessionId(), pageable));
     }
 
     // 标记消息为已读
@@ -168,46 +259,49 @@ public class MessageService {
         });
     }
 
+    /**
+     * 推进成员在会话中的已读位置
+     * <p>
+     * 成员维度只更新一行 {@code lastReadSequenceId}（只增不减），客户端据此比较已读；
+     * 私聊额外用一条批量 UPDATE 把对方的消息置为已读，用于单对单的“对方已读”展示。
+     * 重复或过期的回执只产生一次成员 UPDATE。
+     */
     @Transactional
     public void markConversationAsRead(Long conversationId, Long userId, Long sequenceId) {
         if (conversationId == null || userId == null || sequenceId == null) return;
 
         // 1) 成员维度推进已读进度（群聊必须这样做）
-        groupMemberRepository.findByConversationIdAndUserId(conversationId, userId).ifPresent(member -> {
-            Long current = member.getLastReadSequenceId() == null ? 0L : member.getLastReadSequenceId();
-            if (sequenceId > current) {
-                member.setLastReadSequenceId(sequenceId);
-                groupMemberRepository.save(member);
-            }
-        });
+        int advanced = groupMemberRepository.advanceLastReadSequence(conversationId, userId, sequenceId);
+        if (advanced == 0) {
+            // 重复或过期的已读回执：已读位置没有前移，之前推进时已更新过消息状态
+            return;
+        }
+        unreadCountService.onReadAdvanced(conversationId, userId);
 
         // 2) 私聊：额外更新 Message.status 以支持“对方已读”的单对单展示
         var conversation = entityManager.getReference(Conversation.class, conversationId);
         if (conversation.getConversationType() == ConversationType.PRIVATE_CHAT) {
-            messageRepository.findAll((root, query, cb) -> {
-                List<Predicate> predicates = new ArrayList<>();
-                predicates.add(cb.equal(root.get("conversation").get("conversationId"), conversationId));
-                predicates.add(cb.notEqual(root.get("fromAccountId").get("userId"), userId));
-                predicates.add(cb.lessThanOrEqualTo(root.get("sequenceId"), sequenceId));
-                predicates.add(cb.notEqual(root.get("status"), MessageStatus.READ));
-                return cb.and(predicates.toArray(new Predicate[0]));
-            }).forEach(msg -> {
-                msg.setStatus(MessageStatus.READ);
-                messageRepository.save(msg);
-            });
+            int updated = messageRepository.updateStatusUpToSequence(conversationId, userId, sequenceId, MessageStatus.READ);
+            log.debug("Marked {} messages read in conversation {} for user {}", updated, conversationId, userId);
         }
     }
 
     @Transactional
     public Message saveMessage(Chat.ChatMessage chatMessage) {
+        return saveMessage(chatMessage, conversationSequenceService.nextSequence(chatMessage.getConversationId()));
+    }
+
+    /**
+     * 用已分配的会话序列保存消息。组提交失败后写操作会逐条重放，序列在写操作之外分配，重放时沿用，不产生空洞
+     */
+    Message saveMessage(Chat.ChatMessage chatMessage, long sequenceId) {
         var message = new Message();
         var proxy = entityManager.getReference(Conversation.class, chatMessage.getConversationId());
         message.setConversation(proxy);
         message.setContent(chatMessage.getContent());
         message.setClientMsgId(chatMessage.getClientMsgId());
         var userProxy = entityManager.getReference(User.class, chatMessage.getFromUser().getUserId());
-        // 生成 会话中的消息序列
-        message.setSequenceId(conversationSequenceService.nextSequence(chatMessage.getConversationId()));
+        message.setSequenceId(sequenceId);
 
         message.setFromAccountId(userProxy);
         message.setType(EnumsTransUtil.convertMessageType(chatMessage.getType()));
@@ -224,13 +318,36 @@ public class MessageService {
         message.setClientTimestamp(
                 LocalDateTime.ofInstant(Instant.ofEpochMilli(clientTimeStamp), ZoneId.systemDefault()));
         message.setTimestamp(LocalDateTime.now());
-        return messageRepository.save(message);
+        Message saved = messageRepository.save(message);
+        // 推送、未读计数、通知等副作用写入发件箱，随消息一起提交，提交后异步分发
+        messageOutboxService.record(saved, buildPushPkg(chatMessage, saved));
+        clientMsgIdCache.remember(saved);
+        return saved;
+    }
+
+    /**
+     * 构造推送到各个客户端的 BaseMessagePkg：带上服务端分配的序列、消息ID和时间
+     */
+    private BaseMessage.BaseMessagePkg buildPushPkg(Chat.ChatMessage chatMessage, Message savedMessage) {
+        long epochMilli = savedMessage.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        final var newChatMessage = Chat.ChatMessage.newBuilder(chatMessage)
+                .setSequenceId(savedMessage.getSequenceId())
+                .setServerTimeStamp(epochMilli)
+                .setMsgId(savedMessage.getMsgId())
+                .setMessagesStatus(EnumsTransUtil.convertMessageStatus(savedMessage.getStatus()))
+                .build();
+
+        return BaseMessage.BaseMessagePkg.newBuilder()
+                .setMessage(newChatMessage)
+                .build();
     }
 
     /**
      * 处理 HTTP 发送的消息
+     * <p>
+     * 不开启外层事务：保存由 {@link #handleMessage} 在自己的事务中完成，clientMsgId 重发被唯一索引拦下时
+     * 只回滚那一次保存，随后在新事务中查回原消息返回，而不是让整个请求因事务已中止而失败。
      */
-    @Transactional
     public MessageDTO<MessagePayLoad> sendMessage(MessagePostRequest request, User sender) {
         // 将 HTTP 请求转为 Protobuf 对象，保持内部逻辑一致
         Chat.ChatMessage chatMessage = Chat.ChatMessage.newBuilder()
@@ -252,48 +369,85 @@ public class MessageService {
 
     /**
      * 统一处理消息：保存并推送
+     * <p>
+     * 开启组提交且调用方不在事务中时（TCP / WebSocket / HTTP 收到的消息），保存交给 {@link MessageWriteBatcher}，
+     * 与其他连接的消息合并为一次批量插入和提交；否则在当前事务内保存。推送等副作用由 {@link MessageOutboxService} 在提交后分发。
+     * <p>
+     * 客户端重发（同一会话、同一发送者、同一 clientMsgId）不再保存和扇出，只把原消息回给发送者自己，
+     * 客户端据此拿到原来的 msgId 和 sequenceId。调用方已在事务中时，唯一索引冲突会中止调用方的事务，只能原样抛出。
      */
-    @Transactional
     public MessageDTO<MessagePayLoad> handleMessage(@NotNull  Chat.ChatMessage chatMessage) {
-        final var conversationId = chatMessage.getConversationId();
         final var fromUser = chatMessage.getFromUser();
         boolean fromUserIdEqualZero = fromUser.getUserId() == 0L;
         if (fromUserIdEqualZero) {
             throw new IllegalArgumentException("fromUserId cannot be zero");
         }
 
-        // 1. 保存到数据库
-        Message savedMessage = saveMessage(chatMessage);
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        Long duplicateOf = clientMsgIdCache.find(chatMessage.getConversationId(), chatMessage.getClientMsgId(), fromUser.getUserId());
+        if (duplicateOf != null) {
+            MessageDTO<MessagePayLoad> original = transactionTemplate.execute(status -> messageRepository.findById(duplicateOf)
+                    .map(message -> acknowledgeDuplicate(chatMessage, message))
+                    .orElse(null));
+            if (original != null) {
+                return original;
+            }
+        }
 
-        // 2. 构造推送到各个客户端的 BaseMessagePkg
-        long epochMilli = savedMessage.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        final var newChatMessage = Chat.ChatMessage.newBuilder(chatMessage)
-                .setSequenceId(savedMessage.getSequenceId())
-                .setServerTimeStamp(epochMilli)
-                .setMsgId(savedMessage.getMsgId())
-                .setMessagesStatus(EnumsTransUtil.convertMessageStatus(savedMessage.getStatus()))
-                .build();
+        try {
+            if (messageWriteBatcher.isEnabled() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+                // 生成会话中的消息序列，组提交重放写操作时沿用
+                long sequenceId = conversationSequenceService.nextSequence(chatMessage.getConversationId());
+                // 组提交保存到数据库（已提交）
+                Message committed = messageWriteBatcher.submitAndWait(() -> saveMessage(chatMessage, sequenceId));
+                return transactionTemplate.execute(status -> convertMessage(reattach(committed, chatMessage)));
+            }
 
-        final var newBaseMessage = BaseMessage.BaseMessagePkg.newBuilder()
-                .setMessage(newChatMessage)
-                .build();
+            // 保存到数据库
+            return transactionTemplate.execute(status -> convertMessage(saveMessage(chatMessage)));
+        } catch (DataIntegrityViolationException e) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                // 调用方的事务已被数据库中止，无法在其中查回原消息
+                throw e;
+            }
+            // 唯一索引拦下的重发：其他节点处理过、缓存已过期或与原消息并发
+            MessageDTO<MessagePayLoad> original = transactionTemplate.execute(status -> messageRepository
+                    .findByConversation_ConversationIdAndFromAccountId_UserIdAndClientMsgId(
+                            chatMessage.getConversationId(), fromUser.getUserId(), chatMessage.getClientMsgId())
+                    .map(message -> acknowledgeDuplicate(chatMessage, message))
+                    .orElse(null));
+            if (original == null) {
+                throw e;
+            }
+            return original;
+        }
+    }
 
-        // 3. 异步推送到在线客户端
-        List<User> members = conversationService.getMembersByGroupId0(conversationId);
-        pushToMembers(members, chatMessage.getFromUser().getUserId(), newBaseMessage);
-        clientEventPublisher.publishChatMessageCreated(savedMessage, savedMessage.getFromAccountId(), members);
-        applicationEventPublisher.publishEvent(new com.github.im.server.event.MessageCreatedEvent(
-                savedMessage.getMsgId(), conversationId, savedMessage.getFromAccountId().getUserId(),
-                savedMessage.getFromAccountId().getUsername(), savedMessage.getContent()));
+    /**
+     * 重发的消息：只推给发送者自己的各个设备，带上原消息的 msgId、sequenceId 和服务端时间
+     */
+    private MessageDTO<MessagePayLoad> acknowledgeDuplicate(Chat.ChatMessage chatMessage, Message original) {
+        Long fromUserId = chatMessage.getFromUser().getUserId();
+        log.debug("Duplicate send of clientMsgId {} in conversation {}, acknowledging message {}",
+                chatMessage.getClientMsgId(), chatMessage.getConversationId(), original.getMsgId());
+        messageFanout.submit(fromUserId, List.of(fromUserId), buildPushPkg(chatMessage, original));
+        return convertMessage(original);
+    }
 
-        return convertMessage(savedMessage);
+    /**
+     * 组提交返回的消息已脱离持久化上下文，把关联重新挂到当前事务的代理上，转换时按需懒加载
+     */
+    private Message reattach(Message committed, Chat.ChatMessage chatMessage) {
+        committed.setConversation(entityManager.getReference(Conversation.class, chatMessage.getConversationId()));
+        committed.setFromAccountId(entityManager.getReference(User.class, chatMessage.getFromUser().getUserId()));
+        return committed;
     }
 
     /**
      * 推送消息给会话中的所有成员
      */
     public void pushToMembers(Long conversationId, Long fromUserId, BaseMessage.BaseMessagePkg pushPkg) {
-        pushToMembers(conversationService.getMembersByGroupId0(conversationId), fromUserId, pushPkg);
+        pushToMembers(membershipCache.get(conversationId), fromUserId, pushPkg);
     }
 
 
@@ -303,26 +457,110 @@ public class MessageService {
             return;
         }
 
-        members.parallelStream().forEach(member -> {
-            try {
-                redisMessageRouter.send(fromUserId, member.getUserId(), pushPkg);
-            } catch (Exception e) {
-                log.error("Failed to route message to {}: {}", member.getUserId(), e.getMessage());
-            }
-        });
+        routeToMembers(fromUserId, members.stream().map(UserInfo::getUserId).toList(), pushPkg);
     }
-    private void pushToMembers(List<User> members, Long fromUserId, BaseMessage.BaseMessagePkg pushPkg) {
-        if (members == null) {
+    private void pushToMembers(MembershipSnapshot members, Long fromUserId, BaseMessage.BaseMessagePkg pushPkg) {
+        if (members == null || members.isEmpty()) {
             return;
         }
 
-        members.parallelStream().forEach(member -> {
-            try {
-                redisMessageRouter.send(fromUserId, member.getUserId(), pushPkg);
-            } catch (Exception e) {
-                log.error("Failed to route message to {}: {}", member.getUserId(), e.getMessage());
+        routeToMembers(fromUserId, members.memberIdList(), pushPkg);
+    }
+
+    /**
+     * 交给扇出阶段按目标节点批量路由，发送方不等待投递完成
+     */
+    private void routeToMembers(Long fromUserId, List<Long> memberIds, BaseMessage.BaseMessagePkg pushPkg) {
+        messageFanout.submit(fromUserId, memberIds, pushPkg);
+    }
+
+    private MessageDTO<MessagePayLoad> convertMessage(Message message) {
+        return convertMessage(message, resolveAttachments(List.of(message)));
+    }
+
+    /**
+     * 批量转换：整页消息的附件元信息一次解析，避免逐条查询
+     */
+    private List<MessageDTO<MessagePayLoad>> convertMessages(List<Message> messages) {
+        Map<UUID, FileMeta> attachments = resolveAttachments(messages);
+        List<MessageDTO<MessagePayLoad>> result = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            result.add(convertMessage(message, attachments));
+        }
+        return result;
+    }
+
+    private Page<MessageDTO<MessagePayLoad>> convertMessages(Page<Message> page) {
+        Map<UUID, FileMeta> attachments = resolveAttachments(page.getContent());
+        return page.map(message -> convertMessage(message, attachments));
+    }
+
+    /**
+     * 收集消息中引用的文件ID（附件消息的内容，以及形如 UUID 的旧版 TEXT 内容），批量获取元信息
+     */
+    private Map<UUID, FileMeta> resolveAttachments(List<Message> messages) {
+        Set<UUID> fileIds = new HashSet<>();
+        for (Message message : messages) {
+            UUID fileId = attachmentId(message);
+            if (fileId != null) {
+                fileIds.add(fileId);
             }
-        });
+        }
+        if (fileIds.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return fileStorageService.getFileMetas(fileIds);
+        } catch (Exception e) {
+            log.error("error resolving attachments ", e);
+            return Map.of();
+        }
+    }
+
+    private static UUID attachmentId(Message message) {
+        if (message.getType() == null) {
+            return null;
+        }
+        switch (message.getType()) {
+            case TEXT:
+                return looksLikeUuid(message.getContent()) ? parseUuid(message.getContent()) : null;
+            case VOICE:
+            case IMAGE:
+            case VIDEO:
+            case MEDIA:
+            case FILE:
+                return parseUuid(message.getContent());
+            default:
+                return null;
+        }
+    }
+
+    private static UUID parseUuid(String content) {
+        try {
+            return content == null ? null : UUID.fromString(content);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 只有 36 位、连字符位置符合规范 UUID 文本的内容才可能是旧版客户端写入的文件ID，其余 TEXT 不做解析也不查询
+     */
+    static boolean looksLikeUuid(String content) {
+        if (content == null || content.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = content.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -334,10 +572,11 @@ public class MessageService {
      * 出现一场无法解析 获取文件/ 音频内容资源时候，直接返回原始Content
      * 
      * @param message
+     * @param attachments 已批量解析的附件元信息，见 {@link #resolveAttachments}
      * @return 返回给到前台战士 的 MessageDto
      */
     @SneakyThrows
-    private MessageDTO<MessagePayLoad> convertMessage(Message message) {
+    private MessageDTO<MessagePayLoad> convertMessage(Message message, Map<UUID, FileMeta> attachments) {
 
         var type = message.getType();
 
@@ -347,8 +586,10 @@ public class MessageService {
                 case TEXT:
                     // Compatibility for messages created by older desktop builds.  Those builds
                     // could persist a file UUID as TEXT, so the UI had no way to enter its
-                    // attachment renderer and displayed the UUID verbatim.
-                    FileMeta legacyAttachment = resolveLegacyAttachment(message.getContent());
+                    // attachment renderer and displayed the UUID verbatim.  A UUID alone is not
+                    // normally an attachment: treat it as one only when it resolves to a stored file.
+                    UUID legacyFileId = attachmentId(message);
+                    FileMeta legacyAttachment = legacyFileId == null ? null : attachments.get(legacyFileId);
                     if (legacyAttachment != null) {
                         dto.setType(resolveAttachmentMessageType(legacyAttachment));
                         dto.setPayload(legacyAttachment);
@@ -365,7 +606,10 @@ public class MessageService {
                 case MEDIA:
                 case FILE:
                     final UUID fileID = UUID.fromString(message.getContent());
-                    FileMeta fileMeta = fileStorageService.getFileMeta(fileID);
+                    FileMeta fileMeta = attachments.get(fileID);
+                    if (fileMeta == null) {
+                        throw new FileNotFoundException("File not found : " + fileID);
+                    }
                     dto.setPayload(fileMeta);
                     return dto;
                 default:
@@ -379,18 +623,6 @@ public class MessageService {
 
     }
 
-    /**
-     * A UUID alone is not normally an attachment.  Treat it as one only when it
-     * resolves to a stored file, keeping ordinary UUID text messages unchanged.
-     */
-    private FileMeta resolveLegacyAttachment(String content) {
-        try {
-            return fileStorageService.getFileMeta(UUID.fromString(content));
-        } catch (Exception ignored) {
-            return null;
-        }
-    }
-
     private MessageType resolveAttachmentMessageType(FileMeta fileMeta) {
         String contentType = fileMeta.getContentType() == null ? "" : fileMeta.getContentType().toLowerCase();
         if (contentType.startsWith("image/")) return MessageType.IMAGE;
@@ -0,0 +1,206 @@
+package com.github.im.server.service;
+
+import com.github.im.server.config.MessageWriteProperties;
+import com.github.im.server.config.mult.SchemaContext;
+import com.github.im.server.util.SchemaSwitcher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 消息组提交
+ * <p>
+ * 发送线程把写操作放入队列后等待结果；单个写线程收集最多 {@code maxBatchSize} 条或等待 {@code maxDelay}，
+ * 按提交时的租户 schema 分组，每组在一个事务内依次执行写操作并一次提交。
+ * 配合 SEQUENCE 主键与 JDBC batch，一组消息只需一次批量插入和一次 commit。
+ * <p>
+ * 一组写入失败时逐条在独立事务中重试，只有自身失败的消息收到异常。
+ * 因此写操作可能执行多次，不能回退的资源（如会话序列）应在提交前分配好，由写操作沿用。
+ */
+@Component
+@Slf4j
+public class MessageWriteBatcher {
+
+    private final MessageWriteProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingWrite<?>> queue;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public MessageWriteBatcher(MessageWriteProperties properties, PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isGroupCommitEnabled()) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::runWriteLoop, "message-group-commit");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Message group commit started with maxBatchSize={}, maxDelay={}",
+                properties.getMaxBatchSize(), properties.getMaxDelay());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写线程退出后仍在队列中的写操作由当前线程提交
+        List<PendingWrite<?>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            commit(remaining);
+        }
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * 提交写操作并等待其所在的组提交完成
+     *
+     * @param write 在组事务内执行的写操作，需使用当前线程的租户 schema；组提交失败时会在独立事务中再执行一次
+     * @return 写操作的返回值（事务已提交）
+     */
+    public <T> T submitAndWait(Supplier<T> write) {
+        try {
+            return submit(write).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> write) {
+        PendingWrite<T> pending = new PendingWrite<>(SchemaContext.getCurrentTenant(), write, new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            // 未开启或队列已满：在发送线程上单独提交，由调用方承担写入耗时
+            commitSingle(pending);
+        }
+        return pending.future();
+    }
+
+    private void runWriteLoop() {
+        int maxBatchSize = Math.max(1, properties.getMaxBatchSize());
+        long maxDelayNanos = properties.getMaxDelay().toNanos();
+        List<PendingWrite<?>> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingWrite<?> first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            commit(batch);
+        }
+    }
+
+    /**
+     * 按 schema 分组提交，组内保持入队顺序
+     */
+    private void commit(List<PendingWrite<?>> batch) {
+        Map<String, List<PendingWrite<?>>> bySchema = new LinkedHashMap<>();
+        for (PendingWrite<?> pending : batch) {
+            bySchema.computeIfAbsent(pending.schema(), key -> new ArrayList<>()).add(pending);
+        }
+
+        for (Map.Entry<String, List<PendingWrite<?>>> entry : bySchema.entrySet()) {
+            List<PendingWrite<?>> writes = entry.getValue();
+            if (writes.size() == 1) {
+                commitSingle(writes.get(0));
+                continue;
+            }
+
+            List<Object> results;
+            try {
+                results = SchemaSwitcher.executeInSchema(entry.getKey(), () -> transactionTemplate.execute(status -> {
+                    List<Object> values = new ArrayList<>(writes.size());
+                    for (PendingWrite<?> pending : writes) {
+                        values.add(pending.write().get());
+                    }
+                    return values;
+                }));
+            } catch (Exception e) {
+                log.warn("Group commit of {} messages in schema {} failed, retrying one by one: {}",
+                        writes.size(), entry.getKey(), e.getMessage());
+                writes.forEach(this::commitSingle);
+                continue;
+            }
+
+            for (int i = 0; i < writes.size(); i++) {
+                writes.get(i).complete(results.get(i));
+            }
+            log.debug("Group committed {} messages in schema {}", writes.size(), entry.getKey());
+        }
+    }
+
+    private <T> void commitSingle(PendingWrite<T> pending) {
+        try {
+            T result = SchemaSwitcher.executeInSchema(pending.schema(),
+                    () -> transactionTemplate.execute(status -> pending.write().get()));
+            pending.future().complete(result);
+        } catch (Exception e) {
+            pending.future().completeExceptionally(e);
+        }
+    }
+
+    private record PendingWrite<T>(String schema, Supplier<T> write, CompletableFuture<T> future) {
+
+        @SuppressWarnings("unchecked")
+        private void complete(Object result) {
+            future.complete((T) result);
+        }
+    }
+}
@@ -2,12 +2,23 @@ package com.github.im.server.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.im.server.config.NodeId;
+import com.github.im.server.config.PresenceCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 用户在线状态管理服务
@@ -20,12 +31,35 @@ public class OnlineService {
 
     private final StringRedisTemplate redis;
     private final ObjectMapper objectMapper;
+    private final PresenceCacheProperties presenceCacheProperties;
+    private final MeterRegistry meterRegistry;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 上下线广播频道，消息体为 {@code userId:changedAtMillis}
+     */
+    public static final String PRESENCE_CHANGED_CHANNEL = "im:presence:changed";
+
+    private PresenceNearCache nearCache;
     
     private static final String REDIS_ONLINE_PREFIX = "im:online:";
     private static final String REDIS_NODE_USERS_PREFIX = "im:node:";
     private static final String REDIS_USERS_SUFFIX = ":users";
     private static final Duration ONLINE_TTL = Duration.ofSeconds(60);
 
+    @PostConstruct
+    public void initNearCache() {
+        if (!presenceCacheProperties.isEnabled()) {
+            return;
+        }
+        nearCache = new PresenceNearCache(presenceCacheProperties, meterRegistry);
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onPresenceChanged(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(PRESENCE_CHANGED_CHANNEL));
+        log.info("Presence near-cache enabled, capacity={}, ttl={}",
+                presenceCacheProperties.getCapacity(), presenceCacheProperties.getTtl());
+    }
+
     /**
      * 用户上线
      * 记录用户当前连接的节点ID，并设置TTL过期时间
@@ -45,7 +79,8 @@ public class OnlineService {
                 REDIS_NODE_USERS_PREFIX + nodeId + REDIS_USERS_SUFFIX,
                 userId.toString()
         );
-        
+
+        publishPresenceChanged(userId);
         log.info("User {} is now online on node {}", userId, nodeId);
     }
 
@@ -71,7 +106,8 @@ public class OnlineService {
                 REDIS_NODE_USERS_PREFIX + NodeId.NODE_ID + REDIS_USERS_SUFFIX,
                 userId.toString()
         );
-        
+
+        publishPresenceChanged(userId);
         log.info("User {} is now offline", userId);
     }
     
@@ -83,6 +119,91 @@ public class OnlineService {
      * @return 节点ID，如果用户不在线则返回null
      */
     public String getUserNodeId(Long userId) {
-        return redis.opsForValue().get(REDIS_ONLINE_PREFIX + userId);
+        if (nearCache != null) {
+            PresenceNearCache.Lookup cached = nearCache.get(userId);
+            if (cached != null) {
+                return cached.nodeId();
+            }
+        }
+
+        String nodeId = redis.opsForValue().get(REDIS_ONLINE_PREFIX + userId);
+        if (nearCache != null) {
+            nearCache.put(userId, nodeId);
+        }
+        return nodeId;
+    }
+
+    /**
+     * 批量查询用户所在节点
+     * 使用一次 MGET 解析所有用户的节点ID，避免群聊扇出时逐个 GET
+     *
+     * @param userIds 用户ID集合
+     * @return 用户ID -> 节点ID，不在线的用户不会出现在结果中
+     */
+    public Map<Long, String> getUserNodeIds(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Long, String> result = new HashMap<>(userIds.size() * 2);
+        List<Long> ids = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            PresenceNearCache.Lookup cached = nearCache != null ? nearCache.get(userId) : null;
+            if (cached == null) {
+                ids.add(userId);
+            } else if (cached.nodeId() != null) {
+                result.put(userId, cached.nodeId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Long userId : ids) {
+            keys.add(REDIS_ONLINE_PREFIX + userId);
+        }
+
+        List<String> nodeIds = redis.opsForValue().multiGet(keys);
+        if (nodeIds == null) {
+            return result;
+        }
+
+        for (int i = 0; i < ids.size() && i < nodeIds.size(); i++) {
+            String nodeId = nodeIds.get(i);
+            if (nearCache != null) {
+                nearCache.put(ids.get(i), nodeId);
+            }
+            if (nodeId != null) {
+                result.put(ids.get(i), nodeId);
+            }
+        }
+        return result;
+    }
+
+    private void publishPresenceChanged(Long userId) {
+        if (nearCache != null) {
+            nearCache.invalidate(userId, 0L);
+        }
+        try {
+            redis.convertAndSend(PRESENCE_CHANGED_CHANNEL, userId + ":" + System.currentTimeMillis());
+        } catch (Exception e) {
+            // 广播失败时其他节点最多在 TTL 内读到陈旧的节点信息
+            log.warn("Failed to publish presence change for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void onPresenceChanged(String body) {
+        if (nearCache == null || body == null) {
+            return;
+        }
+        try {
+            int separator = body.indexOf(':');
+            long userId = Long.parseLong(separator < 0 ? body : body.substring(0, separator));
+            long changedAt = separator < 0 ? 0L : Long.parseLong(body.substring(separator + 1));
+            nearCache.invalidate(userId, changedAt);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed presence change message: {}", body);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+package com.github.im.server.service;
+
+import com.github.im.server.config.PresenceCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 用户 -> 节点 的本地近端缓存
+ * <p>
+ * 以 long userId 直接寻址的定长槽位数组（direct-mapped），容量固定、无装箱、无额外索引结构；
+ * 槽位冲突时新条目直接覆盖旧条目。每个条目带有短 TTL，集群内的上下线事件通过
+ * {@link OnlineService#PRESENCE_CHANGED_CHANNEL} 广播后调用 {@link #invalidate(long, long)} 失效。
+ * 离线结果同样会被缓存，避免对离线成员反复查询 Redis。
+ */
+public class PresenceNearCache {
+
+    /**
+     * 离线占位，区分“缓存了离线状态”和“未命中”
+     */
+    private static final String OFFLINE = "";
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final long ttlNanos;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+    private final DistributionSummary hitAge;
+    private final Timer invalidationLag;
+
+    public PresenceNearCache(PresenceCacheProperties properties, MeterRegistry meterRegistry) {
+        int capacity = Integer.highestOneBit(Math.max(16, properties.getCapacity() - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.ttlNanos = properties.getTtl().toNanos();
+
+        this.hits = Counter.builder("im.presence.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("im.presence.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.invalidations = Counter.builder("im.presence.cache.invalidations").register(meterRegistry);
+        this.hitAge = DistributionSummary.builder("im.presence.cache.hit.age")
+                .description("Age of presence entries served from the near-cache")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.invalidationLag = Timer.builder("im.presence.cache.invalidation.lag")
+                .description("Delay between a presence change and its invalidation reaching this node")
+                .register(meterRegistry);
+        Gauge.builder("im.presence.cache.hit.ratio", this, PresenceNearCache::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * @return 缓存命中时返回 {@link Lookup}（节点ID可能为 null 表示离线），未命中返回 null
+     */
+    public Lookup get(long userId) {
+        Entry entry = slots.get(index(userId));
+        long now = System.nanoTime();
+        if (entry == null || entry.userId != userId || now - entry.loadedAt > ttlNanos) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        hitAge.record(TimeUnit.NANOSECONDS.toMillis(now - entry.loadedAt));
+        return entry.nodeId.isEmpty() ? Lookup.OFFLINE_LOOKUP : new Lookup(entry.nodeId);
+    }
+
+    public void put(long userId, String nodeId) {
+        slots.set(index(userId), new Entry(userId, nodeId == null ? OFFLINE : nodeId, System.nanoTime()));
+    }
+
+    /**
+     * 失效指定用户的缓存条目
+     *
+     * @param userId      用户ID
+     * @param changedAtMs 状态变更发生时间（发布端时钟），用于统计失效延迟；未知时传 0
+     */
+    public void invalidate(long userId, long changedAtMs) {
+        int index = index(userId);
+        Entry entry = slots.get(index);
+        if (entry != null && entry.userId == userId) {
+            slots.compareAndSet(index, entry, null);
+        }
+        invalidations.increment();
+        if (changedAtMs > 0) {
+            invalidationLag.record(Math.max(0, System.currentTimeMillis() - changedAtMs), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private int index(long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private record Entry(long userId, String nodeId, long loadedAt) {
+    }
+
+    /**
+     * 命中结果，nodeId 为 null 表示已知离线
+     */
+    public record Lookup(String nodeId) {
+        static final Lookup OFFLINE_LOOKUP = new Lookup(null);
+    }
+}
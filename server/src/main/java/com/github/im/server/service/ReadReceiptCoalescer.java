@@ -0,0 +1,104 @@
+package com.github.im.server.service;
+
+import com.github.im.server.config.ReadReceiptProperties;
+import com.github.im.server.util.SchemaSwitcher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 长连接已读回执合并
+ * <p>
+ * 客户端滚动浏览时会连续发送 READ ACK；这里按 (schema, 会话, 用户) 只保留最大的 sequence，
+ * 每个合并窗口由单个线程统一调用 {@link MessageService#markConversationAsRead} 写入一次。
+ * 已读位置只增不减，丢掉中间值不影响结果；节点停止时写出暂存的回执。
+ */
+@Component
+@Slf4j
+public class ReadReceiptCoalescer {
+
+    private final MessageService messageService;
+    private final ReadReceiptProperties properties;
+    private final ConcurrentHashMap<PendingKey, Long> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    public ReadReceiptCoalescer(MessageService messageService, ReadReceiptProperties properties) {
+        this.messageService = messageService;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        long windowMillis = properties.getCoalesceWindow().toMillis();
+        if (windowMillis <= 0) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "read-receipt-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * 记录一次已读回执；未开启合并或暂存已满时在当前线程直接写入
+     */
+    public void markRead(String schemaName, Long conversationId, Long userId, Long sequenceId) {
+        if (conversationId == null || userId == null || sequenceId == null) {
+            return;
+        }
+        PendingKey key = new PendingKey(schemaName, conversationId, userId);
+        if (flusher == null || (pending.size() >= properties.getMaxPending() && !pending.containsKey(key))) {
+            write(key, sequenceId);
+            return;
+        }
+        pending.merge(key, sequenceId, Math::max);
+    }
+
+    /**
+     * 写出当前暂存的全部回执；remove 之后到达的 ACK 进入下一个窗口
+     */
+    void flush() {
+        for (PendingKey key : pending.keySet()) {
+            Long sequenceId = pending.remove(key);
+            if (sequenceId != null) {
+                write(key, sequenceId);
+            }
+        }
+    }
+
+    private void write(PendingKey key, Long sequenceId) {
+        try {
+            SchemaSwitcher.executeInSchema(key.schemaName(), () ->
+                    messageService.markConversationAsRead(key.conversationId(), key.userId(), sequenceId));
+        } catch (Exception e) {
+            log.warn("Failed to mark conversation {} read up to {} for user {}",
+                    key.conversationId(), sequenceId, key.userId(), e);
+        }
+    }
+
+    private record PendingKey(String schemaName, Long conversationId, Long userId) {
+    }
+}
@@ -1,17 +1,27 @@
 package com.github.im.server.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.im.common.connect.connection.EncodedPush;
 import com.github.im.common.connect.model.proto.BaseMessage;
+import com.github.im.server.config.ClusterRouteProperties;
 import com.github.im.server.config.NodeId;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.StringJoiner;
 
 @Service
 @RequiredArgsConstructor
@@ -23,13 +33,18 @@ public class RedisMessageRouter implements MessageRouter {
     public static final String FIELD_BODY = "body";
     public static final String FIELD_TIMESTAMP = "timestamp";
     public static final String FIELD_PAYLOAD_KIND = "payloadKind";
+    /**
+     * 多接收者记录：逗号分隔的用户ID列表，同一节点上的所有接收者共享一份 body
+     */
+    public static final String FIELD_RECIPIENTS = "recipients";
 
     public static final String PAYLOAD_KIND_IM_BINARY = "im-binary";
     public static final String PAYLOAD_KIND_SIGNAL_TEXT = "signal-text";
 
-    private final StringRedisTemplate redis;
+    private final RedisTemplate<String, byte[]> routeRedisTemplate;
     private final OnlineService onlineService;
     private final ClusterLocalDeliveryService clusterLocalDeliveryService;
+    private final ClusterRouteProperties routeProperties;
 
     @Override
     public void send(Long from, Long to, Object payload) throws JsonProcessingException {
@@ -40,6 +55,68 @@ public class RedisMessageRouter implements MessageRouter {
         route(from, to, payload);
     }
 
+    /**
+     * 批量路由：一次 MGET 解析所有接收者所在节点，按节点分组后每个节点只写一条 Stream 记录
+     * <p>
+     * 某个节点写入失败时仍继续写其余节点，最后抛出异常，由调用方决定是否重试（重试会重复推送给已成功的节点）
+     *
+     * @param from       发送者ID
+     * @param recipients 接收者ID集合
+     * @param payload    消息内容
+     * @throws IllegalStateException 至少一个节点的 Stream 写入失败
+     */
+    public void sendBatch(Long from, Collection<Long> recipients, Object payload) {
+        if (recipients == null || recipients.isEmpty()) {
+            return;
+        }
+
+        Map<Long, String> userNodes = onlineService.getUserNodeIds(recipients);
+        Map<String, List<Long>> recipientsByNode = new LinkedHashMap<>();
+        for (Long to : recipients) {
+            String targetNodeId = userNodes.get(to);
+            if (targetNodeId == null) {
+                log.debug("User {} is offline, message from {} cached for offline access", to, from);
+                continue;
+            }
+            recipientsByNode.computeIfAbsent(targetNodeId, key -> new ArrayList<>()).add(to);
+        }
+
+        if (recipientsByNode.isEmpty()) {
+            return;
+        }
+
+        byte[] body = null;
+        Exception failure = null;
+        for (Map.Entry<String, List<Long>> entry : recipientsByNode.entrySet()) {
+            String targetNodeId = entry.getKey();
+            List<Long> nodeRecipients = entry.getValue();
+
+            if (NodeId.NODE_ID.equals(targetNodeId)) {
+                deliverLocalBatch(nodeRecipients, payload);
+                continue;
+            }
+
+            if (body == null) {
+                body = serializePayload(payload);
+            }
+
+            try {
+                appendToStream(targetNodeId, buildRecord(from, nodeRecipients, payload, body));
+                log.debug("Message from {} routed to node {} for {} users", from, targetNodeId, nodeRecipients.size());
+            } catch (Exception e) {
+                log.error("Critical error routing message to node {}: {}", targetNodeId, e.getMessage(), e);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Failed to route cluster message", failure);
+        }
+    }
+
     private void route(Long from, Long to, Object payload) {
         String targetNodeId = onlineService.getUserNodeId(to);
         if (targetNodeId == null) {
@@ -53,14 +130,7 @@ public class RedisMessageRouter implements MessageRouter {
         }
 
         try {
-            Map<String, String> msg = new HashMap<>();
-            msg.put(FIELD_FROM, String.valueOf(from));
-            msg.put(FIELD_TO, String.valueOf(to));
-            msg.put(FIELD_BODY, serializePayload(payload));
-            msg.put(FIELD_PAYLOAD_KIND, resolvePayloadKind(payload));
-            msg.put(FIELD_TIMESTAMP, String.valueOf(System.currentTimeMillis()));
-
-            redis.opsForStream().add(STREAM_ROUTE_PREFIX + targetNodeId, msg);
+            appendToStream(targetNodeId, buildRecord(from, List.of(to), payload, serializePayload(payload)));
             log.debug("Message from {} routed to node {} for user {}", from, targetNodeId, to);
         } catch (Exception e) {
             log.error("Critical error routing message to node {}: {}", targetNodeId, e.getMessage(), e);
@@ -68,6 +138,75 @@ public class RedisMessageRouter implements MessageRouter {
         }
     }
 
+    /**
+     * XADD 时附带近似 MAXLEN 裁剪，保证 im:route:* Stream 有界
+     */
+    private void appendToStream(String targetNodeId, Map<String, byte[]> body) {
+        MapRecord<String, String, byte[]> record = StreamRecords.newRecord()
+                .in(STREAM_ROUTE_PREFIX + targetNodeId)
+                .ofMap(body);
+        routeRedisTemplate.opsForStream().add(record,
+                RedisStreamCommands.XAddOptions.maxlen(routeProperties.getStreamMaxLen()).approximateTrimming(true));
+    }
+
+    /**
+     * 构造 Stream 记录：默认写入单字段紧凑二进制记录；关闭 compactRecord 时写入旧版 FIELD_* 字符串记录，
+     * 供尚未升级的节点读取
+     */
+    private Map<String, byte[]> buildRecord(Long from, List<Long> recipients, Object payload, byte[] body) {
+        long timestamp = System.currentTimeMillis();
+
+        if (routeProperties.isCompactRecord()) {
+            long[] recipientIds = new long[recipients.size()];
+            for (int i = 0; i < recipientIds.length; i++) {
+                recipientIds[i] = recipients.get(i);
+            }
+            byte[] record = RouteRecordCodec.encode(resolveRecordKind(payload), from, timestamp, recipientIds, body);
+            return Map.of(RouteRecordCodec.FIELD_RECORD, record);
+        }
+
+        Map<String, byte[]> msg = new HashMap<>();
+        msg.put(FIELD_FROM, utf8(String.valueOf(from)));
+        if (recipients.size() == 1) {
+            msg.put(FIELD_TO, utf8(String.valueOf(recipients.get(0))));
+        } else {
+            msg.put(FIELD_RECIPIENTS, utf8(joinRecipients(recipients)));
+        }
+        msg.put(FIELD_BODY, Base64.getEncoder().encode(body));
+        msg.put(FIELD_PAYLOAD_KIND, utf8(resolvePayloadKind(payload)));
+        msg.put(FIELD_TIMESTAMP, utf8(String.valueOf(timestamp)));
+        return msg;
+    }
+
+    /**
+     * 本节点多个接收者共享同一份编码后的帧，只序列化一次
+     */
+    private void deliverLocalBatch(List<Long> nodeRecipients, Object payload) {
+        if (nodeRecipients.size() > 1 && payload instanceof BaseMessage.BaseMessagePkg messagePkg) {
+            EncodedPush push = EncodedPush.encode(messagePkg);
+            try {
+                for (Long to : nodeRecipients) {
+                    try {
+                        clusterLocalDeliveryService.deliverEncoded(to, push);
+                    } catch (Exception e) {
+                        log.error("Failed to deliver message locally to {}: {}", to, e.getMessage());
+                    }
+                }
+            } finally {
+                push.release();
+            }
+            return;
+        }
+
+        for (Long to : nodeRecipients) {
+            try {
+                deliverLocal(to, payload);
+            } catch (Exception e) {
+                log.error("Failed to deliver message locally to {}: {}", to, e.getMessage());
+            }
+        }
+    }
+
     private void deliverLocal(Long toUserId, Object payload) {
         if (payload instanceof BaseMessage.BaseMessagePkg messagePkg) {
             clusterLocalDeliveryService.deliverBaseMessage(toUserId, messagePkg);
@@ -82,13 +221,37 @@ public class RedisMessageRouter implements MessageRouter {
         throw new IllegalArgumentException("Unsupported payload type: " + payload.getClass().getName());
     }
 
-    private String serializePayload(Object payload) {
+    private String joinRecipients(List<Long> recipients) {
+        StringJoiner joiner = new StringJoiner(",");
+        for (Long recipient : recipients) {
+            joiner.add(String.valueOf(recipient));
+        }
+        return joiner.toString();
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] serializePayload(Object payload) {
         if (payload instanceof BaseMessage.BaseMessagePkg messagePkg) {
-            return Base64.getEncoder().encodeToString(messagePkg.toByteArray());
+            return messagePkg.toByteArray();
         }
 
         if (payload instanceof String textPayload) {
-            return Base64.getEncoder().encodeToString(textPayload.getBytes(StandardCharsets.UTF_8));
+            return textPayload.getBytes(StandardCharsets.UTF_8);
+        }
+
+        throw new IllegalArgumentException("Unsupported payload type: " + payload.getClass().getName());
+    }
+
+    private byte resolveRecordKind(Object payload) {
+        if (payload instanceof BaseMessage.BaseMessagePkg) {
+            return RouteRecordCodec.KIND_IM_BINARY;
+        }
+
+        if (payload instanceof String) {
+            return RouteRecordCodec.KIND_SIGNAL_TEXT;
         }
 
         throw new IllegalArgumentException("Unsupported payload type: " + payload.getClass().getName());
@@ -0,0 +1,93 @@
+package com.github.im.server.service;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 路由 Stream 记录的紧凑二进制编码
+ * <p>
+ * 记录整体作为单个字段 {@link #FIELD_RECORD} 写入 Stream，布局如下：
+ * <pre>
+ * | version(1B) | kind(1B) | from(varint) | timestamp(varint) | count(varint) | recipients(varint * count) | body |
+ * </pre>
+ * body 为原始 protobuf 字节或 UTF-8 文本，占据记录剩余部分，不再做 Base64 编码。
+ */
+public final class RouteRecordCodec {
+
+    public static final String FIELD_RECORD = "r";
+
+    public static final byte VERSION_1 = 1;
+
+    public static final byte KIND_IM_BINARY = 1;
+    public static final byte KIND_SIGNAL_TEXT = 2;
+
+    private RouteRecordCodec() {
+    }
+
+    public static byte[] encode(byte kind, long from, long timestamp, long[] recipients, byte[] body) {
+        int headerSize = 2
+                + CodedOutputStream.computeUInt64SizeNoTag(from)
+                + CodedOutputStream.computeUInt64SizeNoTag(timestamp)
+                + CodedOutputStream.computeUInt32SizeNoTag(recipients.length);
+        for (long recipient : recipients) {
+            headerSize += CodedOutputStream.computeUInt64SizeNoTag(recipient);
+        }
+
+        byte[] record = new byte[headerSize + body.length];
+        try {
+            CodedOutputStream output = CodedOutputStream.newInstance(record);
+            output.writeRawByte(VERSION_1);
+            output.writeRawByte(kind);
+            output.writeUInt64NoTag(from);
+            output.writeUInt64NoTag(timestamp);
+            output.writeUInt32NoTag(recipients.length);
+            for (long recipient : recipients) {
+                output.writeUInt64NoTag(recipient);
+            }
+            output.writeRawBytes(body);
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode route record", e);
+        }
+        return record;
+    }
+
+    public static RouteRecord decode(byte[] record) {
+        if (record == null || record.length < 2) {
+            throw new IllegalArgumentException("Route record is too short");
+        }
+
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(record);
+            byte version = input.readRawByte();
+            if (version != VERSION_1) {
+                throw new IllegalArgumentException("Unsupported route record version: " + version);
+            }
+            byte kind = input.readRawByte();
+            long from = input.readUInt64();
+            long timestamp = input.readUInt64();
+            int count = input.readUInt32();
+            if (count < 0 || count > record.length) {
+                throw new IllegalArgumentException("Invalid route record recipient count: " + count);
+            }
+            long[] recipients = new long[count];
+            for (int i = 0; i < count; i++) {
+                recipients[i] = input.readUInt64();
+            }
+            int bodyOffset = input.getTotalBytesRead();
+            ByteBuffer body = ByteBuffer.wrap(record, bodyOffset, record.length - bodyOffset).slice();
+            return new RouteRecord(kind, from, timestamp, recipients, body.asReadOnlyBuffer());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed route record", e);
+        }
+    }
+
+    /**
+     * 解码后的路由记录，body 直接引用原始记录字节，不做拷贝
+     */
+    public record RouteRecord(byte kind, long from, long timestamp, long[] recipients, ByteBuffer body) {
+    }
+}
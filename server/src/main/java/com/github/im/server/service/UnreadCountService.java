@@ -0,0 +1,231 @@
+package com.github.im.server.service;
+
+import com.github.im.server.config.UnreadCountProperties;
+import com.github.im.server.config.mult.SchemaContext;
+import com.github.im.server.repository.MessageRepository;
+import com.github.im.server.util.SchemaSwitcher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 会话未读数
+ * <p>
+ * 每个 (租户 schema, 用户) 一个 Redis hash：field 为会话ID，value 为未读数，{@link #SEEDED_FIELD} 标记该 hash 已从数据库完整重建。
+ * 新消息提交后给除发送者外的成员各加 1，已读位置推进后按数据库写入该会话的准确值，两者都只写已重建的 hash。
+ * 查询时 hash 不存在（首次使用或已过期）则用一条分组查询重建；定期校正任务按数据库重建所有现存的 hash，消除漂移。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UnreadCountService {
+
+    private static final String REDIS_UNREAD_PREFIX = "im:unread:";
+    static final String SEEDED_FIELD = "_seeded";
+
+    /**
+     * KEYS[1] 用户未读 hash；ARGV[1] 会话ID。只在已重建的 hash 上累加，未重建的由下次查询从数据库重建
+     */
+    private static final String INCREMENT_SCRIPT = """
+            if redis.call('HEXISTS', KEYS[1], '%s') == 1 then
+                return redis.call('HINCRBY', KEYS[1], ARGV[1], 1)
+            end
+            return 0
+            """.formatted(SEEDED_FIELD);
+
+    /**
+     * KEYS[1] 用户未读 hash；ARGV[1] 会话ID，ARGV[2] 未读数。只写已重建的 hash，避免创建没有其他会话计数、也没有过期时间的 hash
+     */
+    private static final String SET_SCRIPT = """
+            if redis.call('HEXISTS', KEYS[1], '%s') == 1 then
+                redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+                return 1
+            end
+            return 0
+            """.formatted(SEEDED_FIELD);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MessageRepository messageRepository;
+    private final UnreadCountProperties properties;
+
+    /**
+     * 新消息已保存：事务提交后给除发送者外的成员各加 1
+     */
+    public void onMessageCreated(Long conversationId, Long senderId, long[] memberIds) {
+        String schemaName = SchemaContext.getCurrentTenant();
+        if (!properties.isEnabled() || schemaName == null || memberIds == null || memberIds.length == 0) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(memberIds.length);
+        for (long memberId : memberIds) {
+            if (senderId == null || memberId != senderId) {
+                keys.add(key(schemaName, memberId));
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        String field = String.valueOf(conversationId);
+        afterCommit(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringRedisConn = (StringRedisConnection) connection;
+            for (String key : keys) {
+                stringRedisConn.eval(INCREMENT_SCRIPT, ReturnType.INTEGER, 1, key, field);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * 已读位置已推进（需在推进所在的事务内调用）：按数据库计算该会话的剩余未读数，提交后写入
+     */
+    public void onReadAdvanced(Long conversationId, Long userId) {
+        String schemaName = SchemaContext.getCurrentTenant();
+        if (!properties.isEnabled() || schemaName == null) {
+            return;
+        }
+        String key = key(schemaName, userId);
+        long unread = messageRepository.countUnreadMessages(conversationId, userId);
+        String field = String.valueOf(conversationId);
+        afterCommit(() -> redisTemplate.execute((RedisCallback<Object>) connection ->
+                ((StringRedisConnection) connection).eval(SET_SCRIPT, ReturnType.INTEGER, 1, key, field, String.valueOf(unread))));
+    }
+
+    /**
+     * 批量查询当前租户下用户在各会话中的未读数
+     *
+     * @return 会话ID -> 未读数，按入参顺序；没有未读的会话为 0
+     */
+    public Map<Long, Long> getUnreadCounts(Long userId, Collection<Long> conversationIds) {
+        Map<Long, Long> result = new LinkedHashMap<>();
+        if (conversationIds == null || conversationIds.isEmpty()) {
+            return result;
+        }
+        String schemaName = SchemaContext.getCurrentTenant();
+        if (!properties.isEnabled() || schemaName == null) {
+            // 未开启或无法确定租户时不使用计数器，逐个会话计数
+            for (Long conversationId : conversationIds) {
+                result.put(conversationId, messageRepository.countUnreadMessages(conversationId, userId));
+            }
+            return result;
+        }
+
+        String key = key(schemaName, userId);
+        List<Object> fields = new ArrayList<>(conversationIds.size() + 1);
+        fields.add(SEEDED_FIELD);
+        for (Long conversationId : conversationIds) {
+            fields.add(String.valueOf(conversationId));
+        }
+        List<Object> values = redisTemplate.opsForHash().multiGet(key, fields);
+
+        if (values.get(0) == null) {
+            Map<Long, Long> counts = rebuild(userId);
+            for (Long conversationId : conversationIds) {
+                result.put(conversationId, counts.getOrDefault(conversationId, 0L));
+            }
+            return result;
+        }
+        int i = 1;
+        for (Long conversationId : conversationIds) {
+            Object value = values.get(i++);
+            result.put(conversationId, value == null ? 0L : Math.max(0L, Long.parseLong(value.toString())));
+        }
+        return result;
+    }
+
+    /**
+     * 按数据库重建当前租户下该用户的全部计数器，需已设置 {@link SchemaContext}
+     *
+     * @return 会话ID -> 未读数（只含大于 0 的会话）
+     */
+    public Map<Long, Long> rebuild(Long userId) {
+        String key = key(SchemaContext.getCurrentTenant(), userId);
+        Map<Long, Long> counts = new HashMap<>();
+        Map<String, String> hash = new HashMap<>();
+        hash.put(SEEDED_FIELD, "1");
+        for (MessageRepository.UnreadCountRes res : messageRepository.countUnreadMessagesByUserId(userId)) {
+            counts.put(res.getConversationId(), res.getUnreadCount());
+            hash.put(String.valueOf(res.getConversationId()), String.valueOf(res.getUnreadCount()));
+        }
+        long ttlSeconds = properties.getTtl().toSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringRedisConn = (StringRedisConnection) connection;
+            stringRedisConn.del(key);
+            stringRedisConn.hMSet(key, hash);
+            stringRedisConn.expire(key, ttlSeconds);
+            return null;
+        });
+        return counts;
+    }
+
+    /**
+     * 定期校正：按数据库重建 Redis 中现存的所有用户计数器
+     */
+    @Scheduled(fixedDelayString = "${group.unread.reconcile-interval:PT1H}",
+            initialDelayString = "${group.unread.reconcile-interval:PT1H}")
+    public void reconcile() {
+        if (!properties.isEnabled() || !properties.isReconcileEnabled()) {
+            return;
+        }
+        int rebuilt = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(REDIS_UNREAD_PREFIX + "*").count(500).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                // im:unread:<schema>:<userId>
+                int separator = key.lastIndexOf(':');
+                String schemaName = key.substring(REDIS_UNREAD_PREFIX.length(), separator);
+                long userId = Long.parseLong(key.substring(separator + 1));
+                try {
+                    SchemaSwitcher.executeInSchema(schemaName, () -> rebuild(userId));
+                    rebuilt++;
+                } catch (Exception e) {
+                    log.warn("Failed to reconcile unread counts of user {} in schema {}", userId, schemaName, e);
+                }
+            }
+        }
+        log.info("Reconciled unread counters of {} users", rebuilt);
+    }
+
+    private static String key(String schemaName, Long userId) {
+        return REDIS_UNREAD_PREFIX + schemaName + ":" + userId;
+    }
+
+    /**
+     * 计数器只反映已提交的数据：在事务中时推迟到提交后执行；Redis 失败只记录日志，由校正任务修复
+     */
+    private static void afterCommit(Runnable action) {
+        Runnable guarded = () -> {
+            try {
+                action.run();
+            } catch (Exception e) {
+                log.warn("Failed to update unread counters", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guarded.run();
+                }
+            });
+        } else {
+            guarded.run();
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.github.im.dto.user.RegistrationRequest;
 import com.github.im.dto.user.UserBasicInfo;
 import com.github.im.dto.user.UserInfo;
 import com.github.im.server.config.ForcePasswordChangeConfig;
+import com.github.im.server.config.security.PrincipalCache;
 import com.github.im.server.config.mult.CurrentTenantIdentifierResolverImpl;
 import com.github.im.server.mapstruct.UserMapper;
 import com.github.im.server.model.User;
@@ -46,6 +47,7 @@ public class UserService {
     private final ForcePasswordChangeConfig forcePasswordChangeConfig;
     private final UserMapper userMapper;
     private final CompanyService companyService;
+    private final PrincipalCache principalCache;
     /**
      * 用户注册逻辑
      */
@@ -294,7 +296,9 @@ public class UserService {
 
         // 更新密码
         user.setPassword(passwordEncoder.encode(newPassword));
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        principalCache.invalidateUser(userId);
+        return saved;
     }
 
 
@@ -1,65 +1,96 @@
 package com.github.im.server.service.impl;
 
+import com.github.im.server.config.SequenceProperties;
 import com.github.im.server.repository.MessageRepository;
 import com.github.im.server.service.ConversationSequenceService;
+import com.github.im.server.util.LongLongLruMap;
 import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 /***
  * 进程缓存实现 会话  序列号自增
  * 单节点状态 没有引入 redis 的时候用这个
+ * <p>
+ * 只缓存最近活跃的会话（{@link LongLongLruMap}，容量见 {@link SequenceProperties.Memory}），
+ * 首次使用时按会话查库加载；启动耗时和常驻内存不随会话总数增长。
  */
 @Service
 @ConditionalOnProperty(name = "group.sequence.mode", havingValue = "memory")
-@RequiredArgsConstructor
+@Slf4j
 public class InMemoryConversationSequenceService implements ConversationSequenceService {
 
-    private final ConcurrentHashMap<Long, AtomicLong> conversationSequences = new ConcurrentHashMap<>();
+    private static final long MISSING = Long.MIN_VALUE;
+
+    /**
+     * conversationId -> 已分配的最大 sequence，访问需持有该对象的锁
+     */
+    private final LongLongLruMap conversationSequences;
 
     private final MessageRepository messageRepository;
 
+    private final SequenceProperties.Memory memoryProperties;
+
+    public InMemoryConversationSequenceService(MessageRepository messageRepository, SequenceProperties sequenceProperties) {
+        this.messageRepository = messageRepository;
+        this.memoryProperties = sequenceProperties.getMemory();
+        this.conversationSequences = new LongLongLruMap(memoryProperties.getCapacity());
+    }
 
     /**
-     * 进程中的 conversationId -> sequence 缓存
-     * 每次重启都要保证 conversation 中的sequence 已经同步至缓存
+     * 默认不做任何事，会话在首次使用时加载；开启 preload 时才全表扫描预热
      */
     @PostConstruct
     public void initializeSequences() {
-        // 1. 查询所有会话的最新 sequence
+        if (!memoryProperties.isPreload()) {
+            return;
+        }
         List<MessageRepository.SequenceRes> conversationMaxSequences = messageRepository.findAllConversationMaxSequences();
-        for (MessageRepository.SequenceRes record: conversationMaxSequences) {
-
-            conversationSequences.put(record.getConversationId(), new AtomicLong(record.getMaxSequenceId()));
+        synchronized (conversationSequences) {
+            for (MessageRepository.SequenceRes record : conversationMaxSequences) {
+                conversationSequences.putIfAbsent(record.getConversationId(), record.getMaxSequenceId());
+            }
         }
+        log.info("Preloaded sequences of {} conversations, {} kept in cache",
+                conversationMaxSequences.size(), conversationSequences.size());
     }
 
-
     @Override
     public long getMaxSequence(Long conversationId) {
-        // 1. 尝试从缓存中获取 sequence
-        var sequence = conversationSequences.get(conversationId);
-        if (sequence != null) {
-            return sequence.get();
+        synchronized (conversationSequences) {
+            long sequence = conversationSequences.get(conversationId, MISSING);
+            if (sequence != MISSING) {
+                return sequence;
+            }
+        }
+        long floor = loadFloor(conversationId);
+        synchronized (conversationSequences) {
+            conversationSequences.putIfAbsent(conversationId, floor);
+            return conversationSequences.get(conversationId, floor);
         }
-        // 2. 如果缓存中没有，则从数据库中获取
-        Long maxSequenceByConversationId = messageRepository.findMaxSequenceByConversationId(conversationId);
-        conversationSequences.put(conversationId, new AtomicLong(maxSequenceByConversationId));
-        return maxSequenceByConversationId;
     }
 
     @Override
     public long nextSequence(Long conversationId) {
-        return conversationSequences
-                .computeIfAbsent(conversationId, id ->{
-                    var nextSequenceId = messageRepository.findMaxSequenceByConversationId(id);
-                    return new AtomicLong(nextSequenceId);
-                })
-                .incrementAndGet();
+        synchronized (conversationSequences) {
+            long sequence = conversationSequences.addAndGet(conversationId, 1, MISSING);
+            if (sequence != MISSING) {
+                return sequence;
+            }
+        }
+        // 查库不持有锁；并发加载同一会话时只有第一个写入生效
+        long floor = loadFloor(conversationId);
+        synchronized (conversationSequences) {
+            conversationSequences.putIfAbsent(conversationId, floor);
+            return conversationSequences.addAndGet(conversationId, 1, MISSING);
+        }
+    }
+
+    private long loadFloor(Long conversationId) {
+        Long max = messageRepository.findMaxSequenceByConversationId(conversationId);
+        return max == null ? 0L : max;
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.github.im.server.service.impl;
 
+import com.github.im.server.config.SequenceProperties;
 import com.github.im.server.repository.MessageRepository;
 import com.github.im.server.service.ConversationSequenceService;
 import jakarta.annotation.PostConstruct;
@@ -9,17 +10,19 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.connection.StringRedisConnection;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.time.Duration;
 
 /**
  * 使用 Redis 处理 自增
- * 保证全局唯一性和严格顺序性
+ * 保证全局唯一性和严格顺序性；开启号段租约后只保证唯一与单节点内递增，见 {@link SequenceProperties.Lease}
  */
 @Service
 @RequiredArgsConstructor
@@ -31,77 +34,124 @@ public class RedisConversationSequenceService implements ConversationSequenceSer
 
     private final MessageRepository messageRepository;
 
+    private final SequenceProperties sequenceProperties;
+
     /**
      * 会话序列号 Redis Key 前缀
      */
     private static final String REDIS_SEQ_KEY_PREFIX = "im:conversation:seq:";
-    private static final String REDIS_SEQ_LOCK_KEY_PREFIX = "lock:im:conversation:seq:";
     private static final String INIT_LOCK_KEY = "lock:initialize_sequences";
 
+    /**
+     * KEYS[1] 序列号 key；ARGV[1] 本次分配的数量；ARGV[2] key 不存在时的起点（数据库中的最大值），为空表示未知。
+     * key 不存在且没有起点时返回 nil，由调用方查库后带起点重试。
+     */
+    private static final DefaultRedisScript<Long> ALLOCATE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                if ARGV[2] == '' then
+                    return nil
+                end
+                redis.call('SET', KEYS[1], ARGV[2])
+            end
+            return redis.call('INCRBY', KEYS[1], ARGV[1])
+            """, Long.class);
+
+    /**
+     * 开启号段租约时，本节点各会话持有的号段
+     */
+    private final ConcurrentHashMap<Long, Lease> leases = new ConcurrentHashMap<>();
+
     @Override
     public long nextSequence(Long conversationId) {
-        String redisKey = REDIS_SEQ_KEY_PREFIX + conversationId;
-        
-        // 首先尝试获取当前值
-        String currentValue = redisTemplate.opsForValue().get(redisKey);
-        
-        if (currentValue == null) {
-            // 使用分布式锁确保只有一个线程会执行初始化逻辑
-            String lockKey = REDIS_SEQ_LOCK_KEY_PREFIX + conversationId;
-            String lockValue = UUID.randomUUID().toString();
-            
-            try {
-                // 尝试获取分布式锁，设置10秒过期时间
-                Boolean lockAcquired = redisTemplate.opsForValue().setIfAbsent(
-                    lockKey, lockValue, Duration.ofSeconds(10));
-                
-                if (Boolean.TRUE.equals(lockAcquired)) {
-                    try {
-                        // 双重检查，确保在获取锁后没有其他线程初始化了该值
-                        currentValue = redisTemplate.opsForValue().get(redisKey);
-                        if (currentValue == null) {
-                            // 从数据库获取当前最大sequence
-                            var maxSequenceByConversationId = messageRepository.findMaxSequenceByConversationId(conversationId);
-                            long initialValue = maxSequenceByConversationId + 1;
-                            
-                            // 设置初始值并返回
-                            redisTemplate.opsForValue().set(redisKey, String.valueOf(initialValue));
-                            return initialValue;
-                        } else {
-                            // 其他线程已经初始化，直接increment并返回
-                            return redisTemplate.opsForValue().increment(redisKey);
-                        }
-                    } finally {
-                        // 释放锁 - 检查锁是否仍由当前线程持有，然后删除
-                        String currentLockValue = redisTemplate.opsForValue().get(lockKey);
-                        if (lockValue.equals(currentLockValue)) {
-                            redisTemplate.delete(lockKey);
-                        }
-                    }
-                } else {
-                    // 获取锁失败，等待一小段时间后重试
-                    try {
-                        Thread.sleep(10);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                    // 递归调用，避免死锁
-                    return nextSequence(conversationId);
-                }
-            } catch (Exception e) {
-                // 发生异常时也需释放锁
-                String currentLockValue = redisTemplate.opsForValue().get(lockKey);
-                if (lockValue.equals(currentLockValue)) {
-                    redisTemplate.delete(lockKey);
+        SequenceProperties.Lease leaseProperties = sequenceProperties.getLease();
+        if (leaseProperties.isEnabled()) {
+            return nextLeased(conversationId, leaseProperties);
+        }
+        return allocate(conversationId, 1);
+    }
+
+    /**
+     * 分配连续 count 个序列号，返回其中最大的一个
+     * <p>
+     * 常规路径只有一次 EVALSHA；key 不存在时从数据库读出当前最大值作为起点再执行一次，
+     * 脚本只在 key 仍不存在时写入起点，并发初始化的节点不会互相覆盖，也无需加锁等待。
+     */
+    private long allocate(Long conversationId, int count) {
+        List<String> keys = List.of(REDIS_SEQ_KEY_PREFIX + conversationId);
+        String increment = String.valueOf(count);
+        Long end = redisTemplate.execute(ALLOCATE_SCRIPT, keys, increment, "");
+        if (end == null) {
+            Long floor = messageRepository.findMaxSequenceByConversationId(conversationId);
+            end = redisTemplate.execute(ALLOCATE_SCRIPT, keys, increment, String.valueOf(floor == null ? 0L : floor));
+        }
+        if (end == null) {
+            throw new IllegalStateException("Failed to allocate sequence for conversation " + conversationId);
+        }
+        return end;
+    }
+
+    private long nextLeased(Long conversationId, SequenceProperties.Lease leaseProperties) {
+        Lease lease = leases.get(conversationId);
+        if (lease == null) {
+            if (leases.size() >= leaseProperties.getMaxConversations()) {
+                evictIdleLeases(leaseProperties.getWindow().toNanos());
+                if (leases.size() >= leaseProperties.getMaxConversations()) {
+                    return allocate(conversationId, 1);
                 }
-                throw e;
             }
-        } else {
-            // key已存在，直接increment并返回
-            return redisTemplate.opsForValue().increment(redisKey);
+            lease = leases.computeIfAbsent(conversationId, id -> new Lease());
+        }
+
+        synchronized (lease) {
+            if (lease.next <= lease.end) {
+                return lease.next++;
+            }
+            long now = System.nanoTime();
+            int blockSize = lease.resize(now, leaseProperties);
+            long end = allocate(conversationId, blockSize);
+            lease.next = end - blockSize + 1;
+            lease.end = end;
+            lease.leasedAt = now;
+            return lease.next++;
+        }
+    }
+
+    /**
+     * 淘汰超过一个窗口未续租的会话，其剩余的号作废
+     */
+    private void evictIdleLeases(long windowNanos) {
+        long now = System.nanoTime();
+        leases.entrySet().removeIf(entry -> now - entry.getValue().leasedAt > windowNanos);
+    }
+
+    /**
+     * 节点本地持有的号段 [next, end]
+     */
+    private static final class Lease {
+
+        private long next = 1;
+        private long end = 0;
+        private int blockSize = 0;
+        private long leasedAt;
+
+        /**
+         * 上一段在窗口内用完则翻倍，否则减半；首次租约只取一个号
+         */
+        int resize(long now, SequenceProperties.Lease properties) {
+            if (blockSize == 0) {
+                blockSize = 1;
+            } else if (now - leasedAt < properties.getWindow().toNanos()) {
+                blockSize = Math.min(blockSize * 2, Math.max(1, properties.getMaxBlockSize()));
+            } else {
+                blockSize = Math.max(1, blockSize / 2);
+            }
+            return blockSize;
         }
     }
 
+    /**
+     * 开启号段租约时返回的是已租出的最大号，可能大于已写入消息的最大 sequence
+     */
     @Override
     public long getMaxSequence(Long conversationId) {
 
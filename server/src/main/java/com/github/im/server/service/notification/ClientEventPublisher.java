@@ -8,7 +8,10 @@ import java.util.List;
 
 public interface ClientEventPublisher {
 
-    void publishChatMessageCreated(Message message, User sender, List<User> recipients);
+    /**
+     * @param recipientIds 会话成员ID，发送者自身会被跳过
+     */
+    void publishChatMessageCreated(Message message, User sender, long[] recipientIds);
 
     void publishMeetingInviteCreated(Meeting meeting, User host, List<User> recipients);
 }
@@ -27,13 +27,13 @@ public class ClientEventPublisherImpl implements ClientEventPublisher {
     private final PushNotificationGateway pushNotificationGateway;
 
     @Override
-    public void publishChatMessageCreated(Message message, User sender, List<User> recipients) {
-        if (message == null || sender == null || recipients == null || recipients.isEmpty()) {
+    public void publishChatMessageCreated(Message message, User sender, long[] recipientIds) {
+        if (message == null || sender == null || recipientIds == null || recipientIds.length == 0) {
             return;
         }
 
-        for (User recipient : recipients) {
-            if (recipient == null || recipient.getUserId().equals(sender.getUserId())) {
+        for (long recipientId : recipientIds) {
+            if (sender.getUserId() != null && recipientId == sender.getUserId()) {
                 continue;
             }
 
@@ -41,7 +41,7 @@ public class ClientEventPublisherImpl implements ClientEventPublisher {
                     .eventId(UUID.randomUUID().toString())
                     .eventType(ClientEventType.CHAT_MESSAGE_CREATED)
                     .priority(ClientEventPriority.NORMAL)
-                    .receiverId(recipient.getUserId())
+                    .receiverId(recipientId)
                     .senderId(sender.getUserId())
                     .senderName(sender.getUsername())
                     .conversationId(message.getConversation().getConversationId())
@@ -0,0 +1,221 @@
+package com.github.im.server.util;
+
+import java.util.Arrays;
+
+/**
+ * 定容量的 long -> long 映射，满后淘汰最久未访问的条目
+ * <p>
+ * 条目保存在预分配的原始类型数组中，用开放寻址（线性探测）的索引表定位，用数组下标串成的双向链表维护访问顺序，
+ * 读写都不装箱、不分配对象，常驻内存只由容量决定。非线程安全，由调用方加锁。
+ */
+public final class LongLongLruMap {
+
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final long[] keys;
+    private final long[] values;
+    private final int[] prev;
+    private final int[] next;
+    /**
+     * 索引表，保存条目下标 + 1，0 表示空槽
+     */
+    private final int[] table;
+    private final int mask;
+
+    private int size;
+    /**
+     * 最近访问
+     */
+    private int head = NONE;
+    /**
+     * 最久未访问
+     */
+    private int tail = NONE;
+    private long evictions;
+
+    public LongLongLruMap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.table = new int[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) != NONE;
+    }
+
+    /**
+     * 读取并标记为最近访问
+     *
+     * @return 不存在时返回 missingValue
+     */
+    public long get(long key, long missingValue) {
+        int entry = find(key);
+        if (entry == NONE) {
+            return missingValue;
+        }
+        moveToHead(entry);
+        return values[entry];
+    }
+
+    /**
+     * 把已存在的条目加上 delta 并返回新值
+     *
+     * @return 不存在时不做任何修改，返回 missingValue
+     */
+    public long addAndGet(long key, long delta, long missingValue) {
+        int entry = find(key);
+        if (entry == NONE) {
+            return missingValue;
+        }
+        moveToHead(entry);
+        return values[entry] += delta;
+    }
+
+    /**
+     * 写入或覆盖，容量已满时先淘汰最久未访问的条目
+     */
+    public void put(long key, long value) {
+        int entry = find(key);
+        if (entry == NONE) {
+            entry = allocate();
+            keys[entry] = key;
+            insertIndex(key, entry);
+            linkHead(entry);
+        } else {
+            moveToHead(entry);
+        }
+        values[entry] = value;
+    }
+
+    /**
+     * @return 是否写入；已存在时保留原值
+     */
+    public boolean putIfAbsent(long key, long value) {
+        if (find(key) != NONE) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        head = NONE;
+        tail = NONE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 累计因容量不足淘汰的条目数
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    private int allocate() {
+        if (size < capacity) {
+            return size++;
+        }
+        int victim = tail;
+        unlink(victim);
+        removeIndex(keys[victim]);
+        evictions++;
+        return victim;
+    }
+
+    private int find(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int stored = table[slot];
+            if (stored == 0) {
+                return NONE;
+            }
+            if (keys[stored - 1] == key) {
+                return stored - 1;
+            }
+        }
+    }
+
+    private void insertIndex(long key, int entry) {
+        int slot = slot(key);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry + 1;
+    }
+
+    /**
+     * 删除后把同一探测链上的后续条目前移，保证查找不会在空洞处提前结束
+     */
+    private void removeIndex(long key) {
+        int slot = slot(key);
+        while (keys[table[slot] - 1] != key) {
+            slot = (slot + 1) & mask;
+        }
+        int hole = slot;
+        for (int i = (hole + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int home = slot(keys[table[i] - 1]);
+            // home 不在 (hole, i] 区间内时，该条目可以前移到 hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void moveToHead(int entry) {
+        if (entry != head) {
+            unlink(entry);
+            linkHead(entry);
+        }
+    }
+
+    private void linkHead(int entry) {
+        prev[entry] = NONE;
+        next[entry] = head;
+        if (head != NONE) {
+            prev[head] = entry;
+        }
+        head = entry;
+        if (tail == NONE) {
+            tail = entry;
+        }
+    }
+
+    private void unlink(int entry) {
+        int p = prev[entry];
+        int n = next[entry];
+        if (p != NONE) {
+            next[p] = n;
+        } else {
+            head = n;
+        }
+        if (n != NONE) {
+            prev[n] = p;
+        } else {
+            tail = p;
+        }
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -1,11 +1,16 @@
 package com.github.im.server.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.im.server.config.PrincipalCacheProperties;
 import com.github.im.server.config.mult.SchemaContext;
+import com.github.im.server.config.security.PrincipalCache;
 import com.github.im.server.constants.CacheKeyConstants;
 import com.github.im.server.model.Company;
 import com.github.im.server.model.User;
 import com.github.im.server.repository.UserRepository;
 import com.github.im.server.service.CompanyService;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -30,6 +35,25 @@ public class UserTokenManager {
 
     private final UserRepository userRepository;
     private final CompanyService companyService;
+    private final PrincipalCache principalCache;
+    private final PrincipalCacheProperties principalCacheProperties;
+
+    /**
+     * 节流窗口内已续期过的用户，窗口内不再访问 Redis；
+     * 注销等失效用户时经 {@link PrincipalCache} 的广播在所有节点清除，避免其他节点继续视为会话存在
+     */
+    private Cache<Long, Boolean> recentlyExtended;
+
+    @PostConstruct
+    public void init() {
+        if (!principalCacheProperties.getTokenExtendInterval().isZero()) {
+            recentlyExtended = Caffeine.newBuilder()
+                    .maximumSize(principalCacheProperties.getMaxSize())
+                    .expireAfterWrite(principalCacheProperties.getTokenExtendInterval())
+                    .build();
+            principalCache.addInvalidationListener(recentlyExtended::invalidate);
+        }
+    }
 
     /**
      * 创建用户访问令牌缓存
@@ -58,10 +82,15 @@ public class UserTokenManager {
      * 此方法 不验证 JWT 的有效性
      * 只 将 jwt 转化为 user
      * 将 jwt 中 payload 的数据 转化为 user
+     * 结果按令牌缓存在 {@link PrincipalCache} 中
      * @param jwt
      * @return 处理后的用户给
      */
     public User jwt2User(Jwt jwt) throws BadCredentialsException {
+        return principalCache.get(jwt, this::loadUser);
+    }
+
+    private User loadUser(Jwt jwt) throws BadCredentialsException {
         long userId = Long.parseLong(jwt.getId());
         Optional<User> userOptional = userRepository.findById(userId);
 
@@ -92,15 +121,22 @@ public class UserTokenManager {
 
     /**
      * 延长用户访问令牌缓存时间
+     * 同一用户在 {@link PrincipalCacheProperties#getTokenExtendInterval()} 内只续期一次，期间直接视为会话存在
      * @param userId 用户ID
      * @return true表示会话存在并已续期，false表示会话不存在
      */
     public boolean extendAccessToken(Long userId) {
+        if (recentlyExtended != null && recentlyExtended.getIfPresent(userId) != null) {
+            return true;
+        }
         String cacheKey = buildCacheKey(userId);
         Boolean exists = redisTemplate.hasKey(cacheKey);
         if (exists) {
             // 延长缓存时间
             redisTemplate.expire(cacheKey, DEFAULT_EXPIRY_SECONDS, TimeUnit.SECONDS);
+            if (recentlyExtended != null) {
+                recentlyExtended.put(userId, Boolean.TRUE);
+            }
             log.debug("Extended access token cache for user: {}, key: {}", userId, cacheKey);
             return true;
         } else {
@@ -136,6 +172,8 @@ public class UserTokenManager {
     public void removeAccessToken(Long userId) {
         String cacheKey = buildCacheKey(userId);
         redisTemplate.delete(cacheKey);
+        // 同时清除各节点的续期节流
+        principalCache.invalidateUser(userId);
         log.debug("Removed access token cache for user: {}, key: {}", userId, cacheKey);
     }
 
@@ -0,0 +1,27 @@
+-- Message ids move from the IDENTITY default to a pooled SEQUENCE generator
+-- (allocationSize = 50) so that inserts can be JDBC-batched.
+--
+-- A dedicated sequence is used instead of changing the identity sequence: the
+-- identity sequence belongs to the pinned core baseline fingerprint. The new
+-- sequence is not OWNED BY a core column, so the fingerprint stays stable.
+--
+-- Hibernate's pooled optimizer hands out (value - 49 .. value], so the first
+-- value must be at least 50 above every id that already exists or that the
+-- identity default has issued. Stop nodes still running the IDENTITY mapping
+-- before applying this migration.
+
+CREATE SEQUENCE IF NOT EXISTS "messages_msg_id_pool_seq"
+    START WITH 50
+    INCREMENT BY 50
+    MINVALUE 1
+    NO MAXVALUE
+    CACHE 1;
+
+SELECT setval(
+    '"messages_msg_id_pool_seq"',
+    GREATEST(
+        (SELECT COALESCE(MAX("msg_id"), 0) FROM "messages"),
+        (SELECT "last_value" FROM "messages_msg_id_seq")
+    ) + 50,
+    false
+);
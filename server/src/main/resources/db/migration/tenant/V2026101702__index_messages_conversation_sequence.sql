@@ -0,0 +1,9 @@
+-- Keyset (seek) history pulls read messages by (conversation_id, sequence_id)
+-- in either direction; unread counting and read receipts filter on the same
+-- range. Without this index every pull scans the conversation's messages.
+--
+-- Managed indexes on core tables use the "mgd_idx_" prefix, which the core
+-- baseline fingerprint ignores.
+
+CREATE INDEX IF NOT EXISTS "mgd_idx_messages_conversation_sequence"
+    ON "messages" ("conversation_id", "sequence_id");
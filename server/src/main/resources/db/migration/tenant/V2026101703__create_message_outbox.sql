@@ -0,0 +1,18 @@
+-- Transactional outbox for chat messages. A row is inserted in the same
+-- transaction as the message and deleted once its post-commit side effects
+-- (member push, unread counters, notifications, MessageCreatedEvent) have
+-- been dispatched. Rows whose next_attempt_at has passed are claimed again
+-- by the recovery sweep, so side effects survive a crash after commit.
+
+CREATE TABLE IF NOT EXISTS message_outbox (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    message_id BIGINT NOT NULL,
+    conversation_id BIGINT NOT NULL,
+    sender_id BIGINT NOT NULL,
+    payload BYTEA NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP(6) WITHOUT TIME ZONE NOT NULL,
+    next_attempt_at TIMESTAMP(6) WITHOUT TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_message_outbox_next_attempt ON message_outbox(next_attempt_at);
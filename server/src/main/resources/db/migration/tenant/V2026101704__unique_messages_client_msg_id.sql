@@ -0,0 +1,25 @@
+-- A client retrying a send reuses its clientMsgId. The application skips
+-- retries it has seen recently; this index is the backstop for retries that
+-- reach another node, arrive after the cache expired, or race the original.
+-- The sender is part of the key, so members that happen to pick the same
+-- clientMsgId in one conversation still get their own messages saved.
+--
+-- Rows duplicated before the index existed keep the earliest message's
+-- clientMsgId; later copies are cut to fit and get "#<msg_id>" appended so the
+-- index can be built without overflowing the varchar(255) column.
+
+UPDATE "messages" m
+SET "client_msg_id" = left(m."client_msg_id", 254 - length(m."msg_id"::text)) || '#' || m."msg_id"
+WHERE m."client_msg_id" IS NOT NULL
+  AND EXISTS (
+    SELECT 1
+    FROM "messages" earlier
+    WHERE earlier."conversation_id" = m."conversation_id"
+      AND earlier."from_account_id" = m."from_account_id"
+      AND earlier."client_msg_id" = m."client_msg_id"
+      AND earlier."msg_id" < m."msg_id"
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS "mgd_idx_messages_conversation_client_msg_id"
+    ON "messages" ("conversation_id", "from_account_id", "client_msg_id")
+    WHERE "client_msg_id" IS NOT NULL;
@@ -0,0 +1,85 @@
+package com.github.im.common.connect.connection
+
+import com.github.im.common.connect.connection.server.tcp.EncodedPushEncoder
+import com.github.im.common.connect.model.proto.BaseMessage
+import com.github.im.common.connect.model.proto.Chat
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.ByteBufUtil
+import io.netty.channel.embedded.EmbeddedChannel
+import io.netty.handler.codec.protobuf.ProtobufDecoder
+import io.netty.handler.codec.protobuf.ProtobufEncoder
+import io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder
+import io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+class EncodedPushSpec extends Specification {
+
+    def "frame bytes match what the protobuf encoder and length prepender produce"() {
+        given:
+        def pkg = message("x" * 300)
+        def legacy = serverChannel()
+        legacy.writeOutbound(pkg)
+        ByteBuf expected = legacy.readOutbound()
+
+        when:
+        def push = EncodedPush.encode(pkg)
+
+        then:
+        ByteBufUtil.equals(push.content(), expected)
+        BaseMessage.BaseMessagePkg.parseFrom(push.bodyNioBuffer()) == pkg
+
+        cleanup:
+        expected?.release()
+        push?.release()
+    }
+
+    def "wrapping an already serialized body yields the same frame"() {
+        given:
+        def pkg = message("wrapped")
+        def encoded = EncodedPush.encode(pkg)
+        def wrapped = EncodedPush.wrapBody(ByteBuffer.wrap(pkg.toByteArray()))
+
+        expect:
+        ByteBufUtil.equals(encoded.content(), wrapped.content())
+
+        cleanup:
+        encoded.release()
+        wrapped.release()
+    }
+
+    def "one shared frame is written to several channels and released after the last write"() {
+        given:
+        def pkg = message("fan-out")
+        def push = EncodedPush.encode(pkg)
+        def channels = (1..3).collect { serverChannel() }
+
+        when:
+        channels.each { it.writeOutbound(push.retain()) }
+        push.release()
+
+        then: "each pending write holds its own reference to the shared content"
+        push.refCnt() == 3
+        channels.every { channel ->
+            def client = new EmbeddedChannel(new ProtobufVarint32FrameDecoder(),
+                    new ProtobufDecoder(BaseMessage.BaseMessagePkg.getDefaultInstance()))
+            client.writeInbound(channel.readOutbound())
+            client.readInbound() == pkg
+        }
+        push.refCnt() == 0
+    }
+
+    private static EmbeddedChannel serverChannel() {
+        new EmbeddedChannel(EncodedPushEncoder.INSTANCE, new ProtobufVarint32LengthFieldPrepender(), new ProtobufEncoder())
+    }
+
+    private static BaseMessage.BaseMessagePkg message(String content) {
+        BaseMessage.BaseMessagePkg.newBuilder()
+                .setMessage(Chat.ChatMessage.newBuilder()
+                        .setConversationId(1L)
+                        .setContent(content)
+                        .build())
+                .build()
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.im.common.connect.connection
+
+import com.github.im.common.connect.model.proto.BaseMessage
+import com.github.im.common.connect.model.proto.Chat
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+
+class OutboundQueueSpec extends Specification {
+
+    List<String> written = []
+    int flushes = 0
+    boolean writable = true
+    List<Runnable> pendingDrains = []
+
+    /**
+     * Drains only run when the test releases them, like tasks queued on an event loop
+     */
+    Executor deferred = { Runnable r -> pendingDrains << r } as Executor
+
+    OutboundQueue.Writer writer = new OutboundQueue.Writer() {
+        boolean isWritable() { writable }
+
+        void write(EncodedPush push) {
+            try {
+                written << BaseMessage.BaseMessagePkg.parseFrom(push.bodyNioBuffer()).message.content
+            } finally {
+                push.release()
+            }
+        }
+
+        void flush() { flushes++ }
+    }
+
+    def "queued messages are written in order and coalesced into one flush"() {
+        given:
+        def queue = new OutboundQueue(new OutboundQueue.Settings(16, 64, OutboundQueue.OverflowPolicy.DROP_OLDEST), deferred, writer, null)
+
+        when:
+        (1..5).each { queue.offer(message("m$it")) }
+        runPendingDrains()
+
+        then:
+        written == ["m1", "m2", "m3", "m4", "m5"]
+        flushes == 1
+        queue.size() == 0
+    }
+
+    def "drain stops while the connection is not writable and continues on resume"() {
+        given:
+        def queue = new OutboundQueue(new OutboundQueue.Settings(16, 64, OutboundQueue.OverflowPolicy.DROP_OLDEST), deferred, writer, null)
+        writable = false
+
+        when:
+        queue.offer(message("a"))
+        queue.offer(message("b"))
+        runPendingDrains()
+
+        then:
+        written.isEmpty()
+        queue.size() == 2
+
+        when:
+        writable = true
+        queue.resume()
+        runPendingDrains()
+
+        then:
+        written == ["a", "b"]
+    }
+
+    def "DROP_OLDEST keeps the newest messages within capacity"() {
+        given:
+        def overflows = []
+        def queue = new OutboundQueue(new OutboundQueue.Settings(2, 64, OutboundQueue.OverflowPolicy.DROP_OLDEST), deferred, writer,
+                { q, policy -> overflows << policy } as OutboundQueue.OverflowListener)
+
+        when:
+        ["a", "b", "c", "d"].each { queue.offer(message(it)) }
+        runPendingDrains()
+
+        then:
+        written == ["c", "d"]
+        overflows == [OutboundQueue.OverflowPolicy.DROP_OLDEST] * 2
+    }
+
+    def "DISCONNECT closes the queue and rejects further messages"() {
+        given:
+        def overflows = []
+        def queue = new OutboundQueue(new OutboundQueue.Settings(1, 64, OutboundQueue.OverflowPolicy.DISCONNECT), deferred, writer,
+                { q, policy -> overflows << policy } as OutboundQueue.OverflowListener)
+
+        when:
+        def accepted = ["a", "b", "c"].collect { queue.offer(message(it)) }
+        runPendingDrains()
+
+        then:
+        accepted == [true, false, false]
+        queue.isClosed()
+        written.isEmpty()
+        overflows == [OutboundQueue.OverflowPolicy.DISCONNECT]
+    }
+
+    def "a drain writes at most maxFlushBatch messages per flush"() {
+        given:
+        def queue = new OutboundQueue(new OutboundQueue.Settings(16, 2, OutboundQueue.OverflowPolicy.DROP_OLDEST), deferred, writer, null)
+
+        when:
+        (1..5).each { queue.offer(message("m$it")) }
+        runPendingDrains()
+
+        then:
+        written == ["m1", "m2", "m3", "m4", "m5"]
+        flushes == 3
+    }
+
+    def "offers racing close never leave a retained push behind"() {
+        given:
+        def pushes = (1..2000).collect { EncodedPush.encode(message("m$it")) }
+        def queue = new OutboundQueue(new OutboundQueue.Settings(4096, 64, OutboundQueue.OverflowPolicy.DROP_OLDEST), deferred, writer, null)
+        def start = new CountDownLatch(1)
+        def producers = (0..<4).collect { int p ->
+            Thread.start {
+                start.await()
+                for (int i = p; i < pushes.size(); i += 4) {
+                    queue.offer(pushes[i])
+                }
+            }
+        }
+
+        when:
+        start.countDown()
+        Thread.sleep(1)
+        queue.close()
+        producers*.join()
+
+        then:
+        queue.size() == 0
+        pushes.every { it.refCnt() == 1 }
+
+        cleanup:
+        pushes*.release()
+    }
+
+    private void runPendingDrains() {
+        while (!pendingDrains.isEmpty()) {
+            pendingDrains.remove(0).run()
+        }
+    }
+
+    private static BaseMessage.BaseMessagePkg message(String content) {
+        BaseMessage.BaseMessagePkg.newBuilder()
+                .setMessage(Chat.ChatMessage.newBuilder().setConversationId(1L).setContent(content).build())
+                .build()
+    }
+}
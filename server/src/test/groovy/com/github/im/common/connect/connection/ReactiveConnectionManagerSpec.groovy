@@ -16,30 +16,34 @@ class ReactiveConnectionManagerSpec extends Specification {
     }
 
     /**
-     * If a sink is terminated, registerSinkFlow should reuse it
-     * @return
+     * A new connection on the same platform replaces (and closes) the previous queue
      */
-    def "registerSinkFlow should reuse active sink and replace terminated one"() {
+    def "register should replace and close the previous queue on the same platform"() {
         given:
         def attr = BindAttr.getBindAttr("6", PlatformType.DESKTOP)
+        def first = queue([])
+        def second = queue([])
 
         when:
-        def first = ReactiveConnectionManager.registerSinkFlow(attr)
-        def second = ReactiveConnectionManager.registerSinkFlow(attr)
-        first.tryEmitComplete()
-        def third = ReactiveConnectionManager.registerSinkFlow(attr)
+        ReactiveConnectionManager.register(attr, first)
+        ReactiveConnectionManager.register(attr, second)
 
         then:
-        first.is(second)
-        !first.is(third)
+        first.isClosed()
+        ReactiveConnectionManager.getOutboundQueue(attr).is(second)
+
+        when: "the superseded connection closes later"
+        ReactiveConnectionManager.unregister(attr, first)
+
+        then:
+        ReactiveConnectionManager.isSubscribe(attr)
     }
 
-    def "addBaseMessage should deliver to active desktop sink for all-platform push attr"() {
+    def "addBaseMessage should deliver to active desktop queue for all-platform push attr"() {
         given:
         def desktopAttr = BindAttr.getBindAttr("6", PlatformType.DESKTOP)
-        def sink = ReactiveConnectionManager.registerSinkFlow(desktopAttr)
         def received = []
-        def disposable = sink.asFlux().subscribe { received << it }
+        ReactiveConnectionManager.register(desktopAttr, queue(received))
         def message = sampleMessage("push")
 
         when:
@@ -47,26 +51,64 @@ class ReactiveConnectionManagerSpec extends Specification {
 
         then:
         received*.toByteArray() == [message.toByteArray()]
-
-        cleanup:
-        disposable.dispose()
-        ReactiveConnectionManager.unSubscribe(desktopAttr)
     }
 
-    def "addBaseMessage should ignore cancelled sink instead of throwing"() {
+    def "addBaseMessage should drop closed queue instead of throwing"() {
         given:
         def desktopAttr = BindAttr.getBindAttr("6", PlatformType.DESKTOP)
-        def sink = ReactiveConnectionManager.registerSinkFlow(desktopAttr)
-        def disposable = sink.asFlux().subscribe { }
-        disposable.dispose()
-        sink.tryEmitComplete()
+        def closed = queue([])
+        ReactiveConnectionManager.register(desktopAttr, closed)
+        closed.close()
 
         when:
-        ReactiveConnectionManager.addBaseMessage(BindAttr.getBindAttrForPush("6"), sampleMessage("cancelled"))
+        ReactiveConnectionManager.addBaseMessage(BindAttr.getBindAttrForPush("6"), sampleMessage("closed"))
 
         then:
         noExceptionThrown()
         !ReactiveConnectionManager.isSubscribe(desktopAttr)
+        !ReactiveConnectionManager.isOnline(6L)
+    }
+
+    def "userId push should reach every registered platform and unregister should drop the user"() {
+        given:
+        def received = []
+        def desktop = queue(received)
+        def mobile = queue(received)
+        ReactiveConnectionManager.register(6L, PlatformType.DESKTOP, desktop)
+        ReactiveConnectionManager.register(6L, PlatformType.MOBILE, mobile)
+        def message = sampleMessage("fanout")
+
+        when:
+        ReactiveConnectionManager.addBaseMessage(6L, message)
+
+        then:
+        received.size() == 2
+        ReactiveConnectionManager.isOnline(6L)
+
+        when:
+        ReactiveConnectionManager.unregister(6L, PlatformType.DESKTOP, desktop)
+        ReactiveConnectionManager.unregister(6L, PlatformType.MOBILE, mobile)
+
+        then:
+        !ReactiveConnectionManager.isOnline(6L)
+        !ReactiveConnectionManager.isSubscribe(BindAttr.getBindAttrForPush("6"))
+    }
+
+    private static OutboundQueue queue(List received) {
+        def writer = new OutboundQueue.Writer() {
+            boolean isWritable() { true }
+
+            void write(EncodedPush push) {
+                try {
+                    received << BaseMessage.BaseMessagePkg.parseFrom(push.bodyNioBuffer())
+                } finally {
+                    push.release()
+                }
+            }
+
+            void flush() {}
+        }
+        new OutboundQueue(OutboundQueue.Settings.DEFAULT, { Runnable r -> r.run() }, writer, null)
     }
 
     private static BaseMessage.BaseMessagePkg sampleMessage(String content) {
@@ -0,0 +1,125 @@
+package com.github.im.common.connect.connection.server
+
+import com.github.im.common.connect.model.proto.BaseMessage
+import com.github.im.common.connect.model.proto.Chat
+import io.netty.channel.Channel
+import io.netty.channel.embedded.EmbeddedChannel
+import io.netty.util.AttributeKey
+import reactor.netty.Connection
+import spock.lang.Specification
+
+import java.util.function.Function
+
+import static com.github.im.common.connect.model.proto.BaseMessage.BaseMessagePkg.PayloadCase.ACK
+import static com.github.im.common.connect.model.proto.BaseMessage.BaseMessagePkg.PayloadCase.MESSAGE
+
+class InboundRateLimiterSpec extends Specification {
+
+    static final AttributeKey<String> TENANT_KEY = AttributeKey.valueOf("test.tenant")
+
+    InboundRateLimiter.ThrottleListener listener = Mock()
+
+    def "a connection may burst up to the bucket size and is throttled after that"() {
+        given:
+        def limiter = limiter([(MESSAGE): new InboundRateLimiter.Rule(1, 3)], [:])
+        def connection = connection(new EmbeddedChannel())
+        def before = InboundRateLimiter.rejectedCount(InboundRateLimiter.Scope.CONNECTION, MESSAGE)
+
+        when:
+        def results = (1..4).collect { limiter.tryAcquire(connection, chat()) }
+
+        then:
+        results == [true, true, true, false]
+        1 * listener.onThrottled(connection, chat(), InboundRateLimiter.Scope.CONNECTION)
+        InboundRateLimiter.rejectedCount(InboundRateLimiter.Scope.CONNECTION, MESSAGE) == before + 1
+    }
+
+    def "tokens refill at the configured rate"() {
+        given:
+        def limiter = limiter([(MESSAGE): new InboundRateLimiter.Rule(100, 1)], [:])
+        def connection = connection(new EmbeddedChannel())
+
+        expect:
+        limiter.tryAcquire(connection, chat())
+        !limiter.tryAcquire(connection, chat())
+
+        when:
+        Thread.sleep(30)
+
+        then:
+        limiter.tryAcquire(connection, chat())
+    }
+
+    def "each connection has its own bucket and each payload type is limited separately"() {
+        given:
+        def limiter = limiter([(MESSAGE): new InboundRateLimiter.Rule(1, 1)], [:])
+        def first = connection(new EmbeddedChannel())
+        def second = connection(new EmbeddedChannel())
+
+        expect:
+        limiter.tryAcquire(first, chat())
+        !limiter.tryAcquire(first, chat())
+        limiter.tryAcquire(second, chat())
+        (1..10).every { limiter.tryAcquire(first, ack()) }
+    }
+
+    def "connections of one tenant share the tenant bucket"() {
+        given:
+        def limiter = limiter([:], [(ACK): new InboundRateLimiter.Rule(1, 2)])
+        def first = connection(tenantChannel("company_a"))
+        def second = connection(tenantChannel("company_a"))
+        def other = connection(tenantChannel("company_b"))
+        def anonymous = connection(new EmbeddedChannel())
+
+        expect:
+        limiter.tryAcquire(first, ack())
+        limiter.tryAcquire(second, ack())
+        !limiter.tryAcquire(second, ack())
+        limiter.tryAcquire(other, ack())
+        // 解析不出租户的连接不受租户限制
+        (1..5).every { limiter.tryAcquire(anonymous, ack()) }
+    }
+
+    def "invalid rules are rejected"() {
+        when:
+        new InboundRateLimiter.Rule(rate, burst)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        rate | burst
+        0    | 10
+        -1   | 10
+        10   | 0
+    }
+
+    private InboundRateLimiter limiter(Map rules, Map tenantRules) {
+        def tenantResolver = { Channel channel -> channel.attr(TENANT_KEY).get() } as Function<Channel, String>
+        new InboundRateLimiter(new InboundRateLimiter.Settings(rules, tenantRules), tenantResolver, listener)
+    }
+
+    private static Channel tenantChannel(String tenant) {
+        def channel = new EmbeddedChannel()
+        channel.attr(TENANT_KEY).set(tenant)
+        channel
+    }
+
+    private Connection connection(Channel channel) {
+        Connection connection = Stub()
+        connection.channel() >> channel
+        connection
+    }
+
+    private static BaseMessage.BaseMessagePkg chat() {
+        BaseMessage.BaseMessagePkg.newBuilder()
+                .setMessage(Chat.ChatMessage.newBuilder().setClientMsgId("c-1").setConversationId(10L))
+                .build()
+    }
+
+    private static BaseMessage.BaseMessagePkg ack() {
+        BaseMessage.BaseMessagePkg.newBuilder()
+                .setAck(Chat.AckMessage.newBuilder().setConversationId(10L))
+                .build()
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.im.common.connect.connection.server
+
+import com.github.im.common.connect.model.proto.BaseMessage
+import com.github.im.common.connect.model.proto.Chat
+import io.netty.channel.embedded.EmbeddedChannel
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Sinks
+import reactor.netty.Connection
+import reactor.netty.NettyInbound
+import reactor.netty.NettyOutbound
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.function.UnaryOperator
+
+class MessageDispatcherSpec extends Specification {
+
+    /**
+     * 测试用的处理器按消息类型只能注册一次，实际逻辑由各用例替换
+     */
+    static volatile ProtoBufProcessHandler delegate
+
+    Connection connection = Mock()
+    NettyInbound inbound = Stub() {
+        withConnection(_) >> { args -> args[0].accept(connection); inbound }
+    }
+    NettyOutbound outbound = Stub()
+
+    def setupSpec() {
+        MessageDispatcher.registerHandler([new ProtoBufProcessHandler() {
+            @Override
+            BaseMessage.BaseMessagePkg.PayloadCase type() {
+                BaseMessage.BaseMessagePkg.PayloadCase.HISTORYPULLRESPONSE
+            }
+
+            @Override
+            void process(Connection con, BaseMessage.BaseMessagePkg message) {
+                delegate.process(con, message)
+            }
+        } as ProtoBufProcessHandler])
+    }
+
+    def cleanup() {
+        MessageDispatcher.configure(MessageDispatcher.Mode.EVENT_LOOP, 256, null)
+        MessageDispatcher.configureRateLimiter(null)
+    }
+
+    def "event loop mode runs the handler on the receiving thread"() {
+        given:
+        MessageDispatcher.configure(MessageDispatcher.Mode.EVENT_LOOP, 256, null)
+        def threads = new CopyOnWriteArrayList<Thread>()
+        delegate = { con, msg -> threads << Thread.currentThread() } as ProtoBufProcessHandler
+
+        when:
+        MessageDispatcher.getInstance().dispatchAll(inbound, outbound, Flux.just(pkg("1"))).blockLast()
+
+        then:
+        threads == [Thread.currentThread()]
+    }
+
+    def "virtual thread mode handles one connection's messages in arrival order off the receiving thread"() {
+        given:
+        MessageDispatcher.configure(MessageDispatcher.Mode.VIRTUAL_THREAD, 4, null)
+        def seen = new CopyOnWriteArrayList<String>()
+        def virtual = new CopyOnWriteArrayList<Boolean>()
+        delegate = { con, msg ->
+            // 前面的消息越慢，越容易暴露乱序
+            Thread.sleep(20 - Integer.parseInt(msg.historyPullResponse.requestId))
+            virtual << Thread.currentThread().isVirtual()
+            seen << msg.historyPullResponse.requestId
+        } as ProtoBufProcessHandler
+        def ids = (0..9).collect { String.valueOf(it) }
+
+        when:
+        MessageDispatcher.getInstance()
+                .dispatchAll(inbound, outbound, Flux.fromIterable(ids).map { pkg(it) })
+                .blockLast(Duration.ofSeconds(5))
+
+        then:
+        seen == ids
+        virtual.every()
+        MessageDispatcher.totalQueued() == 0
+        MessageDispatcher.inFlight() == 0
+    }
+
+    def "a full mailbox stops requesting messages from the connection until handlers catch up"() {
+        given:
+        MessageDispatcher.configure(MessageDispatcher.Mode.VIRTUAL_THREAD, 2, null)
+        def release = new CountDownLatch(1)
+        delegate = { con, msg -> release.await(5, TimeUnit.SECONDS) } as ProtoBufProcessHandler
+        def received = Sinks.many().unicast().onBackpressureBuffer()
+        def requested = new CopyOnWriteArrayList<Long>()
+
+        when:
+        def done = MessageDispatcher.getInstance()
+                .dispatchAll(inbound, outbound, received.asFlux().doOnRequest { requested << it })
+                .then()
+                .toFuture()
+
+        then:
+        requested.sum() == 2L
+
+        when:
+        (0..4).each { received.tryEmitNext(pkg(String.valueOf(it))) }
+        received.tryEmitComplete()
+        release.countDown()
+        done.get(5, TimeUnit.SECONDS)
+
+        then:
+        requested.sum() >= 5L
+    }
+
+    def "the task decorator wraps each message on the receiving thread and a failing handler does not stop the stream"() {
+        given:
+        def decoratedOn = new CopyOnWriteArrayList<Thread>()
+        MessageDispatcher.configure(MessageDispatcher.Mode.VIRTUAL_THREAD, 4, { task ->
+            decoratedOn << Thread.currentThread()
+            task
+        } as UnaryOperator<Runnable>)
+        def handled = new CopyOnWriteArrayList<String>()
+        delegate = { con, msg ->
+            if (msg.historyPullResponse.requestId == "0") {
+                throw new IllegalArgumentException("boom")
+            }
+            handled << msg.historyPullResponse.requestId
+        } as ProtoBufProcessHandler
+
+        when:
+        MessageDispatcher.getInstance()
+                .dispatchAll(inbound, outbound, Flux.just(pkg("0"), pkg("1")))
+                .blockLast(Duration.ofSeconds(5))
+
+        then:
+        decoratedOn == [Thread.currentThread(), Thread.currentThread()]
+        handled == ["1"]
+    }
+
+    def "messages over the rate limit are dropped before they reach the mailbox"() {
+        given:
+        MessageDispatcher.configure(MessageDispatcher.Mode.VIRTUAL_THREAD, 4, null)
+        MessageDispatcher.configureRateLimiter(new InboundRateLimiter(new InboundRateLimiter.Settings(
+                [(BaseMessage.BaseMessagePkg.PayloadCase.HISTORYPULLRESPONSE): new InboundRateLimiter.Rule(1, 2)], [:]),
+                null, null))
+        connection.channel() >> new EmbeddedChannel()
+        def handled = new CopyOnWriteArrayList<String>()
+        delegate = { con, msg -> handled << msg.historyPullResponse.requestId } as ProtoBufProcessHandler
+
+        when:
+        MessageDispatcher.getInstance()
+                .dispatchAll(inbound, outbound, Flux.just(pkg("0"), pkg("1"), pkg("2")))
+                .blockLast(Duration.ofSeconds(5))
+
+        then:
+        handled == ["0", "1"]
+    }
+
+    private static BaseMessage.BaseMessagePkg pkg(String requestId) {
+        BaseMessage.BaseMessagePkg.newBuilder()
+                .setHistoryPullResponse(Chat.HistoryPullResponse.newBuilder().setRequestId(requestId))
+                .build()
+    }
+}
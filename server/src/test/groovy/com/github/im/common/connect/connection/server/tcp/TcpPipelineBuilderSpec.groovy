@@ -0,0 +1,73 @@
+package com.github.im.common.connect.connection.server.tcp
+
+import io.netty.channel.embedded.EmbeddedChannel
+import spock.lang.Specification
+
+class TcpPipelineBuilderSpec extends Specification {
+
+    def sampler = ConnectionDebugSampler.getInstance()
+
+    def cleanup() {
+        sampler.configure(false, 0, [])
+    }
+
+    def "prod profile adds no logging handler unless sampling is switched on"() {
+        given:
+        def builder = new TcpPipelineBuilder(new TcpServerOptions(pipelineProfile: PipelineProfile.PROD), sampler)
+        def channel = new EmbeddedChannel()
+
+        when:
+        builder.initChannel(channel)
+
+        then:
+        channel.pipeline().get(TcpPipelineBuilder.FLUSH_CONSOLIDATION_HANDLER_NAME) != null
+        channel.pipeline().get(TcpPipelineBuilder.LOGGING_HANDLER_NAME) == null
+        channel.pipeline().get(ConnectionDebugSampler.DEBUG_LOGGING_HANDLER_NAME) == null
+    }
+
+    def "dev profile logs every connection"() {
+        given:
+        def builder = new TcpPipelineBuilder(new TcpServerOptions(pipelineProfile: PipelineProfile.DEV), sampler)
+
+        expect:
+        (1..3).every {
+            def channel = new EmbeddedChannel()
+            builder.initChannel(channel)
+            channel.pipeline().get(TcpPipelineBuilder.LOGGING_HANDLER_NAME) != null
+        }
+    }
+
+    def "sampler attaches debug logging to one in N connections and to traced users"() {
+        given:
+        sampler.configure(true, 4, [42L])
+        def builder = new TcpPipelineBuilder(new TcpServerOptions(pipelineProfile: PipelineProfile.DEBUG), sampler)
+        def channels = (1..8).collect { new EmbeddedChannel() }
+        def traced = new EmbeddedChannel()
+
+        when:
+        channels.each { builder.initChannel(it) }
+        sampler.onUserBound(traced, 42L)
+        sampler.onUserBound(new EmbeddedChannel(), 7L)
+
+        then:
+        channels.count { it.pipeline().get(ConnectionDebugSampler.DEBUG_LOGGING_HANDLER_NAME) != null } == 2
+        traced.pipeline().get(ConnectionDebugSampler.DEBUG_LOGGING_HANDLER_NAME) != null
+    }
+
+    def "disabling the sampler at runtime stops attaching debug logging"() {
+        given:
+        sampler.configure(true, 1, [42L])
+        def builder = new TcpPipelineBuilder(new TcpServerOptions(pipelineProfile: PipelineProfile.PROD), sampler)
+
+        when:
+        sampler.configure(false, null, null)
+        def channel = new EmbeddedChannel()
+        builder.initChannel(channel)
+        sampler.onUserBound(channel, 42L)
+
+        then:
+        channel.pipeline().get(ConnectionDebugSampler.DEBUG_LOGGING_HANDLER_NAME) == null
+        sampler.state().sampleRate() == 1
+        sampler.state().userIds() == [42L] as Set
+    }
+}
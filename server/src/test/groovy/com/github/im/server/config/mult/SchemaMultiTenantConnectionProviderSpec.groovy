@@ -0,0 +1,123 @@
+package com.github.im.server.config.mult
+
+import com.github.im.server.config.TenantConnectionProperties
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import javax.sql.DataSource
+import java.sql.Connection
+import java.sql.SQLTransientConnectionException
+import java.time.Duration
+
+class SchemaMultiTenantConnectionProviderSpec extends Specification {
+
+    DataSource dataSource = Mock()
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    SchemaMultiTenantConnectionProvider provider
+
+    def cleanup() {
+        provider?.close()
+    }
+
+    def "a released connection is reused by the same tenant without switching schema"() {
+        given:
+        provider = provider(new TenantConnectionProperties(idleTimeout: Duration.ofSeconds(30)))
+        def connection = pooledConnection()
+        dataSource.getConnection() >> connection
+
+        when:
+        def first = provider.getConnection("company_a")
+        provider.releaseConnection("company_a", first)
+        def second = provider.getConnection("company_a")
+
+        then:
+        1 * connection.setSchema("company_a")
+        0 * connection.setSchema("public")
+        0 * connection.close()
+        second.is(first)
+        meterRegistry.get("im.db.tenant.connections.affinity.hits").tag("tenant", "company_a").counter().count() == 1
+        meterRegistry.get("im.db.tenant.connections.active").tag("tenant", "company_a").gauge().value() == 1
+    }
+
+    def "another tenant takes over a parked connection with a single schema switch"() {
+        given:
+        provider = provider(new TenantConnectionProperties(idleTimeout: Duration.ofSeconds(30)))
+        def connection = pooledConnection()
+
+        when:
+        def first = provider.getConnection("company_a")
+        provider.releaseConnection("company_a", first)
+        def second = provider.getConnection("company_b")
+
+        then:
+        1 * dataSource.getConnection() >> connection
+        1 * connection.setSchema("company_a")
+        1 * connection.setSchema("company_b")
+        0 * connection.close()
+        second.is(first)
+    }
+
+    def "connections in a transaction or read-only state go back to the pool reset to public"() {
+        given:
+        provider = provider(new TenantConnectionProperties(idleTimeout: Duration.ofSeconds(30)))
+        Connection connection = Mock()
+        connection.getAutoCommit() >> false
+        dataSource.getConnection() >> connection
+
+        when:
+        provider.releaseConnection("company_a", provider.getConnection("company_a"))
+
+        then:
+        1 * connection.setSchema("public")
+        1 * connection.close()
+    }
+
+    def "parked connections are returned to the pool once idle for too long"() {
+        given:
+        provider = provider(new TenantConnectionProperties(idleTimeout: Duration.ofMillis(100)))
+        def connection = pooledConnection()
+        dataSource.getConnection() >> connection
+
+        when:
+        provider.releaseConnection("company_a", provider.getConnection("company_a"))
+        Thread.sleep(500)
+
+        then:
+        1 * connection.setSchema("public")
+        1 * connection.close()
+        meterRegistry.get("im.db.tenant.connections.idle").tag("tenant", "company_a").gauge().value() == 0
+    }
+
+    def "a tenant at its connection limit is rejected while other tenants still get connections"() {
+        given:
+        provider = provider(new TenantConnectionProperties(affinityEnabled: false, maxActivePerTenant: 1,
+                acquireTimeout: Duration.ofMillis(50)))
+        dataSource.getConnection() >>> [pooledConnection(), pooledConnection()]
+        provider.getConnection("company_a")
+
+        when:
+        provider.getConnection("company_a")
+
+        then:
+        thrown(SQLTransientConnectionException)
+        meterRegistry.get("im.db.tenant.connections.rejected").tag("tenant", "company_a").counter().count() == 1
+
+        when:
+        def other = provider.getConnection("company_b")
+
+        then:
+        other != null
+    }
+
+    private SchemaMultiTenantConnectionProvider provider(TenantConnectionProperties properties) {
+        new SchemaMultiTenantConnectionProvider(dataSource, properties, meterRegistry)
+    }
+
+    private Connection pooledConnection() {
+        Connection connection = Mock()
+        connection.getAutoCommit() >> true
+        connection.isReadOnly() >> false
+        connection.isClosed() >> false
+        connection
+    }
+}
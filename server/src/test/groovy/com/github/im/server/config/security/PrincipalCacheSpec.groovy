@@ -0,0 +1,169 @@
+package com.github.im.server.config.security
+
+import com.github.im.server.config.PrincipalCacheProperties
+import com.github.im.server.model.Company
+import com.github.im.server.model.User
+import com.github.im.server.utils.JwtUtil
+import org.springframework.data.redis.connection.DefaultMessage
+import org.springframework.data.redis.connection.MessageListener
+import org.springframework.data.redis.core.StringRedisTemplate
+import org.springframework.data.redis.listener.RedisMessageListenerContainer
+import org.springframework.security.authentication.BadCredentialsException
+import org.springframework.security.oauth2.jwt.Jwt
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.time.Instant
+import java.util.function.Function
+import java.util.function.LongConsumer
+
+class PrincipalCacheSpec extends Specification {
+
+    StringRedisTemplate redis = Mock()
+    RedisMessageListenerContainer listenerContainer = Mock()
+    MessageListener listener
+    PrincipalCache cache = new PrincipalCache(new PrincipalCacheProperties(), redis, listenerContainer)
+    Function<Jwt, User> loader = Mock()
+
+    def setup() {
+        listenerContainer.addMessageListener(_ as MessageListener, _) >> { arguments -> listener = arguments[0] }
+        cache.init()
+    }
+
+    def "a token is resolved once and every caller gets its own copy"() {
+        given:
+        def token = jwt(7L, 1L, Instant.now())
+
+        when:
+        def first = cache.get(token, loader)
+        first.setCurrentCompany(company(2L))
+        def second = cache.get(token, loader)
+
+        then:
+        1 * loader.apply(token) >> user(7L, 1L)
+        !second.is(first)
+        second.userId == 7L
+        second.currentCompany.companyId == 1L
+    }
+
+    def "tokens of another company or issue time are resolved separately"() {
+        given:
+        def issuedAt = Instant.now()
+
+        when:
+        cache.get(jwt(7L, 1L, issuedAt), loader)
+        cache.get(jwt(7L, 2L, issuedAt), loader)
+        cache.get(jwt(7L, 1L, issuedAt.plusSeconds(1)), loader)
+
+        then:
+        3 * loader.apply(_) >> user(7L, 1L)
+    }
+
+    def "a failed resolution is not cached"() {
+        given:
+        def token = jwt(7L, 1L, Instant.now())
+
+        when:
+        cache.get(token, loader)
+
+        then:
+        1 * loader.apply(token) >> { throw new BadCredentialsException("当前公司不存在！") }
+        thrown(BadCredentialsException)
+
+        when:
+        def resolved = cache.get(token, loader)
+
+        then:
+        1 * loader.apply(token) >> user(7L, 1L)
+        resolved.userId == 7L
+    }
+
+    def "invalidating a user drops all of its tokens and notifies other nodes"() {
+        given:
+        def token = jwt(7L, 1L, Instant.now())
+        def otherUser = jwt(8L, 1L, Instant.now())
+        loader.apply(token) >> user(7L, 1L)
+        loader.apply(otherUser) >> user(8L, 1L)
+        cache.get(token, loader)
+        cache.get(otherUser, loader)
+
+        when:
+        cache.invalidateUser(7L)
+        cache.get(token, loader)
+        cache.get(otherUser, loader)
+
+        then:
+        1 * redis.convertAndSend(PrincipalCache.PRINCIPAL_CHANGED_CHANNEL, "7")
+        1 * loader.apply(token) >> user(7L, 1L)
+        0 * loader.apply(otherUser)
+    }
+
+    def "a change broadcast by another node evicts the user"() {
+        given:
+        def token = jwt(7L, 1L, Instant.now())
+        loader.apply(token) >> user(7L, 1L)
+        cache.get(token, loader)
+
+        when:
+        listener.onMessage(new DefaultMessage(PrincipalCache.PRINCIPAL_CHANGED_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "7".getBytes(StandardCharsets.UTF_8)), null)
+        cache.get(token, loader)
+
+        then:
+        1 * loader.apply(token) >> user(7L, 1L)
+    }
+
+    def "invalidation listeners run for local invalidations and for broadcasts from other nodes"() {
+        given:
+        def invalidated = []
+        cache.addInvalidationListener({ long userId -> invalidated << userId } as LongConsumer)
+
+        when:
+        cache.invalidateUser(7L)
+        listener.onMessage(new DefaultMessage(PrincipalCache.PRINCIPAL_CHANGED_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "8".getBytes(StandardCharsets.UTF_8)), null)
+
+        then:
+        invalidated == [7L, 8L]
+    }
+
+    def "invalidations are still broadcast and received when the cache itself is disabled"() {
+        given:
+        MessageListener disabledListener = null
+        def disabled = new PrincipalCache(new PrincipalCacheProperties(enabled: false), redis, listenerContainer)
+        def invalidated = []
+        disabled.addInvalidationListener({ long userId -> invalidated << userId } as LongConsumer)
+
+        when:
+        disabled.init()
+        disabled.invalidateUser(7L)
+        disabledListener.onMessage(new DefaultMessage(PrincipalCache.PRINCIPAL_CHANGED_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "8".getBytes(StandardCharsets.UTF_8)), null)
+
+        then:
+        1 * listenerContainer.addMessageListener(_ as MessageListener, _) >> { arguments -> disabledListener = arguments[0] }
+        1 * redis.convertAndSend(PrincipalCache.PRINCIPAL_CHANGED_CHANNEL, "7")
+        invalidated == [7L, 8L]
+    }
+
+    private static Jwt jwt(long userId, long companyId, Instant issuedAt) {
+        Jwt.withTokenValue("token-" + userId + "-" + companyId + "-" + issuedAt.toEpochMilli())
+                .header("alg", "RS256")
+                .jti(String.valueOf(userId))
+                .issuedAt(issuedAt)
+                .claim(JwtUtil.COMPANY_ID_FIELD, companyId)
+                .build()
+    }
+
+    private static User user(long userId, long companyId) {
+        def user = User.builder().userId(userId).username("user" + userId).passwordHash("hash").build()
+        user.setCurrentCompany(company(companyId))
+        user
+    }
+
+    private static Company company(long companyId) {
+        def company = new Company()
+        company.setCompanyId(companyId)
+        company
+    }
+}
@@ -1,13 +1,15 @@
 package com.github.im.server.consumer
 
 import com.github.im.common.connect.model.proto.BaseMessage
+import com.github.im.server.config.ClusterRouteProperties
 import com.github.im.server.service.ClusterLocalDeliveryService
 import com.github.im.server.service.MessageRouter
 import com.github.im.server.service.RedisMessageRouter
+import com.github.im.server.service.RouteRecordCodec
 import org.springframework.data.redis.connection.stream.MapRecord
 import org.springframework.data.redis.connection.stream.RecordId
 import org.springframework.data.redis.core.StreamOperations
-import org.springframework.data.redis.core.StringRedisTemplate
+import org.springframework.data.redis.core.RedisTemplate
 import spock.lang.Specification
 
 import java.nio.charset.StandardCharsets
@@ -15,16 +17,57 @@ import java.util.Base64
 
 class RouteConsumerSpec extends Specification {
 
-    StringRedisTemplate redisTemplate = Mock()
+    RedisTemplate<String, byte[]> redisTemplate = Mock()
     StreamOperations streamOperations = Mock()
     ClusterLocalDeliveryService clusterLocalDeliveryService = Mock()
 
-    RouteConsumer consumer = new RouteConsumer(redisTemplate, clusterLocalDeliveryService)
+    RouteConsumer consumer = new RouteConsumer(redisTemplate, clusterLocalDeliveryService, new ClusterRouteProperties())
 
     def setup() {
         redisTemplate.opsForStream() >> streamOperations
     }
 
+    def "should decode compact binary route record and acknowledge it"() {
+        given:
+        def payload = sampleMessage("compact")
+        def recordId = RecordId.of("5-0")
+        def encoded = RouteRecordCodec.encode(RouteRecordCodec.KIND_IM_BINARY, 7L, 1710000000000L, [6L, 8L] as long[], payload.toByteArray())
+        def record = Stub(MapRecord) {
+            getId() >> recordId
+            getValue() >> [(RouteRecordCodec.FIELD_RECORD): encoded]
+        }
+
+        when:
+        invokePrivate(consumer, "onMessage", record)
+
+        then:
+        1 * clusterLocalDeliveryService.deliverEncoded(6L, { BaseMessage.BaseMessagePkg.parseFrom(it.bodyNioBuffer()) == payload })
+        1 * clusterLocalDeliveryService.deliverEncoded(8L, { BaseMessage.BaseMessagePkg.parseFrom(it.bodyNioBuffer()) == payload })
+        0 * clusterLocalDeliveryService.deliverBaseMessage(_, _)
+        1 * streamOperations.acknowledge(_, MessageRouter.CONSUMER_GROUP, recordId)
+    }
+
+    def "should decode legacy byte-valued route record written by older nodes"() {
+        given:
+        def payload = sampleMessage("legacy")
+        def recordId = RecordId.of("6-0")
+        def record = Stub(MapRecord) {
+            getId() >> recordId
+            getValue() >> [
+                    (RedisMessageRouter.FIELD_TO)          : "6".getBytes(StandardCharsets.UTF_8),
+                    (RedisMessageRouter.FIELD_BODY)        : Base64.encoder.encode(payload.toByteArray()),
+                    (RedisMessageRouter.FIELD_PAYLOAD_KIND): RedisMessageRouter.PAYLOAD_KIND_IM_BINARY.getBytes(StandardCharsets.UTF_8)
+            ]
+        }
+
+        when:
+        invokePrivate(consumer, "onMessage", record)
+
+        then:
+        1 * clusterLocalDeliveryService.deliverBaseMessage(6L, payload)
+        1 * streamOperations.acknowledge(_, MessageRouter.CONSUMER_GROUP, recordId)
+    }
+
     def "should decode binary route message and acknowledge it"() {
         given:
         def payload = sampleMessage("hello")
@@ -91,6 +134,49 @@ class RouteConsumerSpec extends Specification {
         }, MessageRouter.CONSUMER_GROUP, recordId)
     }
 
+    def "should fan out multi-recipient route message and acknowledge it once"() {
+        given:
+        def payload = sampleMessage("group")
+        def recordId = RecordId.of("4-0")
+        def record = Stub(MapRecord) {
+            getId() >> recordId
+            getValue() >> [
+                    (RedisMessageRouter.FIELD_RECIPIENTS)  : "6,8",
+                    (RedisMessageRouter.FIELD_BODY)        : Base64.encoder.encodeToString(payload.toByteArray()),
+                    (RedisMessageRouter.FIELD_PAYLOAD_KIND): RedisMessageRouter.PAYLOAD_KIND_IM_BINARY
+            ]
+        }
+
+        when:
+        invokePrivate(consumer, "onMessage", record)
+
+        then:
+        1 * clusterLocalDeliveryService.deliverEncoded(6L, { BaseMessage.BaseMessagePkg.parseFrom(it.bodyNioBuffer()) == payload })
+        1 * clusterLocalDeliveryService.deliverEncoded(8L, { BaseMessage.BaseMessagePkg.parseFrom(it.bodyNioBuffer()) == payload })
+        1 * streamOperations.acknowledge(_, MessageRouter.CONSUMER_GROUP, recordId)
+    }
+
+    def "should acknowledge a whole batch with a single XACK and keep failed single-recipient records pending"() {
+        given:
+        def ok = RouteRecordCodec.encode(RouteRecordCodec.KIND_SIGNAL_TEXT, 7L, 1L, [6L] as long[], "a".bytes)
+        def failing = RouteRecordCodec.encode(RouteRecordCodec.KIND_SIGNAL_TEXT, 7L, 1L, [9L] as long[], "b".bytes)
+        def records = [
+                Stub(MapRecord) { getId() >> RecordId.of("7-0"); getValue() >> [(RouteRecordCodec.FIELD_RECORD): ok] },
+                Stub(MapRecord) { getId() >> RecordId.of("8-0"); getValue() >> [(RouteRecordCodec.FIELD_RECORD): failing] },
+                Stub(MapRecord) { getId() >> RecordId.of("9-0"); getValue() >> [:] }
+        ]
+        clusterLocalDeliveryService.deliverSignalText(9L, "b") >> { throw new IllegalStateException("boom") }
+
+        when:
+        def method = consumer.class.getDeclaredMethod("processRecords", List)
+        method.accessible = true
+        method.invoke(consumer, records)
+
+        then:
+        1 * clusterLocalDeliveryService.deliverSignalText(6L, "a")
+        1 * streamOperations.acknowledge(_, MessageRouter.CONSUMER_GROUP, RecordId.of("7-0"), RecordId.of("9-0"))
+    }
+
     private static BaseMessage.BaseMessagePkg sampleMessage(String content) {
         BaseMessage.BaseMessagePkg.newBuilder()
                 .setMessage(com.github.im.common.connect.model.proto.Chat.ChatMessage.newBuilder()
@@ -0,0 +1,84 @@
+package com.github.im.server.service
+
+import com.github.im.server.config.MessageDedupProperties
+import com.github.im.server.model.Conversation
+import com.github.im.server.model.Message
+import com.github.im.server.model.User
+import com.github.im.server.util.SchemaSwitcher
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.Specification
+
+import java.util.function.Supplier
+
+class ClientMsgIdCacheSpec extends Specification {
+
+    ClientMsgIdCache cache = new ClientMsgIdCache(new MessageDedupProperties())
+
+    def setup() {
+        cache.init()
+    }
+
+    def cleanup() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization()
+        }
+    }
+
+    def "a message is remembered only once its transaction commits"() {
+        given:
+        TransactionSynchronizationManager.initSynchronization()
+
+        when:
+        SchemaSwitcher.executeInSchema("company_a", { cache.remember(message(100L, 7L, "c-1")) } as Runnable)
+
+        then:
+        find("company_a", 10L, "c-1", 7L) == null
+
+        when:
+        TransactionSynchronizationManager.synchronizations*.afterCommit()
+
+        then:
+        find("company_a", 10L, "c-1", 7L) == 100L
+    }
+
+    def "lookups are scoped to the tenant, the conversation and the sender"() {
+        given:
+        SchemaSwitcher.executeInSchema("company_a", { cache.remember(message(100L, 7L, "c-1")) } as Runnable)
+
+        expect:
+        find("company_a", 10L, "c-1", 7L) == 100L
+        find("company_b", 10L, "c-1", 7L) == null
+        find("company_a", 11L, "c-1", 7L) == null
+        find("company_a", 10L, "c-1", 8L) == null
+        find("company_a", 10L, "", 7L) == null
+    }
+
+    def "nothing is remembered when disabled"() {
+        given:
+        def disabled = new ClientMsgIdCache(new MessageDedupProperties(enabled: false))
+        disabled.init()
+
+        when:
+        SchemaSwitcher.executeInSchema("company_a", { disabled.remember(message(100L, 7L, "c-1")) } as Runnable)
+
+        then:
+        SchemaSwitcher.executeInSchema("company_a", { disabled.find(10L, "c-1", 7L) } as Supplier<Long>) == null
+    }
+
+    private Long find(String schema, Long conversationId, String clientMsgId, Long senderId) {
+        SchemaSwitcher.executeInSchema(schema, { cache.find(conversationId, clientMsgId, senderId) } as Supplier<Long>)
+    }
+
+    private static Message message(Long msgId, Long senderId, String clientMsgId) {
+        def conversation = new Conversation()
+        conversation.setConversationId(10L)
+        def sender = new User()
+        sender.setUserId(senderId)
+        def message = new Message()
+        message.setMsgId(msgId)
+        message.setConversation(conversation)
+        message.setFromAccountId(sender)
+        message.setClientMsgId(clientMsgId)
+        message
+    }
+}
@@ -27,10 +27,11 @@ class ConversationServiceSpec extends Specification {
     private GroupMemberService groupMemberService
     private final ConversationSequenceService conversationSequenceService = Mock();
     private final EntityManager entityManager = Mock();
+    private final MembershipCache membershipCache = Mock();
 
 
     def setup() {
-        groupMemberService = Mock(GroupMemberService, constructorArgs: [groupMemberRepository, conversationRepository])
+        groupMemberService = Mock(GroupMemberService, constructorArgs: [groupMemberRepository, conversationRepository, membershipCache])
 
         conversationService = new ConversationService(
                 conversationRepository,
@@ -40,7 +41,8 @@ class ConversationServiceSpec extends Specification {
                 groupMemberService,
                 groupMemberRepository,
                 conversationSequenceService,
-                entityManager
+                entityManager,
+                membershipCache
         )
     }
 
@@ -20,6 +20,7 @@ import java.util.UUID
 class FileStorageServiceSpec extends Specification {
 
     def properties = Mock(FileUploadProperties)
+    def systemConfigService = Mock(SystemConfigService)
     def storageStrategy = Mock(StorageStrategy)
     def repository = Mock(FileResourceRepository)
     def mediaFileResourceRepository = Mock(MediaFileResourceRepository)
@@ -27,6 +28,7 @@ class FileStorageServiceSpec extends Specification {
 
     def fileStorageService = new FileStorageService(
             properties,
+            systemConfigService,
             storageStrategy,
             repository,
             mediaFileResourceRepository,
@@ -74,8 +76,7 @@ class FileStorageServiceSpec extends Specification {
                 .fileStatus(FileStatus.UPLOADING.name())
                 .build()
 
-        repository.findById(fileId) >> Optional.of(fileResource)
-        mediaFileResourceRepository.findByFileId(fileId) >> null
+        repository.findWithMediaByIdIn([fileId] as Set) >> [[fileResource, null] as Object[]]
         fileMapper.toMeta(fileResource) >> fileMeta
 
         when:
@@ -112,8 +113,7 @@ class FileStorageServiceSpec extends Specification {
                 .fileStatus(FileStatus.NORMAL.name())
                 .build()
 
-        repository.findById(fileId) >> Optional.of(fileResource)
-        mediaFileResourceRepository.findByFileId(fileId) >> mediaResource
+        repository.findWithMediaByIdIn([fileId] as Set) >> [[fileResource, mediaResource] as Object[]]
         fileMapper.toMetaWithMedia(fileResource, mediaResource) >> fileMeta
 
         when:
@@ -125,6 +125,43 @@ class FileStorageServiceSpec extends Specification {
         result.fileStatus == FileStatus.NORMAL.name()
     }
 
+    def "getFileMetas should load misses in one query and serve stored files from the cache"() {
+        given:
+        def storedId = UUID.randomUUID()
+        def pendingId = UUID.randomUUID()
+        def stored = new FileResource(id: storedId, status: FileStatus.NORMAL)
+        def pending = new FileResource(id: pendingId, status: FileStatus.UPLOADING)
+        fileMapper.toMeta(stored) >> FileMeta.builder().fileId(storedId.toString()).build()
+        fileMapper.toMeta(pending) >> FileMeta.builder().fileId(pendingId.toString()).build()
+
+        when:
+        def first = fileStorageService.getFileMetas([storedId, pendingId])
+
+        then:
+        1 * repository.findWithMediaByIdIn([storedId, pendingId] as Set) >> [[stored, null] as Object[], [pending, null] as Object[]]
+        first.keySet() == [storedId, pendingId] as Set
+
+        when: "only the uploading placeholder is read again"
+        def second = fileStorageService.getFileMetas([storedId, pendingId])
+
+        then:
+        1 * repository.findWithMediaByIdIn([pendingId] as Set) >> [[pending, null] as Object[]]
+        second[storedId].is(first[storedId])
+        second[pendingId].fileId == pendingId.toString()
+    }
+
+    def "getFileMeta should throw when the file does not exist"() {
+        given:
+        def fileId = UUID.randomUUID()
+        repository.findWithMediaByIdIn([fileId] as Set) >> []
+
+        when:
+        fileStorageService.getFileMeta(fileId)
+
+        then:
+        thrown(FileNotFoundException)
+    }
+
     def "createFilePlaceholder should persist uploading placeholder and expose status to client"() {
         given:
         def request = new UploadFileRequest()
@@ -13,8 +13,9 @@ class GroupMemberServiceSpec extends Specification {
 
     def groupMemberRepository = Mock(GroupMemberRepository)
     def conversationRepository = Mock(ConversationRepository)
+    def membershipCache = Mock(MembershipCache)
 
-    def groupMemberService = new GroupMemberService(groupMemberRepository, conversationRepository)
+    def groupMemberService = new GroupMemberService(groupMemberRepository, conversationRepository, membershipCache)
 
     def "getMembersByConversationId should return list of members"() {
         given:
@@ -125,6 +126,7 @@ class GroupMemberServiceSpec extends Specification {
             members[1].getUser().getUserId() == 2L &&
             members[2].getUser().getUserId() == 3L
         })
+        1 * membershipCache.invalidate(conversationId)
     }
 
     def "addMembersToGroup should throw exception when group not found"() {
@@ -155,6 +157,7 @@ class GroupMemberServiceSpec extends Specification {
 
         then:
         1 * groupMemberRepository.delete(member)
+        1 * membershipCache.invalidate(groupId)
     }
 
     def "removeMemberFromGroup should do nothing when member not exists"() {
@@ -169,5 +172,6 @@ class GroupMemberServiceSpec extends Specification {
 
         then:
         0 * groupMemberRepository.delete(_)
+        0 * membershipCache.invalidate(_)
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.github.im.server.service
+
+import com.github.im.server.config.SequenceProperties
+import com.github.im.server.repository.MessageRepository
+import com.github.im.server.service.impl.InMemoryConversationSequenceService
+import spock.lang.Specification
+
+class InMemoryConversationSequenceServiceSpec extends Specification {
+
+    MessageRepository messageRepository = Mock()
+    SequenceProperties properties = new SequenceProperties()
+
+    def "startup does not scan the messages table unless preload is enabled"() {
+        given:
+        def service = new InMemoryConversationSequenceService(messageRepository, properties)
+
+        when:
+        service.initializeSequences()
+
+        then:
+        0 * messageRepository.findAllConversationMaxSequences()
+    }
+
+    def "a conversation is loaded once on first use and then incremented in memory"() {
+        given:
+        def service = new InMemoryConversationSequenceService(messageRepository, properties)
+
+        when:
+        def sequences = (1..3).collect { service.nextSequence(5L) }
+
+        then:
+        1 * messageRepository.findMaxSequenceByConversationId(5L) >> 40L
+        sequences == [41L, 42L, 43L]
+        service.getMaxSequence(5L) == 43
+    }
+
+    def "evicted conversations are reloaded from the database"() {
+        given:
+        properties.memory.capacity = 1
+        def service = new InMemoryConversationSequenceService(messageRepository, properties)
+
+        when:
+        service.nextSequence(1L)
+        service.nextSequence(2L)
+        def reloaded = service.nextSequence(1L)
+
+        then:
+        2 * messageRepository.findMaxSequenceByConversationId(1L) >>> [0L, 1L]
+        1 * messageRepository.findMaxSequenceByConversationId(2L) >> 0L
+        reloaded == 2
+    }
+}
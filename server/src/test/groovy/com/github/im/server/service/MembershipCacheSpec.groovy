@@ -0,0 +1,84 @@
+package com.github.im.server.service
+
+import com.github.im.server.config.MembershipCacheProperties
+import com.github.im.server.model.enums.ConversationMemberRole
+import com.github.im.server.repository.GroupMemberRepository
+import com.github.im.server.util.SchemaSwitcher
+import org.springframework.data.redis.connection.DefaultMessage
+import org.springframework.data.redis.connection.MessageListener
+import org.springframework.data.redis.core.StringRedisTemplate
+import org.springframework.data.redis.listener.RedisMessageListenerContainer
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.function.Supplier
+
+class MembershipCacheSpec extends Specification {
+
+    GroupMemberRepository groupMemberRepository = Mock()
+    StringRedisTemplate redis = Mock()
+    RedisMessageListenerContainer listenerContainer = Mock()
+    MessageListener listener
+    MembershipCache cache = new MembershipCache(groupMemberRepository, new MembershipCacheProperties(), redis, listenerContainer)
+
+    def setup() {
+        listenerContainer.addMessageListener(_ as MessageListener, _) >> { arguments -> listener = arguments[0] }
+        cache.init()
+    }
+
+    def "members are loaded once per conversation and schema as sorted ids with roles"() {
+        when:
+        def first = inSchema("company_a") { cache.get(10L) }
+        def second = inSchema("company_a") { cache.get(10L) }
+        def other = inSchema("company_b") { cache.get(10L) }
+
+        then:
+        2 * groupMemberRepository.findMemberRoles(10L) >>> [
+                [member(3L, ConversationMemberRole.MEMBER), member(1L, ConversationMemberRole.OWNER)],
+                [member(5L, ConversationMemberRole.MEMBER)]
+        ]
+        second.is(first)
+        first.memberIds() == [1L, 3L] as long[]
+        first.roleOf(1L) == ConversationMemberRole.OWNER
+        first.roleOf(2L) == null
+        other.memberIdList() == [5L]
+    }
+
+    def "a local change is broadcast and reloads on next access"() {
+        given:
+        groupMemberRepository.findMemberRoles(10L) >>> [[member(1L, ConversationMemberRole.OWNER)],
+                                                        [member(1L, ConversationMemberRole.OWNER), member(2L, ConversationMemberRole.MEMBER)]]
+        inSchema("company_a") { cache.get(10L) }
+
+        when:
+        def reloaded = inSchema("company_a") {
+            cache.invalidate(10L)
+            cache.get(10L)
+        }
+
+        then:
+        1 * redis.convertAndSend(MembershipCache.MEMBERSHIP_CHANGED_CHANNEL, "company_a:10")
+        reloaded.memberIdList() == [1L, 2L]
+    }
+
+    def "a change broadcast by another node invalidates the local snapshot"() {
+        given:
+        groupMemberRepository.findMemberRoles(10L) >>> [[member(1L, ConversationMemberRole.OWNER)], []]
+        inSchema("company_a") { cache.get(10L) }
+
+        when:
+        listener.onMessage(new DefaultMessage(MembershipCache.MEMBERSHIP_CHANGED_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "company_a:10".getBytes(StandardCharsets.UTF_8)), null)
+
+        then:
+        inSchema("company_a") { cache.get(10L) }.isEmpty()
+    }
+
+    private static <T> T inSchema(String schema, Closure<T> action) {
+        SchemaSwitcher.executeInSchema(schema, action as Supplier<T>)
+    }
+
+    private static GroupMemberRepository.MemberRoleRes member(Long userId, ConversationMemberRole role) {
+        [getUserId: { userId }, getRole: { role }] as GroupMemberRepository.MemberRoleRes
+    }
+}
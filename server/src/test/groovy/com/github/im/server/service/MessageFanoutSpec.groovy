@@ -0,0 +1,104 @@
+package com.github.im.server.service
+
+import com.github.im.server.config.FanoutProperties
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class MessageFanoutSpec extends Specification {
+
+    RedisMessageRouter router = Mock()
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    MessageFanout fanout
+
+    def cleanup() {
+        fanout?.stop()
+    }
+
+    def "the sender returns before routing finishes on the fan-out thread"() {
+        given:
+        fanout = start(new FanoutProperties(threads: 1, queueCapacity: 10))
+        def release = new CountDownLatch(1)
+        def routed = new CountDownLatch(1)
+        String routingThread = null
+        router.sendBatch(1L, [2L, 3L], "payload") >> {
+            routingThread = Thread.currentThread().name
+            release.await(5, TimeUnit.SECONDS)
+            routed.countDown()
+        }
+
+        when:
+        fanout.submit(1L, [2L, 3L], "payload")
+
+        then: "the task is still blocked in routing"
+        routed.count == 1
+        meterRegistry.get("im.fanout.queue.depth").gauge().value() == 1
+
+        when:
+        release.countDown()
+
+        then:
+        routed.await(5, TimeUnit.SECONDS)
+        routingThread.startsWith("message-fanout-")
+    }
+
+    def "a saturated stage routes on the sending thread instead of dropping"() {
+        given:
+        fanout = start(new FanoutProperties(threads: 1, queueCapacity: 1))
+        def release = new CountDownLatch(1)
+        def callers = Collections.synchronizedList([])
+        router.sendBatch(_, _, _) >> {
+            callers << Thread.currentThread()
+            if (Thread.currentThread().name.startsWith("message-fanout-")) {
+                release.await(5, TimeUnit.SECONDS)
+            }
+        }
+
+        when:
+        fanout.submit(1L, [2L], "first")
+        fanout.submit(1L, [3L], "second")
+
+        then:
+        callers.contains(Thread.currentThread())
+        meterRegistry.get("im.fanout.caller.runs").counter().count() == 1
+
+        cleanup:
+        release.countDown()
+    }
+
+    def "routing failures are counted and do not reach the sender"() {
+        given:
+        fanout = start(new FanoutProperties(enabled: false))
+        router.sendBatch(_, _, _) >> { throw new IllegalStateException("redis down") }
+
+        when:
+        fanout.submit(1L, [2L], "payload")
+
+        then:
+        noExceptionThrown()
+        meterRegistry.get("im.fanout.failures").counter().count() == 1
+        meterRegistry.get("im.fanout.queue.depth").gauge().value() == 0
+    }
+
+    def "routeNow reports routing failures to the caller"() {
+        given:
+        fanout = start(new FanoutProperties(enabled: false))
+        router.sendBatch(_, _, _) >> { throw new IllegalStateException("redis down") }
+
+        when:
+        fanout.routeNow(1L, [2L], "payload")
+
+        then:
+        thrown(IllegalStateException)
+        meterRegistry.get("im.fanout.failures").counter().count() == 1
+        meterRegistry.get("im.fanout.queue.depth").gauge().value() == 0
+    }
+
+    private MessageFanout start(FanoutProperties properties) {
+        def messageFanout = new MessageFanout(router, properties, meterRegistry)
+        messageFanout.start()
+        messageFanout
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.im.server.service
+
+import com.github.im.common.connect.model.proto.BaseMessage
+import com.github.im.common.connect.model.proto.Chat
+import com.github.im.server.config.MessageOutboxProperties
+import com.github.im.server.event.MessageCreatedEvent
+import com.github.im.server.model.Conversation
+import com.github.im.server.model.Message
+import com.github.im.server.model.MessageOutbox
+import com.github.im.server.model.User
+import com.github.im.server.model.enums.ConversationMemberRole
+import com.github.im.server.repository.CompanyRepository
+import com.github.im.server.repository.MessageOutboxRepository
+import com.github.im.server.repository.MessageRepository
+import com.github.im.server.service.notification.ClientEventPublisher
+import com.github.im.server.util.SchemaSwitcher
+import org.springframework.context.ApplicationEventPublisher
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.support.SimpleTransactionStatus
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class MessageOutboxServiceSpec extends Specification {
+
+    MessageOutboxRepository outboxRepository = Mock()
+    MessageRepository messageRepository = Mock()
+    CompanyRepository companyRepository = Mock()
+    MembershipCache membershipCache = Mock()
+    MessageFanout messageFanout = Mock()
+    UnreadCountService unreadCountService = Mock()
+    ClientEventPublisher clientEventPublisher = Mock()
+    ApplicationEventPublisher applicationEventPublisher = Mock()
+    PlatformTransactionManager transactionManager = Mock()
+    MessageOutboxProperties properties = new MessageOutboxProperties(workers: 1, maxAttempts: 3)
+
+    MessageOutboxService service = new MessageOutboxService(outboxRepository, messageRepository, companyRepository,
+            membershipCache, messageFanout, unreadCountService, clientEventPublisher, applicationEventPublisher,
+            transactionManager, properties)
+
+    def setup() {
+        transactionManager.getTransaction(_) >> { new SimpleTransactionStatus() }
+        service.start()
+    }
+
+    def cleanup() {
+        service.stop()
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization()
+        }
+    }
+
+    def "the outbox row is handed to the dispatcher only after the message transaction commits"() {
+        given:
+        def dispatched = new CountDownLatch(1)
+        outboxRepository.save(_ as MessageOutbox) >> { MessageOutbox row -> row.id = 5L; row }
+        outboxRepository.findById(5L) >> { dispatched.countDown(); Optional.empty() }
+        TransactionSynchronizationManager.initSynchronization()
+
+        when:
+        SchemaSwitcher.executeInSchema("company_a", { service.record(message(), pushPkg()) } as Runnable)
+
+        then:
+        !dispatched.await(200, TimeUnit.MILLISECONDS)
+
+        when:
+        TransactionSynchronizationManager.synchronizations*.afterCommit()
+
+        then:
+        dispatched.await(5, TimeUnit.SECONDS)
+    }
+
+    def "dispatch pushes to members, counts unread, notifies and removes the row with the created event"() {
+        given:
+        def members = MembershipSnapshot.of([7L, 8L] as long[],
+                [ConversationMemberRole.OWNER, ConversationMemberRole.MEMBER] as ConversationMemberRole[])
+        outboxRepository.findById(5L) >> Optional.of(outbox(1))
+        messageRepository.findWithSenderById(100L) >> Optional.of(message())
+        membershipCache.get(10L) >> members
+
+        when:
+        SchemaSwitcher.executeInSchema("company_a", { service.dispatch(5L) } as Runnable)
+
+        then:
+        1 * messageFanout.routeNow(7L, [7L, 8L], pushPkg())
+        1 * unreadCountService.onMessageCreated(10L, 7L, [7L, 8L] as long[])
+        1 * clientEventPublisher.publishChatMessageCreated({ it.msgId == 100L }, { it.userId == 7L }, [7L, 8L] as long[])
+
+        then:
+        1 * outboxRepository.deleteOutboxById(5L)
+        1 * applicationEventPublisher.publishEvent(new MessageCreatedEvent(100L, 10L, 7L, "alice", "hello"))
+    }
+
+    def "a routing failure keeps the row for the recovery sweep"() {
+        given:
+        def members = MembershipSnapshot.of([7L, 8L] as long[],
+                [ConversationMemberRole.OWNER, ConversationMemberRole.MEMBER] as ConversationMemberRole[])
+        outboxRepository.findById(5L) >> Optional.of(outbox(1))
+        messageRepository.findWithSenderById(100L) >> Optional.of(message())
+        membershipCache.get(10L) >> members
+        messageFanout.routeNow(*_) >> { throw new IllegalStateException("redis down") }
+
+        when:
+        SchemaSwitcher.executeInSchema("company_a", { service.dispatch(5L) } as Runnable)
+
+        then:
+        thrown(IllegalStateException)
+        0 * outboxRepository.deleteOutboxById(_)
+        0 * outboxRepository.deleteById(_)
+        0 * unreadCountService._
+        0 * applicationEventPublisher._
+    }
+
+    def "a row that exceeded the attempt limit is dropped without side effects"() {
+        given:
+        outboxRepository.findById(5L) >> Optional.of(outbox(4))
+
+        when:
+        service.dispatch(5L)
+
+        then:
+        1 * outboxRepository.deleteById(5L)
+        0 * messageFanout._
+        0 * applicationEventPublisher._
+    }
+
+    def "the recovery sweep claims due rows of every active tenant and dispatches them"() {
+        given:
+        companyRepository.findActiveSchemaNames() >> ["company_a", "company_b"]
+        outboxRepository.lockDueIds(_, 200) >>> [[5L], []]
+        outboxRepository.findById(5L) >> Optional.empty()
+
+        when:
+        service.recover()
+
+        then:
+        1 * outboxRepository.claim([5L], _)
+        0 * outboxRepository.claim([], _)
+    }
+
+    private static Message message() {
+        def conversation = new Conversation()
+        conversation.setConversationId(10L)
+        def sender = new User()
+        sender.setUserId(7L)
+        sender.setUsername("alice")
+        def message = new Message()
+        message.setMsgId(100L)
+        message.setConversation(conversation)
+        message.setFromAccountId(sender)
+        message.setContent("hello")
+        message
+    }
+
+    private static BaseMessage.BaseMessagePkg pushPkg() {
+        BaseMessage.BaseMessagePkg.newBuilder()
+                .setMessage(Chat.ChatMessage.newBuilder().setConversationId(10L).setMsgId(100L).setContent("hello"))
+                .build()
+    }
+
+    private static MessageOutbox outbox(int attempts) {
+        MessageOutbox.builder()
+                .id(5L)
+                .messageId(100L)
+                .conversationId(10L)
+                .senderId(7L)
+                .payload(pushPkg().toByteArray())
+                .attempts(attempts)
+                .build()
+    }
+}
@@ -1,29 +1,41 @@
 package com.github.im.server.service
 
 import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.im.common.connect.model.proto.BaseMessage
 import com.github.im.common.connect.model.proto.Chat
 import com.github.im.dto.message.DefaultMessagePayLoad
 import com.github.im.dto.message.FileMeta
+import com.github.im.dto.message.MessageCursorPullRequest
 import com.github.im.dto.message.MessageDTO
 import com.github.im.dto.message.MessagePayLoad
+import com.github.im.dto.message.MessagePostRequest
+import com.github.im.enums.ConversationType
 import com.github.im.enums.MessageStatus
 import com.github.im.enums.MessageType
+import com.github.im.server.exception.BusinessException
 import com.github.im.server.mapstruct.MessageMapper
 import com.github.im.server.model.Conversation
 import com.github.im.server.model.Message
 import com.github.im.server.model.User
+import com.github.im.server.model.enums.ConversationMemberRole
 import com.github.im.server.model.enums.FileStatus
 import com.github.im.server.repository.GroupMemberRepository
 import com.github.im.server.repository.MessageRepository
-import com.github.im.server.service.notification.ClientEventPublisher
 import jakarta.persistence.EntityManager
+import org.springframework.dao.DataIntegrityViolationException
+import org.springframework.data.domain.PageRequest
+import org.springframework.http.HttpStatus
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.annotation.Transactional
+import org.springframework.transaction.support.SimpleTransactionStatus
+import org.springframework.transaction.support.TransactionSynchronizationManager
 import spock.lang.Specification
 
-import java.io.FileNotFoundException
 import java.time.Instant
 import java.time.LocalDateTime
 import java.time.ZoneId
 import java.util.UUID
+import java.util.function.Supplier
 
 class MessageServiceSpec extends Specification {
 
@@ -32,10 +44,14 @@ class MessageServiceSpec extends Specification {
     def messageMapper = Mock(MessageMapper)
     def fileStorageService = Mock(FileStorageService)
     def conversationSequenceService = Mock(ConversationSequenceService)
-    def conversationService = Mock(ConversationService)
-    def redisMessageRouter = Mock(RedisMessageRouter)
+    def messageFanout = Mock(MessageFanout)
     def objectMapper = Mock(ObjectMapper)
-    def clientEventPublisher = Mock(ClientEventPublisher)
+    def messageOutboxService = Mock(MessageOutboxService)
+    def messageWriteBatcher = Mock(MessageWriteBatcher)
+    def transactionManager = Mock(PlatformTransactionManager)
+    def unreadCountService = Mock(UnreadCountService)
+    def membershipCache = Mock(MembershipCache)
+    def clientMsgIdCache = Mock(ClientMsgIdCache)
     def entityManager = Mock(EntityManager)
 
     def messageService = new MessageService(
@@ -44,10 +60,14 @@ class MessageServiceSpec extends Specification {
             messageMapper,
             fileStorageService,
             conversationSequenceService,
-            conversationService,
-            redisMessageRouter,
+            messageFanout,
             objectMapper,
-            clientEventPublisher
+            messageOutboxService,
+            messageWriteBatcher,
+            transactionManager,
+            unreadCountService,
+            membershipCache,
+            clientMsgIdCache
     )
 
     def setup() {
@@ -119,6 +139,10 @@ class MessageServiceSpec extends Specification {
         def result = messageService.saveMessage(chatMessage)
 
         then:
+        1 * messageOutboxService.record(_ as Message, { BaseMessage.BaseMessagePkg pkg ->
+            pkg.message.msgId == 100L && pkg.message.sequenceId == 88L &&
+                    pkg.message.messagesStatus == Chat.MessagesStatus.SENT
+        })
         def expectedClientTimestamp = LocalDateTime.ofInstant(
                 Instant.ofEpochMilli(1710000000000L),
                 ZoneId.systemDefault()
@@ -131,6 +155,137 @@ class MessageServiceSpec extends Specification {
         result.clientTimestamp == expectedClientTimestamp
     }
 
+    def "a group commit write replayed after a failed batch keeps the sequence allocated before submission"() {
+        given:
+        transactionManager.getTransaction(_) >> new SimpleTransactionStatus()
+        messageWriteBatcher.isEnabled() >> true
+        def conversation = new Conversation()
+        conversation.setConversationId(7L)
+        entityManager.getReference(Conversation, 7L) >> conversation
+        entityManager.getReference(User, 1L) >> new User(userId: 1L)
+        def saved = []
+        messageRepository.save(_ as Message) >> { Message message -> message.setMsgId(200L + saved.size()); saved << message; message }
+        messageWriteBatcher.submitAndWait(_) >> { Supplier write ->
+            // 第一次写入所在的组失败，单独重放
+            write.get()
+            write.get()
+        }
+        messageMapper.toDTO(_) >> new MessageDTO<MessagePayLoad>()
+
+        when:
+        messageService.handleMessage(resend())
+
+        then:
+        1 * conversationSequenceService.nextSequence(7L) >> 42L
+        saved*.sequenceId == [42L, 42L]
+    }
+
+    def "a resend of a recently committed clientMsgId echoes the original message to the sender only"() {
+        given:
+        transactionManager.getTransaction(_) >> new SimpleTransactionStatus()
+        def original = textMessage(29L)
+        clientMsgIdCache.find(7L, "client-1", 1L) >> original.msgId
+        messageRepository.findById(original.msgId) >> Optional.of(original)
+        messageMapper.toDTO(original) >> new MessageDTO<MessagePayLoad>(msgId: original.msgId)
+
+        when:
+        def result = messageService.handleMessage(resend())
+
+        then:
+        result.msgId == original.msgId
+        1 * messageFanout.submit(1L, [1L], { BaseMessage.BaseMessagePkg pkg ->
+            pkg.message.msgId == original.msgId && pkg.message.sequenceId == 29L && pkg.message.clientMsgId == "client-1"
+        })
+        0 * messageRepository.save(_)
+        0 * conversationSequenceService.nextSequence(_)
+        0 * messageOutboxService.record(_, _)
+    }
+
+    def "a resend rejected by the unique index is answered with the stored original"() {
+        given:
+        transactionManager.getTransaction(_) >> new SimpleTransactionStatus()
+        def original = textMessage(29L)
+        entityManager.getReference(Conversation, 7L) >> original.conversation
+        entityManager.getReference(User, 1L) >> original.fromAccountId
+        messageRepository.save(_ as Message) >> { throw new DataIntegrityViolationException("duplicate key") }
+        messageRepository.findByConversation_ConversationIdAndFromAccountId_UserIdAndClientMsgId(7L, 1L, "client-1") >> Optional.of(original)
+        messageMapper.toDTO(original) >> new MessageDTO<MessagePayLoad>(msgId: original.msgId)
+
+        when:
+        def result = messageService.handleMessage(resend())
+
+        then:
+        result.msgId == original.msgId
+        1 * messageFanout.submit(1L, [1L], { BaseMessage.BaseMessagePkg pkg -> pkg.message.msgId == original.msgId })
+    }
+
+    def "an HTTP resend rejected by the unique index returns the stored original instead of failing the request"() {
+        given:
+        def transactions = []
+        transactionManager.getTransaction(_) >> { args -> def status = new SimpleTransactionStatus(); transactions << status; status }
+        def original = textMessage(29L)
+        entityManager.getReference(Conversation, 7L) >> original.conversation
+        entityManager.getReference(User, 1L) >> original.fromAccountId
+        messageRepository.save(_ as Message) >> { throw new DataIntegrityViolationException("duplicate key") }
+        messageRepository.findByConversation_ConversationIdAndFromAccountId_UserIdAndClientMsgId(7L, 1L, "client-1") >> Optional.of(original)
+        messageMapper.toDTO(original) >> new MessageDTO<MessagePayLoad>(msgId: original.msgId)
+        def request = new MessagePostRequest(conversationId: 7L, content: "m29", type: MessageType.TEXT, clientMsgId: "client-1")
+
+        when:
+        def result = messageService.sendMessage(request, new User(userId: 1L, username: "alice"))
+
+        then:
+        result.msgId == original.msgId
+        1 * messageFanout.submit(1L, [1L], { BaseMessage.BaseMessagePkg pkg -> pkg.message.msgId == original.msgId })
+        // 保存和查回各在自己的事务中，查回不依赖已回滚的那一个
+        1 * transactionManager.rollback(_)
+        transactions.size() == 2
+    }
+
+    def "sendMessage does not open an outer transaction that a duplicate insert would abort"() {
+        expect:
+        !MessageService.getMethod("sendMessage", MessagePostRequest, User).isAnnotationPresent(Transactional)
+    }
+
+    def "a unique violation inside the caller's transaction is rethrown without a lookup"() {
+        given:
+        transactionManager.getTransaction(_) >> new SimpleTransactionStatus()
+        def conversation = new Conversation()
+        conversation.setConversationId(7L)
+        entityManager.getReference(Conversation, 7L) >> conversation
+        entityManager.getReference(User, 1L) >> new User(userId: 1L)
+        messageRepository.save(_ as Message) >> { throw new DataIntegrityViolationException("duplicate key") }
+        TransactionSynchronizationManager.setActualTransactionActive(true)
+
+        when:
+        messageService.handleMessage(resend())
+
+        then:
+        thrown(DataIntegrityViolationException)
+        0 * messageRepository.findByConversation_ConversationIdAndFromAccountId_UserIdAndClientMsgId(*_)
+
+        cleanup:
+        TransactionSynchronizationManager.setActualTransactionActive(false)
+    }
+
+    def "a unique violation without a stored original of the same sender is rethrown"() {
+        given:
+        transactionManager.getTransaction(_) >> new SimpleTransactionStatus()
+        def conversation = new Conversation()
+        conversation.setConversationId(7L)
+        entityManager.getReference(Conversation, 7L) >> conversation
+        entityManager.getReference(User, 1L) >> new User(userId: 1L)
+        messageRepository.save(_ as Message) >> { throw new DataIntegrityViolationException("duplicate key") }
+        messageRepository.findByConversation_ConversationIdAndFromAccountId_UserIdAndClientMsgId(7L, 1L, "client-1") >> Optional.empty()
+
+        when:
+        messageService.handleMessage(resend())
+
+        then:
+        thrown(DataIntegrityViolationException)
+        0 * messageFanout.submit(*_)
+    }
+
     def "convertMessage should preserve uploading attachment metadata for image messages"() {
         given:
         def fileId = UUID.randomUUID().toString()
@@ -151,7 +306,7 @@ class MessageServiceSpec extends Specification {
                 .build()
 
         messageMapper.toDTO(message) >> dto
-        fileStorageService.getFileMeta(UUID.fromString(fileId)) >> fileMeta
+        fileStorageService.getFileMetas([UUID.fromString(fileId)] as Set) >> [(UUID.fromString(fileId)): fileMeta]
 
         when:
         def result = messageService.convertMessage(message)
@@ -178,7 +333,7 @@ class MessageServiceSpec extends Specification {
         dto.setMsgId(3L)
 
         messageMapper.toDTO(message) >> dto
-        fileStorageService.getFileMeta(UUID.fromString(fileId)) >> { throw new FileNotFoundException("missing meta") }
+        fileStorageService.getFileMetas([UUID.fromString(fileId)] as Set) >> [:]
 
         when:
         def result = messageService.convertMessage(message)
@@ -187,4 +342,162 @@ class MessageServiceSpec extends Specification {
         result.payload instanceof DefaultMessagePayLoad
         result.payload.content == fileId
     }
+
+    def "a page of messages resolves all attachments with one lookup and skips plain text"() {
+        given:
+        def imageId = UUID.randomUUID()
+        def legacyId = UUID.randomUUID()
+        def messages = [
+                attachmentMessage(MessageType.IMAGE, imageId.toString()),
+                attachmentMessage(MessageType.TEXT, "hello"),
+                attachmentMessage(MessageType.TEXT, "not-a-uuid-but-thirty-six-chars-long"),
+                attachmentMessage(MessageType.TEXT, legacyId.toString())
+        ]
+        messageMapper.toDTO(_ as Message) >> { Message m -> new MessageDTO<MessagePayLoad>(type: m.type) }
+        def imageMeta = FileMeta.builder().fileId(imageId.toString()).contentType("image/png").build()
+        def legacyMeta = FileMeta.builder().fileId(legacyId.toString()).contentType("video/mp4").build()
+
+        when:
+        def result = messageService.convertMessages(messages)
+
+        then:
+        1 * fileStorageService.getFileMetas([imageId, legacyId] as Set) >> [(imageId): imageMeta, (legacyId): legacyMeta]
+        0 * fileStorageService.getFileMeta(_)
+        result[0].payload.is(imageMeta)
+        result[1].payload.content == "hello"
+        result[2].payload.content == "not-a-uuid-but-thirty-six-chars-long"
+        result[3].payload.is(legacyMeta)
+        result[3].type == MessageType.VIDEO
+    }
+
+    def "a read receipt that does not advance the watermark skips the private-chat status update"() {
+        when:
+        messageService.markConversationAsRead(7L, 2L, 30L)
+
+        then:
+        1 * groupMemberRepository.advanceLastReadSequence(7L, 2L, 30L) >> 0
+        0 * unreadCountService.onReadAdvanced(*_)
+        0 * entityManager.getReference(*_)
+        0 * messageRepository.updateStatusUpToSequence(*_)
+    }
+
+    def "an advanced read watermark marks private-chat messages read"() {
+        given:
+        def conversation = new Conversation()
+        conversation.setConversationId(7L)
+        conversation.setConversationType(ConversationType.PRIVATE_CHAT)
+
+        when:
+        messageService.markConversationAsRead(7L, 2L, 30L)
+
+        then:
+        1 * groupMemberRepository.advanceLastReadSequence(7L, 2L, 30L) >> 1
+        1 * unreadCountService.onReadAdvanced(7L, 2L)
+        1 * entityManager.getReference(Conversation, 7L) >> conversation
+        1 * messageRepository.updateStatusUpToSequence(7L, 2L, 30L, MessageStatus.READ) >> 3
+    }
+
+    def "cursor pull from the latest message fetches one extra row instead of counting"() {
+        given:
+        def request = new MessageCursorPullRequest(conversationId: 7L, limit: 2)
+        messageMapper.toDTO(_ as Message) >> { Message m -> new MessageDTO<MessagePayLoad>(sequenceId: m.sequenceId) }
+        membershipCache.get(7L) >> members(1L, 2L)
+
+        when:
+        def result = messageService.pullMessagesByCursor(request, 1L)
+
+        then:
+        1 * messageRepository.findBeforeSequence(7L, Long.MAX_VALUE, PageRequest.of(0, 3)) >> [textMessage(30L), textMessage(29L), textMessage(28L)]
+        0 * messageRepository.count(_)
+        result.messages*.sequenceId == [30L, 29L]
+        result.nextCursor == 29L
+        result.hasMore
+    }
+
+    def "cursor pull forward over the protobuf request returns chat messages after the cursor"() {
+        given:
+        def request = Chat.HistoryPullRequest.newBuilder()
+                .setConversationId(7L)
+                .setCursor(28L)
+                .setDirection(Chat.PullDirection.FORWARD)
+                .setRequestId("r-1")
+                .build()
+        membershipCache.get(7L) >> members(1L, 2L)
+
+        when:
+        def response = messageService.pullMessagesByCursor(request, 2L)
+
+        then:
+        1 * messageRepository.findAfterSequence(7L, 28L, PageRequest.of(0, 51)) >> [textMessage(29L), textMessage(30L)]
+        response.messagesList*.sequenceId == [29L, 30L]
+        response.messagesList*.conversationId == [7L, 7L]
+        response.nextCursor == 30L
+        !response.hasMore
+        response.requestId == "r-1"
+    }
+
+    def "cursor pull rejects a requester who is not a member of the conversation"() {
+        given:
+        def request = Chat.HistoryPullRequest.newBuilder()
+                .setConversationId(7L)
+                .setRequestId("r-2")
+                .build()
+        membershipCache.get(7L) >> members(1L, 2L)
+
+        when:
+        messageService.pullMessagesByCursor(request, 3L)
+
+        then:
+        def e = thrown(BusinessException)
+        e.status == HttpStatus.FORBIDDEN
+        0 * messageRepository.findBeforeSequence(*_)
+        0 * messageRepository.findAfterSequence(*_)
+    }
+
+    def "http cursor pull rejects a requester who is not a member of the conversation"() {
+        when:
+        messageService.pullMessagesByCursor(new MessageCursorPullRequest(conversationId: 7L), 3L)
+
+        then:
+        membershipCache.get(7L) >> MembershipSnapshot.EMPTY
+        thrown(BusinessException)
+        0 * messageRepository.findBeforeSequence(*_)
+    }
+
+    private static MembershipSnapshot members(long... userIds) {
+        def roles = new ConversationMemberRole[userIds.length]
+        Arrays.fill(roles, ConversationMemberRole.MEMBER)
+        MembershipSnapshot.of(userIds, roles)
+    }
+
+    private static Message textMessage(Long sequenceId) {
+        def conversation = new Conversation()
+        conversation.setConversationId(7L)
+        def sender = new User()
+        sender.setUserId(1L)
+        sender.setUsername("alice")
+        def message = new Message()
+        message.setMsgId(sequenceId + 1000)
+        message.setConversation(conversation)
+        message.setFromAccountId(sender)
+        message.setSequenceId(sequenceId)
+        message.setType(MessageType.TEXT)
+        message.setStatus(MessageStatus.SENT)
+        message.setContent("m" + sequenceId)
+        message.setTimestamp(LocalDateTime.now())
+        message
+    }
+
+    private static Chat.ChatMessage resend() {
+        Chat.ChatMessage.newBuilder()
+                .setConversationId(7L)
+                .setContent("m29")
+                .setClientMsgId("client-1")
+                .setFromUser(com.github.im.common.connect.model.proto.User.UserInfo.newBuilder().setUserId(1L))
+                .build()
+    }
+
+    private static Message attachmentMessage(MessageType type, String content) {
+        new Message(type: type, content: content)
+    }
 }
@@ -0,0 +1,85 @@
+package com.github.im.server.service
+
+import com.github.im.server.config.MessageWriteProperties
+import com.github.im.server.config.mult.SchemaContext
+import com.github.im.server.util.SchemaSwitcher
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.support.SimpleTransactionStatus
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletionException
+import java.util.function.Supplier
+
+class MessageWriteBatcherSpec extends Specification {
+
+    PlatformTransactionManager transactionManager = Mock()
+    MessageWriteBatcher batcher
+
+    def cleanup() {
+        batcher?.stop()
+    }
+
+    def "writes collected within the delay are committed in one transaction per schema"() {
+        given:
+        batcher = start(new MessageWriteProperties(groupCommitEnabled: true, maxDelay: Duration.ofMillis(200)))
+        def seen = Collections.synchronizedList([])
+
+        when:
+        def futures = [["company_a", 1], ["company_b", 2], ["company_a", 3]].collect { schema, id ->
+            SchemaSwitcher.executeInSchema(schema, {
+                batcher.submit { seen << [SchemaContext.getCurrentTenant(), id]; id }
+            } as Supplier)
+        }
+        def results = futures*.join()
+
+        then:
+        2 * transactionManager.getTransaction(_) >> { new SimpleTransactionStatus() }
+        2 * transactionManager.commit(_)
+        results == [1, 2, 3]
+        seen == [["company_a", 1], ["company_a", 3], ["company_b", 2]]
+    }
+
+    def "a failing write only fails its own sender after the group is retried one by one"() {
+        given:
+        batcher = start(new MessageWriteProperties(groupCommitEnabled: true, maxDelay: Duration.ofMillis(200)))
+        transactionManager.getTransaction(_) >> { new SimpleTransactionStatus() }
+
+        when:
+        def ok = batcher.submit { "ok" }
+        def failing = batcher.submit { throw new IllegalStateException("duplicate") }
+        def other = batcher.submit { "other" }
+
+        then:
+        ok.join() == "ok"
+        other.join() == "other"
+
+        when:
+        failing.join()
+
+        then:
+        def e = thrown(CompletionException)
+        e.cause instanceof IllegalStateException
+    }
+
+    def "without group commit the write runs on the calling thread"() {
+        given:
+        batcher = start(new MessageWriteProperties(groupCommitEnabled: false))
+        transactionManager.getTransaction(_) >> { new SimpleTransactionStatus() }
+        Thread writer = null
+
+        when:
+        def result = batcher.submitAndWait { writer = Thread.currentThread(); 42 }
+
+        then:
+        !batcher.isEnabled()
+        result == 42
+        writer == Thread.currentThread()
+    }
+
+    private MessageWriteBatcher start(MessageWriteProperties properties) {
+        def writeBatcher = new MessageWriteBatcher(properties, transactionManager)
+        writeBatcher.start()
+        writeBatcher
+    }
+}
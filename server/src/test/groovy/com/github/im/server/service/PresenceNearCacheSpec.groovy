@@ -0,0 +1,54 @@
+package com.github.im.server.service
+
+import com.github.im.server.config.PresenceCacheProperties
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.Duration
+
+class PresenceNearCacheSpec extends Specification {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    PresenceCacheProperties properties = new PresenceCacheProperties(capacity: 64, ttl: Duration.ofMinutes(1))
+    PresenceNearCache cache = new PresenceNearCache(properties, meterRegistry)
+
+    def "should serve cached node and offline entries until invalidated"() {
+        when:
+        cache.put(6L, "node-a")
+        cache.put(7L, null)
+
+        then:
+        cache.get(6L).nodeId() == "node-a"
+        cache.get(7L) != null
+        cache.get(7L).nodeId() == null
+        cache.get(8L) == null
+
+        when:
+        cache.invalidate(6L, System.currentTimeMillis())
+
+        then:
+        cache.get(6L) == null
+        meterRegistry.get("im.presence.cache.invalidations").counter().count() == 1
+    }
+
+    def "should expire entries after ttl"() {
+        given:
+        def shortLived = new PresenceNearCache(new PresenceCacheProperties(capacity: 64, ttl: Duration.ZERO), new SimpleMeterRegistry())
+        shortLived.put(6L, "node-a")
+
+        expect:
+        shortLived.get(6L) == null
+    }
+
+    def "should expose hit ratio"() {
+        given:
+        cache.put(6L, "node-a")
+
+        when:
+        cache.get(6L)
+        cache.get(9L)
+
+        then:
+        meterRegistry.get("im.presence.cache.hit.ratio").gauge().value() == 0.5d
+    }
+}
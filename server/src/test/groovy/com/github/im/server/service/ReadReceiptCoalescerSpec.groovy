@@ -0,0 +1,66 @@
+package com.github.im.server.service
+
+import com.github.im.server.config.ReadReceiptProperties
+import com.github.im.server.config.mult.SchemaContext
+import spock.lang.Specification
+
+import java.time.Duration
+
+class ReadReceiptCoalescerSpec extends Specification {
+
+    MessageService messageService = Mock()
+    ReadReceiptCoalescer coalescer
+
+    def cleanup() {
+        coalescer?.stop()
+    }
+
+    def "rapid acks for the same user and conversation are written once with the highest sequence"() {
+        given:
+        coalescer = start(Duration.ofMinutes(1))
+        def schemas = []
+
+        when:
+        [5L, 9L, 7L].each { coalescer.markRead("company_a", 100L, 1L, it) }
+        coalescer.markRead("company_a", 100L, 2L, 3L)
+        coalescer.markRead("company_b", 100L, 1L, 4L)
+        coalescer.flush()
+
+        then:
+        1 * messageService.markConversationAsRead(100L, 1L, 9L) >> { schemas << SchemaContext.getCurrentTenant() }
+        1 * messageService.markConversationAsRead(100L, 2L, 3L)
+        1 * messageService.markConversationAsRead(100L, 1L, 4L) >> { schemas << SchemaContext.getCurrentTenant() }
+        0 * messageService._
+        schemas.toSet() == ["company_a", "company_b"] as Set
+    }
+
+    def "a flushed receipt is not written again"() {
+        given:
+        coalescer = start(Duration.ofMinutes(1))
+        coalescer.markRead("company_a", 100L, 1L, 5L)
+
+        when:
+        coalescer.flush()
+        coalescer.flush()
+
+        then:
+        1 * messageService.markConversationAsRead(100L, 1L, 5L)
+    }
+
+    def "without a coalesce window acks are written immediately"() {
+        given:
+        coalescer = start(Duration.ZERO)
+
+        when:
+        coalescer.markRead("company_a", 100L, 1L, 5L)
+
+        then:
+        1 * messageService.markConversationAsRead(100L, 1L, 5L)
+    }
+
+    private ReadReceiptCoalescer start(Duration window) {
+        def readReceiptCoalescer = new ReadReceiptCoalescer(messageService, new ReadReceiptProperties(coalesceWindow: window))
+        readReceiptCoalescer.start()
+        readReceiptCoalescer
+    }
+}
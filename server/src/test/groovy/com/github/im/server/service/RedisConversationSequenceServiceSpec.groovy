@@ -0,0 +1,100 @@
+package com.github.im.server.service
+
+import com.github.im.server.config.SequenceProperties
+import com.github.im.server.repository.MessageRepository
+import com.github.im.server.service.impl.RedisConversationSequenceService
+import org.springframework.data.redis.core.StringRedisTemplate
+import org.springframework.data.redis.core.script.RedisScript
+import spock.lang.Specification
+
+import java.time.Duration
+
+class RedisConversationSequenceServiceSpec extends Specification {
+
+    StringRedisTemplate redisTemplate = Mock()
+    MessageRepository messageRepository = Mock()
+    SequenceProperties properties = new SequenceProperties()
+    RedisConversationSequenceService service = new RedisConversationSequenceService(redisTemplate, messageRepository, properties)
+
+    /**
+     * 模拟分配脚本：key 不存在且无起点返回 null，否则写入起点后 INCRBY
+     */
+    Map<String, Long> store = [:]
+    int scriptCalls = 0
+
+    def setup() {
+        redisTemplate.execute(_ as RedisScript, _ as List, *_) >> { arguments ->
+            scriptCalls++
+            def flat = arguments.collectMany { it instanceof Object[] ? (it as List) : [it] }
+            String key = flat[1][0]
+            long count = flat[2] as long
+            String floor = flat[3]
+            if (!store.containsKey(key)) {
+                if (floor == "") {
+                    return null
+                }
+                store[key] = floor as long
+            }
+            store[key] += count
+        }
+    }
+
+    def "a known conversation takes one script call and no database query"() {
+        given:
+        store["im:conversation:seq:7"] = 41L
+
+        when:
+        def sequence = service.nextSequence(7L)
+
+        then:
+        sequence == 42
+        scriptCalls == 1
+        0 * messageRepository.findMaxSequenceByConversationId(_)
+        0 * redisTemplate.opsForValue()
+    }
+
+    def "a cold conversation is initialized from the database floor without locks"() {
+        when:
+        def first = service.nextSequence(9L)
+        def second = service.nextSequence(9L)
+
+        then:
+        1 * messageRepository.findMaxSequenceByConversationId(9L) >> 100L
+        0 * redisTemplate.opsForValue()
+        first == 101
+        second == 102
+        scriptCalls == 3
+    }
+
+    def "a hot conversation leases growing blocks and hands them out locally"() {
+        given:
+        properties.lease.enabled = true
+        properties.lease.maxBlockSize = 8
+        properties.lease.window = Duration.ofMinutes(1)
+        store["im:conversation:seq:3"] = 0L
+
+        when:
+        def sequences = (1..30).collect { service.nextSequence(3L) }
+
+        then: "blocks of 1, 2, 4, 8, 8, 8 cover 30 sequences"
+        sequences == (1L..30L).toList()
+        scriptCalls == 6
+    }
+
+    def "leases stay unique when conversations exceed the tracked limit"() {
+        given:
+        properties.lease.enabled = true
+        properties.lease.maxConversations = 1
+        properties.lease.window = Duration.ofMinutes(1)
+        store["im:conversation:seq:1"] = 0L
+        store["im:conversation:seq:2"] = 0L
+
+        when:
+        def first = (1..3).collect { service.nextSequence(1L) }
+        def second = (1..3).collect { service.nextSequence(2L) }
+
+        then:
+        first == [1L, 2L, 3L]
+        second == [1L, 2L, 3L]
+    }
+}
@@ -1,9 +1,11 @@
 package com.github.im.server.service
 
 import com.github.im.common.connect.model.proto.BaseMessage
+import com.github.im.server.config.ClusterRouteProperties
 import com.github.im.server.config.NodeId
 import org.springframework.data.redis.core.StreamOperations
-import org.springframework.data.redis.core.StringRedisTemplate
+import org.springframework.data.redis.connection.stream.MapRecord
+import org.springframework.data.redis.core.RedisTemplate
 import spock.lang.Specification
 
 import java.nio.charset.StandardCharsets
@@ -11,12 +13,13 @@ import java.util.Base64
 
 class RedisMessageRouterSpec extends Specification {
 
-    StringRedisTemplate redisTemplate = Mock()
+    RedisTemplate<String, byte[]> redisTemplate = Mock()
     StreamOperations streamOperations = Mock()
     OnlineService onlineService = Mock()
     ClusterLocalDeliveryService clusterLocalDeliveryService = Mock()
+    ClusterRouteProperties routeProperties = new ClusterRouteProperties()
 
-    RedisMessageRouter router = new RedisMessageRouter(redisTemplate, onlineService, clusterLocalDeliveryService)
+    RedisMessageRouter router = new RedisMessageRouter(redisTemplate, onlineService, clusterLocalDeliveryService, routeProperties)
 
     def setup() {
         redisTemplate.opsForStream() >> streamOperations
@@ -35,7 +38,7 @@ class RedisMessageRouterSpec extends Specification {
         0 * streamOperations.add(_, _)
     }
 
-    def "should publish IM payload to target node stream when user is remote"() {
+    def "should publish IM payload as compact binary record when user is remote"() {
         given:
         def payload = sampleMessage("remote")
         onlineService.getUserNodeId(6L) >> "remote-node"
@@ -45,18 +48,46 @@ class RedisMessageRouterSpec extends Specification {
 
         then:
         1 * streamOperations.add(
-                "${RedisMessageRouter.STREAM_ROUTE_PREFIX}remote-node",
-                {
-                    it[RedisMessageRouter.FIELD_FROM] == "7" &&
-                            it[RedisMessageRouter.FIELD_TO] == "6" &&
-                            it[RedisMessageRouter.FIELD_PAYLOAD_KIND] == RedisMessageRouter.PAYLOAD_KIND_IM_BINARY &&
-                            Base64.decoder.decode(it[RedisMessageRouter.FIELD_BODY] as String) == payload.toByteArray()
-                }
+                { MapRecord record ->
+                    def fields = record.value
+                    def routeRecord = RouteRecordCodec.decode(fields[RouteRecordCodec.FIELD_RECORD] as byte[])
+                    record.stream == "${RedisMessageRouter.STREAM_ROUTE_PREFIX}remote-node" &&
+                            fields.size() == 1 &&
+                            routeRecord.kind() == RouteRecordCodec.KIND_IM_BINARY &&
+                            routeRecord.from() == 7L &&
+                            routeRecord.recipients() == [6L] as long[] &&
+                            BaseMessage.BaseMessagePkg.parseFrom(routeRecord.body()) == payload
+                },
+                _
         )
         0 * clusterLocalDeliveryService._
     }
 
-    def "should publish signal payload using text envelope when target user is remote"() {
+    def "should publish legacy IM record when compact records are disabled"() {
+        given:
+        routeProperties.compactRecord = false
+        def payload = sampleMessage("remote")
+        onlineService.getUserNodeId(6L) >> "remote-node"
+
+        when:
+        router.send(7L, 6L, payload)
+
+        then:
+        1 * streamOperations.add(
+                { MapRecord record ->
+                    def fields = record.value
+                    record.stream == "${RedisMessageRouter.STREAM_ROUTE_PREFIX}remote-node" &&
+                            utf8(fields[RedisMessageRouter.FIELD_FROM]) == "7" &&
+                            utf8(fields[RedisMessageRouter.FIELD_TO]) == "6" &&
+                            utf8(fields[RedisMessageRouter.FIELD_PAYLOAD_KIND]) == RedisMessageRouter.PAYLOAD_KIND_IM_BINARY &&
+                            Base64.decoder.decode(utf8(fields[RedisMessageRouter.FIELD_BODY])) == payload.toByteArray()
+                },
+                _
+        )
+        0 * clusterLocalDeliveryService._
+    }
+
+    def "should publish signal payload using text record kind when target user is remote"() {
         given:
         def signalPayload = '{"type":"offer","fromUser":"7"}'
         onlineService.getUserNodeId(6L) >> "remote-node"
@@ -66,11 +97,14 @@ class RedisMessageRouterSpec extends Specification {
 
         then:
         1 * streamOperations.add(
-                "${RedisMessageRouter.STREAM_ROUTE_PREFIX}remote-node",
-                {
-                    it[RedisMessageRouter.FIELD_PAYLOAD_KIND] == RedisMessageRouter.PAYLOAD_KIND_SIGNAL_TEXT &&
-                            new String(Base64.decoder.decode(it[RedisMessageRouter.FIELD_BODY] as String), StandardCharsets.UTF_8) == signalPayload
-                }
+                { MapRecord record ->
+                    def fields = record.value
+                    def routeRecord = RouteRecordCodec.decode(fields[RouteRecordCodec.FIELD_RECORD] as byte[])
+                    record.stream == "${RedisMessageRouter.STREAM_ROUTE_PREFIX}remote-node" &&
+                            routeRecord.kind() == RouteRecordCodec.KIND_SIGNAL_TEXT &&
+                            StandardCharsets.UTF_8.decode(routeRecord.body()).toString() == signalPayload
+                },
+                _
         )
         0 * clusterLocalDeliveryService._
     }
@@ -87,6 +121,74 @@ class RedisMessageRouterSpec extends Specification {
         0 * clusterLocalDeliveryService._
     }
 
+    def "should batch recipients by node with a single presence lookup"() {
+        given:
+        def payload = sampleMessage("group")
+        onlineService.getUserNodeIds([6L, 8L, 9L, 10L]) >> [
+                6L : NodeId.NODE_ID,
+                8L : "remote-node",
+                9L : "remote-node"
+        ]
+
+        when:
+        router.sendBatch(7L, [6L, 8L, 9L, 10L], payload)
+
+        then:
+        0 * onlineService.getUserNodeId(_)
+        1 * clusterLocalDeliveryService.deliverBaseMessage(6L, payload)
+        1 * streamOperations.add(
+                { MapRecord record ->
+                    def fields = record.value
+                    def routeRecord = RouteRecordCodec.decode(fields[RouteRecordCodec.FIELD_RECORD] as byte[])
+                    record.stream == "${RedisMessageRouter.STREAM_ROUTE_PREFIX}remote-node" &&
+                            routeRecord.recipients() == [8L, 9L] as long[] &&
+                            BaseMessage.BaseMessagePkg.parseFrom(routeRecord.body()) == payload
+                },
+                _
+        )
+    }
+
+    def "should encode once and share the frame between local recipients"() {
+        given:
+        def payload = sampleMessage("local-group")
+        onlineService.getUserNodeIds([6L, 8L]) >> [6L: NodeId.NODE_ID, 8L: NodeId.NODE_ID]
+        def frames = []
+
+        when:
+        router.sendBatch(7L, [6L, 8L], payload)
+
+        then:
+        2 * clusterLocalDeliveryService.deliverEncoded(_, _) >> { Long to, push ->
+            assert BaseMessage.BaseMessagePkg.parseFrom(push.bodyNioBuffer()) == payload
+            frames << push
+        }
+        0 * clusterLocalDeliveryService.deliverBaseMessage(_, _)
+        0 * streamOperations.add(_, _)
+        frames[0].is(frames[1])
+        frames[0].refCnt() == 0
+    }
+
+    def "a failed stream write still routes the other nodes and is reported to the caller"() {
+        given:
+        def payload = sampleMessage("partial")
+        onlineService.getUserNodeIds([8L, 9L]) >> [8L: "node-a", 9L: "node-b"]
+
+        when:
+        router.sendBatch(7L, [8L, 9L], payload)
+
+        then:
+        1 * streamOperations.add({ it.stream == "${RedisMessageRouter.STREAM_ROUTE_PREFIX}node-a" }, _) >> {
+            throw new IllegalStateException("XADD failed")
+        }
+        1 * streamOperations.add({ it.stream == "${RedisMessageRouter.STREAM_ROUTE_PREFIX}node-b" }, _)
+        def e = thrown(IllegalStateException)
+        e.cause.message == "XADD failed"
+    }
+
+    private static String utf8(Object value) {
+        new String(value as byte[], StandardCharsets.UTF_8)
+    }
+
     private static BaseMessage.BaseMessagePkg sampleMessage(String content) {
         BaseMessage.BaseMessagePkg.newBuilder()
                 .setMessage(com.github.im.common.connect.model.proto.Chat.ChatMessage.newBuilder()
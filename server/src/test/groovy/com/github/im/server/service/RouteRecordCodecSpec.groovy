@@ -0,0 +1,82 @@
+package com.github.im.server.service
+
+import com.github.im.common.connect.model.proto.BaseMessage
+import com.github.im.common.connect.model.proto.Chat
+import com.github.im.common.connect.model.proto.User
+import spock.lang.Specification
+
+import java.util.Base64
+
+class RouteRecordCodecSpec extends Specification {
+
+    def "should round trip header fields and body without copying"() {
+        given:
+        def payload = sampleMessage("hello").toByteArray()
+
+        when:
+        def encoded = RouteRecordCodec.encode(RouteRecordCodec.KIND_IM_BINARY, 7L, 1710000000000L, [6L, 300L, Long.MAX_VALUE] as long[], payload)
+        def decoded = RouteRecordCodec.decode(encoded)
+
+        then:
+        encoded[0] == RouteRecordCodec.VERSION_1
+        decoded.kind() == RouteRecordCodec.KIND_IM_BINARY
+        decoded.from() == 7L
+        decoded.timestamp() == 1710000000000L
+        decoded.recipients() == [6L, 300L, Long.MAX_VALUE] as long[]
+        decoded.body().remaining() == payload.length
+        BaseMessage.BaseMessagePkg.parseFrom(decoded.body()).toByteArray() == payload
+    }
+
+    def "should reject unknown record versions"() {
+        given:
+        def encoded = RouteRecordCodec.encode(RouteRecordCodec.KIND_SIGNAL_TEXT, 1L, 1L, [2L] as long[], "x".bytes)
+        encoded[0] = (byte) 9
+
+        when:
+        RouteRecordCodec.decode(encoded)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    /**
+     * Bytes per stream entry of the legacy Base64 string hash against the compact binary record.
+     * Decode cost is measured by {@code RouteRecordCodecBenchmark}.
+     */
+    def "compact record should be smaller than legacy Base64 fields"() {
+        given:
+        def payload = sampleMessage("x" * 256).toByteArray()
+        def legacy = legacyRecord(payload)
+        def compact = RouteRecordCodec.encode(RouteRecordCodec.KIND_IM_BINARY, 7L, System.currentTimeMillis(), [6L] as long[], payload)
+
+        when:
+        int legacyBytes = legacy.collect { k, v -> k.length() + v.length() }.sum() as int
+        int compactBytes = RouteRecordCodec.FIELD_RECORD.length() + compact.length
+
+        then:
+        compactBytes < legacyBytes
+        compactBytes <= payload.length + 32
+    }
+
+    private static Map<String, String> legacyRecord(byte[] payload) {
+        [
+                (RedisMessageRouter.FIELD_FROM)        : "7",
+                (RedisMessageRouter.FIELD_TO)          : "6",
+                (RedisMessageRouter.FIELD_BODY)        : Base64.encoder.encodeToString(payload),
+                (RedisMessageRouter.FIELD_PAYLOAD_KIND): RedisMessageRouter.PAYLOAD_KIND_IM_BINARY,
+                (RedisMessageRouter.FIELD_TIMESTAMP)   : String.valueOf(System.currentTimeMillis())
+        ]
+    }
+
+    private static BaseMessage.BaseMessagePkg sampleMessage(String content) {
+        BaseMessage.BaseMessagePkg.newBuilder()
+                .setMessage(Chat.ChatMessage.newBuilder()
+                        .setConversationId(1L)
+                        .setClientMsgId("client-1")
+                        .setContent(content)
+                        .setType(Chat.MessageType.TEXT)
+                        .setFromUser(User.UserInfo.newBuilder().setUserId(7L).build())
+                        .build())
+                .build()
+    }
+}
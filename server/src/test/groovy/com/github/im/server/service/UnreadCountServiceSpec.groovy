@@ -0,0 +1,83 @@
+package com.github.im.server.service
+
+import com.github.im.server.config.UnreadCountProperties
+import com.github.im.server.repository.MessageRepository
+import com.github.im.server.util.SchemaSwitcher
+import org.springframework.data.redis.connection.ReturnType
+import org.springframework.data.redis.connection.StringRedisConnection
+import org.springframework.data.redis.core.HashOperations
+import org.springframework.data.redis.core.RedisCallback
+import org.springframework.data.redis.core.StringRedisTemplate
+import spock.lang.Specification
+
+import java.util.function.Supplier
+
+class UnreadCountServiceSpec extends Specification {
+
+    StringRedisTemplate redisTemplate = Mock()
+    HashOperations<String, Object, Object> hashOperations = Mock()
+    StringRedisConnection connection = Mock()
+    MessageRepository messageRepository = Mock()
+    UnreadCountService service = new UnreadCountService(redisTemplate, messageRepository, new UnreadCountProperties())
+
+    def setup() {
+        redisTemplate.opsForHash() >> hashOperations
+        redisTemplate.executePipelined(_ as RedisCallback) >> { arguments -> arguments[0].doInRedis(connection); [] }
+        redisTemplate.execute(_ as RedisCallback) >> { arguments -> arguments[0].doInRedis(connection) }
+    }
+
+    def "counts for many conversations are read with one hash lookup"() {
+        when:
+        def counts = inSchema { service.getUnreadCounts(1L, [10L, 11L, 12L]) }
+
+        then:
+        1 * hashOperations.multiGet("im:unread:company_a:1", ["_seeded", "10", "11", "12"]) >> ["1", "3", null, "7"]
+        0 * messageRepository._
+        counts == [10L: 3L, 11L: 0L, 12L: 7L]
+    }
+
+    def "a missing hash is rebuilt from one grouped query"() {
+        when:
+        def counts = inSchema { service.getUnreadCounts(1L, [10L, 11L]) }
+
+        then:
+        1 * hashOperations.multiGet(_, _) >> [null, null, null]
+        1 * messageRepository.countUnreadMessagesByUserId(1L) >> [unread(10L, 4L)]
+        1 * connection.del("im:unread:company_a:1")
+        1 * connection.hMSet("im:unread:company_a:1", ["_seeded": "1", "10": "4"])
+        1 * connection.expire("im:unread:company_a:1", _)
+        0 * messageRepository.countUnreadMessages(_, _)
+        counts == [10L: 4L, 11L: 0L]
+    }
+
+    def "a new message increments every member except the sender"() {
+        given:
+        long[] members = [1L, 2L, 3L]
+
+        when:
+        inSchema { service.onMessageCreated(10L, 1L, members) }
+
+        then:
+        1 * connection.eval(_, ReturnType.INTEGER, 1, "im:unread:company_a:2", "10")
+        1 * connection.eval(_, ReturnType.INTEGER, 1, "im:unread:company_a:3", "10")
+        0 * connection.eval(_, _, _, "im:unread:company_a:1", _)
+    }
+
+    def "advancing the read position stores the exact remaining count only on a seeded hash"() {
+        when:
+        inSchema { service.onReadAdvanced(10L, 2L) }
+
+        then:
+        1 * messageRepository.countUnreadMessages(10L, 2L) >> 2L
+        1 * connection.eval({ it.contains("HEXISTS") && it.contains("_seeded") }, ReturnType.INTEGER, 1, "im:unread:company_a:2", "10", "2")
+        0 * hashOperations.put(*_)
+    }
+
+    private static <T> T inSchema(Closure<T> action) {
+        SchemaSwitcher.executeInSchema("company_a", action as Supplier<T>)
+    }
+
+    private static MessageRepository.UnreadCountRes unread(Long conversationId, Long count) {
+        [getConversationId: { conversationId }, getUnreadCount: { count }] as MessageRepository.UnreadCountRes
+    }
+}
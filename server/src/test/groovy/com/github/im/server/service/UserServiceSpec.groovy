@@ -5,6 +5,7 @@ import com.github.im.dto.user.RegistrationRequest
 import com.github.im.dto.user.UserBasicInfo
 import com.github.im.dto.user.UserInfo
 import com.github.im.server.config.ForcePasswordChangeConfig
+import com.github.im.server.config.security.PrincipalCache
 import com.github.im.server.mapstruct.UserMapper
 import com.github.im.server.model.Company
 import com.github.im.server.model.User
@@ -35,6 +36,7 @@ class UserServiceSpec extends Specification {
     AuthenticationService authenticationService = Mock(constructorArgs: [null, null, null, null, null])
     ForcePasswordChangeConfig forcePasswordChangeConfig = Mock()
     CompanyService companyService = Mock()
+    PrincipalCache principalCache = Mock()
     // 移除 UserMapper 的 Mock，直接使用真实的 UserMapper.INSTANCE 进行测试
 
     def setup() {
@@ -45,7 +47,8 @@ class UserServiceSpec extends Specification {
                 authenticationService,
                 forcePasswordChangeConfig,
                 userMapper,
-                companyService
+                companyService,
+                principalCache
         )
     }
 
@@ -538,6 +541,7 @@ class UserServiceSpec extends Specification {
         1 * userRepository.findById(1L) >> Optional.of(user)
         1 * passwordEncoder.encode("newpassword123") >> "newEncodedPassword"
         1 * userRepository.save(_) >> updatedUser
+        1 * principalCache.invalidateUser(1L)
         
         result.getUserId() == 1L
         result.getUsername() == "testuser"
@@ -753,7 +757,9 @@ class UserServiceSpec extends Specification {
                 passwordEncoder,
                 authenticationService,
                 forcePasswordChangeConfig,
-                spyUserMapper
+                spyUserMapper,
+                companyService,
+                principalCache
         )
 
         def registrationRequest = new RegistrationRequest(
@@ -0,0 +1,68 @@
+package com.github.im.server.util
+
+import spock.lang.Specification
+
+class LongLongLruMapSpec extends Specification {
+
+    def "the least recently used entry is evicted when full"() {
+        given:
+        def map = new LongLongLruMap(3)
+        map.put(1, 10)
+        map.put(2, 20)
+        map.put(3, 30)
+
+        when: "reading 1 makes 2 the eldest"
+        map.get(1, -1)
+        map.put(4, 40)
+
+        then:
+        map.size() == 3
+        map.evictions() == 1
+        !map.containsKey(2)
+        map.get(1, -1) == 10
+        map.get(3, -1) == 30
+        map.get(4, -1) == 40
+    }
+
+    def "addAndGet only updates existing entries and putIfAbsent keeps the first value"() {
+        given:
+        def map = new LongLongLruMap(4)
+
+        expect:
+        map.addAndGet(7, 1, Long.MIN_VALUE) == Long.MIN_VALUE
+        map.putIfAbsent(7, 100)
+        !map.putIfAbsent(7, 5)
+        map.addAndGet(7, 1, Long.MIN_VALUE) == 101
+    }
+
+    def "matches a LinkedHashMap in access order under random churn"() {
+        given:
+        int capacity = 64
+        def map = new LongLongLruMap(capacity)
+        def reference = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                size() > capacity
+            }
+        }
+        def random = new Random(42)
+
+        when:
+        20_000.times {
+            // 键集中在较小的范围内，同一探测链上反复插入和淘汰
+            long key = random.nextInt(200) * 1024L
+            if (random.nextBoolean()) {
+                long value = random.nextLong()
+                map.put(key, value)
+                reference.put(key, value)
+            } else {
+                long expected = reference.containsKey(key) ? reference.get(key) : Long.MIN_VALUE
+                assert map.get(key, Long.MIN_VALUE) == expected
+            }
+        }
+
+        then:
+        map.size() == reference.size()
+        reference.every { key, value -> map.get(key, Long.MIN_VALUE) == value }
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.im.common.connect.connection;
+
+import com.github.im.common.connect.connection.server.BindAttr;
+import com.github.im.common.connect.enums.PlatformType;
+import com.github.im.common.connect.model.proto.BaseMessage;
+import com.github.im.common.connect.model.proto.Chat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import reactor.core.Disposable;
+import reactor.core.Scannable;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All-platform push cost with 100k connected users: the userId-keyed slot registry in
+ * {@link ReactiveConnectionManager} against a copy of the former string-keyed {@code BASE_MESSAGE_SINKS} map.
+ * Both sides include the hand-off to the connection (queue offer and drain vs. sink emit).
+ * <p>
+ * Run with {@code main} from the IDE or the test classpath; it is not part of the surefire suite.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReactiveConnectionManagerBenchmark {
+
+    @Param({"100000"})
+    int users;
+
+    private static final OutboundQueue.Writer DISCARDING_WRITER = new OutboundQueue.Writer() {
+        @Override
+        public boolean isWritable() {
+            return true;
+        }
+
+        @Override
+        public void write(EncodedPush push) {
+            push.release();
+        }
+
+        @Override
+        public void flush() {
+        }
+    };
+
+    private final List<Disposable> subscriptions = new ArrayList<>();
+    private LegacySinkMap legacy;
+    private BaseMessage.BaseMessagePkg message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        legacy = new LegacySinkMap();
+        message = BaseMessage.BaseMessagePkg.newBuilder()
+                .setMessage(Chat.ChatMessage.newBuilder().setConversationId(1L).setContent("bench").build())
+                .build();
+
+        for (long userId = 1; userId <= users; userId++) {
+            ReactiveConnectionManager.register(userId, PlatformType.DESKTOP,
+                    new OutboundQueue(OutboundQueue.Settings.DEFAULT, Runnable::run, DISCARDING_WRITER, null));
+            subscriptions.add(legacy.registerSinkFlow(BindAttr.getBindAttr(String.valueOf(userId), PlatformType.DESKTOP)).asFlux().subscribe());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subscriptions.forEach(Disposable::dispose);
+        for (long userId = 1; userId <= users; userId++) {
+            ReactiveConnectionManager.unSubscribe(userId, PlatformType.DESKTOP);
+        }
+    }
+
+    @Benchmark
+    public void slotRegistryPushAllPlatforms() {
+        ReactiveConnectionManager.addBaseMessage(randomUser(), message);
+    }
+
+    @Benchmark
+    public void legacySinkMapPushAllPlatforms() {
+        legacy.addBaseMessage(BindAttr.getBindAttrForPush(String.valueOf(randomUser())), message);
+    }
+
+    private long randomUser() {
+        return ThreadLocalRandom.current().nextLong(1, users + 1L);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReactiveConnectionManagerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * Verbatim copy of the push path that used a {@code ConcurrentMap<BindAttr<String>, Sinks.Many>}.
+     */
+    static final class LegacySinkMap {
+
+        private final ConcurrentMap<BindAttr<String>, Sinks.Many<BaseMessage.BaseMessagePkg>> sinks = new ConcurrentHashMap<>();
+
+        Sinks.Many<BaseMessage.BaseMessagePkg> registerSinkFlow(BindAttr<String> attr) {
+            return sinks.compute(attr, (key, existing) -> isSinkActive(existing)
+                    ? existing
+                    : Sinks.many().multicast().onBackpressureBuffer());
+        }
+
+        void addBaseMessage(BindAttr<String> attr, BaseMessage.BaseMessagePkg pkg) {
+            getAllSubscribeAttr(attr).forEach(bindAttr -> {
+                Sinks.Many<BaseMessage.BaseMessagePkg> sink = sinks.get(bindAttr);
+                if (isSinkActive(sink)) {
+                    sink.tryEmitNext(pkg);
+                }
+            });
+        }
+
+        private List<BindAttr<String>> getAllSubscribeAttr(BindAttr<String> attr) {
+            String key = attr.getKey();
+            String account = key.substring(0, key.lastIndexOf("_"));
+            List<BindAttr<String>> result = new ArrayList<>();
+            for (PlatformType platformType : PlatformType.values()) {
+                BindAttr<String> bindAttr = BindAttr.getBindAttr(account, platformType);
+                result.add(isSinkActive(sinks.get(bindAttr)) ? bindAttr : null);
+            }
+            result.removeIf(Objects::isNull);
+            return result;
+        }
+
+        private static boolean isSinkActive(Sinks.Many<BaseMessage.BaseMessagePkg> sink) {
+            if (sink == null) {
+                return false;
+            }
+            Boolean cancelled = Scannable.from(sink).scan(Scannable.Attr.CANCELLED);
+            Boolean terminated = Scannable.from(sink).scan(Scannable.Attr.TERMINATED);
+            return !Boolean.TRUE.equals(cancelled) && !Boolean.TRUE.equals(terminated);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.im.common.connect.connection.server.tcp;
+
+import io.netty.channel.epoll.Epoll;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.DisposableServer;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+import reactor.netty.tcp.TcpClient;
+import reactor.netty.tcp.TcpServer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Connection storm: opens {@code connections} TCP connections at an even rate over {@code seconds} against a server
+ * configured through {@link ReactorTcpServer#configureTransport}, and reports the latency from starting the connect to
+ * the first byte written by the server's connection handler (handshake + accept + channel init + first write).
+ * <p>
+ * Run with {@code main}; it is not part of the surefire suite. Both ends in one JVM need roughly two file
+ * descriptors per connection ({@code ulimit -n}); point it at a remote server to load only the client side.
+ * <pre>
+ * TcpConnectStormBenchmark [connections=50000] [seconds=10] [reusePort=false] [acceptors=1] [host port]
+ * </pre>
+ */
+public class TcpConnectStormBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        boolean reusePort = args.length > 2 && Boolean.parseBoolean(args[2]);
+        int acceptors = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        String host = args.length > 5 ? args[4] : "127.0.0.1";
+
+        List<DisposableServer> servers = new ArrayList<>();
+        LoopResources serverLoops = null;
+        int port;
+        if (args.length > 5) {
+            port = Integer.parseInt(args[5]);
+        } else {
+            TcpServerOptions options = new TcpServerOptions();
+            options.setReusePort(reusePort);
+            options.setAcceptorCount(acceptors);
+            options.setSelectCount(Math.max(1, acceptors));
+            options.setBacklog(Math.max(options.getBacklog(), 4096));
+            serverLoops = LoopResources.create("storm-server", options.getSelectCount(), options.getWorkerCount(), true);
+
+            TcpServer server = ReactorTcpServer.configureTransport(TcpServer.create(), options, serverLoops)
+                    .host(host)
+                    .port(0)
+                    .handle((inbound, outbound) -> outbound.sendByteArray(Mono.just(new byte[]{1})).then(inbound.receive().then()));
+            DisposableServer first = server.bindNow();
+            servers.add(first);
+            port = first.port();
+            int binds = ReactorTcpServer.isReusePortAvailable(options) ? acceptors : 1;
+            for (int i = 1; i < binds; i++) {
+                servers.add(server.port(port).bindNow());
+            }
+            System.out.printf("server: transport=%s acceptors=%d selectors=%d workers=%d%n",
+                    Epoll.isAvailable() ? "epoll" : "nio", servers.size(), options.getSelectCount(), options.getWorkerCount());
+        }
+
+        LoopResources clientLoops = LoopResources.create("storm-client", 1, Math.max(4, Runtime.getRuntime().availableProcessors()), true);
+        TcpClient client = TcpClient.create(ConnectionProvider.newConnection())
+                .runOn(clientLoops)
+                .host(host)
+                .port(port);
+
+        long[] latencies = new long[connections];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(connections);
+        ConcurrentLinkedQueue<Connection> open = new ConcurrentLinkedQueue<>();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(seconds) / connections;
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            long connectStart = System.nanoTime();
+            client.connect()
+                    .flatMap(connection -> {
+                        open.add(connection);
+                        return connection.inbound().receive().next().thenReturn(connection);
+                    })
+                    .timeout(Duration.ofSeconds(30))
+                    .subscribe(
+                            connection -> {
+                                latencies[completed.getAndIncrement()] = System.nanoTime() - connectStart;
+                                done.countDown();
+                            },
+                            error -> {
+                                failed.incrementAndGet();
+                                done.countDown();
+                            });
+        }
+
+        boolean finished = done.await(seconds + 60L, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        int samples = completed.get();
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        System.out.printf("connections=%d finished=%s ok=%d failed=%d elapsed=%.2fs rate=%.0f/s accept-latency p50=%.2fms p99=%.2fms max=%.2fms%n",
+                connections, finished, samples, failed.get(), elapsed, samples / elapsed,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6,
+                (samples == 0 ? 0 : sorted[samples - 1]) / 1e6);
+
+        open.forEach(Connection::dispose);
+        servers.forEach(DisposableServer::disposeNow);
+        clientLoops.disposeLater().block();
+        if (serverLoops != null) {
+            serverLoops.disposeLater().block();
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.im.common.connect.connection.server.tcp;
+
+import com.github.im.common.connect.connection.EncodedPush;
+import com.github.im.common.connect.connection.OutboundQueue;
+import com.github.im.common.connect.model.proto.BaseMessage;
+import com.github.im.common.connect.model.proto.Chat;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.handler.codec.protobuf.ProtobufDecoder;
+import io.netty.handler.codec.protobuf.ProtobufEncoder;
+import io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
+import io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.DisposableServer;
+import reactor.netty.tcp.TcpClient;
+import reactor.netty.tcp.TcpServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loopback load test for server-side pushes: a group room of {@code clients} members receives {@code rounds}
+ * messages each, pushed the old way (one {@code sendObject} write+flush and one protobuf encode per recipient) and
+ * through {@link OutboundQueue} with {@link FlushConsolidationHandler} in front of the socket, where each message is
+ * encoded once into a shared {@link EncodedPush} frame.
+ * <p>
+ * Reports write syscalls/sec (from {@code /proc/self/io} where available, otherwise the number of flushes that
+ * reached the socket) and p50/p99 push-to-receive latency. Run with {@code main}; it is not part of the surefire suite.
+ * <pre>
+ * TcpPushLoadBenchmark [clients=200] [rounds=500]
+ * </pre>
+ */
+public class TcpPushLoadBenchmark {
+
+    enum Mode {
+        PER_MESSAGE_FLUSH,
+        OUTBOUND_QUEUE
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        // first pass warms up the JIT for both paths
+        run(Mode.PER_MESSAGE_FLUSH, clients, rounds / 5, false);
+        run(Mode.OUTBOUND_QUEUE, clients, rounds / 5, false);
+
+        run(Mode.PER_MESSAGE_FLUSH, clients, rounds, true);
+        run(Mode.OUTBOUND_QUEUE, clients, rounds, true);
+    }
+
+    private static void run(Mode mode, int clients, int rounds, boolean report) throws Exception {
+        FlushCounter flushCounter = new FlushCounter();
+        List<Connection> serverConnections = new CopyOnWriteArrayList<>();
+        TcpServerOptions options = new TcpServerOptions();
+
+        DisposableServer server = TcpServer.create()
+                .port(0)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                        new WriteBufferWaterMark(options.getWriteBufferLowWaterMark(), options.getWriteBufferHighWaterMark()))
+                .doOnChannelInit((observer, channel, remoteAddress) -> {
+                    if (mode == Mode.OUTBOUND_QUEUE) {
+                        channel.pipeline().addFirst(new FlushConsolidationHandler(
+                                options.getExplicitFlushAfterFlushes(), options.isConsolidateWhenNoReadInProgress()));
+                    }
+                    // head-most: counts the flushes that actually reach the socket
+                    channel.pipeline().addFirst(flushCounter);
+                })
+                .doOnConnection(connection -> {
+                    connection.addHandlerLast(EncodedPushEncoder.INSTANCE)
+                            .addHandlerLast(new ProtobufVarint32LengthFieldPrepender())
+                            .addHandlerLast(new ProtobufEncoder());
+                    serverConnections.add(connection);
+                })
+                .handle((inbound, outbound) -> inbound.receive().then())
+                .bindNow();
+
+        int total = clients * rounds;
+        CountDownLatch received = new CountDownLatch(total);
+        long[] latencies = new long[total];
+        AtomicInteger latencyIndex = new AtomicInteger();
+
+        List<Connection> clientConnections = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            Connection client = TcpClient.create()
+                    .port(server.port())
+                    .doOnConnected(connection -> connection
+                            .addHandlerLast(new ProtobufVarint32FrameDecoder())
+                            .addHandlerLast(new ProtobufDecoder(BaseMessage.BaseMessagePkg.getDefaultInstance())))
+                    .connectNow();
+            client.inbound().receiveObject()
+                    .cast(BaseMessage.BaseMessagePkg.class)
+                    .subscribe(pkg -> {
+                        latencies[latencyIndex.getAndIncrement()] = System.nanoTime() - pkg.getMessage().getClientTimeStamp();
+                        received.countDown();
+                    });
+            clientConnections.add(client);
+        }
+        while (serverConnections.size() < clients) {
+            Thread.sleep(10);
+        }
+
+        List<OutboundQueue> queues = new ArrayList<>(clients);
+        if (mode == Mode.OUTBOUND_QUEUE) {
+            for (Connection connection : serverConnections) {
+                queues.add(new OutboundQueue(OutboundQueue.Settings.DEFAULT, connection.channel().eventLoop(),
+                        new ChannelOutboundWriter(connection.channel()), null));
+            }
+        }
+
+        long flushesBefore = flushCounter.flushes.sum();
+        long syscallsBefore = writeSyscalls();
+        long start = System.nanoTime();
+
+        for (int round = 0; round < rounds; round++) {
+            // one group message per round, fanned out to every member
+            BaseMessage.BaseMessagePkg pkg = message(round);
+            if (mode == Mode.OUTBOUND_QUEUE) {
+                // encoded once; every queue shares the same pooled frame
+                EncodedPush push = EncodedPush.encode(pkg);
+                try {
+                    for (OutboundQueue queue : queues) {
+                        queue.offer(push);
+                    }
+                } finally {
+                    push.release();
+                }
+            } else {
+                for (Connection connection : serverConnections) {
+                    connection.outbound().sendObject(Mono.just(pkg)).then().subscribe();
+                }
+            }
+        }
+
+        boolean completed = received.await(60, TimeUnit.SECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+        long flushes = flushCounter.flushes.sum() - flushesBefore;
+        long syscalls = syscallsBefore < 0 ? -1 : writeSyscalls() - syscallsBefore;
+
+        clientConnections.forEach(Connection::disposeNow);
+        server.disposeNow();
+
+        if (!report) {
+            return;
+        }
+
+        int samples = latencyIndex.get();
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%-18s clients=%d msgs=%d completed=%s elapsed=%.2fs msgs/s=%.0f flushes/s=%.0f write-syscalls/s=%s p50=%.2fms p99=%.2fms%n",
+                mode, clients, total, completed, seconds, samples / seconds, flushes / seconds,
+                syscalls < 0 ? "n/a" : String.format("%.0f", syscalls / seconds),
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6);
+    }
+
+    private static BaseMessage.BaseMessagePkg message(int round) {
+        return BaseMessage.BaseMessagePkg.newBuilder()
+                .setMessage(Chat.ChatMessage.newBuilder()
+                        .setConversationId(1L)
+                        .setSequenceId(round)
+                        .setContent("load-test message " + round)
+                        .setClientTimeStamp(System.nanoTime())
+                        .build())
+                .build();
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /**
+     * Write syscalls issued by this process so far, or -1 when /proc is not available
+     */
+    private static long writeSyscalls() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/io"))) {
+                if (line.startsWith("syscw:")) {
+                    return Long.parseLong(line.substring("syscw:".length()).trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // not Linux, or /proc/self/io is not readable
+        }
+        return -1;
+    }
+
+    @ChannelHandler.Sharable
+    static final class FlushCounter extends ChannelOutboundHandlerAdapter {
+
+        final LongAdder flushes = new LongAdder();
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            flushes.increment();
+            super.flush(ctx);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.github.im.server.schema.migration;
 
 import com.github.im.server.exception.BusinessException;
 import com.github.im.server.schema.migration.api.MigrationRunRequest;
+import com.github.im.server.schema.migration.baseline.CoreTenantBaselineContract;
 import com.github.im.server.schema.migration.domain.*;
 import com.github.im.server.schema.migration.persistence.MigrationRunRepository;
 import com.github.im.server.schema.migration.persistence.TenantCatalogRepository;
@@ -133,8 +134,8 @@ class MigrationRuntimeIntegrationTest {
 
         MigrationRunSnapshot.Item companyAPlan = item(planRun, 1L);
         assertEquals(MigrationItemStatus.PLANNED, companyAPlan.status());
-        assertEquals(8, companyAPlan.pendingCount());
-        assertEquals("2026082002", companyAPlan.targetVersion());
+        assertEquals(12, companyAPlan.pendingCount());
+        assertEquals(CoreTenantBaselineContract.MANAGED_TARGET_VERSION, companyAPlan.targetVersion());
         assertNull(companyAPlan.errorMessage());
 
         MigrationRunSnapshot.Item companyBPlan = item(planRun, 2L);
@@ -155,7 +156,7 @@ class MigrationRuntimeIntegrationTest {
         MigrationRunSnapshot.Item firstApplyItem = item(applyRun, 1L);
         assertEquals(MigrationItemStatus.SUCCEEDED, firstApplyItem.status());
         assertNull(firstApplyItem.fromVersion());
-        assertEquals("2026082002", firstApplyItem.targetVersion());
+        assertEquals(CoreTenantBaselineContract.MANAGED_TARGET_VERSION, firstApplyItem.targetVersion());
         assertTrue(tableExists("company_a", "tenant_schema_metadata"));
         assertTrue(tableExists("company_a", "flyway_schema_history"));
         assertTrue(tableExists("company_a", "messages"));
@@ -171,8 +172,8 @@ class MigrationRuntimeIntegrationTest {
         assertEquals(MigrationRunStatus.SUCCEEDED, secondApplyRun.status());
         MigrationRunSnapshot.Item secondApplyItem = item(secondApplyRun, 1L);
         assertEquals(0, secondApplyItem.pendingCount(), "repeat APPLY must be idempotent");
-        assertEquals("2026082002", secondApplyItem.fromVersion());
-        assertEquals("2026082002", secondApplyItem.targetVersion());
+        assertEquals(CoreTenantBaselineContract.MANAGED_TARGET_VERSION, secondApplyItem.fromVersion());
+        assertEquals(CoreTenantBaselineContract.MANAGED_TARGET_VERSION, secondApplyItem.targetVersion());
 
         var blockedAccepted = migrationRunService.createRun(
                 new MigrationRunRequest(MigrationMode.APPLY, List.of(2L), false),
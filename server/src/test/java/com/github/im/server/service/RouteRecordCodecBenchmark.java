@@ -0,0 +1,88 @@
+package com.github.im.server.service;
+
+import com.github.im.common.connect.model.proto.BaseMessage;
+import com.github.im.common.connect.model.proto.Chat;
+import com.github.im.common.connect.model.proto.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode cost of one routed stream entry: the legacy Base64 string hash ({@code RedisMessageRouter.FIELD_*})
+ * against the compact binary record of {@link RouteRecordCodec}. Both sides parse the protobuf body.
+ * Entry size is asserted in {@code RouteRecordCodecSpec}.
+ * <p>
+ * Run with {@code main} from the IDE or the test classpath; it is not part of the surefire suite.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteRecordCodecBenchmark {
+
+    @Param({"256"})
+    int contentLength;
+
+    private Map<String, String> legacy;
+    private byte[] compact;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] payload = BaseMessage.BaseMessagePkg.newBuilder()
+                .setMessage(Chat.ChatMessage.newBuilder()
+                        .setConversationId(1L)
+                        .setClientMsgId("client-1")
+                        .setContent("x".repeat(contentLength))
+                        .setType(Chat.MessageType.TEXT)
+                        .setFromUser(User.UserInfo.newBuilder().setUserId(7L).build())
+                        .build())
+                .build()
+                .toByteArray();
+        long timestamp = System.currentTimeMillis();
+        legacy = Map.of(
+                RedisMessageRouter.FIELD_FROM, "7",
+                RedisMessageRouter.FIELD_TO, "6",
+                RedisMessageRouter.FIELD_BODY, Base64.getEncoder().encodeToString(payload),
+                RedisMessageRouter.FIELD_PAYLOAD_KIND, RedisMessageRouter.PAYLOAD_KIND_IM_BINARY,
+                RedisMessageRouter.FIELD_TIMESTAMP, String.valueOf(timestamp));
+        compact = RouteRecordCodec.encode(RouteRecordCodec.KIND_IM_BINARY, 7L, timestamp, new long[]{6L}, payload);
+    }
+
+    @Benchmark
+    public void legacyBase64Decode(Blackhole blackhole) throws Exception {
+        blackhole.consume(Long.valueOf(legacy.get(RedisMessageRouter.FIELD_TO)));
+        blackhole.consume(BaseMessage.BaseMessagePkg.parseFrom(Base64.getDecoder().decode(legacy.get(RedisMessageRouter.FIELD_BODY))));
+    }
+
+    @Benchmark
+    public void compactRecordDecode(Blackhole blackhole) throws Exception {
+        RouteRecordCodec.RouteRecord record = RouteRecordCodec.decode(compact);
+        blackhole.consume(record.recipients());
+        blackhole.consume(BaseMessage.BaseMessagePkg.parseFrom(record.body()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RouteRecordCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -50,7 +50,7 @@ class TaskMigrationIntegrationTest {
 
         flyway.migrate();
 
-        assertEquals("2026082002", flyway.info().current().getVersion().getVersion());
+        assertEquals(CoreTenantBaselineContract.MANAGED_TARGET_VERSION, flyway.info().current().getVersion().getVersion());
         assertTrue(flyway.validateWithResult().validationSuccessful);
         assertTrue(relationNames(dataSource).containsAll(TASK_TABLES));
 